@@ -235,6 +235,166 @@ describe('Validation Schemas', () => {
       const { error } = generateReportSchema.validate(invalidRequest);
       expect(error).toBeDefined();
     });
+
+    it('should validate a request with an output format and compression', () => {
+      const validRequest = {
+        experimentId: 'exp123',
+        outputFormat: 'CBOR',
+        outputCompression: 'ZSTD',
+      };
+
+      const { error } = generateReportSchema.validate(validRequest);
+      expect(error).toBeUndefined();
+    });
+
+    it('should reject an unknown output compression', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        outputCompression: 'BROTLI',
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
+
+    it('should validate a request with a report time zone and granularity', () => {
+      const validRequest = {
+        experimentId: 'exp123',
+        timeZone: 'America/New_York',
+        timeSeriesGranularity: 'HOURLY',
+      };
+
+      const { error } = generateReportSchema.validate(validRequest);
+      expect(error).toBeUndefined();
+    });
+
+    it('should reject an unknown time series granularity', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        timeSeriesGranularity: 'MONTHLY',
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
+
+    it('should reject an unknown time zone', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        timeZone: 'Mars/Olympus_Mons',
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
+
+    it('should validate a request with metric definitions', () => {
+      const validRequest = {
+        experimentId: 'exp123',
+        metrics: [
+          { name: 'applied', type: 'UNIQUE_CONVERSION', actions: ['LOAN_APPLICATION'] },
+          { name: 'clickThrough', type: 'RATIO', actions: ['CLICK'], denominatorActions: ['PAGE_VIEW'] },
+          { name: 'amount', type: 'SUM', actions: ['LOAN_ACCEPTANCE'], field: 'amount' },
+          { name: 'apr', type: 'MEAN', actions: ['LOAN_ACCEPTANCE'], field: 'apr' },
+        ],
+      };
+
+      const { error } = generateReportSchema.validate(validRequest);
+      expect(error).toBeUndefined();
+    });
+
+    it('should reject a mean metric without a metadata field', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        metrics: [{ name: 'apr', type: 'MEAN', actions: ['LOAN_ACCEPTANCE'] }],
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
+
+    it('should reject a ratio metric without denominator actions', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        metrics: [{ name: 'clickThrough', type: 'RATIO', actions: ['CLICK'] }],
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
+
+    it('should validate a request with bootstrap resamples', () => {
+      const validRequest = {
+        experimentId: 'exp123',
+        bootstrapResamples: 10000,
+      };
+
+      const { error } = generateReportSchema.validate(validRequest);
+      expect(error).toBeUndefined();
+    });
+
+    it('should reject a negative number of bootstrap resamples', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        bootstrapResamples: -1,
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
+
+    it('should validate a request with a sequential mixing standard deviation', () => {
+      const validRequest = {
+        experimentId: 'exp123',
+        sequentialMixingSd: 0.02,
+      };
+
+      const { error } = generateReportSchema.validate(validRequest);
+      expect(error).toBeUndefined();
+    });
+
+    it('should reject a sequential mixing standard deviation of zero', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        sequentialMixingSd: 0,
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
+
+    it('should validate a request with quantiles', () => {
+      const validRequest = {
+        experimentId: 'exp123',
+        quantiles: [0.5, 0.9, 0.99],
+      };
+
+      const { error } = generateReportSchema.validate(validRequest);
+      expect(error).toBeUndefined();
+    });
+
+    it('should reject quantiles above one', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        quantiles: [0.5, 1.5],
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
+
+    it('should reject metrics with the same name', () => {
+      const invalidRequest = {
+        experimentId: 'exp123',
+        metrics: [
+          { name: 'clicks', type: 'COUNT', actions: ['CLICK'] },
+          { name: 'clicks', type: 'COUNT', actions: ['BUTTON_CLICK'] },
+        ],
+      };
+
+      const { error } = generateReportSchema.validate(invalidRequest);
+      expect(error).toBeDefined();
+    });
   });
 
   describe('updateReportStatusSchema', () => {
@@ -55,12 +55,48 @@ export const batchRecordEventsSchema = Joi.object({
 });
 
 // Report validation schemas
+
+// Accepts IANA zone IDs such as 'UTC' or 'America/New_York', which the report generator resolves with ZoneId.of
+function isTimeZone(value: string, helpers: Joi.CustomHelpers) {
+  try {
+    new Intl.DateTimeFormat('en-US', { timeZone: value });
+    return value;
+  } catch (error) {
+    return helpers.error('any.invalid');
+  }
+}
+
+// A metric reported per variant; RATIO metrics need denominator actions and SUM and MEAN metrics a metadata field
+const metricDefinitionSchema = Joi.object({
+  name: Joi.string().required().min(1).max(100),
+  type: Joi.string().valid('COUNT', 'UNIQUE_CONVERSION', 'RATIO', 'SUM', 'MEAN').required(),
+  actions: Joi.array().items(Joi.string()).min(1).required(),
+  denominatorActions: Joi.when('type', {
+    is: 'RATIO',
+    then: Joi.array().items(Joi.string()).min(1).required(),
+    otherwise: Joi.forbidden(),
+  }),
+  field: Joi.when('type', {
+    is: Joi.valid('SUM', 'MEAN'),
+    then: Joi.string().required(),
+    otherwise: Joi.forbidden(),
+  }),
+});
+
 export const generateReportSchema = Joi.object({
   experimentId: Joi.string().required(),
   timeRange: Joi.object({
     start: Joi.string().isoDate().required(),
     end: Joi.string().isoDate().required(),
   }).optional(),
+  outputFormat: Joi.string().valid('JSON', 'SMILE', 'CBOR').optional(),
+  outputCompression: Joi.string().valid('NONE', 'GZIP', 'ZSTD').optional(),
+  timeZone: Joi.string().custom(isTimeZone, 'IANA time zone').optional(),
+  timeSeriesGranularity: Joi.string().valid('HOURLY', 'DAILY', 'WEEKLY').optional(),
+  metrics: Joi.array().items(metricDefinitionSchema).unique('name').max(64).optional(),
+  bootstrapResamples: Joi.number().integer().min(0).max(100000).optional(),
+  sequentialMixingSd: Joi.number().positive().max(1).optional(),
+  quantiles: Joi.array().items(Joi.number().min(0).max(1)).unique().max(20).optional(),
 }).options({ abortEarly: false });
 
 export const updateReportStatusSchema = Joi.object({
@@ -1,4 +1,5 @@
 import express from 'express';
+import { gunzipSync } from 'zlib';
 import { S3Client, GetObjectCommand } from '@aws-sdk/client-s3';
 import { BatchClient, SubmitJobCommand } from '@aws-sdk/client-batch';
 import {
@@ -50,6 +51,14 @@ if (!BATCH_JOB_QUEUE || !BATCH_JOB_DEFINITION || !S3_REPORTS_BUCKET) {
  * @apiParam {Object} [timeRange] Optional time range for the report
  * @apiParam {String} timeRange.start Start date (ISO format)
  * @apiParam {String} timeRange.end End date (ISO format)
+ * @apiParam {String} [outputFormat] Report encoding: JSON (default), SMILE or CBOR
+ * @apiParam {String} [outputCompression] Report compression: NONE (default), GZIP or ZSTD
+ * @apiParam {String} [timeZone] Zone ID the time series dates are bucketed by (default UTC)
+ * @apiParam {String} [timeSeriesGranularity] Time series buckets: HOURLY, DAILY (default) or WEEKLY
+ * @apiParam {Object[]} [metrics] Metric definitions replacing those of the experiment
+ * @apiParam {Number} [bootstrapResamples] Resamples for a bootstrap interval of each variant's improvement (default 0, none)
+ * @apiParam {Number} [sequentialMixingSd] Effect standard deviation the sequential test mixes over (default 0.01)
+ * @apiParam {Number[]} [quantiles] Quantiles between 0 and 1 estimated for the values of SUM and MEAN metrics
  *
  * @apiSuccess {String} reportId The generated report ID
  * @apiSuccess {String} status Initial report status (PENDING)
@@ -59,7 +68,18 @@ if (!BATCH_JOB_QUEUE || !BATCH_JOB_DEFINITION || !S3_REPORTS_BUCKET) {
  */
 router.post('/', validateRequest(generateReportSchema), async (req, res) => {
   try {
-    const { experimentId, timeRange } = req.body;
+    const {
+      experimentId,
+      timeRange,
+      outputFormat,
+      outputCompression,
+      timeZone,
+      timeSeriesGranularity,
+      metrics,
+      bootstrapResamples,
+      sequentialMixingSd,
+      quantiles,
+    } = req.body;
 
     // Create report metadata
     const reportMetadata = await createReportMetadata(experimentId);
@@ -74,6 +94,14 @@ router.post('/', validateRequest(generateReportSchema), async (req, res) => {
       },
       outputBucket: S3_REPORTS_BUCKET,
       outputKey: reportMetadata.s3Location,
+      ...(outputFormat && { outputFormat }),
+      ...(outputCompression && { outputCompression }),
+      ...(timeZone && { timeZone }),
+      ...(timeSeriesGranularity && { timeSeriesGranularity }),
+      ...(metrics && { metrics }),
+      ...(bootstrapResamples && { bootstrapResamples }),
+      ...(sequentialMixingSd && { sequentialMixingSd }),
+      ...(quantiles && quantiles.length > 0 && { quantiles }),
     };
 
     // Submit AWS Batch job
@@ -231,8 +259,17 @@ router.get('/:id/data', async (req, res) => {
       });
     }
 
-    // Convert the S3 response body to a string
-    const reportDataString = await s3Response.Body.transformToString();
+    // Only JSON reports, plain or gzip-compressed, can be decoded here; other encodings are served by /data/raw
+    const contentType = s3Response.ContentType || 'application/json';
+    const contentEncoding = s3Response.ContentEncoding;
+    if (!contentType.startsWith('application/json') || (contentEncoding && contentEncoding !== 'gzip')) {
+      return res.status(406).json({
+        message: `Report is stored as ${contentType}${contentEncoding ? ` (${contentEncoding})` : ''}; fetch it from /reports/${id}/data/raw`,
+      });
+    }
+
+    const body = Buffer.from(await s3Response.Body.transformToByteArray());
+    const reportDataString = (contentEncoding === 'gzip' ? gunzipSync(body) : body).toString('utf8');
     const reportData = JSON.parse(reportDataString);
 
     res.json({
@@ -248,6 +285,72 @@ router.get('/:id/data', async (req, res) => {
   }
 });
 
+/**
+ * @api {get} /reports/:id/data/raw Get stored report document
+ * @apiName GetReportDataRaw
+ * @apiGroup Reports
+ * @apiDescription Get the report document exactly as stored, with its Content-Type (JSON, Smile or CBOR)
+ * and Content-Encoding (gzip or zstd), so clients decode it themselves without a server-side copy
+ *
+ * @apiParam {String} id Report identifier
+ *
+ * @apiError (400) BadRequest Report is not in COMPLETED status
+ * @apiError (404) NotFound Report not found or data not found in S3
+ * @apiError (406) NotAcceptable The client does not accept the stored content encoding
+ * @apiError (500) ServerError Failed to get report data
+ */
+router.get('/:id/data/raw', async (req, res) => {
+  try {
+    const { id } = req.params;
+    const report = await getReportMetadata(id);
+
+    if (!report) {
+      return res.status(404).json({
+        message: 'Report not found',
+      });
+    }
+
+    if (report.status !== 'COMPLETED') {
+      return res.status(400).json({
+        message: `Report is not ready. Current status: ${report.status}`,
+      });
+    }
+
+    const s3Response = await s3Client.send(
+      new GetObjectCommand({
+        Bucket: S3_REPORTS_BUCKET,
+        Key: report.s3Location,
+      })
+    );
+
+    if (!s3Response.Body) {
+      return res.status(404).json({
+        message: 'Report data not found in S3',
+      });
+    }
+
+    const contentEncoding = s3Response.ContentEncoding;
+    if (contentEncoding && !req.acceptsEncodings(contentEncoding)) {
+      return res.status(406).json({
+        message: `Report is stored with ${contentEncoding} encoding, which the client does not accept`,
+      });
+    }
+
+    res.set('Content-Type', s3Response.ContentType || 'application/json');
+    if (contentEncoding) {
+      res.set('Content-Encoding', contentEncoding);
+    }
+    res.send(Buffer.from(await s3Response.Body.transformToByteArray()));
+  } catch (error) {
+    logger.error('Error getting raw report data', error as Error, { params: req.params });
+    res.status(500).json({
+      message: 'Failed to get report data',
+      error: (error as Error).message,
+    });
+    setTimeout(() => handleError('Error getting raw report data', error as Error), 0);
+  }
+});
+
 /**
  * @api {put} /reports/:id/status Update report status
  * @apiName UpdateReportStatus
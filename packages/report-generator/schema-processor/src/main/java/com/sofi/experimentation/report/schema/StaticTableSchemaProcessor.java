@@ -0,0 +1,256 @@
+package com.sofi.experimentation.report.schema;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Annotation processor that generates a {@code StaticTableSchema} for every {@code @DynamoDbBean} class.
+ * For a bean {@code Foo} it writes {@code FooTableSchema} in the same package, whose {@code INSTANCE} maps
+ * attributes through direct getter and setter references instead of the bean introspection and lambda
+ * metafactory calls that {@code TableSchema.fromBean} makes at runtime.
+ *
+ * Supported properties are strings, primitive numbers and booleans and their wrappers, nested
+ * {@code @DynamoDbBean} classes, and lists of either. Getters annotated with {@code @DynamoDbIgnore} are skipped;
+ * {@code @DynamoDbPartitionKey}, {@code @DynamoDbSortKey} and {@code @DynamoDbAttribute} are honoured.
+ * Any other property type is reported as a compile error, so a model change cannot silently drop an attribute.
+ */
+@SupportedAnnotationTypes(StaticTableSchemaProcessor.DYNAMO_DB_BEAN)
+public class StaticTableSchemaProcessor extends AbstractProcessor {
+    static final String ANNOTATIONS = "software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.";
+    static final String DYNAMO_DB_BEAN = ANNOTATIONS + "DynamoDbBean";
+    
+    private static final String SCHEMA_SUFFIX = "TableSchema";
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+    
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    generate((TypeElement) element);
+                }
+            }
+        }
+        return false;
+    }
+    
+    private void generate(TypeElement bean) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(bean).getQualifiedName().toString();
+        String beanName = bean.getSimpleName().toString();
+        String schemaName = beanName + SCHEMA_SUFFIX;
+        
+        List<String> attributes = new ArrayList<>();
+        for (ExecutableElement getter : ElementFilter.methodsIn(bean.getEnclosedElements())) {
+            String property = propertyName(getter);
+            if (property == null || hasAnnotation(getter, "DynamoDbIgnore")) {
+                continue;
+            }
+            ExecutableElement setter = findSetter(bean, property, getter.getReturnType());
+            if (setter == null) {
+                continue;
+            }
+            String type = enhancedType(getter.getReturnType(), getter);
+            if (type == null) {
+                return;
+            }
+            attributes.add(attribute(beanName, property, getter, setter, type));
+        }
+        
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(packageName).append(";\n\n")
+                .append("import software.amazon.awssdk.enhanced.dynamodb.EnhancedType;\n")
+                .append("import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags;\n")
+                .append("import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;\n\n")
+                .append("/**\n * Static table schema for {@link ").append(beanName).append("}.\n")
+                .append(" * Generated by ").append(getClass().getName()).append("; do not edit.\n */\n")
+                .append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public final class ").append(schemaName).append(" {\n")
+                .append("    public static final StaticTableSchema<").append(beanName).append("> INSTANCE =\n")
+                .append("            StaticTableSchema.builder(").append(beanName).append(".class)\n")
+                .append("                    .newItemSupplier(").append(beanName).append("::new)\n");
+        for (String attribute : attributes) {
+            source.append(attribute);
+        }
+        source.append("                    .build();\n\n")
+                .append("    private ").append(schemaName).append("() {\n")
+                .append("        // Private constructor to prevent instantiation\n")
+                .append("    }\n")
+                .append("}\n");
+        
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(packageName + "." + schemaName, bean).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Error writing " + schemaName + ": " + e.getMessage(), bean);
+        }
+    }
+    
+    private String attribute(String beanName, String property, ExecutableElement getter, ExecutableElement setter,
+                             String type) {
+        String name = property;
+        String customName = annotationValue(getter, "DynamoDbAttribute");
+        if (customName != null) {
+            name = customName;
+        }
+        
+        String setterRef;
+        if (setter.getParameters().get(0).asType().getKind().isPrimitive()) {
+            // A missing attribute arrives as null, which cannot be unboxed into a primitive setter
+            setterRef = "(item, value) -> {\n"
+                    + "                                if (value != null) {\n"
+                    + "                                    item." + setter.getSimpleName() + "(value);\n"
+                    + "                                }\n"
+                    + "                            }";
+        } else {
+            setterRef = beanName + "::" + setter.getSimpleName();
+        }
+        
+        StringBuilder attribute = new StringBuilder();
+        attribute.append("                    .addAttribute(").append(type).append(", a -> a.name(\"").append(name).append("\")\n")
+                .append("                            .getter(").append(beanName).append("::").append(getter.getSimpleName()).append(")\n")
+                .append("                            .setter(").append(setterRef).append(")");
+        if (hasAnnotation(getter, "DynamoDbPartitionKey")) {
+            attribute.append("\n                            .tags(StaticAttributeTags.primaryPartitionKey())");
+        } else if (hasAnnotation(getter, "DynamoDbSortKey")) {
+            attribute.append("\n                            .tags(StaticAttributeTags.primarySortKey())");
+        }
+        return attribute.append(")\n").toString();
+    }
+    
+    /**
+     * Build the {@code EnhancedType} expression for a property type, or report an error and return null.
+     */
+    private String enhancedType(TypeMirror type, Element getter) {
+        switch (type.getKind()) {
+            case INT:
+                return "EnhancedType.of(Integer.class)";
+            case LONG:
+                return "EnhancedType.of(Long.class)";
+            case DOUBLE:
+                return "EnhancedType.of(Double.class)";
+            case BOOLEAN:
+                return "EnhancedType.of(Boolean.class)";
+            case DECLARED:
+                break;
+            default:
+                return unsupported(type, getter);
+        }
+        
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement element = (TypeElement) declared.asElement();
+        String name = element.getQualifiedName().toString();
+        switch (name) {
+            case "java.lang.String":
+            case "java.lang.Integer":
+            case "java.lang.Long":
+            case "java.lang.Double":
+            case "java.lang.Boolean":
+                return "EnhancedType.of(" + name + ".class)";
+            case "java.util.List":
+                if (declared.getTypeArguments().size() != 1) {
+                    return unsupported(type, getter);
+                }
+                String elementType = enhancedType(declared.getTypeArguments().get(0), getter);
+                return elementType == null ? null : "EnhancedType.listOf(" + elementType + ")";
+            default:
+                if (hasAnnotation(element, "DynamoDbBean")) {
+                    return "EnhancedType.documentOf(" + name + ".class, " + name + SCHEMA_SUFFIX + ".INSTANCE)";
+                }
+                return unsupported(type, getter);
+        }
+    }
+    
+    private String unsupported(TypeMirror type, Element getter) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Unsupported attribute type " + type + "; add it to " + getClass().getSimpleName()
+                        + " or annotate the getter with @DynamoDbIgnore", getter);
+        return null;
+    }
+    
+    private static String propertyName(ExecutableElement method) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)
+                || !method.getParameters().isEmpty() || method.getReturnType().getKind() == TypeKind.VOID) {
+            return null;
+        }
+        String name = method.getSimpleName().toString();
+        if (name.startsWith("get") && name.length() > 3) {
+            return decapitalize(name.substring(3));
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getReturnType().getKind() == TypeKind.BOOLEAN) {
+            return decapitalize(name.substring(2));
+        }
+        return null;
+    }
+    
+    private ExecutableElement findSetter(TypeElement bean, String property, TypeMirror type) {
+        String name = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(bean.getEnclosedElements())) {
+            if (method.getSimpleName().contentEquals(name) && method.getModifiers().contains(Modifier.PUBLIC)
+                    && method.getParameters().size() == 1
+                    && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), type)) {
+                return method;
+            }
+        }
+        return null;
+    }
+    
+    private static String decapitalize(String name) {
+        // Same rule as java.beans.Introspector: "URL" stays "URL", "Name" becomes "name"
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1))) {
+            return name;
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+    
+    private static boolean hasAnnotation(Element element, String simpleName) {
+        return findAnnotation(element, simpleName) != null;
+    }
+    
+    private static AnnotationMirror findAnnotation(Element element, String simpleName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(ANNOTATIONS + simpleName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+    
+    private static String annotationValue(Element element, String simpleName) {
+        AnnotationMirror mirror = findAnnotation(element, simpleName);
+        if (mirror == null) {
+            return null;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                return String.valueOf(entry.getValue().getValue());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.sofi.experimentation.report.stats.Bootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for 10k bootstrap resamples of the improvement of one variant over the control, by users per variant
+ * and fork-join parallelism. {@code conversions} draws binomial counts per resample; {@code userArrays}
+ * resamples one value per user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+public class BootstrapBenchmark {
+    private static final int RESAMPLES = 10_000;
+    
+    @Param({"10000", "1000000"})
+    public int users;
+    
+    @Param({"1", "0"})
+    public int parallelism;
+    
+    private ForkJoinPool pool;
+    private Bootstrap bootstrap;
+    private double[] control;
+    private double[] treatment;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 0 runs on every core
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        bootstrap = new Bootstrap(pool);
+        Random random = new Random(42);
+        control = new double[users];
+        treatment = new double[users];
+        for (int i = 0; i < users; i++) {
+            // Skewed per-user values, such as amounts
+            control[i] = Math.exp(random.nextGaussian());
+            treatment[i] = Math.exp(random.nextGaussian() + 0.01);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+    
+    @Benchmark
+    public double conversions() {
+        return bootstrap.conversionImprovement(users, users / 10, users, users / 10 + users / 200,
+                RESAMPLES, 0.95, new SplittableRandom(1)).getLower();
+    }
+    
+    @Benchmark
+    public double userArrays() {
+        return bootstrap.meanImprovement(control, treatment, RESAMPLES, 0.95, new SplittableRandom(1)).getLower();
+    }
+}
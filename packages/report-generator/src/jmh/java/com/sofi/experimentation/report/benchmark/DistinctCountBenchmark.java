@@ -0,0 +1,64 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.sofi.experimentation.report.aggregation.EventAggregator;
+import com.sofi.experimentation.report.model.DistinctCountMode;
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares exact and HyperLogLog distinct-user counting in the event aggregator.
+ * Run with {@code ./gradlew jmh}; the GC profiler output shows the allocation difference between the modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DistinctCountBenchmark {
+    
+    @Param({"1000000"})
+    public int events;
+    
+    @Param({"10000", "500000"})
+    public int users;
+    
+    @Param({"EXACT", "APPROXIMATE"})
+    public DistinctCountMode mode;
+    
+    private List<ExperimentEvent> eventList;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        long start = Instant.parse("2025-03-01T00:00:00Z").toEpochMilli();
+        eventList = new ArrayList<>(events);
+        for (int i = 0; i < events; i++) {
+            ExperimentEvent event = new ExperimentEvent();
+            event.setVariantId("var" + random.nextInt(2));
+            event.setUserId("user-" + random.nextInt(users));
+            event.setAction(random.nextInt(10) == 0 ? "CONVERSION" : "PAGE_VIEW");
+            event.setTimestamp(Instant.ofEpochMilli(start + (long) i * 1000).toString());
+            eventList.add(event);
+        }
+    }
+    
+    @TearDown(Level.Trial)
+    public void reportError() {
+        int exact = new EventAggregator(DistinctCountMode.EXACT, 14).acceptAll(eventList).getTotalUsers();
+        int counted = new EventAggregator(mode, 14).acceptAll(eventList).getTotalUsers();
+        System.out.printf("%n%s total users: %d counted vs %d exact%n", mode, counted, exact);
+    }
+    
+    @Benchmark
+    public int aggregate() {
+        EventAggregator aggregator = new EventAggregator(mode, 14).acceptAll(eventList);
+        return aggregator.getTotalUsers() + aggregator.getTotalConversions();
+    }
+}
@@ -0,0 +1,90 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.model.ExperimentEventTableSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per event of mapping DynamoDB items to events and reading their metadata.
+ * {@code NONE} is what a report that ignores metadata pays, {@code FIELD} reads one key with the streaming
+ * lookup, and {@code MAP} builds the whole metadata map, which is what every event paid when the map was
+ * parsed eagerly in {@code setMetadataJson}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MetadataBenchmark {
+    private static final int EVENTS = 10_000;
+    
+    @Param({"NONE", "FIELD", "MAP"})
+    public String access;
+    
+    private List<Map<String, AttributeValue>> items;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        String[] sources = {"email", "search", "display", "referral"};
+        items = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            String metadata = "{\"page\":{\"path\":\"/apply/step-" + random.nextInt(5) + "\",\"referrer\":\"https://www.example.com/\"},"
+                    + "\"device\":\"" + (random.nextBoolean() ? "mobile" : "desktop") + "\","
+                    + "\"source\":\"" + sources[random.nextInt(sources.length)] + "\","
+                    + "\"loanAmount\":" + (5_000 + random.nextInt(45_000)) + ","
+                    + "\"term\":" + (12 * (1 + random.nextInt(7))) + ","
+                    + "\"experimentTags\":[\"q1\",\"pricing\"]}";
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("id", AttributeValue.builder().s("event-" + i).build());
+            item.put("experimentId", AttributeValue.builder().s("exp-1").build());
+            item.put("variantId", AttributeValue.builder().s("var" + (1 + random.nextInt(2))).build());
+            item.put("userId", AttributeValue.builder().s("user-" + random.nextInt(2_000)).build());
+            item.put("sessionId", AttributeValue.builder().s("session-" + random.nextInt(5_000)).build());
+            item.put("action", AttributeValue.builder().s(random.nextInt(10) == 0 ? "LOAN_ACCEPTANCE" : "PAGE_VIEW").build());
+            item.put("metadataJson", AttributeValue.builder().s(metadata).build());
+            item.put("timestamp", AttributeValue.builder().s("2025-03-19T10:00:00.000Z").build());
+            items.add(item);
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void mapEvents(Blackhole blackhole) {
+        for (Map<String, AttributeValue> item : items) {
+            ExperimentEvent event = ExperimentEventTableSchema.INSTANCE.mapToItem(item);
+            switch (access) {
+                case "FIELD":
+                    blackhole.consume(event.getMetadataValue("loanAmount"));
+                    break;
+                case "MAP":
+                    blackhole.consume(event.getMetadata().get("loanAmount"));
+                    break;
+                default:
+                    blackhole.consume(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofi.experimentation.report.model.ReportCompression;
+import com.sofi.experimentation.report.model.ReportData;
+import com.sofi.experimentation.report.model.ReportFormat;
+import com.sofi.experimentation.report.service.ReportSerializer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization time and output size for every report format and compression.
+ * The report has an hourly time series over 90 days for each variant, which is where most report bytes are.
+ * The {@code bytes} counter is the encoded size of one report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReportFormatBenchmark {
+    
+    @Param({"JSON", "SMILE", "CBOR"})
+    public ReportFormat format;
+    
+    @Param({"NONE", "GZIP", "ZSTD"})
+    public ReportCompression compression;
+    
+    @Param({"4"})
+    public int variants;
+    
+    private ReportSerializer serializer;
+    private ReportData reportData;
+    
+    /**
+     * Reports the size of the serialized report next to the timing.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Output {
+        public long bytes;
+    }
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        serializer = new ReportSerializer(new ObjectMapper());
+        reportData = createReport(variants, 90 * 24);
+    }
+    
+    private static ReportData createReport(int variants, int buckets) {
+        Random random = new Random(42);
+        Instant start = Instant.parse("2025-01-01T00:00:00Z");
+        
+        List<String> dates = new ArrayList<>();
+        for (int i = 0; i < buckets; i++) {
+            dates.add(start.plus(i, ChronoUnit.HOURS).toString());
+        }
+        
+        Map<String, ReportData.VariantMetrics> byVariant = new LinkedHashMap<>();
+        Map<String, ReportData.VariantTimeSeries> seriesByVariant = new LinkedHashMap<>();
+        for (int v = 0; v < variants; v++) {
+            List<Integer> events = new ArrayList<>();
+            List<Integer> conversions = new ArrayList<>();
+            for (int i = 0; i < buckets; i++) {
+                // Daily seasonality plus noise, like real traffic
+                int traffic = 200 + (int) (150 * Math.sin(2 * Math.PI * (i % 24) / 24.0)) + random.nextInt(40);
+                events.add(traffic);
+                conversions.add(traffic / 12 + random.nextInt(5));
+            }
+            ReportData.VariantTimeSeries series = new ReportData.VariantTimeSeries();
+            series.setEvents(events);
+            series.setConversions(conversions);
+            seriesByVariant.put("variant-" + v, series);
+            
+            ReportData.VariantMetrics metrics = new ReportData.VariantMetrics();
+            metrics.setUsers(10_000 + random.nextInt(1000));
+            Map<String, Integer> actions = new HashMap<>();
+            actions.put("PAGE_VIEW", 400_000 + random.nextInt(10_000));
+            actions.put("CONVERSION", 30_000 + random.nextInt(1000));
+            metrics.setEvents(actions);
+            metrics.setConversionRate(0.08 + random.nextDouble() / 100);
+            byVariant.put("variant-" + v, metrics);
+        }
+        
+        ReportData.TimeSeries timeSeries = new ReportData.TimeSeries();
+        timeSeries.setDates(dates);
+        timeSeries.setByVariant(seriesByVariant);
+        
+        ReportData.Metrics metrics = new ReportData.Metrics();
+        metrics.setOverall(new ReportData.Overall(40_000, 1_700_000, 0.081));
+        metrics.setByVariant(byVariant);
+        metrics.setTimeSeries(timeSeries);
+        
+        ReportData reportData = new ReportData();
+        reportData.setExperimentId("exp-1");
+        reportData.setExperimentName("Benchmark Experiment");
+        reportData.setGeneratedAt(Instant.now().toString());
+        reportData.setTimeRange(new ReportData.TimeRange(dates.get(0), dates.get(dates.size() - 1)));
+        reportData.setMetrics(metrics);
+        return reportData;
+    }
+    
+    /**
+     * Stream that only counts what is written, standing in for the S3 upload.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+        
+        @Override
+        public void write(int b) {
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            count += length;
+        }
+    }
+    
+    @Benchmark
+    public long serialize(Output output) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        serializer.write(reportData, format, compression, out);
+        output.bytes = out.count;
+        return out.count;
+    }
+}
@@ -0,0 +1,201 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofi.experimentation.report.aggregation.EventAggregator;
+import com.sofi.experimentation.report.aggregation.VariantAccumulator;
+import com.sofi.experimentation.report.model.DistinctCountMode;
+import com.sofi.experimentation.report.model.Experiment;
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.model.ExperimentEventTableSchema;
+import com.sofi.experimentation.report.model.ReportCompression;
+import com.sofi.experimentation.report.model.ReportData;
+import com.sofi.experimentation.report.model.ReportFormat;
+import com.sofi.experimentation.report.model.ReportJobParameters;
+import com.sofi.experimentation.report.model.TimeGranularity;
+import com.sofi.experimentation.report.model.Variant;
+import com.sofi.experimentation.report.service.ReportGenerationService;
+import com.sofi.experimentation.report.service.ReportSerializer;
+import com.sofi.experimentation.report.service.StatisticalAnalysisService;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each stage of a report job, from DynamoDB items to the serialized report, for event counts
+ * from 10k to 50M and 2 to 20 variants over 30 days of events.
+ * <ul>
+ *   <li>{@code mapEvents}: mapping query result items to events with the generated table schema</li>
+ *   <li>{@code aggregate}: the single pass that feeds the report metrics and time series</li>
+ *   <li>{@code generateReportData}: per-variant metrics, significance tests and the time series</li>
+ *   <li>{@code calculateSignificance}: the significance test of every variant against the control</li>
+ *   <li>{@code serializeJson}: writing the report document as JSON</li>
+ * </ul>
+ * An operation covers all events of one run, so events per second are the score times {@code events}; the
+ * GC profiler's {@code gc.alloc.rate.norm} is the allocation of one run. Narrow the matrix with {@code -p},
+ * for example {@code -p events=1000000 -p variants=2}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class ReportPipelineBenchmark {
+    private static final Instant START = Instant.parse("2025-03-01T00:00:00Z");
+    private static final int MINUTES = 30 * 24 * 60;
+    private static final int ITEM_POOL = 1 << 16;
+    
+    @Param({"10000", "1000000", "50000000"})
+    public int events;
+    
+    @Param({"2", "20"})
+    public int variants;
+    
+    @Param({"DAILY", "HOURLY"})
+    public TimeGranularity granularity;
+    
+    private SyntheticEvents eventStream;
+    private List<Map<String, AttributeValue>> items;
+    private StatisticalAnalysisService analysisService;
+    private ReportGenerationService reportService;
+    private ReportSerializer serializer;
+    private Experiment experiment;
+    private ReportJobParameters jobParameters;
+    private EventAggregator aggregator;
+    private int[] variantUsers;
+    private int[] variantConversions;
+    private ReportData reportData;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        // generateReportData logs every call at INFO
+        Configurator.setRootLevel(org.apache.logging.log4j.Level.WARN);
+        
+        // One user for every ten events, up to a million distinct users
+        eventStream = new SyntheticEvents(events, variants, Math.min(1_000_000, Math.max(10, events / 10)),
+                0.05, START, MINUTES);
+        
+        items = new ArrayList<>(ITEM_POOL);
+        int index = 0;
+        for (ExperimentEvent event : eventStream) {
+            if (index == ITEM_POOL) {
+                break;
+            }
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("experimentId", AttributeValue.builder().s(event.getExperimentId()).build());
+            item.put("variantId", AttributeValue.builder().s(event.getVariantId()).build());
+            item.put("userId", AttributeValue.builder().s(event.getUserId()).build());
+            item.put("action", AttributeValue.builder().s(event.getAction()).build());
+            item.put("timestamp", AttributeValue.builder().s(event.getTimestamp()).build());
+            items.add(item);
+            index++;
+        }
+        
+        List<Variant> experimentVariants = new ArrayList<>();
+        for (int i = 0; i < variants; i++) {
+            experimentVariants.add(new Variant("var" + i, "Variant " + i, new HashMap<>()));
+        }
+        experiment = new Experiment();
+        experiment.setId("exp-1");
+        experiment.setName("Pipeline Benchmark");
+        experiment.setVariants(experimentVariants);
+        
+        jobParameters = new ReportJobParameters("exp-1", "rep-1",
+                new ReportJobParameters.TimeRange(START.toString(), START.plusSeconds(MINUTES * 60L).toString()),
+                "bucket", "key");
+        jobParameters.setTimeSeriesGranularity(granularity);
+        
+        ObjectMapper objectMapper = new ObjectMapper();
+        analysisService = new StatisticalAnalysisService();
+        // Building the report document needs no AWS clients
+        reportService = new ReportGenerationService(null, null, analysisService, null, null, objectMapper);
+        serializer = new ReportSerializer(objectMapper);
+        
+        aggregator = newAggregator().acceptAll(eventStream);
+        variantUsers = new int[variants];
+        variantConversions = new int[variants];
+        for (int i = 0; i < variants; i++) {
+            VariantAccumulator variant = aggregator.getVariant("var" + i);
+            variantUsers[i] = variant.getUsers();
+            variantConversions[i] = variant.getConversions();
+        }
+        reportData = reportService.generateReportData(experiment, aggregator, jobParameters);
+    }
+    
+    private EventAggregator newAggregator() {
+        return new EventAggregator(DistinctCountMode.EXACT, 14, ZoneOffset.UTC, granularity);
+    }
+    
+    @Benchmark
+    public void mapEvents(Blackhole blackhole) {
+        for (int i = 0; i < events; i++) {
+            blackhole.consume(ExperimentEventTableSchema.INSTANCE.mapToItem(items.get(i & (ITEM_POOL - 1))));
+        }
+    }
+    
+    @Benchmark
+    public long aggregate() {
+        return newAggregator().acceptAll(eventStream).getTotalEvents();
+    }
+    
+    @Benchmark
+    public ReportData generateReportData() {
+        return reportService.generateReportData(experiment, aggregator, jobParameters);
+    }
+    
+    @Benchmark
+    public double calculateSignificance() {
+        double sum = 0;
+        for (int i = 1; i < variants; i++) {
+            sum += analysisService.calculateSignificance(
+                    variantUsers[0], variantConversions[0], variantUsers[i], variantConversions[i]);
+        }
+        return sum;
+    }
+    
+    @Benchmark
+    public long serializeJson() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        serializer.write(reportData, ReportFormat.JSON, ReportCompression.NONE, out);
+        return out.bytes;
+    }
+    
+    /**
+     * Discards the serialized report, keeping only its size.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        long bytes;
+        
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.sofi.experimentation.report.stats.ProportionTests;
+import org.apache.commons.math3.stat.inference.AlternativeHypothesis;
+import org.apache.commons.math3.stat.inference.BinomialTest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one variant comparison by number of users per variant.
+ * {@code binomialTest} is the exact Commons Math test the report used to run against the control rate;
+ * {@code compare} is the z-test with its confidence interval, and {@code fisherExact} the exact test
+ * that {@code compare} only falls back to for small expected counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SignificanceBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int users;
+    
+    private int controlConversions;
+    private int treatmentConversions;
+    
+    @Setup
+    public void setUp() {
+        controlConversions = users / 10;
+        treatmentConversions = users / 10 + users / 200;
+    }
+    
+    @Benchmark
+    public double binomialTest() {
+        return new BinomialTest().binomialTest(users, treatmentConversions,
+                (double) controlConversions / users, AlternativeHypothesis.TWO_SIDED);
+    }
+    
+    @Benchmark
+    public double compare() {
+        return ProportionTests.compare(users, controlConversions, users, treatmentConversions, 0.95).getPValue();
+    }
+    
+    @Benchmark
+    public double fisherExact() {
+        return ProportionTests.fisherExactTest(users, controlConversions, users, treatmentConversions);
+    }
+}
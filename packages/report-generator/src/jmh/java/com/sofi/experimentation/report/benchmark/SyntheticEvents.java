@@ -0,0 +1,83 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.sofi.experimentation.report.model.ExperimentEvent;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic stream of experiment events spread evenly over a time range, generated while it is iterated.
+ * User IDs and timestamps come from pre-built pools and every iteration reuses a single event instance, so
+ * tens of millions of events can be replayed without holding them in memory and without the generator's own
+ * allocation showing up in the GC profiler. Consumers must not keep references to the events.
+ */
+class SyntheticEvents implements Iterable<ExperimentEvent> {
+    private static final long SEED = 42;
+    
+    private final int count;
+    private final String[] variantIds;
+    private final String[] userIds;
+    private final String[] timestamps;
+    private final double conversionRate;
+    
+    /**
+     * Create a stream of events.
+     *
+     * @param count The number of events per iteration
+     * @param variants The number of variants, chosen uniformly
+     * @param users The number of distinct users, chosen uniformly
+     * @param conversionRate The share of events that are conversions
+     * @param start The first timestamp
+     * @param minutes The length of the time range in minutes; timestamps have minute resolution
+     */
+    SyntheticEvents(int count, int variants, int users, double conversionRate, Instant start, int minutes) {
+        this.count = count;
+        this.conversionRate = conversionRate;
+        this.variantIds = new String[variants];
+        for (int i = 0; i < variants; i++) {
+            variantIds[i] = "var" + i;
+        }
+        this.userIds = new String[users];
+        for (int i = 0; i < users; i++) {
+            userIds[i] = "user-" + i;
+        }
+        this.timestamps = new String[minutes];
+        for (int i = 0; i < minutes; i++) {
+            timestamps[i] = start.plusSeconds(i * 60L).toString();
+        }
+    }
+    
+    int size() {
+        return count;
+    }
+    
+    @Override
+    public Iterator<ExperimentEvent> iterator() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        ExperimentEvent event = new ExperimentEvent();
+        event.setExperimentId("exp-1");
+        return new Iterator<ExperimentEvent>() {
+            private int next;
+            
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+            
+            @Override
+            public ExperimentEvent next() {
+                if (next >= count) {
+                    throw new NoSuchElementException();
+                }
+                event.setVariantId(variantIds[random.nextInt(variantIds.length)]);
+                event.setUserId(userIds[random.nextInt(userIds.length)]);
+                event.setAction(random.nextDouble() < conversionRate ? "CONVERSION" : "PAGE_VIEW");
+                event.setTimestamp(timestamps[(int) ((long) next * timestamps.length / count)]);
+                next++;
+                return event;
+            }
+        };
+    }
+}
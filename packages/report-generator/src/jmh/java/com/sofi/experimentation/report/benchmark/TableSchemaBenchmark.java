@@ -0,0 +1,87 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.model.ExperimentEventTableSchema;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the reflective bean schema with the generated static schema for {@link ExperimentEvent}:
+ * the cost of mapping one DynamoDB item to an event, and the one-off cost of building the schema.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TableSchemaBenchmark {
+    
+    @Param({"BEAN", "STATIC"})
+    public String schema;
+    
+    private TableSchema<ExperimentEvent> createTableSchema() {
+        return "BEAN".equals(schema) ? TableSchema.fromBean(ExperimentEvent.class) : ExperimentEventTableSchema.INSTANCE;
+    }
+    
+    /**
+     * Schema and item for the mapping benchmark, kept out of the benchmark state so that
+     * {@link #createSchema()} starts with nothing introspected.
+     */
+    @State(Scope.Benchmark)
+    public static class Mapping {
+        TableSchema<ExperimentEvent> tableSchema;
+        Map<String, AttributeValue> item;
+        
+        @Setup(Level.Trial)
+        public void setUp(TableSchemaBenchmark benchmark) {
+            tableSchema = benchmark.createTableSchema();
+            item = Map.of(
+                    "id", AttributeValue.builder().s("0f8fad5b-d9cb-469f-a165-70867728950e").build(),
+                    "experimentId", AttributeValue.builder().s("exp-1").build(),
+                    "variantId", AttributeValue.builder().s("var1").build(),
+                    "userId", AttributeValue.builder().s("user-12345").build(),
+                    "sessionId", AttributeValue.builder().s("session-67890").build(),
+                    "action", AttributeValue.builder().s("PAGE_VIEW").build(),
+                    "metadataJson", AttributeValue.builder().s("{}").build(),
+                    "timestamp", AttributeValue.builder().s("2025-03-19T10:00:00.000Z").build());
+        }
+    }
+    
+    /**
+     * Per-item mapping cost, as paid for every event read from the events table.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public ExperimentEvent mapToItem(Mapping mapping) {
+        return mapping.tableSchema.mapToItem(mapping.item);
+    }
+    
+    /**
+     * Cold schema construction, as paid once per JVM (previously once per query).
+     * Each invocation runs in a fresh fork so class loading and bean introspection are included.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Fork(10)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public TableSchema<ExperimentEvent> createSchema() {
+        return createTableSchema();
+    }
+}
@@ -0,0 +1,79 @@
+package com.sofi.experimentation.report.benchmark;
+
+import com.sofi.experimentation.report.util.DateUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per event of turning an event timestamp into its day bucket.
+ * {@code instantParse} is the {@code Instant.parse(...).atZone(zone).toLocalDate()} chain the time series used
+ * to run for every event; {@code decode} is the digit-by-digit decoder followed by the epoch-day arithmetic.
+ * The zone parameter covers both the fixed-offset fast path and a zone with daylight saving transitions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TimestampBenchmark {
+    private static final int EVENTS = 10_000;
+    
+    @Param({"UTC", "America/New_York"})
+    public String timeZone;
+    
+    private String[] timestamps;
+    private ZoneId zone;
+    private ZoneRules zoneRules;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        long start = Instant.parse("2025-03-01T00:00:00Z").toEpochMilli();
+        timestamps = new String[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            // Millisecond precision, as written by the API
+            timestamps[i] = Instant.ofEpochMilli(start + (long) random.nextInt(30 * 24 * 3600) * 1000
+                    + random.nextInt(1000)).toString();
+        }
+        zone = ZoneId.of(timeZone);
+        zoneRules = zone.getRules();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long instantParse() {
+        long sum = 0;
+        for (String timestamp : timestamps) {
+            sum += Instant.parse(timestamp).atZone(zone).toLocalDate().toEpochDay();
+        }
+        return sum;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long decode() {
+        long sum = 0;
+        for (String timestamp : timestamps) {
+            sum += DateUtils.toEpochDay(DateUtils.parseEpochMillis(timestamp), zoneRules);
+        }
+        return sum;
+    }
+}
@@ -4,19 +4,37 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sofi.experimentation.report.di.DaggerAppComponent;
 import com.sofi.experimentation.report.model.ReportJobParameters;
 import com.sofi.experimentation.report.service.ReportGenerationService;
+import com.sofi.experimentation.report.worker.DirectoryJobSource;
+import com.sofi.experimentation.report.worker.JobSource;
+import com.sofi.experimentation.report.worker.LineJobSource;
+import com.sofi.experimentation.report.worker.ReportWorker;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+
 /**
  * Main application class for the report generator.
+ * Runs the single job in JOB_PARAMETERS, or with {@code --worker} (or WORKER_MODE=true) keeps running jobs
+ * from the source in JOB_SOURCE until it is idle for WORKER_IDLE_TIMEOUT_SECONDS.
  */
 public class ReportGeneratorApplication {
     private static final Logger logger = LogManager.getLogger(ReportGeneratorApplication.class);
     
+    private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 300;
+    
     public static void main(String[] args) {
         try {
             logger.info("Starting report generator application");
             
+            boolean workerMode = (args.length > 0 && "--worker".equals(args[0]))
+                    || "true".equalsIgnoreCase(System.getenv("WORKER_MODE"));
+            if (workerMode) {
+                runWorker();
+                return;
+            }
+            
             // Get job parameters from environment variable
             String jobParametersJson = System.getenv("JOB_PARAMETERS");
             if (jobParametersJson == null || jobParametersJson.isEmpty()) {
@@ -43,4 +61,46 @@ public class ReportGeneratorApplication {
             System.exit(1);
         }
     }
-}
\ No newline at end of file
+    
+    private static void runWorker() throws Exception {
+        // Initialize Dagger once; the services and clients are shared by every job
+        var appComponent = DaggerAppComponent.builder().build();
+        ObjectMapper objectMapper = appComponent.objectMapper();
+        ReportGenerationService reportService = appComponent.reportGenerationService();
+        
+        logger.info("Worker started in {} ms", ManagementFactory.getRuntimeMXBean().getUptime());
+        
+        String idleTimeout = System.getenv("WORKER_IDLE_TIMEOUT_SECONDS");
+        long idleTimeoutSeconds = idleTimeout == null || idleTimeout.isEmpty()
+                ? DEFAULT_IDLE_TIMEOUT_SECONDS : Long.parseLong(idleTimeout);
+        
+        ReportWorker worker = new ReportWorker(reportService, objectMapper, idleTimeoutSeconds * 1000);
+        try (JobSource source = createJobSource(System.getenv("JOB_SOURCE"))) {
+            worker.run(source);
+        }
+        
+        if (worker.getFailedJobs() > 0) {
+            logger.error("{} report jobs failed", worker.getFailedJobs());
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Create the worker's job source.
+     *
+     * @param spec "stdin" (the default) or "dir:&lt;path&gt;"
+     * @return The job source
+     * @throws Exception If the source cannot be opened
+     */
+    private static JobSource createJobSource(String spec) throws Exception {
+        if (spec == null || spec.isEmpty() || "stdin".equals(spec)) {
+            logger.info("Reading jobs from stdin, one JSON document per line");
+            return new LineJobSource(System.in);
+        }
+        if (spec.startsWith("dir:")) {
+            logger.info("Reading jobs from directory: {}", spec.substring(4));
+            return new DirectoryJobSource(Paths.get(spec.substring(4)));
+        }
+        throw new IllegalArgumentException("Unsupported JOB_SOURCE: " + spec);
+    }
+}
@@ -0,0 +1,762 @@
+package com.sofi.experimentation.report.aggregation;
+
+import com.sofi.experimentation.report.columnar.EventColumns;
+import com.sofi.experimentation.report.columnar.StringDictionary;
+import com.sofi.experimentation.report.model.DistinctCountMode;
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.model.MetricDefinition;
+import com.sofi.experimentation.report.model.TimeGranularity;
+import com.sofi.experimentation.report.sketch.KllSketch;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Single-pass aggregator for experiment events.
+ * Events are appended to a dictionary-encoded {@link EventColumns} buffer, and each full buffer is folded
+ * into overall and per-variant accumulators and a {@link TimeSeriesMatrix} by scanning its primitive columns.
+ * Memory grows with the number of distinct users, variants and time buckets rather than events. In
+ * {@link DistinctCountMode#APPROXIMATE} mode users are not interned at all and every overall or per-variant
+ * distinct-user count is a fixed-size HyperLogLog sketch, as is the count of converters per variant and time bucket,
+ * at a precision capped at {@link TimeSeriesMatrix#MAX_CONVERTER_PRECISION}.
+ * Metric definitions are compiled into a {@link MetricSet}, so every metric is evaluated in the same pass.
+ * Optionally, the values of sum and mean metrics also feed {@link KllSketch}es per variant and time bucket,
+ * whose size is capped by their k whatever the number of events.
+ *
+ * In exact mode the per-user state can be given a heap budget with {@link #spillAbove(long, Path)}. Once its
+ * estimate exceeds the budget, the users seen so far stay in memory and the events of every new user are written
+ * to {@link SpillPartitions} on disk by user hash instead. When results are read, each partition is aggregated on
+ * its own and its per-variant counts are added to those in memory, which is exact because no user is in more than
+ * one place. A partition that exceeds the budget as well spills by other bits of the hash in turn.
+ */
+public class EventAggregator implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(EventAggregator.class);
+    
+    private static final int BUFFER_CAPACITY = 4096;
+    
+    /** Estimated heap per interned user: a hash map entry, a boxed code and a user ID of about 20 characters. */
+    static final int USER_ENTRY_BYTES = 112;
+    
+    /** Estimated heap per user and variant for the first buckets seen and converted, and again per mean metric. */
+    static final int USER_VARIANT_BYTES = 8;
+    
+    // Nested spills use 6 more bits of the user hash each, so ten levels use up all 64
+    private static final int MAX_SPILL_LEVELS = 10;
+    
+    private final StringDictionary variantDictionary;
+    private final StringDictionary actionDictionary;
+    private final StringDictionary userDictionary;
+    private final EventColumns buffer;
+    private final ZoneId zone;
+    private final DistinctCountMode distinctCountMode;
+    private final int hllPrecision;
+    private final int quantileSketchK;
+    private final Supplier<UserCounter> counterFactory;
+    private final Supplier<UserValues> valuesFactory;
+    
+    private final MetricSet metrics;
+    private final List<VariantAccumulator> variants = new ArrayList<>();
+    private final UserCounter convertedUsers;
+    private final TimeGranularity granularity;
+    private final TimeSeriesMatrix timeSeries;
+    private long totalEvents;
+    private boolean timeSeriesAvailable = true;
+    
+    private long heapBudgetBytes;
+    private Path spillDirectory;
+    private int spillLevel;
+    private SpillPartitions spill;
+    private boolean spillMerged;
+    private long spilledEvents;
+    private long spilledBytes;
+    
+    // Users of merged spilled partitions, which are not in the counters
+    private int disjointConversions;
+    private int disjointDistinctUsers;
+    private int disjointOverlappingUsers;
+    private int disjointOverlappingConvertedUsers;
+    
+    public EventAggregator() {
+        this(DistinctCountMode.EXACT, 0);
+    }
+    
+    /**
+     * Create an aggregator with a daily time series in UTC.
+     *
+     * @param distinctCountMode How distinct users are counted
+     * @param hllPrecision The HyperLogLog precision used in approximate mode
+     */
+    public EventAggregator(DistinctCountMode distinctCountMode, int hllPrecision) {
+        this(distinctCountMode, hllPrecision, ZoneOffset.UTC, TimeGranularity.DAILY);
+    }
+    
+    /**
+     * Create an aggregator with the default conversion metric only.
+     *
+     * @param distinctCountMode How distinct users are counted
+     * @param hllPrecision The HyperLogLog precision used in approximate mode
+     * @param zone The zone whose wall clock the time series buckets follow
+     * @param granularity The width of the time series buckets
+     */
+    public EventAggregator(DistinctCountMode distinctCountMode, int hllPrecision,
+                           ZoneId zone, TimeGranularity granularity) {
+        this(distinctCountMode, hllPrecision, zone, granularity, null);
+    }
+    
+    /**
+     * Create an aggregator.
+     *
+     * @param distinctCountMode How distinct users are counted
+     * @param hllPrecision The HyperLogLog precision used in approximate mode
+     * @param zone The zone whose wall clock the time series buckets follow
+     * @param granularity The width of the time series buckets
+     * @param metrics The metric definitions, or null for the default conversion metric only
+     * @throws IllegalArgumentException If the metric definitions are invalid
+     */
+    public EventAggregator(DistinctCountMode distinctCountMode, int hllPrecision,
+                           ZoneId zone, TimeGranularity granularity, List<MetricDefinition> metrics) {
+        this(distinctCountMode, hllPrecision, zone, granularity, metrics, 0);
+    }
+    
+    /**
+     * Create an aggregator that also sketches the quantiles of sum and mean metric values.
+     *
+     * @param distinctCountMode How distinct users are counted
+     * @param hllPrecision The HyperLogLog precision used in approximate mode
+     * @param zone The zone whose wall clock the time series buckets follow
+     * @param granularity The width of the time series buckets
+     * @param metrics The metric definitions, or null for the default conversion metric only
+     * @param quantileSketchK The k of the quantile sketches, or 0 to keep none
+     * @throws IllegalArgumentException If the metric definitions are invalid
+     */
+    public EventAggregator(DistinctCountMode distinctCountMode, int hllPrecision,
+                           ZoneId zone, TimeGranularity granularity, List<MetricDefinition> metrics,
+                           int quantileSketchK) {
+        this(distinctCountMode, hllPrecision, zone, granularity, metrics, quantileSketchK, new StringDictionary(),
+                new StringDictionary(), distinctCountMode == DistinctCountMode.EXACT ? new StringDictionary() : null);
+    }
+    
+    private EventAggregator(DistinctCountMode distinctCountMode,
+                            int hllPrecision,
+                            ZoneId zone,
+                            TimeGranularity granularity,
+                            List<MetricDefinition> metrics,
+                            int quantileSketchK,
+                            StringDictionary variantDictionary,
+                            StringDictionary actionDictionary,
+                            StringDictionary userDictionary) {
+        if (quantileSketchK != 0 && (quantileSketchK < KllSketch.MIN_K || quantileSketchK > KllSketch.MAX_K)) {
+            throw new IllegalArgumentException("Quantile sketch k must be between " + KllSketch.MIN_K + " and "
+                    + KllSketch.MAX_K + ": " + quantileSketchK);
+        }
+        this.distinctCountMode = distinctCountMode;
+        this.hllPrecision = hllPrecision;
+        this.quantileSketchK = quantileSketchK;
+        this.zone = zone;
+        this.granularity = granularity;
+        this.variantDictionary = variantDictionary;
+        this.actionDictionary = actionDictionary;
+        this.userDictionary = userDictionary;
+        this.metrics = new MetricSet(metrics, actionDictionary);
+        this.timeSeries = new TimeSeriesMatrix(granularity, zone.getRules(), userDictionary != null, hllPrecision,
+                this.metrics.getValueSlots(), quantileSketchK);
+        this.counterFactory = distinctCountMode == DistinctCountMode.EXACT
+                ? UserCounter.Exact::new
+                : () -> new UserCounter.Approximate(hllPrecision);
+        this.valuesFactory = distinctCountMode == DistinctCountMode.EXACT
+                ? UserValues.Exact::new
+                : UserValues.Approximate::new;
+        this.convertedUsers = counterFactory.get();
+        // Session IDs are not used by any report metric, so the session column is not encoded
+        this.buffer = new EventColumns(BUFFER_CAPACITY, variantDictionary, actionDictionary, userDictionary, null);
+    }
+    
+    /**
+     * Let the per-user state spill to disk once its estimated heap exceeds a budget. Only exact mode keeps
+     * per-user state, so this does nothing in approximate mode. An aggregator that spilled cannot be written
+     * with {@link #writeTo(DataOutput)}, since the users of the spilled partitions are not kept.
+     *
+     * @param heapBudgetBytes The budget of the estimated per-user state, or 0 for no budget
+     * @param directory The directory the spill files are created in
+     * @return This aggregator
+     */
+    public EventAggregator spillAbove(long heapBudgetBytes, Path directory) {
+        return spillAbove(heapBudgetBytes, directory, 0);
+    }
+    
+    private EventAggregator spillAbove(long heapBudgetBytes, Path directory, int level) {
+        if (heapBudgetBytes < 0) {
+            throw new IllegalArgumentException("Heap budget must not be negative: " + heapBudgetBytes);
+        }
+        this.heapBudgetBytes = userDictionary != null ? heapBudgetBytes : 0;
+        this.spillDirectory = directory;
+        this.spillLevel = level;
+        return this;
+    }
+    
+    /**
+     * Fold every event of a stream into the aggregator.
+     *
+     * @param events The events, consumed once
+     * @return This aggregator
+     */
+    public EventAggregator acceptAll(Iterable<ExperimentEvent> events) {
+        for (ExperimentEvent event : events) {
+            accept(event);
+        }
+        flush();
+        return this;
+    }
+    
+    /**
+     * Fold a single event into the aggregator.
+     * The event is buffered; it is reflected in the results once the buffer is flushed.
+     *
+     * @param event The event
+     */
+    public void accept(ExperimentEvent event) {
+        if (spill != null) {
+            if (spillMerged) {
+                throw new IllegalStateException("Events cannot be added once spilled events are merged");
+            }
+            // Users in memory stay there, so that every user is counted in one place only
+            if (userDictionary.lookup(event.getUserId()) < 0) {
+                spill.write(event);
+                return;
+            }
+        }
+        boolean full = buffer.append(event);
+        if (metrics.needsMetadata()) {
+            addValues(event, buffer.size() - 1);
+        }
+        if (full) {
+            flush();
+        }
+    }
+    
+    /**
+     * Add the metadata fields summed by sum and mean metrics, which are read while the event object is at hand.
+     * Fields that are missing or not numeric are skipped.
+     */
+    private void addValues(ExperimentEvent event, int row) {
+        long mask = metrics.valueMask(buffer.getActionCodes()[row]);
+        if (mask == 0) {
+            return;
+        }
+        int variantCode = buffer.getVariantCodes()[row];
+        VariantAccumulator variant = variant(variantCode);
+        long userKey = buffer.getUserIds() != null ? buffer.getUserIds()[row] : buffer.getUserHashes()[row];
+        long timestamp = buffer.getTimestamps()[row];
+        for (; mask != 0; mask &= mask - 1) {
+            int slot = Long.numberOfTrailingZeros(mask);
+            Object value = event.getMetadataValue(metrics.getValueField(slot));
+            double number = Double.NaN;
+            if (value instanceof Number) {
+                number = ((Number) value).doubleValue();
+            } else if (value instanceof String) {
+                try {
+                    number = Double.parseDouble((String) value);
+                } catch (NumberFormatException e) {
+                    // Not a number, skipped
+                }
+            }
+            if (Double.isFinite(number)) {
+                variant.addValue(slot, userKey, number);
+                if (timeSeriesAvailable && timestamp != EventColumns.INVALID_TIMESTAMP) {
+                    timeSeries.addValue(timestamp, variantCode, slot, number);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Fold all buffered events into the accumulators.
+     */
+    public void flush() {
+        int size = buffer.size();
+        if (size == 0) {
+            return;
+        }
+        
+        int[] variantCodes = buffer.getVariantCodes();
+        int[] actionCodes = buffer.getActionCodes();
+        int[] userIds = buffer.getUserIds();
+        long[] userHashes = buffer.getUserHashes();
+        long[] timestamps = buffer.getTimestamps();
+        
+        for (int i = 0; i < size; i++) {
+            int variantCode = variantCodes[i];
+            long userKey = userIds != null ? userIds[i] : userHashes[i];
+            long userMask = metrics.userMask(actionCodes[i]);
+            boolean conversion = (userMask & MetricSet.PRIMARY_CONVERSION) != 0;
+            
+            variant(variantCode).add(userKey, actionCodes[i], userMask);
+            if (conversion) {
+                convertedUsers.add(userKey);
+            }
+            if (timeSeriesAvailable) {
+                addToTimeSeries(timestamps[i], variantCode, userKey, conversion);
+            }
+        }
+        
+        totalEvents += size;
+        buffer.clear();
+        
+        if (heapBudgetBytes > 0 && spill == null && getEstimatedUserStateBytes() > heapBudgetBytes) {
+            startSpill();
+        }
+    }
+    
+    /**
+     * Estimate the heap taken by the per-user state: the user dictionary and, for every variant, the first buckets
+     * and mean metric totals indexed by user ID. Roaring bitmaps take a few bits per user and are left out.
+     *
+     * @return The estimated bytes, or 0 in approximate mode
+     */
+    public long getEstimatedUserStateBytes() {
+        if (userDictionary == null) {
+            return 0;
+        }
+        int meanSlots = 0;
+        for (int slot = 0; slot < metrics.getValueSlots(); slot++) {
+            if (metrics.isPerUserValue(slot)) {
+                meanSlots++;
+            }
+        }
+        long perVariant = USER_VARIANT_BYTES * (1L + meanSlots);
+        return (long) userDictionary.size() * (USER_ENTRY_BYTES + variants.size() * perVariant);
+    }
+    
+    /**
+     * Estimate the heap taken by the converters per time bucket: the sets of (bucket, user) pairs in exact mode, or
+     * the sketches per variant and bucket in approximate mode.
+     *
+     * @return The estimated bytes
+     */
+    long getEstimatedTimeSeriesBytes() {
+        return timeSeries.getConverterStateBytes();
+    }
+    
+    private void startSpill() {
+        logger.info("Per-user state of {} users is estimated at {} MB, above the budget of {} MB: "
+                        + "spilling the events of new users to {}",
+                userDictionary.size(), getEstimatedUserStateBytes() >> 20, heapBudgetBytes >> 20, spillDirectory);
+        spill = new SpillPartitions(spillDirectory, spillLevel, metrics.needsMetadata());
+    }
+    
+    /**
+     * Aggregate the spilled partitions one at a time and add their counts to those in memory. Does nothing if
+     * nothing spilled or the partitions are already merged. Every getter merges first, so calling this is only
+     * needed to choose when the work happens. Once a spill is merged, no more events can be added.
+     */
+    public void mergeSpill() {
+        flush();
+        if (spill == null || spillMerged) {
+            return;
+        }
+        spillMerged = true;
+        spilledEvents += spill.getEvents();
+        spilledBytes += spill.getBytes();
+        logger.info("Merging {} spilled events ({} MB) from {} partitions",
+                spill.getEvents(), spill.getBytes() >> 20, SpillPartitions.PARTITIONS);
+        try {
+            for (int partition = 0; partition < SpillPartitions.PARTITIONS; partition++) {
+                // The partition shares the variant and action codes, so its counts add up by code
+                try (EventAggregator users = new EventAggregator(distinctCountMode, hllPrecision, zone, granularity,
+                        metrics.getDefinitions(), quantileSketchK, variantDictionary, actionDictionary,
+                        new StringDictionary())) {
+                    if (spillLevel + 1 < MAX_SPILL_LEVELS) {
+                        users.spillAbove(heapBudgetBytes, spillDirectory, spillLevel + 1);
+                    }
+                    spill.read(partition, users::accept);
+                    mergeDisjoint(users);
+                }
+            }
+        } finally {
+            spill.close();
+        }
+    }
+    
+    /**
+     * Add the counts of an aggregator over users none of which were counted here.
+     */
+    private void mergeDisjoint(EventAggregator other) {
+        other.mergeSpill();
+        totalEvents += other.totalEvents;
+        spilledEvents += other.spilledEvents;
+        spilledBytes += other.spilledBytes;
+        for (int code = 0; code < other.variants.size(); code++) {
+            variant(code).mergeDisjoint(other.variants.get(code));
+        }
+        disjointConversions += other.getTotalConversions();
+        disjointDistinctUsers += other.getDistinctUsers();
+        disjointOverlappingUsers += other.getOverlappingUsers();
+        disjointOverlappingConvertedUsers += other.getOverlappingConvertedUsers();
+        if (timeSeriesAvailable) {
+            if (!other.timeSeriesAvailable) {
+                // The other aggregator logged why
+                dropTimeSeries();
+            } else if (!timeSeries.mergeDisjoint(other.timeSeries)) {
+                logger.warn("Event timestamps span more than {} {} buckets, time series will be omitted",
+                        TimeSeriesMatrix.MAX_BUCKETS, granularity);
+                dropTimeSeries();
+            }
+        }
+    }
+    
+    /**
+     * Check whether the per-user state exceeded its heap budget, so that events were spilled to disk.
+     *
+     * @return True if events were spilled
+     */
+    public boolean hasSpilled() {
+        return spill != null;
+    }
+    
+    /**
+     * Get the number of events spilled to disk, including those of nested spills. Known once merged.
+     *
+     * @return The spilled events
+     */
+    public long getSpilledEvents() {
+        mergeSpill();
+        return spilledEvents;
+    }
+    
+    /**
+     * Get the number of bytes spilled to disk, including those of nested spills. Known once merged.
+     *
+     * @return The spilled bytes
+     */
+    public long getSpilledBytes() {
+        mergeSpill();
+        return spilledBytes;
+    }
+    
+    /**
+     * Delete the spill files that are left, for example when the job fails before the spill is merged.
+     */
+    @Override
+    public void close() {
+        if (spill != null) {
+            spill.close();
+        }
+    }
+    
+    private VariantAccumulator variant(int variantCode) {
+        while (variants.size() <= variantCode) {
+            variants.add(new VariantAccumulator(actionDictionary, counterFactory, valuesFactory, metrics,
+                    quantileSketchK));
+        }
+        return variants.get(variantCode);
+    }
+    
+    private void addToTimeSeries(long timestamp, int variantCode, long userKey, boolean conversion) {
+        if (timestamp == EventColumns.INVALID_TIMESTAMP) {
+            // A single unparseable timestamp makes the buckets incomplete, so drop the time series
+            logger.warn("Error parsing an event timestamp, time series will be omitted");
+            dropTimeSeries();
+        } else if (!timeSeries.add(timestamp, variantCode, userKey, conversion)) {
+            logger.warn("Event timestamps span more than {} {} buckets, time series will be omitted",
+                    TimeSeriesMatrix.MAX_BUCKETS, granularity);
+            dropTimeSeries();
+        }
+    }
+    
+    private void dropTimeSeries() {
+        timeSeriesAvailable = false;
+        timeSeries.clear();
+    }
+    
+    public long getTotalEvents() {
+        mergeSpill();
+        return totalEvents;
+    }
+    
+    /**
+     * Get the total number of users, counting a user once per variant they were seen in.
+     *
+     * @return The total users
+     */
+    public int getTotalUsers() {
+        mergeSpill();
+        return variants.stream()
+                .mapToInt(VariantAccumulator::getUsers)
+                .sum();
+    }
+    
+    /**
+     * Get the number of distinct users with at least one conversion event across all variants.
+     *
+     * @return The converted users
+     */
+    public int getTotalConversions() {
+        mergeSpill();
+        return convertedUsers.cardinality() + disjointConversions;
+    }
+    
+    /**
+     * Get the number of distinct users across all variants, counting each user once.
+     *
+     * @return The distinct users
+     */
+    public int getDistinctUsers() {
+        mergeSpill();
+        UserCounter union = counterFactory.get();
+        for (VariantAccumulator variant : variants) {
+            union.merge(variant.users());
+        }
+        return union.cardinality() + disjointDistinctUsers;
+    }
+    
+    /**
+     * Get the number of users seen in more than one variant, a sign of assignment contamination.
+     * Only available with exact counts.
+     *
+     * @return The overlapping users, or null in approximate mode
+     */
+    public Integer getOverlappingUsers() {
+        RoaringBitmap overlapping = overlappingUserBitmap();
+        return overlapping != null ? overlapping.getCardinality() + disjointOverlappingUsers : null;
+    }
+    
+    /**
+     * Get the number of users seen in more than one variant who converted in any variant.
+     * Only available with exact counts.
+     *
+     * @return The overlapping converted users, or null in approximate mode
+     */
+    public Integer getOverlappingConvertedUsers() {
+        RoaringBitmap overlapping = overlappingUserBitmap();
+        return overlapping != null
+                ? RoaringBitmap.andCardinality(overlapping, ((UserCounter.Exact) convertedUsers).getBitmap())
+                        + disjointOverlappingConvertedUsers
+                : null;
+    }
+    
+    private RoaringBitmap overlappingUserBitmap() {
+        mergeSpill();
+        if (distinctCountMode != DistinctCountMode.EXACT) {
+            return null;
+        }
+        // A user is in the overlap once it shows up in a variant after having been seen in an earlier one
+        RoaringBitmap seen = new RoaringBitmap();
+        RoaringBitmap overlapping = new RoaringBitmap();
+        for (VariantAccumulator variant : variants) {
+            RoaringBitmap users = ((UserCounter.Exact) variant.users()).getBitmap();
+            overlapping.or(RoaringBitmap.and(seen, users));
+            seen.or(users);
+        }
+        return overlapping;
+    }
+    
+    public DistinctCountMode getDistinctCountMode() {
+        return distinctCountMode;
+    }
+    
+    public int getHllPrecision() {
+        return hllPrecision;
+    }
+    
+    /**
+     * Get the k of the quantile sketches.
+     *
+     * @return The k, or 0 if no sketches are kept
+     */
+    public int getQuantileSketchK() {
+        return quantileSketchK;
+    }
+    
+    public ZoneId getZone() {
+        return zone;
+    }
+    
+    public TimeGranularity getGranularity() {
+        return granularity;
+    }
+    
+    public MetricSet getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Write the complete aggregate state, so that it can be restored and extended with more events later.
+     * Buffered events are flushed first.
+     *
+     * @param out The output
+     * @throws IOException If writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        if (spill != null) {
+            throw new IllegalStateException("An aggregate that spilled to disk cannot be written");
+        }
+        flush();
+        out.writeUTF(distinctCountMode.name());
+        out.writeInt(hllPrecision);
+        out.writeUTF(granularity.name());
+        metrics.writeTo(out);
+        out.writeInt(quantileSketchK);
+        variantDictionary.writeTo(out);
+        actionDictionary.writeTo(out);
+        out.writeBoolean(userDictionary != null);
+        if (userDictionary != null) {
+            userDictionary.writeTo(out);
+        }
+        
+        out.writeLong(totalEvents);
+        out.writeBoolean(timeSeriesAvailable);
+        convertedUsers.writeTo(out);
+        out.writeInt(variants.size());
+        for (VariantAccumulator variant : variants) {
+            variant.writeTo(out);
+        }
+        timeSeries.writeTo(out);
+    }
+    
+    /**
+     * Restore an aggregator written by {@link #writeTo(DataOutput)}.
+     * The restored aggregator keeps its dictionaries, so further events extend the same user sets.
+     *
+     * @param in The input
+     * @param zone The zone the written aggregator bucketed its time series by
+     * @return The aggregator
+     * @throws IOException If reading fails
+     */
+    public static EventAggregator readFrom(DataInput in, ZoneId zone) throws IOException {
+        DistinctCountMode mode = DistinctCountMode.valueOf(in.readUTF());
+        int precision = in.readInt();
+        TimeGranularity granularity = TimeGranularity.valueOf(in.readUTF());
+        List<MetricDefinition> metrics = MetricSet.readDefinitions(in);
+        int quantileSketchK = in.readInt();
+        StringDictionary variants = StringDictionary.readFrom(in);
+        StringDictionary actions = StringDictionary.readFrom(in);
+        StringDictionary users = in.readBoolean() ? StringDictionary.readFrom(in) : null;
+        EventAggregator aggregator = new EventAggregator(
+                mode, precision, zone, granularity, metrics, quantileSketchK, variants, actions, users);
+        
+        aggregator.totalEvents = in.readLong();
+        aggregator.timeSeriesAvailable = in.readBoolean();
+        aggregator.convertedUsers.readFrom(in);
+        int variantCount = in.readInt();
+        for (int code = 0; code < variantCount; code++) {
+            aggregator.variant(code).readFrom(in);
+        }
+        aggregator.timeSeries.readFrom(in);
+        return aggregator;
+    }
+    
+    /**
+     * Get the accumulator for a variant.
+     *
+     * @param variantId The variant ID
+     * @return The accumulator, or null if no events were seen for the variant
+     */
+    public VariantAccumulator getVariant(String variantId) {
+        mergeSpill();
+        int code = variantDictionary.lookup(variantId);
+        return code >= 0 ? variants.get(code) : null;
+    }
+    
+    /**
+     * Get the accumulators of all variants that had events, in first-seen order.
+     *
+     * @return The accumulators keyed by variant ID
+     */
+    public Map<String, VariantAccumulator> getVariants() {
+        mergeSpill();
+        Map<String, VariantAccumulator> byId = new LinkedHashMap<>();
+        for (int code = 0; code < variants.size(); code++) {
+            byId.put(variantDictionary.decode(code), variants.get(code));
+        }
+        return byId;
+    }
+    
+    /**
+     * Get the labels of the time series buckets from the first to the last event, in ascending order.
+     * Buckets without events are included.
+     *
+     * @return The bucket labels, formatted as described by {@link TimeGranularity}
+     */
+    public List<String> getTimeBuckets() {
+        mergeSpill();
+        return timeSeries.getLabels();
+    }
+    
+    /**
+     * Get the event counts of a variant for each bucket returned by {@link #getTimeBuckets()}.
+     *
+     * @param variantId The variant ID
+     * @return The event counts per bucket
+     */
+    public int[] getBucketEvents(String variantId) {
+        mergeSpill();
+        return timeSeries.getEvents(variantDictionary.lookup(variantId));
+    }
+    
+    /**
+     * Get the distinct converted users of a variant for each bucket returned by {@link #getTimeBuckets()}.
+     *
+     * @param variantId The variant ID
+     * @return The converted user counts per bucket
+     */
+    public int[] getBucketConversions(String variantId) {
+        mergeSpill();
+        return timeSeries.getConverters(variantDictionary.lookup(variantId));
+    }
+    
+    /**
+     * Get the distinct users of a variant seen up to the end of each bucket returned by {@link #getTimeBuckets()}.
+     * Only available with exact distinct counts.
+     *
+     * @param variantId The variant ID
+     * @return The cumulative users per bucket, or null in approximate mode
+     */
+    public int[] getCumulativeUsers(String variantId) {
+        mergeSpill();
+        return timeSeries.hasCumulativeCounts()
+                ? timeSeries.getCumulativeUsers(variantDictionary.lookup(variantId)) : null;
+    }
+    
+    /**
+     * Get the distinct users of a variant converted up to the end of each bucket returned by
+     * {@link #getTimeBuckets()}. Only available with exact distinct counts.
+     *
+     * @param variantId The variant ID
+     * @return The cumulative converted users per bucket, or null in approximate mode
+     */
+    public int[] getCumulativeConversions(String variantId) {
+        mergeSpill();
+        return timeSeries.hasCumulativeCounts()
+                ? timeSeries.getCumulativeConverters(variantDictionary.lookup(variantId)) : null;
+    }
+    
+    /**
+     * Get the quantile sketches of the values of a sum or mean metric of a variant for each bucket returned by
+     * {@link #getTimeBuckets()}.
+     *
+     * @param variantId The variant ID
+     * @param metricIndex The index of the metric in the definitions of {@link #getMetrics()}
+     * @return The sketch of each bucket, null where the bucket has no values; or null if no sketches are kept
+     *         or the metric has no values
+     */
+    public KllSketch[] getBucketSketches(String variantId, int metricIndex) {
+        mergeSpill();
+        int slot = metrics.valueSlot(metricIndex);
+        return quantileSketchK > 0 && slot >= 0
+                ? timeSeries.getSketches(variantDictionary.lookup(variantId), slot) : null;
+    }
+    
+    public boolean isTimeSeriesAvailable() {
+        mergeSpill();
+        return timeSeriesAvailable;
+    }
+}
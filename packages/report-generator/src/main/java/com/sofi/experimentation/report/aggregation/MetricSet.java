@@ -0,0 +1,374 @@
+package com.sofi.experimentation.report.aggregation;
+
+import com.sofi.experimentation.report.columnar.StringDictionary;
+import com.sofi.experimentation.report.model.MetricDefinition;
+import com.sofi.experimentation.report.model.MetricType;
+import com.sofi.experimentation.report.sketch.KllSketch;
+import com.sofi.experimentation.report.stats.RunningMoments;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Metric definitions compiled into predicates over the action codes of an aggregator's dictionary.
+ *
+ * Metrics that need per-event work get a slot: unique-conversion metrics a user slot, whose converted users
+ * each variant tracks, and sum and mean metrics a value slot, whose metadata field each variant sums. The value
+ * slots of mean metrics also keep a total per user in {@link UserValues}. Every action code
+ * maps to a bitmask of the slots its events feed, computed once when the code is first seen, so an event is
+ * tested against all metrics with one array read. Count and ratio metrics need no per-event work at all;
+ * they are summed from the per-action event counts of each variant when the report is built.
+ *
+ * The first unique-conversion metric is the primary conversion and always has user slot 0. When the definitions
+ * contain no unique-conversion metric, {@link MetricDefinition#defaultConversion()} is added in front.
+ */
+public class MetricSet {
+    /** Slots of each kind, limited by the width of the masks. */
+    static final int MAX_SLOTS = Long.SIZE;
+    
+    /** Mask bit of the primary conversion. */
+    static final long PRIMARY_CONVERSION = 1L;
+    
+    private final List<MetricDefinition> definitions;
+    private final StringDictionary actions;
+    private final List<Set<String>> actionSets = new ArrayList<>();
+    private final List<Set<String>> denominatorSets = new ArrayList<>();
+    private final int[] slots;
+    private final String[] valueFields;
+    private final boolean[] perUserValues;
+    private final int userSlots;
+    
+    private long[] userMasks = new long[8];
+    private long[] valueMasks = new long[8];
+    private int classifiedActions;
+    
+    /**
+     * Compile metric definitions against an action dictionary.
+     *
+     * @param definitions The metric definitions, or null or empty for the default conversion metric only
+     * @param actions The action dictionary of the aggregator
+     * @throws IllegalArgumentException If a definition is incomplete, names repeat or there are too many slots
+     */
+    MetricSet(List<MetricDefinition> definitions, StringDictionary actions) {
+        this.definitions = resolve(definitions);
+        this.actions = actions;
+        this.slots = new int[this.definitions.size()];
+        
+        int users = 0;
+        List<String> fields = new ArrayList<>();
+        List<Boolean> perUser = new ArrayList<>();
+        for (int i = 0; i < this.definitions.size(); i++) {
+            MetricDefinition definition = this.definitions.get(i);
+            actionSets.add(new HashSet<>(definition.getActions()));
+            denominatorSets.add(definition.getDenominatorActions() != null
+                    ? new HashSet<>(definition.getDenominatorActions()) : Set.of());
+            switch (definition.getMetricType()) {
+                case UNIQUE_CONVERSION:
+                    slots[i] = users++;
+                    break;
+                case SUM:
+                case MEAN:
+                    slots[i] = fields.size();
+                    fields.add(definition.getField());
+                    perUser.add(definition.getMetricType() == MetricType.MEAN);
+                    break;
+                default:
+                    slots[i] = -1;
+            }
+        }
+        if (users > MAX_SLOTS || fields.size() > MAX_SLOTS) {
+            throw new IllegalArgumentException("At most " + MAX_SLOTS + " unique-conversion and "
+                    + MAX_SLOTS + " sum and mean metrics can be defined");
+        }
+        this.userSlots = users;
+        this.valueFields = fields.toArray(new String[0]);
+        this.perUserValues = new boolean[fields.size()];
+        for (int slot = 0; slot < perUserValues.length; slot++) {
+            perUserValues[slot] = perUser.get(slot);
+        }
+    }
+    
+    /**
+     * Validate metric definitions and add the default conversion metric if there is no conversion metric.
+     *
+     * @param definitions The metric definitions, or null
+     * @return The definitions the report is built from
+     * @throws IllegalArgumentException If a definition is incomplete or names repeat
+     */
+    public static List<MetricDefinition> resolve(List<MetricDefinition> definitions) {
+        List<MetricDefinition> resolved = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        boolean conversion = false;
+        if (definitions != null) {
+            for (MetricDefinition definition : definitions) {
+                definition.validate();
+                if (!names.add(definition.getName())) {
+                    throw new IllegalArgumentException("Metric " + definition.getName() + " is defined twice");
+                }
+                conversion |= definition.getMetricType() == MetricType.UNIQUE_CONVERSION;
+                resolved.add(definition);
+            }
+        }
+        if (!conversion) {
+            MetricDefinition defaultConversion = MetricDefinition.defaultConversion();
+            if (names.contains(defaultConversion.getName())) {
+                throw new IllegalArgumentException("Metric " + defaultConversion.getName()
+                        + " must be a unique conversion when no other conversion metric is defined");
+            }
+            resolved.add(0, defaultConversion);
+        }
+        return resolved;
+    }
+    
+    /**
+     * Get the user slots fed by events with an action. Bit 0 is the primary conversion.
+     *
+     * @param actionCode The action code
+     * @return The mask of user slots
+     */
+    long userMask(int actionCode) {
+        if (actionCode >= classifiedActions) {
+            classifyNewActions();
+        }
+        return userMasks[actionCode];
+    }
+    
+    /**
+     * Get the value slots fed by events with an action.
+     *
+     * @param actionCode The action code
+     * @return The mask of value slots
+     */
+    long valueMask(int actionCode) {
+        if (actionCode >= classifiedActions) {
+            classifyNewActions();
+        }
+        return valueMasks[actionCode];
+    }
+    
+    private void classifyNewActions() {
+        int size = actions.size();
+        if (size > userMasks.length) {
+            int capacity = Math.max(size, userMasks.length * 2);
+            userMasks = Arrays.copyOf(userMasks, capacity);
+            valueMasks = Arrays.copyOf(valueMasks, capacity);
+        }
+        for (int code = classifiedActions; code < size; code++) {
+            String action = actions.decode(code);
+            long userMask = 0;
+            long valueMask = 0;
+            for (int i = 0; i < definitions.size(); i++) {
+                if (slots[i] < 0 || !actionSets.get(i).contains(action)) {
+                    continue;
+                }
+                if (definitions.get(i).getMetricType() == MetricType.UNIQUE_CONVERSION) {
+                    userMask |= 1L << slots[i];
+                } else {
+                    valueMask |= 1L << slots[i];
+                }
+            }
+            userMasks[code] = userMask;
+            valueMasks[code] = valueMask;
+        }
+        classifiedActions = size;
+    }
+    
+    int getUserSlots() {
+        return userSlots;
+    }
+    
+    int getValueSlots() {
+        return valueFields.length;
+    }
+    
+    String getValueField(int slot) {
+        return valueFields[slot];
+    }
+    
+    /**
+     * Check whether a value slot keeps a total per user, as mean metrics do.
+     *
+     * @param slot The value slot
+     * @return True for the slot of a mean metric
+     */
+    boolean isPerUserValue(int slot) {
+        return perUserValues[slot];
+    }
+    
+    public List<MetricDefinition> getDefinitions() {
+        return definitions;
+    }
+    
+    /**
+     * Check whether any metric reads event metadata.
+     *
+     * @return True if a sum or mean metric is defined
+     */
+    public boolean needsMetadata() {
+        return valueFields.length > 0;
+    }
+    
+    /**
+     * Get the numerator of a metric for a variant: matching events for counts and ratios, converted users
+     * for conversions and the sum for sums and means.
+     *
+     * @param index The index of the metric in {@link #getDefinitions()}
+     * @param variant The variant's accumulator
+     * @return The numerator
+     */
+    public double numerator(int index, VariantAccumulator variant) {
+        switch (definitions.get(index).getMetricType()) {
+            case UNIQUE_CONVERSION:
+                return variant.getConverted(slots[index]);
+            case SUM:
+            case MEAN:
+                return variant.getSum(slots[index]);
+            default:
+                return variant.countActions(actionSets.get(index));
+        }
+    }
+    
+    /**
+     * Get the denominator of a metric for a variant: users for counts and conversions, matching denominator
+     * events for ratios, the events whose field held a number for sums, and the users with such an event
+     * for means (the events in approximate mode).
+     *
+     * @param index The index of the metric in {@link #getDefinitions()}
+     * @param variant The variant's accumulator
+     * @return The denominator
+     */
+    public double denominator(int index, VariantAccumulator variant) {
+        switch (definitions.get(index).getMetricType()) {
+            case RATIO:
+                return variant.countActions(denominatorSets.get(index));
+            case SUM:
+                return variant.getValueCount(slots[index]);
+            case MEAN:
+                return variant.moments(slots[index]).getCount();
+            default:
+                return variant.getUsers();
+        }
+    }
+    
+    /**
+     * Get the value slot of a sum or mean metric.
+     *
+     * @param index The index of the metric in {@link #getDefinitions()}
+     * @return The value slot, or -1 for metrics without values
+     */
+    int valueSlot(int index) {
+        MetricType type = definitions.get(index).getMetricType();
+        return type == MetricType.SUM || type == MetricType.MEAN ? slots[index] : -1;
+    }
+    
+    /**
+     * Get the quantile sketch of the values of a sum or mean metric for a variant.
+     *
+     * @param index The index of the metric in {@link #getDefinitions()}
+     * @param variant The variant's accumulator
+     * @return The sketch, or null for metrics without values or when no sketches are kept
+     */
+    public KllSketch sketch(int index, VariantAccumulator variant) {
+        int slot = valueSlot(index);
+        return slot >= 0 ? variant.getSketch(slot) : null;
+    }
+    
+    /**
+     * Get the moments of the per-user totals of a mean metric for a variant.
+     *
+     * @param index The index of a mean metric in {@link #getDefinitions()}
+     * @param variant The variant's accumulator
+     * @return The moments
+     * @throws IllegalArgumentException If the metric is not a mean metric
+     */
+    public RunningMoments moments(int index, VariantAccumulator variant) {
+        if (definitions.get(index).getMetricType() != MetricType.MEAN) {
+            throw new IllegalArgumentException("Metric " + definitions.get(index).getName() + " is not a mean");
+        }
+        return variant.moments(slots[index]);
+    }
+    
+    /**
+     * Get the per-user totals of a mean metric for a variant, which the moments are computed from.
+     *
+     * @param index The index of a mean metric in {@link #getDefinitions()}
+     * @param variant The variant's accumulator
+     * @return The totals, or null in approximate mode and after a spill, when they are not all in memory
+     * @throws IllegalArgumentException If the metric is not a mean metric
+     */
+    public double[] totals(int index, VariantAccumulator variant) {
+        if (definitions.get(index).getMetricType() != MetricType.MEAN) {
+            throw new IllegalArgumentException("Metric " + definitions.get(index).getName() + " is not a mean");
+        }
+        return variant.totals(slots[index]);
+    }
+    
+    /**
+     * Write the definitions, so that a restored aggregator compiles the same metrics.
+     *
+     * @param out The output
+     * @throws IOException If writing fails
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(definitions.size());
+        for (MetricDefinition definition : definitions) {
+            out.writeUTF(definition.getName());
+            out.writeUTF(definition.getType());
+            writeList(out, definition.getActions());
+            writeList(out, definition.getDenominatorActions());
+            out.writeBoolean(definition.getField() != null);
+            if (definition.getField() != null) {
+                out.writeUTF(definition.getField());
+            }
+        }
+    }
+    
+    /**
+     * Read definitions written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input
+     * @return The definitions
+     * @throws IOException If reading fails
+     */
+    static List<MetricDefinition> readDefinitions(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<MetricDefinition> definitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            MetricDefinition definition = new MetricDefinition();
+            definition.setName(in.readUTF());
+            definition.setType(in.readUTF());
+            definition.setActions(readList(in));
+            definition.setDenominatorActions(readList(in));
+            definition.setField(in.readBoolean() ? in.readUTF() : null);
+            definitions.add(definition);
+        }
+        return definitions;
+    }
+    
+    private static void writeList(DataOutput out, List<String> values) throws IOException {
+        out.writeInt(values != null ? values.size() : -1);
+        if (values != null) {
+            for (String value : values) {
+                out.writeUTF(value);
+            }
+        }
+    }
+    
+    private static List<String> readList(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,250 @@
+package com.sofi.experimentation.report.aggregation;
+
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.util.HashUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Events spilled to local disk by user hash, so that every user's events end up in the same partition.
+ * Each partition is a file written and read through memory-mapped windows of {@link #WINDOW_BYTES}, so the
+ * spilled events take page cache that the system can reclaim rather than heap. An event is stored as the
+ * length-prefixed UTF-8 strings the aggregator reads: variant ID, user ID, action, timestamp and, when metrics
+ * read values, the metadata JSON. Partitions are read back one at a time in write order and deleted after.
+ */
+class SpillPartitions implements Closeable {
+    /** Partitions per spill, picked by 6 bits of the user hash. */
+    static final int PARTITION_BITS = 6;
+    static final int PARTITIONS = 1 << PARTITION_BITS;
+    
+    /** Size of the mapped window of a partition file. */
+    static final int WINDOW_BYTES = 1 << 20;
+    
+    private static final int NULL_LENGTH = -1;
+    
+    private final Path directory;
+    private final int level;
+    private final boolean withMetadata;
+    private final Partition[] partitions = new Partition[PARTITIONS];
+    private ByteBuffer record = ByteBuffer.allocate(256);
+    private long events;
+    private long bytes;
+    
+    /**
+     * Create the partition files in a new directory.
+     *
+     * @param parent The directory to create the spill directory in
+     * @param level The nesting level of the spill, which picks the bits of the user hash partitioned by
+     * @param withMetadata True if the metadata JSON of the events is needed
+     * @throws UncheckedIOException If the files cannot be created
+     */
+    SpillPartitions(Path parent, int level, boolean withMetadata) {
+        this.level = level;
+        this.withMetadata = withMetadata;
+        try {
+            Files.createDirectories(parent);
+            this.directory = Files.createTempDirectory(parent, "report-spill-");
+            for (int i = 0; i < PARTITIONS; i++) {
+                partitions[i] = new Partition(directory.resolve("partition-" + i));
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Error creating spill partitions in " + parent, e);
+        }
+    }
+    
+    /**
+     * Get the partition of a user.
+     *
+     * @param userId The user ID
+     * @param level The nesting level of the spill
+     * @return The partition
+     */
+    static int partitionOf(String userId, int level) {
+        return (int) (HashUtils.hash64(userId) >>> (level * PARTITION_BITS)) & (PARTITIONS - 1);
+    }
+    
+    /**
+     * Append an event to the partition of its user.
+     *
+     * @param event The event
+     */
+    void write(ExperimentEvent event) {
+        record.clear();
+        putString(event.getVariantId());
+        putString(event.getUserId());
+        putString(event.getAction());
+        putString(event.getTimestamp());
+        if (withMetadata) {
+            putString(event.getMetadataJson());
+        }
+        record.flip();
+        int partition = partitionOf(event.getUserId(), level);
+        try {
+            partitions[partition].write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing to spill partition " + partition, e);
+        }
+        events++;
+        bytes += Integer.BYTES + record.limit();
+    }
+    
+    private void putString(String value) {
+        byte[] encoded = value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+        int needed = Integer.BYTES + (encoded != null ? encoded.length : 0);
+        if (record.remaining() < needed) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + needed));
+            record.flip();
+            grown.put(record);
+            record = grown;
+        }
+        if (encoded == null) {
+            record.putInt(NULL_LENGTH);
+        } else {
+            record.putInt(encoded.length);
+            record.put(encoded);
+        }
+    }
+    
+    /**
+     * Read back every event of a partition, then delete its file. Must be called at most once per partition,
+     * after the last write.
+     *
+     * @param partition The partition
+     * @param consumer The consumer of the events, which gets a new object for each
+     */
+    void read(int partition, Consumer<ExperimentEvent> consumer) {
+        try (Partition file = partitions[partition]) {
+            partitions[partition] = null;
+            file.finishWriting();
+            long position = 0;
+            while (position < file.size) {
+                ByteBuffer window = file.readWindow(position, Integer.BYTES);
+                int length = window.getInt();
+                window = file.readWindow(position + Integer.BYTES, length);
+                ExperimentEvent event = new ExperimentEvent();
+                event.setVariantId(getString(window));
+                event.setUserId(getString(window));
+                event.setAction(getString(window));
+                event.setTimestamp(getString(window));
+                if (withMetadata) {
+                    event.setMetadataJson(getString(window));
+                }
+                consumer.accept(event);
+                position += Integer.BYTES + length;
+            }
+            Files.deleteIfExists(file.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading spill partition " + partition, e);
+        }
+    }
+    
+    private static String getString(ByteBuffer window) {
+        int length = window.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] encoded = new byte[length];
+        window.get(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+    
+    public long getEvents() {
+        return events;
+    }
+    
+    public long getBytes() {
+        return bytes;
+    }
+    
+    /**
+     * Delete every partition file that has not been read, and the spill directory.
+     */
+    @Override
+    public void close() {
+        for (int i = 0; i < PARTITIONS; i++) {
+            if (partitions[i] != null) {
+                try (Partition file = partitions[i]) {
+                    partitions[i] = null;
+                    file.finishWriting();
+                    Files.deleteIfExists(file.path);
+                } catch (IOException e) {
+                    // Left behind in the temporary directory
+                }
+            }
+        }
+        if (directory != null) {
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                // Not empty if a partition could not be deleted
+            }
+        }
+    }
+    
+    /**
+     * A partition file with its current mapped window.
+     */
+    private static class Partition implements Closeable {
+        private final Path path;
+        private final FileChannel channel;
+        private MappedByteBuffer window;
+        private long windowStart;
+        private long size;
+        
+        Partition(Path path) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        
+        void write(ByteBuffer record) throws IOException {
+            int needed = Integer.BYTES + record.remaining();
+            if (window == null || window.remaining() < needed) {
+                // Mapping past the end of the file grows it
+                windowStart += window != null ? window.position() : 0;
+                window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WINDOW_BYTES, needed));
+            }
+            window.putInt(record.remaining());
+            window.put(record);
+        }
+        
+        /**
+         * Cut the file to the bytes written, dropping the unused end of the last window.
+         */
+        void finishWriting() throws IOException {
+            size = windowStart + (window != null ? window.position() : 0);
+            window = null;
+            channel.truncate(size);
+        }
+        
+        /**
+         * Get a window positioned at an offset with at least a number of bytes remaining.
+         */
+        ByteBuffer readWindow(long position, int needed) throws IOException {
+            if (window == null || position < windowStart || position + needed > windowStart + window.limit()) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(Math.max(WINDOW_BYTES, needed), size - position));
+            }
+            window.position((int) (position - windowStart));
+            return window;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+}
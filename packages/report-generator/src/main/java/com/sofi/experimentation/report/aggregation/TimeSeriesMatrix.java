@@ -0,0 +1,550 @@
+package com.sofi.experimentation.report.aggregation;
+
+import com.sofi.experimentation.report.model.TimeGranularity;
+import com.sofi.experimentation.report.sketch.HyperLogLog;
+import com.sofi.experimentation.report.sketch.KllSketch;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Event and distinct-converter counts of every variant per time bucket, held in dense {@code int[variant][bucket]}
+ * matrices. Column 0 is the earliest bucket seen; the matrices grow in either direction when an event falls outside
+ * the covered range, so buckets between the first and the last event are present even when they are empty.
+ * A converter is counted once per variant and bucket. With exact user IDs, each variant keeps the set of
+ * (bucket, user) pairs that already converted, so the cost stays linear in events for any granularity. With user
+ * hashes, each variant instead keeps a {@link HyperLogLog} of at most {@link #MAX_CONVERTER_PRECISION} per bucket
+ * with converters, keyed by bucket number like the quantile sketches, so the state is bounded by the number of
+ * buckets whatever the number of users.
+ *
+ * With exact user IDs, each variant also keeps the first bucket in which every user was seen and converted, in
+ * arrays indexed by user ID. Events may arrive in any order, since only the earliest bucket is kept. One pass over
+ * these arrays gives the cumulative users and converters at the end of every bucket, which sequential tests
+ * are computed from. Matrices over disjoint users, such as those of spilled partitions, are added with
+ * {@link #mergeDisjoint(TimeSeriesMatrix)}, which keeps their users' first buckets as counts per bucket.
+ *
+ * When quantiles are requested, every variant also keeps a {@link KllSketch} per bucket and value slot of the
+ * {@link MetricSet}. They are keyed by bucket number in a map, so buckets without values cost nothing and the
+ * sketches need no moving when the matrices grow.
+ */
+class TimeSeriesMatrix {
+    /** Widest range of buckets kept, about 15 years of hourly buckets. */
+    static final int MAX_BUCKETS = 1 << 17;
+    
+    /** Highest precision of the per-bucket converter sketches of approximate mode: 1 KB each, about 3% error. */
+    static final int MAX_CONVERTER_PRECISION = 10;
+    
+    private static final int INITIAL_CAPACITY = 32;
+    
+    // Keeps stored first buckets positive within MAX_BUCKETS either side of the origin
+    private static final int FIRST_BUCKET_OFFSET = MAX_BUCKETS + 1;
+    
+    private final TimeGranularity granularity;
+    private final ZoneRules zoneRules;
+    private final boolean exactUsers;
+    private final int converterPrecision;
+    private final int valueSlots;
+    private final int sketchK;
+    
+    private long firstBucket;
+    private int bucketCount;
+    private int capacity = INITIAL_CAPACITY;
+    private int[][] events = new int[0][];
+    private int[][] converters = new int[0][];
+    private Roaring64Bitmap[] conversionKeys = new Roaring64Bitmap[0];
+    
+    // Converter sketches by variant, then by bucket number; only kept without exact user IDs
+    private List<Map<Long, HyperLogLog>> converterSketches = new ArrayList<>();
+    
+    // First buckets by variant and user ID, stored relative to the origin bucket plus FIRST_BUCKET_OFFSET; 0 if none
+    private long originBucket;
+    private int[][] firstSeen = new int[0][];
+    private int[][] firstConverted = new int[0][];
+    
+    // Users of merged disjoint matrices first seen and converted in each bucket, by variant
+    private int[][] disjointFirstSeen = new int[0][];
+    private int[][] disjointFirstConverted = new int[0][];
+    
+    // Quantile sketches by variant, then by bucket number, with one sketch per value slot
+    private List<Map<Long, KllSketch[]>> sketches = new ArrayList<>();
+    
+    /**
+     * Create an empty matrix.
+     *
+     * @param granularity The bucket width
+     * @param zoneRules The rules of the zone buckets are aligned to
+     * @param exactUsers True if user keys are dense dictionary IDs, false if they are 64-bit hashes
+     * @param hllPrecision The HyperLogLog precision of approximate mode, capped at {@link #MAX_CONVERTER_PRECISION}
+     *                     for the converters per bucket
+     * @param valueSlots The number of value slots of the metrics
+     * @param sketchK The k of the quantile sketches per bucket, or 0 to keep none
+     */
+    TimeSeriesMatrix(TimeGranularity granularity, ZoneRules zoneRules, boolean exactUsers, int hllPrecision,
+                     int valueSlots, int sketchK) {
+        this.granularity = granularity;
+        this.zoneRules = zoneRules;
+        this.exactUsers = exactUsers;
+        this.converterPrecision = Math.min(hllPrecision, MAX_CONVERTER_PRECISION);
+        this.valueSlots = valueSlots;
+        this.sketchK = sketchK;
+    }
+    
+    /**
+     * Count an event.
+     *
+     * @param epochMillis The event time
+     * @param variantCode The variant code
+     * @param userKey The user key
+     * @param conversion True if the event is a conversion
+     * @return False if the event lies too far from the others to be bucketed, in which case nothing is counted
+     */
+    boolean add(long epochMillis, int variantCode, long userKey, boolean conversion) {
+        long bucket = granularity.bucketOf(epochMillis, zoneRules);
+        int index = indexOf(bucket);
+        if (index < 0) {
+            return false;
+        }
+        if (variantCode >= events.length) {
+            addVariants(variantCode + 1);
+        }
+        events[variantCode][index]++;
+        if (exactUsers) {
+            int userId = (int) userKey;
+            int first = (int) (bucket - originBucket) + FIRST_BUCKET_OFFSET;
+            firstSeen[variantCode] = setFirst(firstSeen[variantCode], userId, first);
+            if (conversion) {
+                firstConverted[variantCode] = setFirst(firstConverted[variantCode], userId, first);
+            }
+        }
+        if (conversion && exactUsers) {
+            // Exact user IDs fit in the low 32 bits next to the bucket
+            long key = (bucket << 32) | (userKey & 0xffffffffL);
+            Roaring64Bitmap keys = conversionKeys[variantCode];
+            if (!keys.contains(key)) {
+                keys.addLong(key);
+                converters[variantCode][index]++;
+            }
+        } else if (conversion) {
+            converterSketches.get(variantCode).computeIfAbsent(bucket, b -> new HyperLogLog(converterPrecision))
+                    .add(userKey);
+        }
+        return true;
+    }
+    
+    /**
+     * Add a value of a value slot to the quantile sketch of its bucket. Does nothing without sketches.
+     *
+     * @param epochMillis The event time
+     * @param variantCode The variant code
+     * @param slot The value slot
+     * @param value The value
+     */
+    void addValue(long epochMillis, int variantCode, int slot, double value) {
+        if (sketchK == 0) {
+            return;
+        }
+        while (sketches.size() <= variantCode) {
+            sketches.add(new HashMap<>());
+        }
+        long bucket = granularity.bucketOf(epochMillis, zoneRules);
+        KllSketch[] slots = sketches.get(variantCode).computeIfAbsent(bucket, b -> new KllSketch[valueSlots]);
+        if (slots[slot] == null) {
+            slots[slot] = new KllSketch(sketchK);
+        }
+        slots[slot].update(value);
+    }
+    
+    /**
+     * Get the quantile sketches of a value slot of a variant for each covered bucket.
+     *
+     * @param variantCode The variant code
+     * @param slot The value slot
+     * @return The sketch of each bucket, null where the bucket has no values
+     */
+    KllSketch[] getSketches(int variantCode, int slot) {
+        KllSketch[] bySlot = new KllSketch[bucketCount];
+        if (variantCode < 0 || variantCode >= sketches.size()) {
+            return bySlot;
+        }
+        Map<Long, KllSketch[]> byBucket = sketches.get(variantCode);
+        for (int index = 0; index < bucketCount; index++) {
+            KllSketch[] slots = byBucket.get(firstBucket + index);
+            bySlot[index] = slots != null ? slots[slot] : null;
+        }
+        return bySlot;
+    }
+    
+    private static int[] setFirst(int[] firstBuckets, int userId, int first) {
+        if (userId >= firstBuckets.length) {
+            firstBuckets = Arrays.copyOf(firstBuckets, Math.max(userId + 1, firstBuckets.length * 2));
+        }
+        if (firstBuckets[userId] == 0 || first < firstBuckets[userId]) {
+            firstBuckets[userId] = first;
+        }
+        return firstBuckets;
+    }
+    
+    private int indexOf(long bucket) {
+        if (bucketCount == 0) {
+            firstBucket = bucket;
+            originBucket = bucket;
+            bucketCount = 1;
+            return 0;
+        }
+        long offset = bucket - firstBucket;
+        if (offset >= 0 && offset < bucketCount) {
+            return (int) offset;
+        }
+        long span = offset < 0 ? bucketCount - offset : offset + 1;
+        if (span > MAX_BUCKETS) {
+            return -1;
+        }
+        if (span > capacity) {
+            capacity = (int) Math.min(Math.max(span, 2L * capacity), MAX_BUCKETS);
+        }
+        int shift = offset < 0 ? (int) -offset : 0;
+        for (int variantCode = 0; variantCode < events.length; variantCode++) {
+            events[variantCode] = resize(events[variantCode], shift);
+            converters[variantCode] = resize(converters[variantCode], shift);
+            disjointFirstSeen[variantCode] = resize(disjointFirstSeen[variantCode], shift);
+            disjointFirstConverted[variantCode] = resize(disjointFirstConverted[variantCode], shift);
+        }
+        if (offset < 0) {
+            firstBucket = bucket;
+        }
+        bucketCount = (int) span;
+        return (int) (bucket - firstBucket);
+    }
+    
+    private int[] resize(int[] row, int shift) {
+        int[] resized = row.length == capacity ? row : new int[capacity];
+        System.arraycopy(row, 0, resized, shift, bucketCount);
+        if (resized == row && shift > 0) {
+            Arrays.fill(resized, 0, shift, 0);
+        }
+        return resized;
+    }
+    
+    private void addVariants(int count) {
+        int previous = events.length;
+        events = Arrays.copyOf(events, count);
+        converters = Arrays.copyOf(converters, count);
+        conversionKeys = Arrays.copyOf(conversionKeys, count);
+        firstSeen = Arrays.copyOf(firstSeen, count);
+        firstConverted = Arrays.copyOf(firstConverted, count);
+        disjointFirstSeen = Arrays.copyOf(disjointFirstSeen, count);
+        disjointFirstConverted = Arrays.copyOf(disjointFirstConverted, count);
+        for (int variantCode = previous; variantCode < count; variantCode++) {
+            events[variantCode] = new int[capacity];
+            converters[variantCode] = new int[capacity];
+            conversionKeys[variantCode] = exactUsers ? new Roaring64Bitmap() : null;
+            converterSketches.add(new HashMap<>());
+            firstSeen[variantCode] = new int[0];
+            firstConverted[variantCode] = new int[0];
+            disjointFirstSeen[variantCode] = new int[capacity];
+            disjointFirstConverted[variantCode] = new int[capacity];
+        }
+    }
+    
+    /**
+     * Get the labels of the covered buckets, in ascending order.
+     *
+     * @return The labels
+     */
+    List<String> getLabels() {
+        List<String> labels = new ArrayList<>(bucketCount);
+        for (int index = 0; index < bucketCount; index++) {
+            labels.add(granularity.label(firstBucket + index));
+        }
+        return labels;
+    }
+    
+    int[] getEvents(int variantCode) {
+        return variantCode >= 0 && variantCode < events.length
+                ? Arrays.copyOf(events[variantCode], bucketCount) : new int[bucketCount];
+    }
+    
+    /**
+     * Get the distinct converters of a variant in each bucket, estimated from the bucket sketches in approximate mode.
+     *
+     * @param variantCode The variant code
+     * @return The converters by bucket
+     */
+    int[] getConverters(int variantCode) {
+        if (variantCode < 0 || variantCode >= converters.length) {
+            return new int[bucketCount];
+        }
+        int[] counts = Arrays.copyOf(converters[variantCode], bucketCount);
+        if (!exactUsers) {
+            for (Map.Entry<Long, HyperLogLog> entry : converterSketches.get(variantCode).entrySet()) {
+                counts[(int) (entry.getKey() - firstBucket)] = (int) entry.getValue().estimate();
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Estimate the heap taken by the converter sets or sketches, which is the part of the matrix that grows with
+     * users rather than buckets.
+     *
+     * @return The estimated bytes
+     */
+    long getConverterStateBytes() {
+        long bytes = 0;
+        for (Roaring64Bitmap keys : conversionKeys) {
+            if (keys != null) {
+                bytes += keys.getLongSizeInBytes();
+            }
+        }
+        for (Map<Long, HyperLogLog> byBucket : converterSketches) {
+            bytes += (long) byBucket.size() << converterPrecision;
+        }
+        return bytes;
+    }
+    
+    /**
+     * Check whether cumulative counts are kept, which needs exact user IDs.
+     *
+     * @return True if cumulative users and converters are available
+     */
+    boolean hasCumulativeCounts() {
+        return exactUsers;
+    }
+    
+    /**
+     * Get the distinct users of a variant seen up to the end of each bucket.
+     *
+     * @param variantCode The variant code
+     * @return The cumulative users by bucket
+     */
+    int[] getCumulativeUsers(int variantCode) {
+        return cumulative(firstCounts(firstSeen, disjointFirstSeen, variantCode));
+    }
+    
+    /**
+     * Get the distinct users of a variant converted up to the end of each bucket.
+     *
+     * @param variantCode The variant code
+     * @return The cumulative converters by bucket
+     */
+    int[] getCumulativeConverters(int variantCode) {
+        return cumulative(firstCounts(firstConverted, disjointFirstConverted, variantCode));
+    }
+    
+    /**
+     * Count the users of a variant whose first bucket is each bucket.
+     */
+    private int[] firstCounts(int[][] firstBuckets, int[][] disjointCounts, int variantCode) {
+        int[] counts = new int[bucketCount];
+        if (variantCode < 0 || variantCode >= firstBuckets.length) {
+            return counts;
+        }
+        long shift = originBucket - firstBucket - FIRST_BUCKET_OFFSET;
+        for (int first : firstBuckets[variantCode]) {
+            if (first != 0) {
+                counts[(int) (first + shift)]++;
+            }
+        }
+        for (int index = 0; index < bucketCount; index++) {
+            counts[index] += disjointCounts[variantCode][index];
+        }
+        return counts;
+    }
+    
+    private static int[] cumulative(int[] counts) {
+        for (int index = 1; index < counts.length; index++) {
+            counts[index] += counts[index - 1];
+        }
+        return counts;
+    }
+    
+    /**
+     * Add the counts and sketches of a matrix with the same variant codes over users none of which were counted
+     * here. The first buckets of its users are added as counts, so cumulative counts stay exact.
+     *
+     * @param other The other matrix
+     * @return False if the buckets of both together span too many buckets, in which case the counts are incomplete
+     */
+    boolean mergeDisjoint(TimeSeriesMatrix other) {
+        if (other.bucketCount == 0) {
+            return true;
+        }
+        // Cover the other's range first, so that indexes stay put while adding
+        if (indexOf(other.firstBucket) < 0 || indexOf(other.firstBucket + other.bucketCount - 1) < 0) {
+            return false;
+        }
+        if (other.events.length > events.length) {
+            addVariants(other.events.length);
+        }
+        int offset = (int) (other.firstBucket - firstBucket);
+        for (int variantCode = 0; variantCode < other.events.length; variantCode++) {
+            int[] seen = other.firstCounts(other.firstSeen, other.disjointFirstSeen, variantCode);
+            int[] converted = other.firstCounts(other.firstConverted, other.disjointFirstConverted, variantCode);
+            for (int index = 0; index < other.bucketCount; index++) {
+                events[variantCode][offset + index] += other.events[variantCode][index];
+                converters[variantCode][offset + index] += other.converters[variantCode][index];
+                disjointFirstSeen[variantCode][offset + index] += seen[index];
+                disjointFirstConverted[variantCode][offset + index] += converted[index];
+            }
+            for (Map.Entry<Long, HyperLogLog> entry : other.converterSketches.get(variantCode).entrySet()) {
+                converterSketches.get(variantCode)
+                        .computeIfAbsent(entry.getKey(), b -> new HyperLogLog(converterPrecision))
+                        .merge(entry.getValue());
+            }
+        }
+        for (int variantCode = 0; variantCode < other.sketches.size(); variantCode++) {
+            while (sketches.size() <= variantCode) {
+                sketches.add(new HashMap<>());
+            }
+            for (Map.Entry<Long, KllSketch[]> entry : other.sketches.get(variantCode).entrySet()) {
+                KllSketch[] slots = sketches.get(variantCode)
+                        .computeIfAbsent(entry.getKey(), b -> new KllSketch[valueSlots]);
+                for (int slot = 0; slot < valueSlots; slot++) {
+                    KllSketch sketch = entry.getValue()[slot];
+                    if (sketch != null) {
+                        if (slots[slot] == null) {
+                            slots[slot] = new KllSketch(sketchK);
+                        }
+                        slots[slot].merge(sketch);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Drop every count, for example once the series is known to be incomplete.
+     */
+    void clear() {
+        bucketCount = 0;
+        capacity = INITIAL_CAPACITY;
+        events = new int[0][];
+        converters = new int[0][];
+        conversionKeys = new Roaring64Bitmap[0];
+        converterSketches = new ArrayList<>();
+        firstSeen = new int[0][];
+        firstConverted = new int[0][];
+        disjointFirstSeen = new int[0][];
+        disjointFirstConverted = new int[0][];
+        sketches = new ArrayList<>();
+    }
+    
+    void writeTo(DataOutput out) throws IOException {
+        out.writeLong(firstBucket);
+        out.writeInt(bucketCount);
+        out.writeInt(events.length);
+        for (int variantCode = 0; variantCode < events.length; variantCode++) {
+            for (int index = 0; index < bucketCount; index++) {
+                out.writeInt(events[variantCode][index]);
+                out.writeInt(converters[variantCode][index]);
+            }
+            if (exactUsers) {
+                conversionKeys[variantCode].runOptimize();
+                conversionKeys[variantCode].serialize(out);
+            } else {
+                Map<Long, HyperLogLog> byBucket = converterSketches.get(variantCode);
+                out.writeInt(byBucket.size());
+                for (Map.Entry<Long, HyperLogLog> entry : byBucket.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    entry.getValue().writeTo(out);
+                }
+            }
+        }
+        out.writeLong(originBucket);
+        for (int variantCode = 0; variantCode < events.length; variantCode++) {
+            writeFirstBuckets(out, firstSeen[variantCode]);
+            writeFirstBuckets(out, firstConverted[variantCode]);
+        }
+        out.writeInt(sketches.size());
+        for (Map<Long, KllSketch[]> byBucket : sketches) {
+            out.writeInt(byBucket.size());
+            for (Map.Entry<Long, KllSketch[]> entry : byBucket.entrySet()) {
+                out.writeLong(entry.getKey());
+                for (KllSketch sketch : entry.getValue()) {
+                    out.writeBoolean(sketch != null);
+                    if (sketch != null) {
+                        sketch.writeTo(out);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void writeFirstBuckets(DataOutput out, int[] firstBuckets) throws IOException {
+        out.writeInt(firstBuckets.length);
+        for (int first : firstBuckets) {
+            out.writeInt(first);
+        }
+    }
+    
+    private static int[] readFirstBuckets(DataInput in) throws IOException {
+        int[] firstBuckets = new int[in.readInt()];
+        for (int userId = 0; userId < firstBuckets.length; userId++) {
+            firstBuckets[userId] = in.readInt();
+        }
+        return firstBuckets;
+    }
+    
+    void readFrom(DataInput in) throws IOException {
+        firstBucket = in.readLong();
+        bucketCount = in.readInt();
+        capacity = Math.max(INITIAL_CAPACITY, bucketCount);
+        events = new int[0][];
+        converters = new int[0][];
+        conversionKeys = new Roaring64Bitmap[0];
+        converterSketches = new ArrayList<>();
+        disjointFirstSeen = new int[0][];
+        disjointFirstConverted = new int[0][];
+        addVariants(in.readInt());
+        for (int variantCode = 0; variantCode < events.length; variantCode++) {
+            for (int index = 0; index < bucketCount; index++) {
+                events[variantCode][index] = in.readInt();
+                converters[variantCode][index] = in.readInt();
+            }
+            if (exactUsers) {
+                conversionKeys[variantCode].deserialize(in);
+            } else {
+                Map<Long, HyperLogLog> byBucket = converterSketches.get(variantCode);
+                int buckets = in.readInt();
+                for (int i = 0; i < buckets; i++) {
+                    long bucket = in.readLong();
+                    HyperLogLog sketch = new HyperLogLog(converterPrecision);
+                    sketch.readFrom(in);
+                    byBucket.put(bucket, sketch);
+                }
+            }
+        }
+        originBucket = in.readLong();
+        for (int variantCode = 0; variantCode < events.length; variantCode++) {
+            firstSeen[variantCode] = readFirstBuckets(in);
+            firstConverted[variantCode] = readFirstBuckets(in);
+        }
+        sketches = new ArrayList<>();
+        int sketchVariants = in.readInt();
+        for (int variantCode = 0; variantCode < sketchVariants; variantCode++) {
+            Map<Long, KllSketch[]> byBucket = new HashMap<>();
+            int buckets = in.readInt();
+            for (int i = 0; i < buckets; i++) {
+                long bucket = in.readLong();
+                KllSketch[] slots = new KllSketch[valueSlots];
+                for (int slot = 0; slot < valueSlots; slot++) {
+                    if (in.readBoolean()) {
+                        slots[slot] = new KllSketch(sketchK);
+                        slots[slot].readFrom(in);
+                    }
+                }
+                byBucket.put(bucket, slots);
+            }
+            sketches.add(byBucket);
+        }
+    }
+}
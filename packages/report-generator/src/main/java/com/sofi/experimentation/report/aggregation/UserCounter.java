@@ -0,0 +1,115 @@
+package com.sofi.experimentation.report.aggregation;
+
+import com.sofi.experimentation.report.sketch.HyperLogLog;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Distinct-user counter used by the aggregator.
+ * Users are identified by a key: the dense dictionary ID in exact mode, or the 64-bit user ID hash in
+ * approximate mode.
+ */
+public interface UserCounter {
+    
+    void add(long userKey);
+    
+    int cardinality();
+    
+    /**
+     * Add every user of another counter of the same kind to this one.
+     *
+     * @param other The other counter
+     */
+    void merge(UserCounter other);
+    
+    void writeTo(DataOutput out) throws IOException;
+    
+    /**
+     * Replace the contents of this counter with a counter written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input
+     * @throws IOException If reading fails
+     */
+    void readFrom(DataInput in) throws IOException;
+    
+    /**
+     * Exact counter over dense user IDs, stored as a compressed Roaring bitmap.
+     */
+    class Exact implements UserCounter {
+        private final RoaringBitmap users = new RoaringBitmap();
+        
+        @Override
+        public void add(long userKey) {
+            users.add((int) userKey);
+        }
+        
+        @Override
+        public int cardinality() {
+            return users.getCardinality();
+        }
+        
+        @Override
+        public void merge(UserCounter other) {
+            users.or(((Exact) other).users);
+        }
+        
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            users.runOptimize();
+            users.serialize(out);
+        }
+        
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            users.deserialize(in);
+        }
+        
+        /**
+         * Get the underlying bitmap for set operations such as intersections.
+         *
+         * @return The bitmap; callers must not modify it
+         */
+        public RoaringBitmap getBitmap() {
+            return users;
+        }
+    }
+    
+    /**
+     * Approximate counter over user ID hashes.
+     */
+    class Approximate implements UserCounter {
+        private final HyperLogLog sketch;
+        
+        public Approximate(int precision) {
+            this.sketch = new HyperLogLog(precision);
+        }
+        
+        @Override
+        public void add(long userKey) {
+            sketch.add(userKey);
+        }
+        
+        @Override
+        public int cardinality() {
+            return (int) sketch.estimate();
+        }
+        
+        @Override
+        public void merge(UserCounter other) {
+            sketch.merge(((Approximate) other).sketch);
+        }
+        
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            sketch.writeTo(out);
+        }
+        
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            sketch.readFrom(in);
+        }
+    }
+}
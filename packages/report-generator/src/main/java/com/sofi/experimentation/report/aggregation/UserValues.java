@@ -0,0 +1,171 @@
+package com.sofi.experimentation.report.aggregation;
+
+import com.sofi.experimentation.report.stats.RunningMoments;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Numeric values of a metric summed per user, whose distribution over users a mean metric reports.
+ * Users are identified by the same keys as in {@link UserCounter}.
+ */
+public interface UserValues {
+    
+    /**
+     * Add a value of a user's event.
+     *
+     * @param userKey The user key
+     * @param value The value
+     */
+    void add(long userKey, double value);
+    
+    /**
+     * Get the moments of the per-user totals, computed in one pass over the users with a value.
+     *
+     * @return The moments
+     */
+    RunningMoments moments();
+    
+    /**
+     * Get the per-user totals, for resampling users.
+     *
+     * @return One total per user with a value, in no particular order, or null if values are not kept per user
+     */
+    double[] totals();
+    
+    /**
+     * Add every value of another accumulator of the same kind to this one.
+     *
+     * @param other The other accumulator
+     */
+    void merge(UserValues other);
+    
+    void writeTo(DataOutput out) throws IOException;
+    
+    /**
+     * Replace the contents of this accumulator with one written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input
+     * @throws IOException If reading fails
+     */
+    void readFrom(DataInput in) throws IOException;
+    
+    /**
+     * Exact per-user totals in an array indexed by dense user ID, where NaN marks users without a value.
+     * Costs 8 bytes per user ID up to the highest one with a value, and nothing per event.
+     */
+    class Exact implements UserValues {
+        private double[] totals = new double[0];
+        
+        @Override
+        public void add(long userKey, double value) {
+            int userId = (int) userKey;
+            if (userId >= totals.length) {
+                int oldLength = totals.length;
+                totals = Arrays.copyOf(totals, Math.max(userId + 1, oldLength * 2));
+                Arrays.fill(totals, oldLength, totals.length, Double.NaN);
+            }
+            totals[userId] = Double.isNaN(totals[userId]) ? value : totals[userId] + value;
+        }
+        
+        @Override
+        public RunningMoments moments() {
+            RunningMoments moments = new RunningMoments();
+            for (double total : totals) {
+                if (!Double.isNaN(total)) {
+                    moments.add(total);
+                }
+            }
+            return moments;
+        }
+        
+        @Override
+        public double[] totals() {
+            double[] values = new double[totals.length];
+            int users = 0;
+            for (double total : totals) {
+                if (!Double.isNaN(total)) {
+                    values[users++] = total;
+                }
+            }
+            return Arrays.copyOf(values, users);
+        }
+        
+        @Override
+        public void merge(UserValues other) {
+            double[] otherTotals = ((Exact) other).totals;
+            for (int userId = 0; userId < otherTotals.length; userId++) {
+                if (!Double.isNaN(otherTotals[userId])) {
+                    add(userId, otherTotals[userId]);
+                }
+            }
+        }
+        
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            // Only the users with a value, as pairs of ID and total
+            int users = 0;
+            for (double total : totals) {
+                if (!Double.isNaN(total)) {
+                    users++;
+                }
+            }
+            out.writeInt(users);
+            for (int userId = 0; userId < totals.length; userId++) {
+                if (!Double.isNaN(totals[userId])) {
+                    out.writeInt(userId);
+                    out.writeDouble(totals[userId]);
+                }
+            }
+        }
+        
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            totals = new double[0];
+            int users = in.readInt();
+            for (int i = 0; i < users; i++) {
+                add(in.readInt(), in.readDouble());
+            }
+        }
+    }
+    
+    /**
+     * Values in approximate mode, where users are only known by hash and no per-user state is kept:
+     * every event's value is an observation of its own, so the moments are over events rather than users.
+     */
+    class Approximate implements UserValues {
+        private final RunningMoments events = new RunningMoments();
+        
+        @Override
+        public void add(long userKey, double value) {
+            events.add(value);
+        }
+        
+        @Override
+        public RunningMoments moments() {
+            return new RunningMoments(events.getCount(), events.getMean(), events.getM2());
+        }
+        
+        @Override
+        public double[] totals() {
+            return null;
+        }
+        
+        @Override
+        public void merge(UserValues other) {
+            events.merge(((Approximate) other).events);
+        }
+        
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            events.writeTo(out);
+        }
+        
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            events.readFrom(in);
+        }
+    }
+}
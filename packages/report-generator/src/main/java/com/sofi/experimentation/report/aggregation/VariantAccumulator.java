@@ -0,0 +1,269 @@
+package com.sofi.experimentation.report.aggregation;
+
+import com.sofi.experimentation.report.columnar.StringDictionary;
+import com.sofi.experimentation.report.sketch.KllSketch;
+import com.sofi.experimentation.report.stats.RunningMoments;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Running counts for a single variant.
+ * Users are tracked by {@link UserCounter}s and actions as counts over their dictionary codes, so the state
+ * never holds an entry per event. Each user slot of the {@link MetricSet} has its own counter of converted users,
+ * and each value slot a running sum; the value slots of mean metrics also keep {@link UserValues}. When quantiles
+ * are requested, each value slot also keeps a {@link KllSketch} of its values.
+ *
+ * Accumulators over disjoint sets of users, such as those of spilled partitions, are added with
+ * {@link #mergeDisjoint(VariantAccumulator)}. Their users only count towards the distinct counts and moments
+ * reported here, since their keys belong to another dictionary.
+ */
+public class VariantAccumulator {
+    private final StringDictionary actions;
+    private final UserCounter users;
+    private final UserCounter[] convertedUsers;
+    private final double[] sums;
+    private final long[] valueCounts;
+    private final UserValues[] userValues;
+    private final KllSketch[] sketches;
+    private int[] actionCounts = new int[8];
+    private int events;
+    
+    // Users of merged disjoint accumulators, which are not in the counters
+    private int disjointUsers;
+    private final int[] disjointConverted;
+    private final RunningMoments[] disjointMoments;
+    
+    VariantAccumulator(StringDictionary actions, Supplier<UserCounter> counterFactory,
+                       Supplier<UserValues> valuesFactory, MetricSet metrics, int sketchK) {
+        this.actions = actions;
+        this.users = counterFactory.get();
+        this.convertedUsers = new UserCounter[metrics.getUserSlots()];
+        for (int slot = 0; slot < convertedUsers.length; slot++) {
+            convertedUsers[slot] = counterFactory.get();
+        }
+        int valueSlots = metrics.getValueSlots();
+        this.sums = new double[valueSlots];
+        this.valueCounts = new long[valueSlots];
+        this.userValues = new UserValues[valueSlots];
+        for (int slot = 0; slot < valueSlots; slot++) {
+            if (metrics.isPerUserValue(slot)) {
+                userValues[slot] = valuesFactory.get();
+            }
+        }
+        this.disjointConverted = new int[convertedUsers.length];
+        this.disjointMoments = new RunningMoments[valueSlots];
+        this.sketches = new KllSketch[sketchK > 0 ? valueSlots : 0];
+        for (int slot = 0; slot < sketches.length; slot++) {
+            sketches[slot] = new KllSketch(sketchK);
+        }
+    }
+    
+    /**
+     * Count an event.
+     *
+     * @param userKey The user key
+     * @param actionCode The action code
+     * @param userMask The user slots of the metrics the event's action converts
+     */
+    void add(long userKey, int actionCode, long userMask) {
+        events++;
+        users.add(userKey);
+        if (actionCode >= actionCounts.length) {
+            actionCounts = Arrays.copyOf(actionCounts, Math.max(actionCode + 1, actionCounts.length * 2));
+        }
+        actionCounts[actionCode]++;
+        for (long mask = userMask; mask != 0; mask &= mask - 1) {
+            convertedUsers[Long.numberOfTrailingZeros(mask)].add(userKey);
+        }
+    }
+    
+    void addValue(int slot, long userKey, double value) {
+        sums[slot] += value;
+        valueCounts[slot]++;
+        if (userValues[slot] != null) {
+            userValues[slot].add(userKey, value);
+        }
+        if (sketches.length > 0) {
+            sketches[slot].update(value);
+        }
+    }
+    
+    /**
+     * Add the counts of an accumulator of the same metrics over users none of which were counted here.
+     *
+     * @param other The other accumulator, whose action codes must come from the same dictionary
+     */
+    void mergeDisjoint(VariantAccumulator other) {
+        events += other.events;
+        if (other.actionCounts.length > actionCounts.length) {
+            actionCounts = Arrays.copyOf(actionCounts, other.actionCounts.length);
+        }
+        for (int code = 0; code < other.actionCounts.length; code++) {
+            actionCounts[code] += other.actionCounts[code];
+        }
+        disjointUsers += other.getUsers();
+        for (int slot = 0; slot < convertedUsers.length; slot++) {
+            disjointConverted[slot] += other.getConverted(slot);
+        }
+        for (int slot = 0; slot < sums.length; slot++) {
+            sums[slot] += other.sums[slot];
+            valueCounts[slot] += other.valueCounts[slot];
+            if (userValues[slot] != null) {
+                if (disjointMoments[slot] == null) {
+                    disjointMoments[slot] = new RunningMoments();
+                }
+                disjointMoments[slot].merge(other.moments(slot));
+            }
+        }
+        for (int slot = 0; slot < sketches.length; slot++) {
+            sketches[slot].merge(other.sketches[slot]);
+        }
+    }
+    
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(events);
+        out.writeInt(actionCounts.length);
+        for (int count : actionCounts) {
+            out.writeInt(count);
+        }
+        users.writeTo(out);
+        for (UserCounter converted : convertedUsers) {
+            converted.writeTo(out);
+        }
+        for (int slot = 0; slot < sums.length; slot++) {
+            out.writeDouble(sums[slot]);
+            out.writeLong(valueCounts[slot]);
+            if (userValues[slot] != null) {
+                userValues[slot].writeTo(out);
+            }
+        }
+        for (KllSketch sketch : sketches) {
+            sketch.writeTo(out);
+        }
+    }
+    
+    void readFrom(DataInput in) throws IOException {
+        events = in.readInt();
+        actionCounts = new int[in.readInt()];
+        for (int i = 0; i < actionCounts.length; i++) {
+            actionCounts[i] = in.readInt();
+        }
+        users.readFrom(in);
+        for (UserCounter converted : convertedUsers) {
+            converted.readFrom(in);
+        }
+        for (int slot = 0; slot < sums.length; slot++) {
+            sums[slot] = in.readDouble();
+            valueCounts[slot] = in.readLong();
+            if (userValues[slot] != null) {
+                userValues[slot].readFrom(in);
+            }
+        }
+        for (KllSketch sketch : sketches) {
+            sketch.readFrom(in);
+        }
+    }
+    
+    UserCounter users() {
+        return users;
+    }
+    
+    UserCounter convertedUsers() {
+        return convertedUsers[0];
+    }
+    
+    public int getEvents() {
+        return events;
+    }
+    
+    public int getUsers() {
+        return users.cardinality() + disjointUsers;
+    }
+    
+    /**
+     * Get the users who converted by the primary conversion metric.
+     *
+     * @return The converted users
+     */
+    public int getConversions() {
+        return getConverted(0);
+    }
+    
+    int getConverted(int slot) {
+        return convertedUsers[slot].cardinality() + disjointConverted[slot];
+    }
+    
+    double getSum(int slot) {
+        return sums[slot];
+    }
+    
+    long getValueCount(int slot) {
+        return valueCounts[slot];
+    }
+    
+    /**
+     * Get the moments of the per-user totals of a value slot with per-user values.
+     *
+     * @param slot The value slot
+     * @return The moments
+     */
+    RunningMoments moments(int slot) {
+        RunningMoments moments = userValues[slot].moments();
+        if (disjointMoments[slot] != null) {
+            moments.merge(disjointMoments[slot]);
+        }
+        return moments;
+    }
+    
+    /**
+     * Get the per-user totals of a value slot with per-user values.
+     *
+     * @param slot The value slot
+     * @return The totals, or null if they are not kept per user or some users came from a disjoint accumulator
+     */
+    double[] totals(int slot) {
+        return disjointMoments[slot] == null ? userValues[slot].totals() : null;
+    }
+    
+    KllSketch getSketch(int slot) {
+        return slot < sketches.length ? sketches[slot] : null;
+    }
+    
+    /**
+     * Count the events of a set of actions.
+     *
+     * @param matching The actions
+     * @return The number of events with one of the actions
+     */
+    long countActions(Set<String> matching) {
+        long count = 0;
+        for (int code = 0; code < actionCounts.length; code++) {
+            if (actionCounts[code] > 0 && matching.contains(actions.decode(code))) {
+                count += actionCounts[code];
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Get the event counts by action.
+     *
+     * @return A mutable map of the action counts
+     */
+    public Map<String, Integer> getActionCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (int code = 0; code < actionCounts.length; code++) {
+            if (actionCounts[code] > 0) {
+                counts.put(actions.decode(code), actionCounts[code]);
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,126 @@
+package com.sofi.experimentation.report.columnar;
+
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.util.DateUtils;
+import com.sofi.experimentation.report.util.HashUtils;
+
+/**
+ * Fixed-capacity columnar buffer of experiment events.
+ * String attributes are dictionary-encoded into int codes and timestamps are stored as epoch millis,
+ * so a full buffer is a handful of primitive arrays that can be scanned without touching event objects.
+ * The dictionaries are shared across buffer refills, so codes stay stable for the whole job.
+ * When no user dictionary is given, user IDs are stored as 64-bit hashes instead, which keeps memory
+ * independent of the number of distinct users.
+ */
+public class EventColumns {
+    /** Timestamp value stored for events whose timestamp could not be parsed. */
+    public static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+    
+    private final StringDictionary variants;
+    private final StringDictionary actions;
+    private final StringDictionary users;
+    private final StringDictionary sessions;
+    
+    private final int[] variantCodes;
+    private final int[] actionCodes;
+    private final int[] userIds;
+    private final long[] userHashes;
+    private final int[] sessionIds;
+    private final long[] timestamps;
+    private int size;
+    
+    /**
+     * Create a columnar buffer.
+     *
+     * @param capacity The number of events the buffer holds before it must be drained
+     * @param variants The dictionary for variant IDs
+     * @param actions The dictionary for actions
+     * @param users The dictionary for user IDs, or null to store user ID hashes instead
+     * @param sessions The dictionary for session IDs, or null to skip the session column
+     */
+    public EventColumns(int capacity,
+                        StringDictionary variants,
+                        StringDictionary actions,
+                        StringDictionary users,
+                        StringDictionary sessions) {
+        this.variants = variants;
+        this.actions = actions;
+        this.users = users;
+        this.sessions = sessions;
+        this.variantCodes = new int[capacity];
+        this.actionCodes = new int[capacity];
+        this.userIds = users != null ? new int[capacity] : null;
+        this.userHashes = users == null ? new long[capacity] : null;
+        this.sessionIds = sessions != null ? new int[capacity] : null;
+        this.timestamps = new long[capacity];
+    }
+    
+    /**
+     * Append an event to the buffer.
+     *
+     * @param event The event
+     * @return True if the buffer is full after the append
+     */
+    public boolean append(ExperimentEvent event) {
+        variantCodes[size] = variants.encode(event.getVariantId());
+        actionCodes[size] = actions.encode(event.getAction());
+        if (userIds != null) {
+            userIds[size] = users.encode(event.getUserId());
+        } else {
+            userHashes[size] = HashUtils.hash64(event.getUserId());
+        }
+        if (sessionIds != null) {
+            sessionIds[size] = sessions.encode(event.getSessionId());
+        }
+        timestamps[size] = parseTimestamp(event.getTimestamp());
+        size++;
+        return isFull();
+    }
+    
+    private static long parseTimestamp(String timestamp) {
+        try {
+            return DateUtils.parseEpochMillis(timestamp);
+        } catch (Exception e) {
+            return INVALID_TIMESTAMP;
+        }
+    }
+    
+    public boolean isFull() {
+        return size == timestamps.length;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Empty the buffer so it can be refilled. The dictionaries are kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+    
+    public int[] getVariantCodes() {
+        return variantCodes;
+    }
+    
+    public int[] getActionCodes() {
+        return actionCodes;
+    }
+    
+    public int[] getUserIds() {
+        return userIds;
+    }
+    
+    public long[] getUserHashes() {
+        return userHashes;
+    }
+    
+    public int[] getSessionIds() {
+        return sessionIds;
+    }
+    
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+}
@@ -0,0 +1,92 @@
+package com.sofi.experimentation.report.columnar;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary that interns strings into dense int codes.
+ * Codes are assigned in first-seen order starting at 0, so they can index primitive arrays directly.
+ * Null is a valid value and gets a code like any other string.
+ */
+public class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+    
+    /**
+     * Get the code for a value, assigning the next code if the value has not been seen.
+     *
+     * @param value The value
+     * @return The code
+     */
+    public int encode(String value) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+    
+    /**
+     * Get the code for a value without assigning one.
+     *
+     * @param value The value
+     * @return The code, or -1 if the value has not been seen
+     */
+    public int lookup(String value) {
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+    
+    /**
+     * Get the value for a code.
+     *
+     * @param code The code
+     * @return The value
+     */
+    public String decode(int code) {
+        return values.get(code);
+    }
+    
+    public int size() {
+        return values.size();
+    }
+    
+    /**
+     * Write the dictionary in code order.
+     *
+     * @param out The output
+     * @throws IOException If writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+    }
+    
+    /**
+     * Read a dictionary written by {@link #writeTo(DataOutput)}; every value keeps its code.
+     *
+     * @param in The input
+     * @return The dictionary
+     * @throws IOException If reading fails
+     */
+    public static StringDictionary readFrom(DataInput in) throws IOException {
+        StringDictionary dictionary = new StringDictionary();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            dictionary.encode(in.readBoolean() ? in.readUTF() : null);
+        }
+        return dictionary;
+    }
+}
@@ -1,10 +1,13 @@
 package com.sofi.experimentation.report.di;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofi.experimentation.report.metrics.RequestMetricsInterceptor;
 import dagger.Module;
 import dagger.Provides;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import javax.inject.Singleton;
@@ -29,9 +32,16 @@ public class AppModule {
     
     @Provides
     @Singleton
-    DynamoDbClient provideDynamoDbClient() {
+    RequestMetricsInterceptor provideRequestMetricsInterceptor() {
+        return new RequestMetricsInterceptor();
+    }
+    
+    @Provides
+    @Singleton
+    DynamoDbClient provideDynamoDbClient(RequestMetricsInterceptor requestMetrics) {
         return DynamoDbClient.builder()
             .region(Region.of(System.getenv("AWS_REGION") != null ? System.getenv("AWS_REGION") : "us-west-2"))
+            .overrideConfiguration(withRequestMetrics(requestMetrics))
             .build();
     }
     
@@ -45,9 +55,26 @@ public class AppModule {
     
     @Provides
     @Singleton
-    S3Client provideS3Client() {
+    DynamoDbAsyncClient provideDynamoDbAsyncClient(RequestMetricsInterceptor requestMetrics) {
+        return DynamoDbAsyncClient.builder()
+            .region(Region.of(System.getenv("AWS_REGION") != null ? System.getenv("AWS_REGION") : "us-west-2"))
+            .overrideConfiguration(withRequestMetrics(requestMetrics))
+            .build();
+    }
+    
+    @Provides
+    @Singleton
+    S3Client provideS3Client(RequestMetricsInterceptor requestMetrics) {
         return S3Client.builder()
             .region(Region.of(System.getenv("AWS_REGION") != null ? System.getenv("AWS_REGION") : "us-west-2"))
+            .overrideConfiguration(withRequestMetrics(requestMetrics))
+            .build();
+    }
+    
+    // Every client reports its calls and retries to the same interceptor, which report jobs read
+    private static ClientOverrideConfiguration withRequestMetrics(RequestMetricsInterceptor requestMetrics) {
+        return ClientOverrideConfiguration.builder()
+            .addExecutionInterceptor(requestMetrics)
             .build();
     }
 }
\ No newline at end of file
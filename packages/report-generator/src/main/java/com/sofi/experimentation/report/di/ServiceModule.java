@@ -1,7 +1,10 @@
 package com.sofi.experimentation.report.di;
 
+import com.sofi.experimentation.report.metrics.RequestMetricsInterceptor;
+import com.sofi.experimentation.report.service.CheckpointService;
 import com.sofi.experimentation.report.service.DynamoDBService;
 import com.sofi.experimentation.report.service.ReportGenerationService;
+import com.sofi.experimentation.report.service.ReportProgressService;
 import com.sofi.experimentation.report.service.S3Service;
 import com.sofi.experimentation.report.service.StatisticalAnalysisService;
 import dagger.Module;
@@ -17,8 +20,10 @@ public class ServiceModule {
     @Provides
     @Singleton
     DynamoDBService provideDynamoDBService(
+            software.amazon.awssdk.services.dynamodb.DynamoDbClient dynamoDbClient,
+            software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient dynamoDbAsyncClient,
             software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient enhancedClient) {
-        return new DynamoDBService(enhancedClient);
+        return new DynamoDBService(dynamoDbClient, dynamoDbAsyncClient, enhancedClient);
     }
     
     @Provides
@@ -33,17 +38,35 @@ public class ServiceModule {
         return new StatisticalAnalysisService();
     }
     
+    @Provides
+    @Singleton
+    CheckpointService provideCheckpointService(S3Service s3Service) {
+        return new CheckpointService(s3Service);
+    }
+    
+    @Provides
+    @Singleton
+    ReportProgressService provideReportProgressService(DynamoDBService dynamoDBService) {
+        return new ReportProgressService(dynamoDBService);
+    }
+    
     @Provides
     @Singleton
     ReportGenerationService provideReportGenerationService(
             DynamoDBService dynamoDBService,
             S3Service s3Service,
             StatisticalAnalysisService statisticalAnalysisService,
-            com.fasterxml.jackson.databind.ObjectMapper objectMapper) {
+            CheckpointService checkpointService,
+            ReportProgressService progressService,
+            com.fasterxml.jackson.databind.ObjectMapper objectMapper,
+            RequestMetricsInterceptor requestMetrics) {
         return new ReportGenerationService(
                 dynamoDBService,
                 s3Service,
                 statisticalAnalysisService,
-                objectMapper);
+                checkpointService,
+                progressService,
+                objectMapper,
+                requestMetrics);
     }
 }
\ No newline at end of file
@@ -0,0 +1,228 @@
+package com.sofi.experimentation.report.metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timings, counters and allocation of one report job.
+ *
+ * A {@link Phase} measures a block of the job: wall time, and the CPU time and heap allocation of the thread
+ * that runs it, plus the garbage collections of the whole process in the meantime. Phases that run more than
+ * once accumulate, and a nested phase is also counted in the phase around it. Work the phase hands to other
+ * threads, such as the async DynamoDB client decoding pages, shows up in wall time only.
+ *
+ * Counters are named values recorded by the job. AWS SDK calls are taken from a {@link RequestMetricsInterceptor}
+ * as the difference between its counts at the start of the job and when the metrics are read.
+ */
+public class JobMetrics {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final List<GarbageCollectorMXBean> COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+    private static final boolean CPU_TIME_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+    private static final boolean ALLOCATION_SUPPORTED = THREADS instanceof com.sun.management.ThreadMXBean
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()
+            && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+    
+    private final RequestMetricsInterceptor requestMetrics;
+    private final Map<String, RequestMetricsInterceptor.RequestCounts> requestsAtStart;
+    private final long startNanos;
+    private final Map<String, PhaseTotals> phases = new LinkedHashMap<>();
+    private final Map<String, Number> counters = new ConcurrentHashMap<>();
+    
+    private static class PhaseTotals {
+        long count;
+        long wallNanos;
+        long cpuNanos;
+        long allocatedBytes;
+        long gcCount;
+        long gcMillis;
+    }
+    
+    /**
+     * Start measuring a job.
+     *
+     * @param requestMetrics The interceptor counting the SDK calls of the job's clients
+     */
+    public JobMetrics(RequestMetricsInterceptor requestMetrics) {
+        this.requestMetrics = requestMetrics;
+        this.requestsAtStart = requestMetrics.snapshot();
+        this.startNanos = System.nanoTime();
+    }
+    
+    /**
+     * Start a phase. Close it when the phase ends, normally with try-with-resources, or use
+     * {@link #time(String, Supplier)} for a block that does not need the phase itself.
+     * Must be closed on the thread that started it.
+     *
+     * @param name The phase name
+     * @return The running phase
+     */
+    public Phase phase(String name) {
+        return new Phase(name);
+    }
+    
+    /**
+     * Run a block as a phase.
+     *
+     * @param name The phase name
+     * @param work The block
+     * @param <T> The result type
+     * @return The result of the block
+     */
+    public <T> T time(String name, Supplier<T> work) {
+        Phase phase = phase(name);
+        try {
+            return work.get();
+        } finally {
+            phase.close();
+        }
+    }
+    
+    /**
+     * Run a block without a result as a phase.
+     *
+     * @param name The phase name
+     * @param work The block
+     */
+    public void time(String name, Runnable work) {
+        Phase phase = phase(name);
+        try {
+            work.run();
+        } finally {
+            phase.close();
+        }
+    }
+    
+    /**
+     * Record a counter, replacing any earlier value.
+     *
+     * @param name The counter name
+     * @param value The value
+     */
+    public void record(String name, Number value) {
+        counters.put(name, value);
+    }
+    
+    /**
+     * A running phase.
+     */
+    public class Phase implements AutoCloseable {
+        private final String name;
+        private final long startNanos = System.nanoTime();
+        private final long startCpuNanos = threadCpuNanos();
+        private final long startAllocatedBytes = threadAllocatedBytes();
+        private final long startGcCount = gcCount();
+        private final long startGcMillis = gcMillis();
+        private boolean closed;
+        
+        private Phase(String name) {
+            this.name = name;
+        }
+        
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            long wallNanos = System.nanoTime() - startNanos;
+            long cpuNanos = threadCpuNanos() - startCpuNanos;
+            long allocatedBytes = threadAllocatedBytes() - startAllocatedBytes;
+            long gcCount = gcCount() - startGcCount;
+            long gcMillis = gcMillis() - startGcMillis;
+            synchronized (phases) {
+                PhaseTotals totals = phases.computeIfAbsent(name, ignored -> new PhaseTotals());
+                totals.count++;
+                totals.wallNanos += wallNanos;
+                totals.cpuNanos += cpuNanos;
+                totals.allocatedBytes += allocatedBytes;
+                totals.gcCount += gcCount;
+                totals.gcMillis += gcMillis;
+            }
+        }
+    }
+    
+    /**
+     * The metrics as nested maps of numbers, ready to be logged as JSON or stored as a DynamoDB map.
+     * Phases are in the order they first ended; counters and SDK operations are sorted by name.
+     *
+     * @return The metrics so far
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("wallMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        
+        Map<String, Object> phaseMaps = new LinkedHashMap<>();
+        synchronized (phases) {
+            phases.forEach((name, totals) -> {
+                Map<String, Object> phase = new LinkedHashMap<>();
+                if (totals.count > 1) {
+                    phase.put("count", totals.count);
+                }
+                phase.put("wallMillis", TimeUnit.NANOSECONDS.toMillis(totals.wallNanos));
+                if (CPU_TIME_SUPPORTED) {
+                    phase.put("cpuMillis", TimeUnit.NANOSECONDS.toMillis(totals.cpuNanos));
+                }
+                if (ALLOCATION_SUPPORTED) {
+                    phase.put("allocatedBytes", totals.allocatedBytes);
+                }
+                phase.put("gcCount", totals.gcCount);
+                phase.put("gcMillis", totals.gcMillis);
+                phaseMaps.put(name, phase);
+            });
+        }
+        result.put("phases", phaseMaps);
+        
+        result.put("counters", new TreeMap<>(counters));
+        
+        Map<String, Object> requests = new TreeMap<>();
+        requestMetrics.snapshot().forEach((operation, counts) -> {
+            RequestMetricsInterceptor.RequestCounts delta = counts.minus(requestsAtStart.get(operation));
+            if (delta.getCalls() > 0) {
+                Map<String, Object> request = new LinkedHashMap<>();
+                request.put("calls", delta.getCalls());
+                request.put("retries", delta.getRetries());
+                request.put("failures", delta.getFailures());
+                request.put("millis", TimeUnit.NANOSECONDS.toMillis(delta.getNanos()));
+                requests.put(operation, request);
+            }
+        });
+        result.put("requests", requests);
+        
+        return result;
+    }
+    
+    // Measurements the JVM does not support read as zero and are left out of the output
+    private static long threadCpuNanos() {
+        return CPU_TIME_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+    
+    private static long threadAllocatedBytes() {
+        return ALLOCATION_SUPPORTED
+                ? ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId())
+                : 0;
+    }
+    
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+    
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : COLLECTORS) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,133 @@
+package com.sofi.experimentation.report.metrics;
+
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the calls of every AWS SDK client it is registered with, by service and operation
+ * (for example {@code DynamoDB.Query}): calls, HTTP attempts, failures and the time spent in calls.
+ * The SDK retries a call by sending another attempt, so retries are the attempts beyond one per call.
+ *
+ * Counters only grow and are shared by every job of the process; a job takes a {@link #snapshot()}
+ * when it starts and reports the difference to a snapshot taken when it ends.
+ */
+public class RequestMetricsInterceptor implements ExecutionInterceptor {
+    private static final ExecutionAttribute<Long> START_NANOS = new ExecutionAttribute<>("RequestMetricsStartNanos");
+    
+    private final ConcurrentMap<String, Counters> operations = new ConcurrentHashMap<>();
+    
+    private static class Counters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder attempts = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+    }
+    
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(START_NANOS, System.nanoTime());
+        counters(executionAttributes).calls.increment();
+    }
+    
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        // Runs once for every attempt, including retries
+        counters(executionAttributes).attempts.increment();
+    }
+    
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        recordTime(executionAttributes);
+    }
+    
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        counters(executionAttributes).failures.increment();
+        recordTime(executionAttributes);
+    }
+    
+    private void recordTime(ExecutionAttributes executionAttributes) {
+        Long startNanos = executionAttributes.getAttribute(START_NANOS);
+        if (startNanos != null) {
+            counters(executionAttributes).nanos.add(System.nanoTime() - startNanos);
+        }
+    }
+    
+    private Counters counters(ExecutionAttributes executionAttributes) {
+        String operation = executionAttributes.getAttribute(SdkExecutionAttribute.SERVICE_NAME) + "."
+                + executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        return operations.computeIfAbsent(operation, ignored -> new Counters());
+    }
+    
+    /**
+     * Take a snapshot of the counters.
+     *
+     * @return The counts so far by operation, sorted by operation name
+     */
+    public Map<String, RequestCounts> snapshot() {
+        Map<String, RequestCounts> snapshot = new TreeMap<>();
+        operations.forEach((operation, counters) -> snapshot.put(operation, new RequestCounts(
+                counters.calls.sum(), counters.attempts.sum(), counters.failures.sum(), counters.nanos.sum())));
+        return snapshot;
+    }
+    
+    /**
+     * The counts of one operation.
+     */
+    public static class RequestCounts {
+        private final long calls;
+        private final long attempts;
+        private final long failures;
+        private final long nanos;
+        
+        public RequestCounts(long calls, long attempts, long failures, long nanos) {
+            this.calls = calls;
+            this.attempts = attempts;
+            this.failures = failures;
+            this.nanos = nanos;
+        }
+        
+        /**
+         * Subtract the counts of an earlier snapshot.
+         *
+         * @param earlier The counts of the earlier snapshot, or null if the operation had not been called
+         * @return The counts since the earlier snapshot
+         */
+        public RequestCounts minus(RequestCounts earlier) {
+            if (earlier == null) {
+                return this;
+            }
+            return new RequestCounts(calls - earlier.calls, attempts - earlier.attempts,
+                    failures - earlier.failures, nanos - earlier.nanos);
+        }
+        
+        public long getCalls() {
+            return calls;
+        }
+        
+        public long getAttempts() {
+            return attempts;
+        }
+        
+        public long getRetries() {
+            return Math.max(0, attempts - calls);
+        }
+        
+        public long getFailures() {
+            return failures;
+        }
+        
+        public long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.sofi.experimentation.report.model;
+
+/**
+ * How distinct users are counted in a report.
+ */
+public enum DistinctCountMode {
+    /** Exact counts; memory grows with the number of distinct users. */
+    EXACT,
+    /** HyperLogLog estimates; memory is fixed per counter regardless of the number of users. */
+    APPROXIMATE
+}
@@ -22,6 +22,7 @@ public class Experiment {
     private String startDate;
     private String endDate;
     private int targetUserPercentage;
+    private List<MetricDefinition> metrics;
     
     public Experiment() {
         // Default constructor for Jackson and DynamoDB Enhanced Client
@@ -117,4 +118,16 @@ public class Experiment {
     public void setTargetUserPercentage(int targetUserPercentage) {
         this.targetUserPercentage = targetUserPercentage;
     }
+    
+    /**
+     * Metrics reported for each variant, unless the job parameters define their own.
+     */
+    @JsonProperty("metrics")
+    public List<MetricDefinition> getMetrics() {
+        return metrics;
+    }
+    
+    public void setMetrics(List<MetricDefinition> metrics) {
+        this.metrics = metrics;
+    }
 }
\ No newline at end of file
@@ -1,6 +1,9 @@
 package com.sofi.experimentation.report.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
@@ -28,6 +31,7 @@ public class ExperimentEvent {
     private String timestamp;
     
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<HashMap<String, Object>> METADATA_TYPE = new TypeReference<>() {};
     
     public ExperimentEvent() {
         // Default constructor for Jackson and DynamoDB Enhanced Client
@@ -96,16 +100,8 @@ public class ExperimentEvent {
     
     public void setMetadataJson(String metadataJson) {
         this.metadataJson = metadataJson;
-        // Parse the JSON string to populate the metadata map
-        try {
-            if (metadataJson != null && !metadataJson.isEmpty()) {
-                this.metadata = objectMapper.readValue(metadataJson, new TypeReference<HashMap<String, Object>>() {});
-            } else {
-                this.metadata = new HashMap<>();
-            }
-        } catch (Exception e) {
-            this.metadata = new HashMap<>();
-        }
+        // The metadata map is parsed on first use; most events never need it
+        this.metadata = null;
     }
     
     // This is used by the application but ignored by DynamoDB
@@ -116,7 +112,7 @@ public class ExperimentEvent {
             // Initialize from metadataJson if needed
             try {
                 if (metadataJson != null && !metadataJson.isEmpty()) {
-                    metadata = objectMapper.readValue(metadataJson, new TypeReference<HashMap<String, Object>>() {});
+                    metadata = objectMapper.readValue(metadataJson, METADATA_TYPE);
                 } else {
                     metadata = new HashMap<>();
                 }
@@ -127,6 +123,56 @@ public class ExperimentEvent {
         return metadata;
     }
     
+    /**
+     * Get a single top-level metadata value without building the metadata map.
+     * The raw JSON is scanned with a streaming parser, skipping other fields without materializing them,
+     * so reading one key such as a loan amount costs a fraction of {@link #getMetadata()}.
+     *
+     * @param field The metadata field name
+     * @return The value (String, Number, Boolean, or a Map or List for nested values), or null if it is
+     *         missing or the metadata is not valid JSON
+     */
+    @JsonIgnore
+    @DynamoDbIgnore
+    public Object getMetadataValue(String field) {
+        if (metadata != null) {
+            return metadata.get(field);
+        }
+        if (metadataJson == null || metadataJson.isEmpty()) {
+            return null;
+        }
+        
+        try (JsonParser parser = objectMapper.getFactory().createParser(metadataJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                JsonToken token = parser.nextToken();
+                if (!field.equals(parser.getCurrentName())) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (token) {
+                    case VALUE_STRING:
+                        return parser.getText();
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT:
+                        return parser.getNumberValue();
+                    case VALUE_TRUE:
+                    case VALUE_FALSE:
+                        return parser.getBooleanValue();
+                    case VALUE_NULL:
+                        return null;
+                    default:
+                        return objectMapper.readValue(parser, Object.class);
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
     public void setMetadata(Map<String, Object> metadata) {
         this.metadata = metadata;
         // Update the JSON string when metadata is set
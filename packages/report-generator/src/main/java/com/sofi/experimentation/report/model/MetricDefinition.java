@@ -0,0 +1,165 @@
+package com.sofi.experimentation.report.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbIgnore;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Definition of a metric reported for each variant, stored with the experiment or passed in the job parameters.
+ * A metric selects events by action; see {@link MetricType} for what it computes over them.
+ * This class mirrors the TypeScript interface in the shared library.
+ */
+@DynamoDbBean
+public class MetricDefinition {
+    /** Actions counted as a conversion when neither the experiment nor the job defines a conversion metric. */
+    public static final List<String> DEFAULT_CONVERSION_ACTIONS = List.of("LOAN_ACCEPTANCE", "CONVERSION");
+    
+    private String name;
+    private String type;
+    private List<String> actions;
+    private List<String> denominatorActions;
+    private String field;
+    
+    public MetricDefinition() {
+        // Default constructor for Jackson and DynamoDB Enhanced Client
+    }
+    
+    public MetricDefinition(String name, MetricType type, List<String> actions,
+                            List<String> denominatorActions, String field) {
+        this.name = name;
+        this.type = type.name();
+        this.actions = actions;
+        this.denominatorActions = denominatorActions;
+        this.field = field;
+    }
+    
+    /**
+     * The unique-user conversion metric over {@link #DEFAULT_CONVERSION_ACTIONS}.
+     *
+     * @return The default conversion metric
+     */
+    public static MetricDefinition defaultConversion() {
+        return new MetricDefinition("conversion", MetricType.UNIQUE_CONVERSION, DEFAULT_CONVERSION_ACTIONS, null, null);
+    }
+    
+    /**
+     * Check that the definition is complete for its type.
+     *
+     * @throws IllegalArgumentException If the definition is incomplete
+     */
+    public void validate() {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("Metric definition without a name");
+        }
+        MetricType metricType;
+        try {
+            metricType = getMetricType();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Unknown type " + type + " of metric " + name);
+        }
+        if (actions == null || actions.isEmpty()) {
+            throw new IllegalArgumentException("Metric " + name + " has no actions");
+        }
+        if (metricType == MetricType.RATIO && (denominatorActions == null || denominatorActions.isEmpty())) {
+            throw new IllegalArgumentException("Ratio metric " + name + " has no denominator actions");
+        }
+        if ((metricType == MetricType.SUM || metricType == MetricType.MEAN) && (field == null || field.isEmpty())) {
+            throw new IllegalArgumentException("Metric " + name + " of type " + type + " has no metadata field");
+        }
+    }
+    
+    @JsonProperty("name")
+    public String getName() {
+        return name;
+    }
+    
+    public void setName(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * The {@link MetricType} name; stored as a string since DynamoDB has no enum type.
+     */
+    @JsonProperty("type")
+    public String getType() {
+        return type;
+    }
+    
+    public void setType(String type) {
+        this.type = type;
+    }
+    
+    @JsonIgnore
+    @DynamoDbIgnore
+    public MetricType getMetricType() {
+        return MetricType.valueOf(type);
+    }
+    
+    /**
+     * Actions of the events the metric is computed over; for a ratio, the numerator events.
+     */
+    @JsonProperty("actions")
+    public List<String> getActions() {
+        return actions;
+    }
+    
+    public void setActions(List<String> actions) {
+        this.actions = actions;
+    }
+    
+    /**
+     * Actions of the denominator events of a ratio metric.
+     */
+    @JsonProperty("denominatorActions")
+    public List<String> getDenominatorActions() {
+        return denominatorActions;
+    }
+    
+    public void setDenominatorActions(List<String> denominatorActions) {
+        this.denominatorActions = denominatorActions;
+    }
+    
+    /**
+     * Top-level metadata field summed by a sum or mean metric.
+     */
+    @JsonProperty("field")
+    public String getField() {
+        return field;
+    }
+    
+    public void setField(String field) {
+        this.field = field;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetricDefinition)) {
+            return false;
+        }
+        MetricDefinition other = (MetricDefinition) o;
+        return Objects.equals(name, other.name)
+                && Objects.equals(type, other.type)
+                && Objects.equals(actions, other.actions)
+                && Objects.equals(denominatorActions, other.denominatorActions)
+                && Objects.equals(field, other.field);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, type, actions, denominatorActions, field);
+    }
+    
+    @Override
+    public String toString() {
+        return name + " (" + type + " of " + actions
+                + (denominatorActions != null ? " per " + denominatorActions : "")
+                + (field != null ? ", field " + field : "") + ")";
+    }
+}
@@ -0,0 +1,20 @@
+package com.sofi.experimentation.report.model;
+
+/**
+ * Kind of metric a {@link MetricDefinition} computes for each variant.
+ */
+public enum MetricType {
+    /** Events whose action matches, reported per user of the variant. */
+    COUNT,
+    /** Share of the variant's users with at least one matching event. */
+    UNIQUE_CONVERSION,
+    /** Matching events divided by the events matching the denominator actions. */
+    RATIO,
+    /** Sum of a numeric metadata field over the matching events, reported as the mean per summed event. */
+    SUM,
+    /**
+     * Numeric metadata field summed per user over the matching events, reported as the mean over the users with
+     * a value, with its standard deviation and a Welch t-test against the control.
+     */
+    MEAN
+}
@@ -0,0 +1,56 @@
+package com.sofi.experimentation.report.model;
+
+import com.github.luben.zstd.ZstdOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression applied to the report document, stored as the S3 object's Content-Encoding.
+ */
+public enum ReportCompression {
+    /** No compression. */
+    NONE(null),
+    /** Gzip, which every HTTP client can decode. */
+    GZIP("gzip"),
+    /** Zstandard, smaller and faster than gzip but not decoded by every client. */
+    ZSTD("zstd");
+    
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    private static final int ZSTD_LEVEL = 3;
+    
+    private final String contentEncoding;
+    
+    ReportCompression(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+    
+    /**
+     * Get the HTTP Content-Encoding for this compression.
+     *
+     * @return The content encoding, or null for no compression
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+    
+    /**
+     * Wrap a stream so that content written to it is compressed.
+     * Closing the returned stream finishes the compressed data and closes the target.
+     *
+     * @param out The target stream
+     * @return The compressing stream
+     * @throws IOException If the compressor cannot be created
+     */
+    public OutputStream wrap(OutputStream out) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+            case ZSTD:
+                return new ZstdOutputStream(out, ZSTD_LEVEL);
+            default:
+                return out;
+        }
+    }
+}
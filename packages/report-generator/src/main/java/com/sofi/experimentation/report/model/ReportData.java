@@ -15,6 +15,7 @@ public class ReportData {
     private String generatedAt;
     private TimeRange timeRange;
     private Metrics metrics;
+    private Approximation approximation;
     
     public ReportData() {
         // Default constructor for Jackson
@@ -65,6 +66,15 @@ public class ReportData {
         this.metrics = metrics;
     }
     
+    @JsonProperty("approximation")
+    public Approximation getApproximation() {
+        return approximation;
+    }
+    
+    public void setApproximation(Approximation approximation) {
+        this.approximation = approximation;
+    }
+    
     /**
      * Time range for the report.
      */
@@ -147,6 +157,10 @@ public class ReportData {
         private int totalUsers;
         private int totalEvents;
         private double conversionRate;
+        private Integer distinctUsers;
+        private Double homogeneityPValue;
+        private Integer overlappingUsers;
+        private Integer overlappingConvertedUsers;
         
         public Overall() {
             // Default constructor for Jackson
@@ -184,6 +198,55 @@ public class ReportData {
         public void setConversionRate(double conversionRate) {
             this.conversionRate = conversionRate;
         }
+        
+        /**
+         * P-value of a chi-square test that all variants share one conversion rate.
+         * Only reported for more than two variants; with two it equals the treatment's significanceLevel.
+         */
+        @JsonProperty("homogeneityPValue")
+        public Double getHomogeneityPValue() {
+            return homogeneityPValue;
+        }
+        
+        public void setHomogeneityPValue(Double homogeneityPValue) {
+            this.homogeneityPValue = homogeneityPValue;
+        }
+        
+        /**
+         * Users counted once across all variants; totalUsers counts a user once per variant.
+         */
+        @JsonProperty("distinctUsers")
+        public Integer getDistinctUsers() {
+            return distinctUsers;
+        }
+        
+        public void setDistinctUsers(Integer distinctUsers) {
+            this.distinctUsers = distinctUsers;
+        }
+        
+        /**
+         * Users seen in more than one variant. Only reported with exact counts.
+         */
+        @JsonProperty("overlappingUsers")
+        public Integer getOverlappingUsers() {
+            return overlappingUsers;
+        }
+        
+        public void setOverlappingUsers(Integer overlappingUsers) {
+            this.overlappingUsers = overlappingUsers;
+        }
+        
+        /**
+         * Users seen in more than one variant who converted. Only reported with exact counts.
+         */
+        @JsonProperty("overlappingConvertedUsers")
+        public Integer getOverlappingConvertedUsers() {
+            return overlappingConvertedUsers;
+        }
+        
+        public void setOverlappingConvertedUsers(Integer overlappingConvertedUsers) {
+            this.overlappingConvertedUsers = overlappingConvertedUsers;
+        }
     }
     
     /**
@@ -195,6 +258,10 @@ public class ReportData {
         private double conversionRate;
         private Double improvement;
         private Double significanceLevel;
+        private String significanceMethod;
+        private ConfidenceInterval differenceInterval;
+        private ConfidenceInterval improvementInterval;
+        private Map<String, MetricValue> metrics;
         
         public VariantMetrics() {
             // Default constructor for Jackson
@@ -244,12 +311,278 @@ public class ReportData {
         public void setSignificanceLevel(Double significanceLevel) {
             this.significanceLevel = significanceLevel;
         }
+        
+        /**
+         * Test behind significanceLevel: Z_TEST or, for small samples, FISHER_EXACT.
+         */
+        @JsonProperty("significanceMethod")
+        public String getSignificanceMethod() {
+            return significanceMethod;
+        }
+        
+        public void setSignificanceMethod(String significanceMethod) {
+            this.significanceMethod = significanceMethod;
+        }
+        
+        /**
+         * Confidence interval of the conversion rate minus the control's conversion rate.
+         */
+        @JsonProperty("differenceInterval")
+        public ConfidenceInterval getDifferenceInterval() {
+            return differenceInterval;
+        }
+        
+        public void setDifferenceInterval(ConfidenceInterval differenceInterval) {
+            this.differenceInterval = differenceInterval;
+        }
+        
+        /**
+         * Bootstrap confidence interval of the improvement. Only reported when bootstrap resamples are requested.
+         */
+        @JsonProperty("improvementInterval")
+        public ConfidenceInterval getImprovementInterval() {
+            return improvementInterval;
+        }
+        
+        public void setImprovementInterval(ConfidenceInterval improvementInterval) {
+            this.improvementInterval = improvementInterval;
+        }
+        
+        /**
+         * Values of the experiment's or job's metric definitions, keyed by metric name.
+         */
+        @JsonProperty("metrics")
+        public Map<String, MetricValue> getMetrics() {
+            return metrics;
+        }
+        
+        public void setMetrics(Map<String, MetricValue> metrics) {
+            this.metrics = metrics;
+        }
+    }
+    
+    /**
+     * Confidence interval of an estimate.
+     */
+    public static class ConfidenceInterval {
+        private double level;
+        private double lower;
+        private double upper;
+        private Integer resamples;
+        
+        public ConfidenceInterval() {
+            // Default constructor for Jackson
+        }
+        
+        public ConfidenceInterval(double level, double lower, double upper) {
+            this.level = level;
+            this.lower = lower;
+            this.upper = upper;
+        }
+        
+        public ConfidenceInterval(double level, double lower, double upper, Integer resamples) {
+            this(level, lower, upper);
+            this.resamples = resamples;
+        }
+        
+        @JsonProperty("level")
+        public double getLevel() {
+            return level;
+        }
+        
+        public void setLevel(double level) {
+            this.level = level;
+        }
+        
+        @JsonProperty("lower")
+        public double getLower() {
+            return lower;
+        }
+        
+        public void setLower(double lower) {
+            this.lower = lower;
+        }
+        
+        @JsonProperty("upper")
+        public double getUpper() {
+            return upper;
+        }
+        
+        public void setUpper(double upper) {
+            this.upper = upper;
+        }
+        
+        /**
+         * Number of bootstrap resamples behind the interval. Null for closed-form intervals.
+         */
+        @JsonProperty("resamples")
+        public Integer getResamples() {
+            return resamples;
+        }
+        
+        public void setResamples(Integer resamples) {
+            this.resamples = resamples;
+        }
+    }
+    
+    /**
+     * Value of one metric definition for a variant: the numerator divided by the denominator, or 0 without
+     * a denominator. They are the raw totals the value is derived from: matching events and users for counts,
+     * converted users and users for conversions, numerator and denominator events for ratios, the sum and
+     * the number of summed events for sums, and the sum and the users with a value for means.
+     */
+    public static class MetricValue {
+        private String type;
+        private double value;
+        private double numerator;
+        private double denominator;
+        private Double improvement;
+        private Double standardDeviation;
+        private Double significanceLevel;
+        private String significanceMethod;
+        private ConfidenceInterval differenceInterval;
+        private ConfidenceInterval improvementInterval;
+        private Map<String, Double> quantiles;
+        
+        public MetricValue() {
+            // Default constructor for Jackson
+        }
+        
+        public MetricValue(String type, double value, double numerator, double denominator) {
+            this.type = type;
+            this.value = value;
+            this.numerator = numerator;
+            this.denominator = denominator;
+        }
+        
+        @JsonProperty("type")
+        public String getType() {
+            return type;
+        }
+        
+        public void setType(String type) {
+            this.type = type;
+        }
+        
+        @JsonProperty("value")
+        public double getValue() {
+            return value;
+        }
+        
+        public void setValue(double value) {
+            this.value = value;
+        }
+        
+        @JsonProperty("numerator")
+        public double getNumerator() {
+            return numerator;
+        }
+        
+        public void setNumerator(double numerator) {
+            this.numerator = numerator;
+        }
+        
+        @JsonProperty("denominator")
+        public double getDenominator() {
+            return denominator;
+        }
+        
+        public void setDenominator(double denominator) {
+            this.denominator = denominator;
+        }
+        
+        /**
+         * Percentage change of the value over the control variant's; null for the control.
+         */
+        @JsonProperty("improvement")
+        public Double getImprovement() {
+            return improvement;
+        }
+        
+        public void setImprovement(Double improvement) {
+            this.improvement = improvement;
+        }
+        
+        /**
+         * Sample standard deviation of the per-user totals of a mean metric; null for other metrics.
+         */
+        @JsonProperty("standardDeviation")
+        public Double getStandardDeviation() {
+            return standardDeviation;
+        }
+        
+        public void setStandardDeviation(Double standardDeviation) {
+            this.standardDeviation = standardDeviation;
+        }
+        
+        /**
+         * P-value of the difference from the control's mean; only for mean metrics of non-control variants.
+         */
+        @JsonProperty("significanceLevel")
+        public Double getSignificanceLevel() {
+            return significanceLevel;
+        }
+        
+        public void setSignificanceLevel(Double significanceLevel) {
+            this.significanceLevel = significanceLevel;
+        }
+        
+        /**
+         * Test behind significanceLevel: WELCH_T_TEST.
+         */
+        @JsonProperty("significanceMethod")
+        public String getSignificanceMethod() {
+            return significanceMethod;
+        }
+        
+        public void setSignificanceMethod(String significanceMethod) {
+            this.significanceMethod = significanceMethod;
+        }
+        
+        /**
+         * Confidence interval of the value minus the control's value; only for mean metrics.
+         */
+        @JsonProperty("differenceInterval")
+        public ConfidenceInterval getDifferenceInterval() {
+            return differenceInterval;
+        }
+        
+        public void setDifferenceInterval(ConfidenceInterval differenceInterval) {
+            this.differenceInterval = differenceInterval;
+        }
+        
+        /**
+         * Bootstrap confidence interval of the improvement, from resampled per-user totals; only for mean metrics
+         * in exact mode when bootstrap resamples are requested.
+         */
+        @JsonProperty("improvementInterval")
+        public ConfidenceInterval getImprovementInterval() {
+            return improvementInterval;
+        }
+        
+        public void setImprovementInterval(ConfidenceInterval improvementInterval) {
+            this.improvementInterval = improvementInterval;
+        }
+        
+        /**
+         * Estimated quantiles of the event values of a sum or mean metric, keyed by label such as p50 or p99.
+         * Only reported when the job requests quantiles.
+         */
+        @JsonProperty("quantiles")
+        public Map<String, Double> getQuantiles() {
+            return quantiles;
+        }
+        
+        public void setQuantiles(Map<String, Double> quantiles) {
+            this.quantiles = quantiles;
+        }
     }
     
     /**
      * Time series data for the report.
      */
     public static class TimeSeries {
+        private String granularity;
         private List<String> dates;
         private Map<String, VariantTimeSeries> byVariant;
         
@@ -257,6 +590,15 @@ public class ReportData {
             // Default constructor for Jackson
         }
         
+        @JsonProperty("granularity")
+        public String getGranularity() {
+            return granularity;
+        }
+        
+        public void setGranularity(String granularity) {
+            this.granularity = granularity;
+        }
+        
         @JsonProperty("dates")
         public List<String> getDates() {
             return dates;
@@ -282,6 +624,8 @@ public class ReportData {
     public static class VariantTimeSeries {
         private List<Integer> events;
         private List<Integer> conversions;
+        private List<Double> sequentialPValues;
+        private Map<String, Map<String, List<Double>>> quantiles;
         
         public VariantTimeSeries() {
             // Default constructor for Jackson
@@ -304,5 +648,79 @@ public class ReportData {
         public void setConversions(List<Integer> conversions) {
             this.conversions = conversions;
         }
+        
+        /**
+         * Always-valid p-value of the difference from the control at the end of each bucket, from a mixture
+         * sequential test on cumulative users and conversions. Unlike significanceLevel, it may be checked after
+         * every bucket without inflating false positives. Only reported for treatments with exact counts.
+         */
+        @JsonProperty("sequentialPValues")
+        public List<Double> getSequentialPValues() {
+            return sequentialPValues;
+        }
+        
+        public void setSequentialPValues(List<Double> sequentialPValues) {
+            this.sequentialPValues = sequentialPValues;
+        }
+        
+        /**
+         * Estimated quantiles of the values of each sum or mean metric by bucket, keyed by metric name and then by
+         * label such as p50. Buckets without values are null. Only reported when the job requests quantiles.
+         */
+        @JsonProperty("quantiles")
+        public Map<String, Map<String, List<Double>>> getQuantiles() {
+            return quantiles;
+        }
+        
+        public void setQuantiles(Map<String, Map<String, List<Double>>> quantiles) {
+            this.quantiles = quantiles;
+        }
+    }
+    
+    /**
+     * Description of the approximation used for distinct-user counts.
+     * Null when all counts are exact.
+     */
+    public static class Approximation {
+        private String method;
+        private int precision;
+        private double relativeStandardError;
+        
+        public Approximation() {
+            // Default constructor for Jackson
+        }
+        
+        public Approximation(String method, int precision, double relativeStandardError) {
+            this.method = method;
+            this.precision = precision;
+            this.relativeStandardError = relativeStandardError;
+        }
+        
+        @JsonProperty("method")
+        public String getMethod() {
+            return method;
+        }
+        
+        public void setMethod(String method) {
+            this.method = method;
+        }
+        
+        @JsonProperty("precision")
+        public int getPrecision() {
+            return precision;
+        }
+        
+        public void setPrecision(int precision) {
+            this.precision = precision;
+        }
+        
+        @JsonProperty("relativeStandardError")
+        public double getRelativeStandardError() {
+            return relativeStandardError;
+        }
+        
+        public void setRelativeStandardError(double relativeStandardError) {
+            this.relativeStandardError = relativeStandardError;
+        }
     }
-}
\ No newline at end of file
+}
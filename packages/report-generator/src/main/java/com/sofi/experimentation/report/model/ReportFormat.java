@@ -0,0 +1,23 @@
+package com.sofi.experimentation.report.model;
+
+/**
+ * Encoding of the report document written to S3.
+ */
+public enum ReportFormat {
+    /** Plain JSON, readable by any client. */
+    JSON("application/json"),
+    /** Jackson's binary JSON; repeated field names and numbers are stored compactly. */
+    SMILE("application/x-jackson-smile"),
+    /** RFC 8949 binary JSON, with decoders available for most languages. */
+    CBOR("application/cbor");
+    
+    private final String contentType;
+    
+    ReportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    public String getContentType() {
+        return contentType;
+    }
+}
@@ -1,7 +1,10 @@
 package com.sofi.experimentation.report.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+
 /**
  * Parameters for the report generation job.
  * This class mirrors the TypeScript interface in the shared library.
@@ -12,6 +15,28 @@ public class ReportJobParameters {
     private TimeRange timeRange;
     private String outputBucket;
     private String outputKey;
+    private Integer fetchParallelism;
+    private Integer timeSlices;
+    private DistinctCountMode distinctCountMode;
+    private Integer hllPrecision;
+    private boolean incremental;
+    private Integer ingestionLagSeconds;
+    private String checkpointBucket;
+    private String checkpointKey;
+    private Integer progressIntervalSeconds;
+    private ReportFormat outputFormat;
+    private ReportCompression outputCompression;
+    private ReportType reportType;
+    private String timeZone;
+    private TimeGranularity timeSeriesGranularity;
+    private List<MetricDefinition> metrics;
+    private Integer bootstrapResamples;
+    private Long bootstrapSeed;
+    private Double sequentialMixingSd;
+    private List<Double> quantiles;
+    private Integer quantileSketchK;
+    private Integer aggregationHeapBudgetMb;
+    private String spillDirectory;
     
     public ReportJobParameters() {
         // Default constructor for Jackson
@@ -75,6 +100,285 @@ public class ReportJobParameters {
         this.outputKey = outputKey;
     }
     
+    /**
+     * Number of time slices queried concurrently. A value of 1 reads the events with a single sequential query.
+     */
+    @JsonProperty("fetchParallelism")
+    public int getFetchParallelism() {
+        return fetchParallelism != null ? fetchParallelism : 1;
+    }
+    
+    public void setFetchParallelism(Integer fetchParallelism) {
+        this.fetchParallelism = fetchParallelism;
+    }
+    
+    /**
+     * Number of sub-ranges the time range is split into for a parallel fetch. Defaults to the fetch parallelism.
+     */
+    @JsonProperty("timeSlices")
+    public int getTimeSlices() {
+        return timeSlices != null ? timeSlices : getFetchParallelism();
+    }
+    
+    public void setTimeSlices(Integer timeSlices) {
+        this.timeSlices = timeSlices;
+    }
+    
+    /**
+     * How distinct users are counted. Defaults to exact counts.
+     */
+    @JsonProperty("distinctCountMode")
+    public DistinctCountMode getDistinctCountMode() {
+        return distinctCountMode != null ? distinctCountMode : DistinctCountMode.EXACT;
+    }
+    
+    public void setDistinctCountMode(DistinctCountMode distinctCountMode) {
+        this.distinctCountMode = distinctCountMode;
+    }
+    
+    /**
+     * HyperLogLog precision for approximate distinct counts; each sketch uses 2^precision bytes. Defaults to 14.
+     */
+    @JsonProperty("hllPrecision")
+    public int getHllPrecision() {
+        return hllPrecision != null ? hllPrecision : 14;
+    }
+    
+    public void setHllPrecision(Integer hllPrecision) {
+        this.hllPrecision = hllPrecision;
+    }
+    
+    /**
+     * Whether to resume from the aggregate checkpoint of an earlier job and only read newer events.
+     */
+    @JsonProperty("incremental")
+    public boolean isIncremental() {
+        return incremental;
+    }
+    
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+    
+    /**
+     * How long after its timestamp an event may still be written. An incremental job reads and checkpoints events
+     * up to the end of the time range, but no later than this long before the job started. Defaults to 300.
+     */
+    @JsonProperty("ingestionLagSeconds")
+    public int getIngestionLagSeconds() {
+        return ingestionLagSeconds != null ? ingestionLagSeconds : 300;
+    }
+    
+    public void setIngestionLagSeconds(Integer ingestionLagSeconds) {
+        this.ingestionLagSeconds = ingestionLagSeconds;
+    }
+    
+    /**
+     * S3 bucket for aggregate checkpoints. Defaults to the output bucket.
+     */
+    @JsonProperty("checkpointBucket")
+    public String getCheckpointBucket() {
+        return checkpointBucket != null ? checkpointBucket : outputBucket;
+    }
+    
+    public void setCheckpointBucket(String checkpointBucket) {
+        this.checkpointBucket = checkpointBucket;
+    }
+    
+    /**
+     * S3 key for the aggregate checkpoint. Defaults to a key derived from the experiment ID.
+     */
+    @JsonProperty("checkpointKey")
+    public String getCheckpointKey() {
+        return checkpointKey != null ? checkpointKey : "checkpoints/" + experimentId + "/aggregate.bin";
+    }
+    
+    public void setCheckpointKey(String checkpointKey) {
+        this.checkpointKey = checkpointKey;
+    }
+    
+    /**
+     * Minimum seconds between progress writes while the report is processing; 0 disables them. Defaults to 5.
+     */
+    @JsonProperty("progressIntervalSeconds")
+    public int getProgressIntervalSeconds() {
+        return progressIntervalSeconds != null ? progressIntervalSeconds : 5;
+    }
+    
+    public void setProgressIntervalSeconds(Integer progressIntervalSeconds) {
+        this.progressIntervalSeconds = progressIntervalSeconds;
+    }
+    
+    /**
+     * Encoding of the report document. Defaults to JSON.
+     */
+    @JsonProperty("outputFormat")
+    public ReportFormat getOutputFormat() {
+        return outputFormat != null ? outputFormat : ReportFormat.JSON;
+    }
+    
+    public void setOutputFormat(ReportFormat outputFormat) {
+        this.outputFormat = outputFormat;
+    }
+    
+    /**
+     * Compression of the report document. Defaults to none.
+     */
+    @JsonProperty("outputCompression")
+    public ReportCompression getOutputCompression() {
+        return outputCompression != null ? outputCompression : ReportCompression.NONE;
+    }
+    
+    public void setOutputCompression(ReportCompression outputCompression) {
+        this.outputCompression = outputCompression;
+    }
+    
+    /**
+     * Kind of report, which decides the event attributes read from DynamoDB. Defaults to a conversion report.
+     */
+    @JsonProperty("reportType")
+    public ReportType getReportType() {
+        return reportType != null ? reportType : ReportType.CONVERSION;
+    }
+    
+    public void setReportType(ReportType reportType) {
+        this.reportType = reportType;
+    }
+    
+    /**
+     * Zone ID whose calendar dates the report's time series is bucketed by. Defaults to UTC.
+     */
+    @JsonProperty("timeZone")
+    public String getTimeZone() {
+        return timeZone != null ? timeZone : "UTC";
+    }
+    
+    public void setTimeZone(String timeZone) {
+        this.timeZone = timeZone;
+    }
+    
+    /**
+     * Width of the time series buckets. Defaults to daily.
+     */
+    @JsonProperty("timeSeriesGranularity")
+    public TimeGranularity getTimeSeriesGranularity() {
+        return timeSeriesGranularity != null ? timeSeriesGranularity : TimeGranularity.DAILY;
+    }
+    
+    public void setTimeSeriesGranularity(TimeGranularity timeSeriesGranularity) {
+        this.timeSeriesGranularity = timeSeriesGranularity;
+    }
+    
+    /**
+     * Metrics reported for each variant, replacing those of the experiment. Null to use the experiment's.
+     */
+    @JsonProperty("metrics")
+    public List<MetricDefinition> getMetrics() {
+        return metrics;
+    }
+    
+    public void setMetrics(List<MetricDefinition> metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Number of bootstrap resamples for the confidence interval of each variant's improvement.
+     * Defaults to 0, which leaves the interval out.
+     */
+    @JsonProperty("bootstrapResamples")
+    public int getBootstrapResamples() {
+        return bootstrapResamples != null ? bootstrapResamples : 0;
+    }
+    
+    public void setBootstrapResamples(Integer bootstrapResamples) {
+        this.bootstrapResamples = bootstrapResamples;
+    }
+    
+    /**
+     * Seed of the bootstrap's random streams; the same seed gives the same intervals. Defaults to 0.
+     */
+    @JsonProperty("bootstrapSeed")
+    public long getBootstrapSeed() {
+        return bootstrapSeed != null ? bootstrapSeed : 0;
+    }
+    
+    public void setBootstrapSeed(Long bootstrapSeed) {
+        this.bootstrapSeed = bootstrapSeed;
+    }
+    
+    /**
+     * Standard deviation of the effects, in absolute conversion rate, that the sequential test mixes over.
+     * Defaults to 0.01; it must be chosen before the experiment starts for the p-values to stay valid.
+     */
+    @JsonProperty("sequentialMixingSd")
+    public double getSequentialMixingSd() {
+        return sequentialMixingSd != null ? sequentialMixingSd : 0.01;
+    }
+    
+    public void setSequentialMixingSd(Double sequentialMixingSd) {
+        this.sequentialMixingSd = sequentialMixingSd;
+    }
+    
+    /**
+     * Quantiles, such as 0.5 and 0.99, of the values of sum and mean metrics to report per variant and per time
+     * bucket. Defaults to none, in which case no quantile sketches are kept.
+     */
+    @JsonProperty("quantiles")
+    public List<Double> getQuantiles() {
+        return quantiles != null ? quantiles : List.of();
+    }
+    
+    public void setQuantiles(List<Double> quantiles) {
+        this.quantiles = quantiles;
+    }
+    
+    /**
+     * Accuracy parameter k of the quantile sketches, which caps each sketch at about 3k values.
+     * Defaults to 200, about half a percent of rank error.
+     */
+    @JsonProperty("quantileSketchK")
+    public int getQuantileSketchK() {
+        return quantileSketchK != null ? quantileSketchK : 200;
+    }
+    
+    public void setQuantileSketchK(Integer quantileSketchK) {
+        this.quantileSketchK = quantileSketchK;
+    }
+    
+    /**
+     * The k the aggregator sketches quantiles with: {@link #getQuantileSketchK()} if quantiles are requested,
+     * otherwise 0 for no sketches.
+     */
+    @JsonIgnore
+    public int getAggregatorSketchK() {
+        return getQuantiles().isEmpty() ? 0 : getQuantileSketchK();
+    }
+    
+    /**
+     * Heap budget in MB for the per-user aggregation state of exact mode; beyond it, the events of new users
+     * spill to disk. Defaults to 0, which disables spilling. An incremental job that spills saves no checkpoint.
+     */
+    @JsonProperty("aggregationHeapBudgetMb")
+    public int getAggregationHeapBudgetMb() {
+        return aggregationHeapBudgetMb != null ? aggregationHeapBudgetMb : 0;
+    }
+    
+    public void setAggregationHeapBudgetMb(Integer aggregationHeapBudgetMb) {
+        this.aggregationHeapBudgetMb = aggregationHeapBudgetMb;
+    }
+    
+    /**
+     * Local directory spilled events are written to. Defaults to the JVM's temporary directory.
+     */
+    @JsonProperty("spillDirectory")
+    public String getSpillDirectory() {
+        return spillDirectory != null ? spillDirectory : System.getProperty("java.io.tmpdir");
+    }
+    
+    public void setSpillDirectory(String spillDirectory) {
+        this.spillDirectory = spillDirectory;
+    }
+    
     /**
      * Time range for the report.
      */
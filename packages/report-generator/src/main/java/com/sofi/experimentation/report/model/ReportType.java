@@ -0,0 +1,28 @@
+package com.sofi.experimentation.report.model;
+
+import java.util.List;
+
+/**
+ * Kind of report, which determines the event attributes the job reads.
+ */
+public enum ReportType {
+    /** Conversion report: counts and conversion rates per variant over time. */
+    CONVERSION(List.of("variantId", "userId", "action", "timestamp")),
+    /** Every stored attribute, including metadata. */
+    FULL(null);
+    
+    private final List<String> eventAttributes;
+    
+    ReportType(List<String> eventAttributes) {
+        this.eventAttributes = eventAttributes;
+    }
+    
+    /**
+     * Get the event attributes this report needs, which are the only ones fetched from DynamoDB.
+     *
+     * @return The attribute names, or null for all attributes
+     */
+    public List<String> getEventAttributes() {
+        return eventAttributes;
+    }
+}
@@ -0,0 +1,59 @@
+package com.sofi.experimentation.report.model;
+
+import com.sofi.experimentation.report.util.DateUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+
+/**
+ * Width of the buckets of a report's time series.
+ * Buckets are numbered consecutively, so a range of buckets maps directly onto array indexes.
+ */
+public enum TimeGranularity {
+    /** One bucket per wall-clock hour, labelled YYYY-MM-DDTHH:00. */
+    HOURLY,
+    /** One bucket per calendar date, labelled YYYY-MM-DD. */
+    DAILY,
+    /** One bucket per ISO week, labelled with the date of its Monday. */
+    WEEKLY;
+    
+    // 1970-01-01 was a Thursday, so the first Monday is epoch day 4
+    private static final int FIRST_MONDAY = 4;
+    
+    /**
+     * Get the bucket an instant falls in.
+     *
+     * @param epochMillis The instant in epoch milliseconds
+     * @param zoneRules The rules of the report's zone
+     * @return The bucket number
+     */
+    public long bucketOf(long epochMillis, ZoneRules zoneRules) {
+        switch (this) {
+            case HOURLY:
+                return DateUtils.toEpochHour(epochMillis, zoneRules);
+            case WEEKLY:
+                return Math.floorDiv(DateUtils.toEpochDay(epochMillis, zoneRules) - FIRST_MONDAY, 7);
+            default:
+                return DateUtils.toEpochDay(epochMillis, zoneRules);
+        }
+    }
+    
+    /**
+     * Get the label of a bucket as it appears in the report.
+     *
+     * @param bucket The bucket number
+     * @return The label
+     */
+    public String label(long bucket) {
+        switch (this) {
+            case HOURLY:
+                return LocalDateTime.ofEpochSecond(bucket * 3600, 0, ZoneOffset.UTC).toString();
+            case WEEKLY:
+                return LocalDate.ofEpochDay(bucket * 7 + FIRST_MONDAY).toString();
+            default:
+                return LocalDate.ofEpochDay(bucket).toString();
+        }
+    }
+}
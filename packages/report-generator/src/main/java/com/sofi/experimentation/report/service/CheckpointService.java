@@ -0,0 +1,175 @@
+package com.sofi.experimentation.report.service;
+
+import com.sofi.experimentation.report.aggregation.EventAggregator;
+import com.sofi.experimentation.report.aggregation.MetricSet;
+import com.sofi.experimentation.report.model.DistinctCountMode;
+import com.sofi.experimentation.report.model.MetricDefinition;
+import com.sofi.experimentation.report.model.ReportJobParameters;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Service for persisting aggregate state between report jobs.
+ * A checkpoint holds the complete {@link EventAggregator} state for an experiment from the start of the
+ * report time range up to a high-watermark timestamp, so a later job only has to read newer events.
+ */
+public class CheckpointService {
+    private static final Logger logger = LogManager.getLogger(CheckpointService.class);
+    
+    private static final int FORMAT_VERSION = 7;
+    
+    private final S3Service s3Service;
+    
+    @Inject
+    public CheckpointService(S3Service s3Service) {
+        this.s3Service = s3Service;
+    }
+    
+    /**
+     * Aggregate state restored from a checkpoint.
+     */
+    public static class Checkpoint {
+        private final EventAggregator aggregator;
+        private final String watermark;
+        
+        public Checkpoint(EventAggregator aggregator, String watermark) {
+            this.aggregator = aggregator;
+            this.watermark = watermark;
+        }
+        
+        public EventAggregator getAggregator() {
+            return aggregator;
+        }
+        
+        /**
+         * Get the timestamp up to which (inclusive) events are already aggregated.
+         *
+         * @return The watermark (ISO format)
+         */
+        public String getWatermark() {
+            return watermark;
+        }
+    }
+    
+    /**
+     * Load the checkpoint for a job if one exists and is compatible with the job's parameters.
+     * A checkpoint is only reused for the same experiment, time range start, counting settings, metric
+     * definitions and quantile sketch k, and only if its watermark does not lie beyond the end of the requested
+     * range.
+     *
+     * @param jobParameters The job parameters
+     * @param metrics The metric definitions of the job, or null for the default conversion metric only
+     * @return The checkpoint, or null if the job has to start from scratch
+     */
+    public Checkpoint load(ReportJobParameters jobParameters, List<MetricDefinition> metrics) {
+        String bucket = jobParameters.getCheckpointBucket();
+        String key = jobParameters.getCheckpointKey();
+        
+        byte[] content;
+        try {
+            content = s3Service.downloadBytes(bucket, key);
+        } catch (Exception e) {
+            logger.warn("Could not read checkpoint s3://{}/{}, starting from scratch: {}", bucket, key, e.getMessage());
+            return null;
+        }
+        if (content == null) {
+            return null;
+        }
+        
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(content)))) {
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                logger.info("Ignoring checkpoint with format version {}", version);
+                return null;
+            }
+            String experimentId = in.readUTF();
+            String start = in.readUTF();
+            String zone = in.readUTF();
+            String watermark = in.readUTF();
+            
+            if (!experimentId.equals(jobParameters.getExperimentId())
+                    || !start.equals(jobParameters.getTimeRange().getStart())
+                    || !zone.equals(jobParameters.getTimeZone())) {
+                logger.info("Ignoring checkpoint for experiment {} from {} in zone {}: it does not match the job",
+                        experimentId, start, zone);
+                return null;
+            }
+            if (watermark.compareTo(jobParameters.getTimeRange().getEnd()) > 0) {
+                logger.info("Ignoring checkpoint with watermark {} after the end of the time range", watermark);
+                return null;
+            }
+            
+            EventAggregator aggregator = EventAggregator.readFrom(in, ZoneId.of(zone));
+            if (aggregator.getDistinctCountMode() != jobParameters.getDistinctCountMode()
+                    || (aggregator.getDistinctCountMode() == DistinctCountMode.APPROXIMATE
+                        && aggregator.getHllPrecision() != jobParameters.getHllPrecision())) {
+                logger.info("Ignoring checkpoint with distinct count mode {}: it does not match the job",
+                        aggregator.getDistinctCountMode());
+                return null;
+            }
+            if (aggregator.getGranularity() != jobParameters.getTimeSeriesGranularity()) {
+                logger.info("Ignoring checkpoint with {} time series: it does not match the job",
+                        aggregator.getGranularity());
+                return null;
+            }
+            if (aggregator.getQuantileSketchK() != jobParameters.getAggregatorSketchK()) {
+                logger.info("Ignoring checkpoint with quantile sketch k {}: it does not match the job",
+                        aggregator.getQuantileSketchK());
+                return null;
+            }
+            if (!aggregator.getMetrics().getDefinitions().equals(MetricSet.resolve(metrics))) {
+                logger.info("Ignoring checkpoint with metrics {}: they do not match the job",
+                        aggregator.getMetrics().getDefinitions());
+                return null;
+            }
+            
+            logger.info("Loaded checkpoint with {} events up to {}", aggregator.getTotalEvents(), watermark);
+            return new Checkpoint(aggregator, watermark);
+        } catch (Exception e) {
+            logger.warn("Could not decode checkpoint s3://{}/{}, starting from scratch: {}", bucket, key, e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Save the aggregate state of a job as the checkpoint for later jobs.
+     *
+     * @param jobParameters The job parameters
+     * @param aggregator The aggregator holding every event from the range start up to the watermark
+     * @param watermark The timestamp up to which (inclusive) events are aggregated
+     */
+    public void save(ReportJobParameters jobParameters, EventAggregator aggregator, String watermark) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(jobParameters.getExperimentId());
+                out.writeUTF(jobParameters.getTimeRange().getStart());
+                out.writeUTF(aggregator.getZone().getId());
+                out.writeUTF(watermark);
+                aggregator.writeTo(out);
+            }
+            
+            s3Service.uploadBytes(
+                    jobParameters.getCheckpointBucket(),
+                    jobParameters.getCheckpointKey(),
+                    bytes.toByteArray(),
+                    "application/octet-stream"
+            );
+            logger.info("Saved checkpoint with {} events up to {}", aggregator.getTotalEvents(), watermark);
+        } catch (Exception e) {
+            // The report itself is complete; a missing checkpoint only makes the next job slower
+            logger.warn("Could not save checkpoint for experiment {}: {}", jobParameters.getExperimentId(), e.getMessage());
+        }
+    }
+}
@@ -2,24 +2,37 @@ package com.sofi.experimentation.report.service;
 
 import com.sofi.experimentation.report.model.Experiment;
 import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.model.ExperimentEventTableSchema;
+import com.sofi.experimentation.report.model.ExperimentTableSchema;
+import com.sofi.experimentation.report.util.DateUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
 import software.amazon.awssdk.enhanced.dynamodb.model.GetItemEnhancedRequest;
-import software.amazon.awssdk.enhanced.dynamodb.Expression;
-import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
-import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
-import software.amazon.awssdk.enhanced.dynamodb.model.UpdateItemEnhancedRequest;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnConsumedCapacity;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 
 import javax.inject.Inject;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * Service for interacting with DynamoDB.
@@ -27,34 +40,61 @@ import java.util.Map;
 public class DynamoDBService {
     private static final Logger logger = LogManager.getLogger(DynamoDBService.class);
     
-    private final DynamoDbEnhancedClient enhancedClient;
+    private final DynamoDbClient dynamoDbClient;
+    private final DynamoDbAsyncClient dynamoDbAsyncClient;
     
-    // Table names from environment variables or defaults
     private final String experimentsTable;
     private final String eventsTable;
     private final String reportsTable;
     
+    // Built once from the generated static schema and shared by every job
+    private final DynamoDbTable<Experiment> experimentTable;
+    
     // Default CDK-generated table names
     private static final String DEFAULT_EXPERIMENTS_TABLE = "ExperimentationStack-ExperimentsTable057193CB-RCDCC0YDBUCN";
     private static final String DEFAULT_EVENTS_TABLE = "ExperimentationStack-EventsTableD24865E5-3EKSMOXROFWR";
     private static final String DEFAULT_REPORTS_TABLE = "ExperimentationStack-ReportsTable282F2283-O23SUIGLRDES";
     
     @Inject
-    public DynamoDBService(DynamoDbEnhancedClient enhancedClient) {
-        this.enhancedClient = enhancedClient;
-        
+    public DynamoDBService(DynamoDbClient dynamoDbClient,
+                           DynamoDbAsyncClient dynamoDbAsyncClient,
+                           DynamoDbEnhancedClient enhancedClient) {
         // Get table names from environment variables or use defaults
-        this.experimentsTable = System.getenv("DYNAMODB_EXPERIMENTS_TABLE") != null ?
-                System.getenv("DYNAMODB_EXPERIMENTS_TABLE") : DEFAULT_EXPERIMENTS_TABLE;
-        
-        this.eventsTable = System.getenv("DYNAMODB_EVENTS_TABLE") != null ?
-                System.getenv("DYNAMODB_EVENTS_TABLE") : DEFAULT_EVENTS_TABLE;
-        
-        this.reportsTable = System.getenv("DYNAMODB_REPORTS_TABLE") != null ?
-                System.getenv("DYNAMODB_REPORTS_TABLE") : DEFAULT_REPORTS_TABLE;
+        this(dynamoDbClient, dynamoDbAsyncClient, enhancedClient,
+                System.getenv("DYNAMODB_EXPERIMENTS_TABLE") != null ?
+                        System.getenv("DYNAMODB_EXPERIMENTS_TABLE") : DEFAULT_EXPERIMENTS_TABLE,
+                System.getenv("DYNAMODB_EVENTS_TABLE") != null ?
+                        System.getenv("DYNAMODB_EVENTS_TABLE") : DEFAULT_EVENTS_TABLE,
+                System.getenv("DYNAMODB_REPORTS_TABLE") != null ?
+                        System.getenv("DYNAMODB_REPORTS_TABLE") : DEFAULT_REPORTS_TABLE);
+    }
+    
+    /**
+     * Create a service for explicitly named tables, for example in a local DynamoDB.
+     *
+     * @param dynamoDbClient The DynamoDB client
+     * @param dynamoDbAsyncClient The async DynamoDB client, used for parallel event queries
+     * @param enhancedClient The enhanced DynamoDB client, used to build the experiments table
+     * @param experimentsTable The experiments table name
+     * @param eventsTable The events table name
+     * @param reportsTable The reports table name
+     */
+    public DynamoDBService(DynamoDbClient dynamoDbClient,
+                           DynamoDbAsyncClient dynamoDbAsyncClient,
+                           DynamoDbEnhancedClient enhancedClient,
+                           String experimentsTable,
+                           String eventsTable,
+                           String reportsTable) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.dynamoDbAsyncClient = dynamoDbAsyncClient;
+        this.experimentsTable = experimentsTable;
+        this.eventsTable = eventsTable;
+        this.reportsTable = reportsTable;
         
         logger.info("Using DynamoDB tables: experiments={}, events={}, reports={}",
                 experimentsTable, eventsTable, reportsTable);
+        
+        this.experimentTable = enhancedClient.table(experimentsTable, ExperimentTableSchema.INSTANCE);
     }
     
     /**
@@ -67,18 +107,6 @@ public class DynamoDBService {
         logger.info("Getting experiment with ID: {}", experimentId);
         
         try {
-            // Create a table schema with error handling
-            TableSchema<Experiment> tableSchema;
-            try {
-                tableSchema = TableSchema.fromBean(Experiment.class);
-            } catch (Exception e) {
-                logger.error("Error creating table schema for Experiment class", e);
-                throw new RuntimeException("Error creating table schema for Experiment class", e);
-            }
-            
-            // Get the table with the schema
-            DynamoDbTable<Experiment> table = enhancedClient.table(experimentsTable, tableSchema);
-            
             Key key = Key.builder()
                     .partitionValue(experimentId)
                     .build();
@@ -90,7 +118,7 @@ public class DynamoDBService {
             // Get the item with additional error handling
             Experiment experiment;
             try {
-                experiment = table.getItem(request);
+                experiment = experimentTable.getItem(request);
             } catch (Exception e) {
                 logger.error("Error retrieving experiment from DynamoDB: {}", e.getMessage(), e);
                 throw new RuntimeException("Error retrieving experiment from DynamoDB", e);
@@ -109,51 +137,175 @@ public class DynamoDBService {
     }
     
     /**
-     * Get experiment events for an experiment within a time range.
+     * Stream experiment events for an experiment within a time range.
+     * Pages are fetched lazily while the result is iterated, so callers can aggregate
+     * the events without holding the whole result set in memory. Each iteration runs
+     * the query again.
      *
      * @param experimentId The experiment ID
      * @param startTime The start time (ISO format)
      * @param endTime The end time (ISO format)
-     * @return The list of experiment events
+     * @param attributes The event attributes to fetch, or null for all attributes
+     * @param stats The counters receiving each page's item count and consumed capacity
+     * @return The experiment events, fetched page by page
      */
-    public List<ExperimentEvent> getExperimentEvents(String experimentId, String startTime, String endTime) {
-        logger.info("Getting experiment events for experiment ID: {} between {} and {}",
-                experimentId, startTime, endTime);
+    public Iterable<ExperimentEvent> streamExperimentEvents(String experimentId, String startTime, String endTime,
+                                                            List<String> attributes, EventReadStats stats) {
+        logger.info("Streaming experiment events for experiment ID: {} between {} and {} (attributes: {})",
+                experimentId, startTime, endTime, attributes != null ? attributes : "all");
         
         try {
-            DynamoDbTable<ExperimentEvent> table = enhancedClient.table(
-                    eventsTable,
-                    TableSchema.fromBean(ExperimentEvent.class));
-            
-            // Query by experimentId (partition key) and timestamp range (sort key)
-            // For sort key, we use a key condition expression with BETWEEN
-            QueryEnhancedRequest request = QueryEnhancedRequest.builder()
-                    .queryConditional(
-                        QueryConditional.sortBetween(
-                            Key.builder()
-                                .partitionValue(experimentId)
-                                .sortValue(startTime)
-                                .build(),
-                            Key.builder()
-                                .partitionValue(experimentId)
-                                .sortValue(endTime)
-                                .build()
-                        )
-                    )
-                    .build();
-            
-            List<ExperimentEvent> events = new ArrayList<>();
-            table.query(request).items().forEach(events::add);
+            QueryRequest request = buildEventsQuery(experimentId, startTime, endTime, attributes);
+            return () -> dynamoDbClient.queryPaginator(request).stream()
+                    .flatMap(page -> {
+                        stats.addPage(page.count(), consumedCapacityUnits(page));
+                        return page.items().stream().map(ExperimentEventTableSchema.INSTANCE::mapToItem);
+                    })
+                    .iterator();
+        } catch (Exception e) {
+            logger.error("Error getting experiment events for experiment ID: {}", experimentId, e);
+            throw new RuntimeException("Error getting experiment events for experiment ID: " + experimentId, e);
+        }
+    }
+    
+    /**
+     * Fetch experiment events for an experiment within a time range by querying time slices concurrently.
+     * The range is split into sub-ranges of the timestamp sort key, which are queried through the async
+     * client with at most {@code parallelism} queries in flight. Each page of events is handed to the
+     * consumer as it arrives; the consumer is never invoked by more than one thread at a time, so it does
+     * not need to be thread-safe.
+     *
+     * @param experimentId The experiment ID
+     * @param startTime The start time (ISO format)
+     * @param endTime The end time (ISO format)
+     * @param slices The number of sub-ranges to split the time range into
+     * @param parallelism The maximum number of sub-ranges queried at once
+     * @param attributes The event attributes to fetch, or null for all attributes
+     * @param stats The counters receiving each page's item count and consumed capacity
+     * @param pageConsumer The consumer receiving each page of events
+     * @return The total number of events fetched
+     */
+    public long fetchExperimentEventsParallel(String experimentId, String startTime, String endTime,
+                                              int slices, int parallelism,
+                                              List<String> attributes, EventReadStats stats,
+                                              Consumer<List<ExperimentEvent>> pageConsumer) {
+        List<String[]> ranges = DateUtils.splitTimeRange(startTime, endTime, Math.max(1, slices));
+        logger.info("Fetching experiment events for experiment ID: {} between {} and {} in {} slices with parallelism {} (attributes: {})",
+                experimentId, startTime, endTime, ranges.size(), parallelism, attributes != null ? attributes : "all");
+        
+        try {
+            Queue<Integer> pending = new ConcurrentLinkedQueue<>();
+            for (int i = 0; i < ranges.size(); i++) {
+                pending.add(i);
+            }
             
-            logger.info("Found {} events for experiment ID: {}", events.size(), experimentId);
+            // Each lane queries one slice at a time and picks up the next pending slice when it finishes
+            Object consumerLock = new Object();
+            AtomicLong totalEvents = new AtomicLong();
+            List<CompletableFuture<Void>> lanes = new ArrayList<>();
+            for (int i = 0; i < Math.min(Math.max(1, parallelism), ranges.size()); i++) {
+                lanes.add(fetchNextSlice(experimentId, ranges, pending, attributes, stats,
+                        consumerLock, pageConsumer, totalEvents));
+            }
+            CompletableFuture.allOf(lanes.toArray(CompletableFuture<?>[]::new)).join();
             
-            return events;
+            logger.info("Fetched {} events for experiment ID: {}", totalEvents.get(), experimentId);
+            return totalEvents.get();
         } catch (Exception e) {
             logger.error("Error getting experiment events for experiment ID: {}", experimentId, e);
             throw new RuntimeException("Error getting experiment events for experiment ID: " + experimentId, e);
         }
     }
     
+    private CompletableFuture<Void> fetchNextSlice(String experimentId,
+                                                   List<String[]> ranges,
+                                                   Queue<Integer> pending,
+                                                   List<String> attributes,
+                                                   EventReadStats stats,
+                                                   Object consumerLock,
+                                                   Consumer<List<ExperimentEvent>> pageConsumer,
+                                                   AtomicLong totalEvents) {
+        Integer index = pending.poll();
+        if (index == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        
+        String sliceStart = ranges.get(index)[0];
+        String sliceEnd = ranges.get(index)[1];
+        // Slices share their boundaries; BETWEEN is inclusive, so every slice but the last drops its end value
+        boolean lastSlice = index == ranges.size() - 1;
+        long startNanos = System.nanoTime();
+        AtomicLong sliceEvents = new AtomicLong();
+        AtomicLong slicePages = new AtomicLong();
+        
+        return dynamoDbAsyncClient.queryPaginator(buildEventsQuery(experimentId, sliceStart, sliceEnd, attributes))
+                .subscribe(page -> {
+                    stats.addPage(page.count(), consumedCapacityUnits(page));
+                    List<ExperimentEvent> items = new ArrayList<>(page.items().size());
+                    for (Map<String, AttributeValue> item : page.items()) {
+                        items.add(ExperimentEventTableSchema.INSTANCE.mapToItem(item));
+                    }
+                    if (!lastSlice && !items.isEmpty()
+                            && sliceEnd.equals(items.get(items.size() - 1).getTimestamp())) {
+                        items = items.subList(0, items.size() - 1);
+                    }
+                    synchronized (consumerLock) {
+                        pageConsumer.accept(items);
+                    }
+                    slicePages.incrementAndGet();
+                    sliceEvents.addAndGet(items.size());
+                    totalEvents.addAndGet(items.size());
+                })
+                .thenRun(() -> logger.info("Fetched slice {}/{} [{}, {}]: {} events in {} pages in {} ms",
+                        index + 1, ranges.size(), sliceStart, sliceEnd, sliceEvents.get(), slicePages.get(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)))
+                .thenCompose(ignored -> fetchNextSlice(
+                        experimentId, ranges, pending, attributes, stats, consumerLock, pageConsumer, totalEvents));
+    }
+    
+    /**
+     * Build the events query for an experiment and an inclusive timestamp range.
+     * Only the requested attributes are returned, and DynamoDB reports the read capacity each page consumes.
+     */
+    private QueryRequest buildEventsQuery(String experimentId, String startTime, String endTime,
+                                          List<String> attributes) {
+        // Query by experimentId (partition key) and timestamp range (sort key)
+        // For sort key, we use a key condition expression with BETWEEN
+        TableMetadata metadata = ExperimentEventTableSchema.INSTANCE.tableMetadata();
+        Map<String, String> names = new HashMap<>();
+        names.put("#pk", metadata.primaryPartitionKey());
+        names.put("#sk", metadata.primarySortKey().orElseThrow());
+        
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":pk", AttributeValue.builder().s(experimentId).build());
+        values.put(":start", AttributeValue.builder().s(startTime).build());
+        values.put(":end", AttributeValue.builder().s(endTime).build());
+        
+        QueryRequest.Builder request = QueryRequest.builder()
+                .tableName(eventsTable)
+                .keyConditionExpression("#pk = :pk AND #sk BETWEEN :start AND :end")
+                .returnConsumedCapacity(ReturnConsumedCapacity.TOTAL);
+        
+        if (attributes != null) {
+            // Attribute names such as "timestamp" and "action" are reserved words, so every one gets a placeholder
+            List<String> projection = new ArrayList<>();
+            for (int i = 0; i < attributes.size(); i++) {
+                names.put("#a" + i, attributes.get(i));
+                projection.add("#a" + i);
+            }
+            request.projectionExpression(String.join(", ", projection));
+        }
+        
+        return request
+                .expressionAttributeNames(names)
+                .expressionAttributeValues(values)
+                .build();
+    }
+    
+    private static Double consumedCapacityUnits(QueryResponse page) {
+        return page.consumedCapacity() != null ? page.consumedCapacity().capacityUnits() : null;
+    }
+    
     /**
      * Update the status of a report.
      *
@@ -162,13 +314,23 @@ public class DynamoDBService {
      * @param metrics The metrics to update (optional)
      */
     public void updateReportStatus(String reportId, String status, Map<String, Object> metrics) {
+        updateReportStatus(reportId, status, metrics, null);
+    }
+    
+    /**
+     * Update the status of a report, along with the job's instrumentation.
+     *
+     * @param reportId The report ID
+     * @param status The new status
+     * @param metrics The metrics to update (optional)
+     * @param instrumentation The phase timings and counters of the job, stored as the report's
+     *                        {@code instrumentation} map (optional)
+     */
+    public void updateReportStatus(String reportId, String status, Map<String, Object> metrics,
+                                   Map<String, Object> instrumentation) {
         logger.info("Updating report status for report ID: {} to {}", reportId, status);
         
         try {
-            // Create a new DynamoDB client
-            software.amazon.awssdk.services.dynamodb.DynamoDbClient dynamoDbClient =
-                software.amazon.awssdk.services.dynamodb.DynamoDbClient.create();
-            
             // Create the update expression
             StringBuilder updateExpression = new StringBuilder("SET #status = :status, updatedAt = :updatedAt");
             
@@ -186,45 +348,18 @@ public class DynamoDBService {
                 // Use expression attribute name for "metrics" since it's a reserved keyword
                 updateExpression.append(", #metricsAttr = :metrics");
                 expressionAttributeNames.put("#metricsAttr", "metrics");
-                
-                // Convert metrics map to AttributeValue
-                Map<String, AttributeValue> metricsMap = new HashMap<>();
-                for (Map.Entry<String, Object> entry : metrics.entrySet()) {
-                    if (entry.getValue() instanceof Number) {
-                        metricsMap.put(entry.getKey(), AttributeValue.builder().n(entry.getValue().toString()).build());
-                    } else if (entry.getValue() instanceof String) {
-                        metricsMap.put(entry.getKey(), AttributeValue.builder().s((String) entry.getValue()).build());
-                    } else if (entry.getValue() instanceof Boolean) {
-                        metricsMap.put(entry.getKey(), AttributeValue.builder().bool((Boolean) entry.getValue()).build());
-                    } else if (entry.getValue() instanceof Map) {
-                        // Handle nested map (for variantCounts)
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> nestedMap = (Map<String, Object>) entry.getValue();
-                        Map<String, AttributeValue> nestedAttributeMap = new HashMap<>();
-                        
-                        for (Map.Entry<String, Object> nestedEntry : nestedMap.entrySet()) {
-                            if (nestedEntry.getValue() instanceof Number) {
-                                nestedAttributeMap.put(nestedEntry.getKey(),
-                                    AttributeValue.builder().n(nestedEntry.getValue().toString()).build());
-                            } else {
-                                nestedAttributeMap.put(nestedEntry.getKey(),
-                                    AttributeValue.builder().s(nestedEntry.getValue().toString()).build());
-                            }
-                        }
-                        
-                        metricsMap.put(entry.getKey(), AttributeValue.builder().m(nestedAttributeMap).build());
-                    } else {
-                        // Default to string for other types
-                        metricsMap.put(entry.getKey(), AttributeValue.builder().s(entry.getValue().toString()).build());
-                    }
-                }
-                
-                expressionAttributeValues.put(":metrics", AttributeValue.builder().m(metricsMap).build());
+                expressionAttributeValues.put(":metrics", toAttributeValue(metrics));
+            }
+            
+            if (instrumentation != null) {
+                updateExpression.append(", #instrumentation = :instrumentation");
+                expressionAttributeNames.put("#instrumentation", "instrumentation");
+                expressionAttributeValues.put(":instrumentation", toAttributeValue(instrumentation));
             }
             
             // Create the update item request
-            software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest updateItemRequest =
-                software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest.builder()
+            UpdateItemRequest updateItemRequest =
+                UpdateItemRequest.builder()
                     .tableName(reportsTable)
                     .key(Map.of("id", AttributeValue.builder().s(reportId).build()))
                     .updateExpression(updateExpression.toString())
@@ -244,4 +379,76 @@ public class DynamoDBService {
             throw new RuntimeException("Error updating report status for report ID: " + reportId, e);
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Convert a metrics value to an AttributeValue. Maps are converted entry by entry, at any depth.
+     *
+     * @param value The value
+     * @return The attribute value
+     */
+    private static AttributeValue toAttributeValue(Object value) {
+        if (value == null) {
+            return AttributeValue.builder().nul(true).build();
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (!Double.isFinite(number)) {
+                return AttributeValue.builder().nul(true).build();
+            }
+            // Plain decimal notation rather than the exponent form Double.toString uses for values such as 1.0E-4
+            return AttributeValue.builder().n(BigDecimal.valueOf(number).toPlainString()).build();
+        } else if (value instanceof Number) {
+            return AttributeValue.builder().n(value.toString()).build();
+        } else if (value instanceof Boolean) {
+            return AttributeValue.builder().bool((Boolean) value).build();
+        } else if (value instanceof Map) {
+            Map<String, AttributeValue> attributes = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                attributes.put(entry.getKey().toString(), toAttributeValue(entry.getValue()));
+            }
+            return AttributeValue.builder().m(attributes).build();
+        } else {
+            // Default to string for other types
+            return AttributeValue.builder().s(value.toString()).build();
+        }
+    }
+    
+    /**
+     * Record the progress of a report that is being processed.
+     * The write only applies while the report is still PROCESSING, so a late progress update
+     * can never land on a report that has already completed or failed.
+     *
+     * @param reportId The report ID
+     * @param eventsScanned The number of events read so far
+     * @param percentCovered The percentage of the time range read so far
+     * @return True if the progress was written, false if the report is no longer processing
+     */
+    public boolean updateReportProgress(String reportId, long eventsScanned, double percentCovered) {
+        try {
+            Map<String, AttributeValue> progress = new HashMap<>();
+            progress.put("eventsScanned", AttributeValue.builder().n(Long.toString(eventsScanned)).build());
+            progress.put("percentCovered", AttributeValue.builder().n(Double.toString(percentCovered)).build());
+            
+            Map<String, AttributeValue> expressionAttributeValues = new HashMap<>();
+            expressionAttributeValues.put(":progress", AttributeValue.builder().m(progress).build());
+            expressionAttributeValues.put(":updatedAt", AttributeValue.builder().s(java.time.Instant.now().toString()).build());
+            expressionAttributeValues.put(":processing", AttributeValue.builder().s("PROCESSING").build());
+            
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(reportsTable)
+                    .key(Map.of("id", AttributeValue.builder().s(reportId).build()))
+                    .updateExpression("SET #progress = :progress, updatedAt = :updatedAt")
+                    .conditionExpression("#status = :processing")
+                    .expressionAttributeNames(Map.of("#progress", "progress", "#status", "status"))
+                    .expressionAttributeValues(expressionAttributeValues)
+                    .build());
+            
+            logger.debug("Updated progress for report ID: {}: {} events, {}%", reportId, eventsScanned, percentCovered);
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        } catch (Exception e) {
+            logger.error("Error updating progress for report ID: {}", reportId, e);
+            throw new RuntimeException("Error updating progress for report ID: " + reportId, e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.sofi.experimentation.report.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Counters for the events read by a job: items, pages and the read capacity DynamoDB reports as consumed.
+ * Safe to update from several query threads at once.
+ */
+public class EventReadStats {
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicInteger maxPageItems = new AtomicInteger();
+    private final DoubleAdder consumedCapacityUnits = new DoubleAdder();
+    
+    /**
+     * Record a page of query results.
+     *
+     * @param items The number of items in the page
+     * @param capacityUnits The capacity units consumed by the page, or null if not reported
+     */
+    public void addPage(int items, Double capacityUnits) {
+        events.addAndGet(items);
+        pages.incrementAndGet();
+        maxPageItems.accumulateAndGet(items, Math::max);
+        if (capacityUnits != null) {
+            consumedCapacityUnits.add(capacityUnits);
+        }
+    }
+    
+    public long getEvents() {
+        return events.get();
+    }
+    
+    public long getPages() {
+        return pages.get();
+    }
+    
+    public double getConsumedCapacityUnits() {
+        return consumedCapacityUnits.sum();
+    }
+    
+    public int getMaxPageItems() {
+        return maxPageItems.get();
+    }
+    
+    public double getMeanPageItems() {
+        long pageCount = pages.get();
+        return pageCount > 0 ? (double) events.get() / pageCount : 0;
+    }
+}
@@ -0,0 +1,252 @@
+package com.sofi.experimentation.report.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Output stream that uploads its content to S3 as a multipart upload while it is being written.
+ * Content is collected into part-sized buffers taken from a fixed pool; each full buffer is uploaded as a part
+ * on the executor and returned to the pool once the part is sent. Writers block while every part is in flight,
+ * so memory stays at {@code (maxPartsInFlight + 1) * partSize} however much is written.
+ * Content that fits in a single part is sent with one PutObject instead.
+ *
+ * {@link #close()} completes the upload; {@link #abort()} discards it. Nothing is visible in S3 until
+ * the upload completes.
+ */
+public class MultipartUploadOutputStream extends OutputStream {
+    private static final Logger logger = LogManager.getLogger(MultipartUploadOutputStream.class);
+    
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final String contentType;
+    private final String contentEncoding;
+    private final int partSize;
+    private final ExecutorService executor;
+    private final BlockingQueue<byte[]> buffers;
+    private final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+    
+    private byte[] buffer;
+    private int position;
+    private String uploadId;
+    private long bytesWritten;
+    private boolean closed;
+    
+    public MultipartUploadOutputStream(S3Client s3Client, String bucket, String key,
+                                       String contentType, String contentEncoding,
+                                       int partSize, int maxPartsInFlight, ExecutorService executor) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.partSize = partSize;
+        this.executor = executor;
+        // Room for every buffer, since a part can hand its buffer back before the writer takes the next one
+        this.buffers = new ArrayBlockingQueue<>(maxPartsInFlight + 1);
+        for (int i = 0; i < maxPartsInFlight; i++) {
+            // Placeholders; part buffers are only allocated once the content outgrows the first one
+            buffers.add(new byte[0]);
+        }
+        // The first buffer grows up to the part size, so small reports never allocate a whole part
+        this.buffer = new byte[Math.min(partSize, INITIAL_BUFFER_SIZE)];
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (position == buffer.length) {
+            makeRoom();
+        }
+        buffer[position++] = (byte) b;
+        bytesWritten++;
+    }
+    
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        while (length > 0) {
+            if (position == buffer.length) {
+                makeRoom();
+            }
+            int count = Math.min(length, buffer.length - position);
+            System.arraycopy(bytes, offset, buffer, position, count);
+            position += count;
+            offset += count;
+            length -= count;
+            bytesWritten += count;
+        }
+    }
+    
+    private void makeRoom() throws IOException {
+        if (buffer.length < partSize) {
+            buffer = Arrays.copyOf(buffer, Math.min(partSize, buffer.length * 2));
+        } else {
+            uploadBuffer();
+        }
+    }
+    
+    private void uploadBuffer() throws IOException {
+        if (uploadId == null) {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentEncoding(contentEncoding)
+                    .build()).uploadId();
+            logger.info("Started multipart upload to s3://{}/{}", bucket, key);
+        }
+        
+        byte[] part = buffer;
+        int length = position;
+        int partNumber = parts.size() + 1;
+        parts.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                String eTag = s3Client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) length)
+                                .build(),
+                        RequestBody.fromInputStream(new ByteArrayInputStream(part, 0, length), length)).eTag();
+                return CompletedPart.builder().partNumber(partNumber).eTag(eTag).build();
+            } finally {
+                buffers.add(part);
+            }
+        }, executor));
+        
+        buffer = takeBuffer();
+        position = 0;
+        
+        // Fail fast instead of writing the rest of the content after a part was rejected
+        for (CompletableFuture<CompletedPart> future : parts) {
+            if (future.isCompletedExceptionally()) {
+                join(future);
+            }
+        }
+    }
+    
+    private byte[] takeBuffer() throws IOException {
+        byte[] next;
+        try {
+            next = buffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an upload buffer");
+        }
+        return next.length == partSize ? next : new byte[partSize];
+    }
+    
+    /**
+     * Upload the remaining content and complete the upload.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        
+        if (uploadId == null) {
+            // Everything fits in one part
+            s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .contentType(contentType)
+                            .contentEncoding(contentEncoding)
+                            .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, position), position));
+            logger.info("Uploaded {} bytes to s3://{}/{}", bytesWritten, bucket, key);
+            return;
+        }
+        
+        try {
+            if (position > 0) {
+                uploadBuffer();
+            }
+            List<CompletedPart> completedParts = new ArrayList<>();
+            for (CompletableFuture<CompletedPart> future : parts) {
+                completedParts.add(join(future));
+            }
+            
+            s3Client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                    .build());
+            logger.info("Uploaded {} bytes in {} parts to s3://{}/{}", bytesWritten, completedParts.size(), bucket, key);
+        } catch (IOException | RuntimeException e) {
+            abort();
+            throw e;
+        }
+    }
+    
+    /**
+     * Discard everything written so far. Parts already uploaded are deleted with the upload.
+     */
+    public void abort() {
+        closed = true;
+        if (uploadId == null) {
+            return;
+        }
+        for (CompletableFuture<CompletedPart> future : parts) {
+            // Let in-flight parts finish so the abort also releases them
+            future.exceptionally(e -> null).join();
+        }
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+            logger.info("Aborted multipart upload to s3://{}/{}", bucket, key);
+        } catch (Exception e) {
+            logger.error("Error aborting multipart upload to s3://{}/{}", bucket, key, e);
+        }
+        uploadId = null;
+    }
+    
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+    
+    private static CompletedPart join(CompletableFuture<CompletedPart> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new IOException("Error uploading part", e.getCause());
+        }
+    }
+    
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+    }
+}
@@ -1,17 +1,31 @@
 package com.sofi.experimentation.report.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofi.experimentation.report.aggregation.EventAggregator;
+import com.sofi.experimentation.report.aggregation.MetricSet;
+import com.sofi.experimentation.report.aggregation.VariantAccumulator;
+import com.sofi.experimentation.report.metrics.JobMetrics;
+import com.sofi.experimentation.report.metrics.RequestMetricsInterceptor;
 import com.sofi.experimentation.report.model.*;
+import com.sofi.experimentation.report.sketch.HyperLogLog;
+import com.sofi.experimentation.report.sketch.KllSketch;
+import com.sofi.experimentation.report.stats.BootstrapInterval;
+import com.sofi.experimentation.report.stats.MeanComparison;
+import com.sofi.experimentation.report.stats.ProportionComparison;
+import com.sofi.experimentation.report.stats.RunningMoments;
+import com.sofi.experimentation.report.stats.SignificanceMethod;
+import com.sofi.experimentation.report.util.DateUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.inject.Inject;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
 import java.time.Instant;
-import java.time.LocalDate;
 import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Service for generating experiment reports.
@@ -19,69 +33,158 @@ import java.util.stream.Collectors;
 public class ReportGenerationService {
     private static final Logger logger = LogManager.getLogger(ReportGenerationService.class);
     
+    // Events read between progress updates when a single query streams the whole range
+    private static final int PROGRESS_BATCH_SIZE = 1024;
+    
     private final DynamoDBService dynamoDBService;
     private final S3Service s3Service;
     private final StatisticalAnalysisService analysisService;
+    private final CheckpointService checkpointService;
+    private final ReportProgressService progressService;
     private final ObjectMapper objectMapper;
+    private final ReportSerializer reportSerializer;
+    private final RequestMetricsInterceptor requestMetrics;
     
-    @Inject
+    /**
+     * Create a service whose job metrics leave out AWS SDK calls, for clients without a request metrics interceptor.
+     */
     public ReportGenerationService(
             DynamoDBService dynamoDBService,
             S3Service s3Service,
             StatisticalAnalysisService analysisService,
+            CheckpointService checkpointService,
+            ReportProgressService progressService,
             ObjectMapper objectMapper) {
+        this(dynamoDBService, s3Service, analysisService, checkpointService, progressService, objectMapper,
+                new RequestMetricsInterceptor());
+    }
+    
+    @Inject
+    public ReportGenerationService(
+            DynamoDBService dynamoDBService,
+            S3Service s3Service,
+            StatisticalAnalysisService analysisService,
+            CheckpointService checkpointService,
+            ReportProgressService progressService,
+            ObjectMapper objectMapper,
+            RequestMetricsInterceptor requestMetrics) {
         this.dynamoDBService = dynamoDBService;
         this.s3Service = s3Service;
         this.analysisService = analysisService;
+        this.checkpointService = checkpointService;
+        this.progressService = progressService;
         this.objectMapper = objectMapper;
+        this.reportSerializer = new ReportSerializer(objectMapper);
+        this.requestMetrics = requestMetrics;
     }
     
     /**
      * Generate a report for an experiment.
+     * The timings, counters and SDK calls of the job are logged as JSON when it ends and stored as the
+     * {@code instrumentation} map of the report's record along with its final status.
      *
      * @param jobParameters The job parameters
      */
     public void generateReport(ReportJobParameters jobParameters) {
+        JobMetrics jobMetrics = new JobMetrics(requestMetrics);
+        long jobStartMillis = System.currentTimeMillis();
         try {
             logger.info("Generating report for experiment: {}", jobParameters.getExperimentId());
             
             // Update report status to PROCESSING
-            dynamoDBService.updateReportStatus(jobParameters.getReportId(), "PROCESSING", null);
+            jobMetrics.time("updateStatus",
+                    () -> dynamoDBService.updateReportStatus(jobParameters.getReportId(), "PROCESSING", null));
             
             // Fetch experiment data
-            Experiment experiment = dynamoDBService.getExperiment(jobParameters.getExperimentId());
+            Experiment experiment = jobMetrics.time("loadExperiment",
+                    () -> dynamoDBService.getExperiment(jobParameters.getExperimentId()));
             
-            // Fetch events for the experiment within the time range
-            List<ExperimentEvent> events = dynamoDBService.getExperimentEvents(
-                    jobParameters.getExperimentId(),
-                    jobParameters.getTimeRange().getStart(),
-                    jobParameters.getTimeRange().getEnd()
-            );
+            // Metrics defined for the job take precedence over those stored with the experiment
+            List<MetricDefinition> metricDefinitions = jobParameters.getMetrics() != null
+                    ? jobParameters.getMetrics() : experiment.getMetrics();
             
-            // Generate report data
-            ReportData reportData = generateReportData(experiment, events, jobParameters);
+            // Invalid quantiles fail the job before any event is read
+            quantileFractions(jobParameters);
             
-            // Convert to JSON
-            String reportJson = objectMapper.writeValueAsString(reportData);
-            
-            // Upload to S3
-            s3Service.uploadReport(
-                    jobParameters.getOutputBucket(),
-                    jobParameters.getOutputKey(),
-                    reportJson
-            );
+            // Resume from the aggregate checkpoint of an earlier job when running incrementally
+            CheckpointService.Checkpoint checkpoint = jobParameters.isIncremental()
+                    ? jobMetrics.time("loadCheckpoint", () -> checkpointService.load(jobParameters, metricDefinitions))
+                    : null;
+            // BETWEEN is inclusive, so read from the watermark and drop the event already counted there
+            String fetchStart = checkpoint != null ? checkpoint.getWatermark() : jobParameters.getTimeRange().getStart();
+            String excludedTimestamp = checkpoint != null ? checkpoint.getWatermark() : null;
+            // An incremental job also stops short of events that may still be written, and checkpoints there
+            String fetchEnd = jobParameters.isIncremental()
+                    ? incrementalEnd(jobParameters, fetchStart, jobStartMillis) : jobParameters.getTimeRange().getEnd();
             
-            // Calculate summary metrics
-            Map<String, Object> metrics = calculateSummaryMetrics(reportData);
-            
-            // Update report status to COMPLETED
-            dynamoDBService.updateReportStatus(
-                    jobParameters.getReportId(),
-                    "COMPLETED",
-                    metrics
-            );
+            // Closing the aggregator deletes spill files left by a failed job
+            try (EventAggregator aggregator = checkpoint != null
+                    ? checkpoint.getAggregator() : createAggregator(jobParameters, metricDefinitions)) {
+                aggregator.spillAbove((long) jobParameters.getAggregationHeapBudgetMb() << 20,
+                        Paths.get(jobParameters.getSpillDirectory()));
+                
+                // Read events for the experiment within the time range into the aggregator in a single pass,
+                // publishing progress while the report is PROCESSING
+                boolean parallel = jobParameters.getFetchParallelism() > 1;
+                try (ReportProgressService.Progress progress = progressService.start(
+                        jobParameters.getReportId(),
+                        fetchStart,
+                        fetchEnd,
+                        parallel ? jobParameters.getTimeSlices() : 1,
+                        jobParameters.getProgressIntervalSeconds() * 1000L)) {
+                    jobMetrics.time("readEvents", () -> readEvents(
+                            jobParameters, fetchStart, fetchEnd, excludedTimestamp, aggregator, progress, jobMetrics));
+                }
+                if (aggregator.hasSpilled()) {
+                    jobMetrics.time("mergeSpill", aggregator::mergeSpill);
+                    jobMetrics.record("spill.events", aggregator.getSpilledEvents());
+                    jobMetrics.record("spill.bytes", aggregator.getSpilledBytes());
+                }
+                logger.info("Aggregated {} events for experiment: {}",
+                        aggregator.getTotalEvents(), jobParameters.getExperimentId());
+                jobMetrics.record("events.aggregated", aggregator.getTotalEvents());
+                
+                // Generate report data
+                ReportData reportData = jobMetrics.time("reportData",
+                        () -> generateReportData(experiment, aggregator, jobParameters, jobMetrics));
+                
+                // Persist the aggregate state so the next job only reads events after the end of this range
+                if (jobParameters.isIncremental() && aggregator.hasSpilled()) {
+                    // The users of the spilled events are not kept, so the next job resumes from an older checkpoint
+                    logger.warn("Skipping checkpoint for experiment {}: {} events spilled above the heap budget of {} MB",
+                            jobParameters.getExperimentId(), aggregator.getSpilledEvents(),
+                            jobParameters.getAggregationHeapBudgetMb());
+                    jobMetrics.record("checkpoint.skipped", 1);
+                } else if (jobParameters.isIncremental()) {
+                    jobMetrics.time("saveCheckpoint", () -> checkpointService.save(jobParameters, aggregator, fetchEnd));
+                }
+                
+                // Serialize the report straight into the S3 upload, without holding the document in memory
+                ReportFormat format = jobParameters.getOutputFormat();
+                ReportCompression compression = jobParameters.getOutputCompression();
+                long reportBytes = jobMetrics.time("serializeAndUpload", () -> s3Service.uploadReport(
+                        jobParameters.getOutputBucket(),
+                        jobParameters.getOutputKey(),
+                        format.getContentType(),
+                        compression.getContentEncoding(),
+                        out -> reportSerializer.write(reportData, format, compression, out)
+                ));
+                jobMetrics.record("report.bytes", reportBytes);
+                
+                // Calculate summary metrics
+                Map<String, Object> metrics = calculateSummaryMetrics(reportData);
+                
+                // Update report status to COMPLETED
+                jobMetrics.time("updateStatus", () -> dynamoDBService.updateReportStatus(
+                        jobParameters.getReportId(),
+                        "COMPLETED",
+                        metrics,
+                        jobMetrics.toMap()
+                ));
+            }
             
             logger.info("Report generation completed for experiment: {}", jobParameters.getExperimentId());
+            logJobMetrics(jobParameters, "COMPLETED", jobMetrics);
         } catch (Exception e) {
             logger.error("Error generating report for experiment: {}", jobParameters.getExperimentId(), e);
             
@@ -90,25 +193,166 @@ public class ReportGenerationService {
                 dynamoDBService.updateReportStatus(
                         jobParameters.getReportId(),
                         "FAILED",
-                        null
+                        null,
+                        jobMetrics.toMap()
                 );
             } catch (Exception updateError) {
                 logger.error("Error updating report status to FAILED", updateError);
             }
+            logJobMetrics(jobParameters, "FAILED", jobMetrics);
             
             throw new RuntimeException("Failed to generate report for experiment: " + jobParameters.getExperimentId(), e);
         }
     }
     
     /**
-     * Generate report data from experiment and events.
+     * Get the end of the range an incremental job reads and checkpoints: the end of the time range, but no later
+     * than the ingestion lag before the job started. The API stamps events with their write time, so events with
+     * earlier timestamps may still arrive after the read; the next job reads them from the watermark instead of
+     * them falling behind it. The end never precedes the start of the read.
+     *
+     * @param jobParameters The job parameters
+     * @param fetchStart The start of the read, the watermark of the loaded checkpoint if any
+     * @param jobStartMillis When the job started, in epoch milliseconds
+     * @return The end of the read (ISO format)
+     */
+    private static String incrementalEnd(ReportJobParameters jobParameters, String fetchStart, long jobStartMillis) {
+        String end = jobParameters.getTimeRange().getEnd();
+        long settledMillis = jobStartMillis - jobParameters.getIngestionLagSeconds() * 1000L;
+        if (DateUtils.parseEpochMillis(end) <= settledMillis) {
+            return end;
+        }
+        if (settledMillis <= DateUtils.parseEpochMillis(fetchStart)) {
+            return fetchStart;
+        }
+        logger.info("Reading events of experiment {} up to {}, {} seconds before the job started",
+                jobParameters.getExperimentId(), DateUtils.formatEpochMillis(settledMillis),
+                jobParameters.getIngestionLagSeconds());
+        return DateUtils.formatEpochMillis(settledMillis);
+    }
+    
+    /**
+     * Create an empty aggregator for a job.
+     *
+     * @param jobParameters The job parameters
+     * @param metricDefinitions The metric definitions of the job
+     * @return The aggregator
+     */
+    private EventAggregator createAggregator(ReportJobParameters jobParameters,
+                                             List<MetricDefinition> metricDefinitions) {
+        return new EventAggregator(
+                jobParameters.getDistinctCountMode(),
+                jobParameters.getHllPrecision(),
+                ZoneId.of(jobParameters.getTimeZone()),
+                jobParameters.getTimeSeriesGranularity(),
+                metricDefinitions,
+                jobParameters.getAggregatorSketchK()
+        );
+    }
+    
+    /**
+     * Log the job's metrics as a single JSON line.
+     *
+     * @param jobParameters The job parameters
+     * @param status The final status of the report
+     * @param jobMetrics The job metrics
+     */
+    private void logJobMetrics(ReportJobParameters jobParameters, String status, JobMetrics jobMetrics) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("experimentId", jobParameters.getExperimentId());
+        entry.put("reportId", jobParameters.getReportId());
+        entry.put("status", status);
+        entry.putAll(jobMetrics.toMap());
+        try {
+            logger.info("Job metrics: {}", objectMapper.writeValueAsString(entry));
+        } catch (JsonProcessingException e) {
+            logger.warn("Error serializing job metrics: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Read the events of the job's experiment into the aggregator.
+     *
+     * @param jobParameters The job parameters
+     * @param startTime The start of the range to read (ISO format)
+     * @param endTime The end of the range to read (ISO format)
+     * @param excludedTimestamp A timestamp whose event is already aggregated and must be skipped, or null
+     * @param aggregator The aggregator
+     * @param progress The progress of the report
+     * @param jobMetrics The job metrics receiving the read counters
+     */
+    private void readEvents(ReportJobParameters jobParameters, String startTime, String endTime,
+                            String excludedTimestamp, EventAggregator aggregator,
+                            ReportProgressService.Progress progress, JobMetrics jobMetrics) {
+        Consumer<Iterable<ExperimentEvent>> sink = events -> {
+            int sinceProgress = 0;
+            String lastTimestamp = null;
+            for (ExperimentEvent event : events) {
+                lastTimestamp = event.getTimestamp();
+                if (excludedTimestamp == null || !excludedTimestamp.equals(lastTimestamp)) {
+                    aggregator.accept(event);
+                }
+                if (++sinceProgress == PROGRESS_BATCH_SIZE) {
+                    progress.advance(sinceProgress, lastTimestamp);
+                    sinceProgress = 0;
+                }
+            }
+            progress.advance(sinceProgress, lastTimestamp);
+            aggregator.flush();
+        };
+        
+        // Only the attributes the report needs are read from DynamoDB
+        List<String> attributes = jobParameters.getReportType().getEventAttributes();
+        if (attributes != null && aggregator.getMetrics().needsMetadata()) {
+            // Sum metrics read their field from the metadata
+            attributes = new ArrayList<>(attributes);
+            attributes.add("metadataJson");
+        }
+        EventReadStats stats = new EventReadStats();
+        if (jobParameters.getFetchParallelism() > 1) {
+            dynamoDBService.fetchExperimentEventsParallel(
+                    jobParameters.getExperimentId(),
+                    startTime,
+                    endTime,
+                    jobParameters.getTimeSlices(),
+                    jobParameters.getFetchParallelism(),
+                    attributes,
+                    stats,
+                    sink::accept
+            );
+        } else {
+            sink.accept(dynamoDBService.streamExperimentEvents(
+                    jobParameters.getExperimentId(),
+                    startTime,
+                    endTime,
+                    attributes,
+                    stats
+            ));
+        }
+        logger.info("Read {} events in {} pages consuming {} read capacity units for experiment: {}",
+                stats.getEvents(), stats.getPages(), stats.getConsumedCapacityUnits(), jobParameters.getExperimentId());
+        jobMetrics.record("events.read", stats.getEvents());
+        jobMetrics.record("events.pages", stats.getPages());
+        jobMetrics.record("events.meanPageItems", stats.getMeanPageItems());
+        jobMetrics.record("events.maxPageItems", stats.getMaxPageItems());
+        jobMetrics.record("events.consumedReadCapacityUnits", stats.getConsumedCapacityUnits());
+    }
+    
+    /**
+     * Generate report data from experiment and aggregated events.
+     * Only the statistical analysis service is used, so no AWS client is touched.
      *
      * @param experiment The experiment
-     * @param events The experiment events
+     * @param aggregator The aggregated experiment events
      * @param jobParameters The job parameters
      * @return The report data
      */
-    private ReportData generateReportData(Experiment experiment, List<ExperimentEvent> events, ReportJobParameters jobParameters) {
+    public ReportData generateReportData(Experiment experiment, EventAggregator aggregator, ReportJobParameters jobParameters) {
+        return generateReportData(experiment, aggregator, jobParameters, new JobMetrics(requestMetrics));
+    }
+    
+    private ReportData generateReportData(Experiment experiment, EventAggregator aggregator,
+                                          ReportJobParameters jobParameters, JobMetrics jobMetrics) {
         logger.info("Generating report data for experiment: {}", experiment.getId());
         
         // Create report data object
@@ -123,19 +367,17 @@ public class ReportGenerationService {
         timeRange.setEnd(jobParameters.getTimeRange().getEnd());
         reportData.setTimeRange(timeRange);
         
-        // Group events by variant
-        Map<String, List<ExperimentEvent>> eventsByVariant = events.stream()
-                .collect(Collectors.groupingBy(ExperimentEvent::getVariantId));
-        
-        // Group events by user
-        Map<String, Set<String>> usersByVariant = new HashMap<>();
-        for (ExperimentEvent event : events) {
-            usersByVariant.computeIfAbsent(event.getVariantId(), k -> new HashSet<>())
-                    .add(event.getUserId());
+        // Record the error bound when distinct users are estimated
+        if (aggregator.getDistinctCountMode() == DistinctCountMode.APPROXIMATE) {
+            reportData.setApproximation(new ReportData.Approximation(
+                    "HYPERLOGLOG",
+                    jobParameters.getHllPrecision(),
+                    HyperLogLog.relativeStandardError(jobParameters.getHllPrecision())
+            ));
         }
         
         // Calculate metrics
-        ReportData.Metrics metrics = calculateMetrics(experiment, events, eventsByVariant, usersByVariant);
+        ReportData.Metrics metrics = calculateMetrics(experiment, aggregator, jobParameters, jobMetrics);
         reportData.setMetrics(metrics);
         
         return reportData;
@@ -145,41 +387,39 @@ public class ReportGenerationService {
      * Calculate metrics for the report.
      *
      * @param experiment The experiment
-     * @param events The experiment events
-     * @param eventsByVariant The events grouped by variant
-     * @param usersByVariant The users grouped by variant
+     * @param aggregator The aggregated experiment events
+     * @param jobParameters The job parameters
+     * @param jobMetrics The job metrics timing the significance tests and the time series
      * @return The metrics
      */
-    private ReportData.Metrics calculateMetrics(
-            Experiment experiment,
-            List<ExperimentEvent> events,
-            Map<String, List<ExperimentEvent>> eventsByVariant,
-            Map<String, Set<String>> usersByVariant) {
+    private ReportData.Metrics calculateMetrics(Experiment experiment, EventAggregator aggregator,
+                                                ReportJobParameters jobParameters, JobMetrics jobMetrics) {
         
         ReportData.Metrics metrics = new ReportData.Metrics();
+        double[] fractions = quantileFractions(jobParameters);
         
         // Calculate overall metrics
-        int totalUsers = usersByVariant.values().stream()
-                .mapToInt(Set::size)
-                .sum();
-        
-        int totalEvents = events.size();
-        
-        // Count unique users who have at least one conversion event (LOAN_ACCEPTANCE is considered a conversion)
-        Set<String> convertedUsers = events.stream()
-                .filter(e -> "LOAN_ACCEPTANCE".equals(e.getAction()) || "CONVERSION".equals(e.getAction()))
-                .map(ExperimentEvent::getUserId)
-                .collect(Collectors.toSet());
+        int totalUsers = aggregator.getTotalUsers();
+        int totalEvents = (int) aggregator.getTotalEvents();
         
-        long totalConversions = convertedUsers.size();
+        // Unique users who have at least one event counted by the primary conversion metric
+        long totalConversions = aggregator.getTotalConversions();
         double overallConversionRate = totalUsers > 0 ? (double) totalConversions / totalUsers : 0;
         
         ReportData.Overall overall = new ReportData.Overall();
         overall.setTotalUsers(totalUsers);
         overall.setTotalEvents(totalEvents);
         overall.setConversionRate(overallConversionRate);
+        overall.setDistinctUsers(aggregator.getDistinctUsers());
+        overall.setOverlappingUsers(aggregator.getOverlappingUsers());
+        overall.setOverlappingConvertedUsers(aggregator.getOverlappingConvertedUsers());
         metrics.setOverall(overall);
         
+        if (overall.getOverlappingUsers() != null && overall.getOverlappingUsers() > 0) {
+            logger.warn("{} users of experiment {} were seen in more than one variant ({} of them converted)",
+                    overall.getOverlappingUsers(), experiment.getId(), overall.getOverlappingConvertedUsers());
+        }
+        
         // Calculate metrics by variant
         Map<String, ReportData.VariantMetrics> variantMetrics = new HashMap<>();
         
@@ -196,29 +436,21 @@ public class ReportGenerationService {
         
         for (Variant variant : experiment.getVariants()) {
             String variantId = variant.getId();
-            List<ExperimentEvent> variantEvents = eventsByVariant.getOrDefault(variantId, Collections.emptyList());
-            Set<String> variantUsers = usersByVariant.getOrDefault(variantId, Collections.emptySet());
+            VariantAccumulator accumulator = aggregator.getVariant(variantId);
             
             // Count events by action
-            Map<String, Integer> eventCounts = variantEvents.stream()
-                    .collect(Collectors.groupingBy(
-                            ExperimentEvent::getAction,
-                            Collectors.summingInt(e -> 1)
-                    ));
+            Map<String, Integer> eventCounts = accumulator != null ? accumulator.getActionCounts() : new HashMap<>();
             
-            // Count unique users who have converted (LOAN_ACCEPTANCE or CONVERSION)
-            Set<String> variantConvertedUsers = variantEvents.stream()
-                    .filter(e -> "LOAN_ACCEPTANCE".equals(e.getAction()) || "CONVERSION".equals(e.getAction()))
-                    .map(ExperimentEvent::getUserId)
-                    .collect(Collectors.toSet());
-            
-            int conversions = variantConvertedUsers.size();
-            double conversionRate = variantUsers.size() > 0 ? (double) conversions / variantUsers.size() : 0;
+            // Unique users who have converted by the primary conversion metric
+            int users = accumulator != null ? accumulator.getUsers() : 0;
+            int conversions = accumulator != null ? accumulator.getConversions() : 0;
+            double conversionRate = users > 0 ? (double) conversions / users : 0;
             
             ReportData.VariantMetrics variantMetric = new ReportData.VariantMetrics();
-            variantMetric.setUsers(variantUsers.size());
+            variantMetric.setUsers(users);
             variantMetric.setEvents(eventCounts);
             variantMetric.setConversionRate(conversionRate);
+            variantMetric.setMetrics(calculateVariantMetrics(aggregator.getMetrics(), accumulator, fractions));
             
             // Store the conversions count in a custom field in the events map
             eventCounts.put("__CONVERSIONS_COUNT", conversions);
@@ -237,6 +469,10 @@ public class ReportGenerationService {
             // Get the conversions count from the events map
             int controlConversions = variantMetrics.get(controlVariantId).getEvents().getOrDefault("__CONVERSIONS_COUNT", 0);
             
+            // Each variant gets its own stream split from the seed, so its interval does not depend on the others
+            int resamples = jobParameters.getBootstrapResamples();
+            SplittableRandom bootstrapRandom = new SplittableRandom(jobParameters.getBootstrapSeed());
+            
             for (Variant variant : experiment.getVariants()) {
                 String variantId = variant.getId();
                 
@@ -258,15 +494,46 @@ public class ReportGenerationService {
                             variantMetric.getConversionRate()
                     );
                     variantMetric.setImprovement(improvement);
+                    calculateMetricImprovements(variantMetrics.get(controlVariantId).getMetrics(),
+                            variantMetric.getMetrics());
                     
-                    // Calculate statistical significance
-                    double pValue = analysisService.calculateSignificance(
-                            controlUsers,
-                            controlConversions,
-                            variantMetric.getUsers(),
-                            variantMetric.getEvents().getOrDefault("__CONVERSIONS_COUNT", 0)
-                    );
-                    variantMetric.setSignificanceLevel(pValue);
+                    // Calculate statistical significance and the confidence interval of the difference
+                    ProportionComparison comparison = jobMetrics.time("reportData.statistics",
+                            () -> analysisService.compareConversionRates(
+                                    controlUsers,
+                                    controlConversions,
+                                    variantMetric.getUsers(),
+                                    variantMetric.getEvents().getOrDefault("__CONVERSIONS_COUNT", 0)
+                            ));
+                    if (comparison != null) {
+                        variantMetric.setSignificanceLevel(comparison.getPValue());
+                        variantMetric.setSignificanceMethod(comparison.getMethod().name());
+                        variantMetric.setDifferenceInterval(new ReportData.ConfidenceInterval(
+                                comparison.getConfidenceLevel(), comparison.getLower(), comparison.getUpper()));
+                    } else {
+                        variantMetric.setSignificanceLevel(Double.NaN);
+                    }
+                    
+                    // Bootstrap the confidence interval of the improvement on every core
+                    SplittableRandom random = bootstrapRandom.split();
+                    if (resamples > 0) {
+                        BootstrapInterval interval = jobMetrics.time("reportData.bootstrap",
+                                () -> analysisService.bootstrapImprovement(
+                                        controlUsers,
+                                        controlConversions,
+                                        variantMetric.getUsers(),
+                                        variantMetric.getEvents().getOrDefault("__CONVERSIONS_COUNT", 0),
+                                        resamples,
+                                        random
+                                ));
+                        if (interval != null) {
+                            variantMetric.setImprovementInterval(new ReportData.ConfidenceInterval(
+                                    interval.getConfidenceLevel(), interval.getLower(), interval.getUpper(),
+                                    interval.getResamples()));
+                        }
+                        bootstrapMeanMetrics(aggregator, controlVariantId, variantId, variantMetric.getMetrics(),
+                                resamples, random, jobMetrics);
+                    }
                 } catch (Exception e) {
                     logger.warn("Error calculating metrics for variant {}: {}", variantId, e.getMessage());
                     // Set default values
@@ -276,11 +543,30 @@ public class ReportGenerationService {
             }
         }
         
+        // With more than two variants, also test whether any of them differs
+        if (experiment.getVariants().size() > 2) {
+            try {
+                long[] users = new long[experiment.getVariants().size()];
+                long[] conversions = new long[users.length];
+                for (int i = 0; i < users.length; i++) {
+                    ReportData.VariantMetrics variantMetric =
+                            variantMetrics.get(experiment.getVariants().get(i).getId());
+                    users[i] = variantMetric.getUsers();
+                    conversions[i] = variantMetric.getEvents().getOrDefault("__CONVERSIONS_COUNT", 0);
+                }
+                overall.setHomogeneityPValue(analysisService.calculateHomogeneity(users, conversions));
+            } catch (Exception e) {
+                // Leaves the statistic out rather than failing the report
+                logger.warn("Error testing the homogeneity of the variants: {}", e.getMessage());
+            }
+        }
+        
         metrics.setByVariant(variantMetrics);
         
         // Calculate time series data
         try {
-            metrics.setTimeSeries(calculateTimeSeries(events, eventsByVariant));
+            metrics.setTimeSeries(jobMetrics.time("reportData.timeSeries",
+                    () -> calculateTimeSeries(aggregator, controlVariantId, jobParameters)));
         } catch (Exception e) {
             logger.warn("Error calculating time series data: {}", e.getMessage());
             metrics.setTimeSeries(new ReportData.TimeSeries());
@@ -289,71 +575,215 @@ public class ReportGenerationService {
         return metrics;
     }
     
+    /**
+     * Calculate the value of every metric definition for a variant.
+     *
+     * @param metricSet The compiled metric definitions
+     * @param accumulator The variant's aggregated events, or null if the variant has no events
+     * @param fractions The quantiles to estimate for sum and mean metrics, possibly none
+     * @return The metric values by name
+     */
+    private Map<String, ReportData.MetricValue> calculateVariantMetrics(MetricSet metricSet,
+                                                                        VariantAccumulator accumulator,
+                                                                        double[] fractions) {
+        Map<String, ReportData.MetricValue> values = new LinkedHashMap<>();
+        List<MetricDefinition> definitions = metricSet.getDefinitions();
+        for (int i = 0; i < definitions.size(); i++) {
+            ReportData.MetricValue value;
+            if (definitions.get(i).getMetricType() == MetricType.MEAN) {
+                // One pass over the per-user totals gives the mean and its spread
+                RunningMoments moments = accumulator != null
+                        ? metricSet.moments(i, accumulator) : new RunningMoments();
+                value = new ReportData.MetricValue(definitions.get(i).getType(),
+                        moments.getMean(), moments.getSum(), moments.getCount());
+                if (moments.getCount() > 1) {
+                    value.setStandardDeviation(moments.getStandardDeviation());
+                }
+            } else {
+                double numerator = accumulator != null ? metricSet.numerator(i, accumulator) : 0;
+                double denominator = accumulator != null ? metricSet.denominator(i, accumulator) : 0;
+                value = new ReportData.MetricValue(definitions.get(i).getType(),
+                        denominator > 0 ? numerator / denominator : 0, numerator, denominator);
+            }
+            KllSketch sketch = accumulator != null && fractions.length > 0 ? metricSet.sketch(i, accumulator) : null;
+            if (sketch != null && !sketch.isEmpty()) {
+                double[] estimates = sketch.quantiles(fractions);
+                Map<String, Double> quantiles = new LinkedHashMap<>();
+                for (int q = 0; q < fractions.length; q++) {
+                    quantiles.put(quantileLabel(fractions[q]), estimates[q]);
+                }
+                value.setQuantiles(quantiles);
+            }
+            values.put(definitions.get(i).getName(), value);
+        }
+        return values;
+    }
+    
+    /**
+     * Get the quantiles requested by a job.
+     *
+     * @param jobParameters The job parameters
+     * @return The quantiles, possibly none
+     * @throws IllegalArgumentException If a quantile is not between 0 and 1
+     */
+    private static double[] quantileFractions(ReportJobParameters jobParameters) {
+        List<Double> quantiles = jobParameters.getQuantiles();
+        double[] fractions = new double[quantiles.size()];
+        for (int q = 0; q < fractions.length; q++) {
+            Double fraction = quantiles.get(q);
+            if (fraction == null || !(fraction >= 0 && fraction <= 1)) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1: " + fraction);
+            }
+            fractions[q] = fraction;
+        }
+        return fractions;
+    }
+    
+    /**
+     * Label a quantile by its percentage, such as p50 for 0.5 or p99.9 for 0.999.
+     */
+    private static String quantileLabel(double fraction) {
+        return "p" + BigDecimal.valueOf(fraction).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+    
+    /**
+     * Set the improvement of each metric of a variant over the same metric of the control variant, and test
+     * the difference of mean metrics with Welch's t-test from their counts, means and standard deviations.
+     *
+     * @param control The metric values of the control variant
+     * @param treatment The metric values of the variant
+     */
+    private void calculateMetricImprovements(Map<String, ReportData.MetricValue> control,
+                                             Map<String, ReportData.MetricValue> treatment) {
+        for (Map.Entry<String, ReportData.MetricValue> entry : treatment.entrySet()) {
+            ReportData.MetricValue controlValue = control.get(entry.getKey());
+            if (controlValue == null) {
+                continue;
+            }
+            ReportData.MetricValue value = entry.getValue();
+            value.setImprovement(analysisService.calculateImprovement(controlValue.getValue(), value.getValue()));
+            if (controlValue.getStandardDeviation() != null && value.getStandardDeviation() != null) {
+                MeanComparison comparison = analysisService.compareMeans(moments(controlValue), moments(value));
+                if (comparison != null) {
+                    value.setSignificanceLevel(comparison.getPValue());
+                    value.setSignificanceMethod(SignificanceMethod.WELCH_T_TEST.name());
+                    value.setDifferenceInterval(new ReportData.ConfidenceInterval(
+                            comparison.getConfidenceLevel(), comparison.getLower(), comparison.getUpper()));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Bootstrap the improvement of every mean metric of a variant over the control's by resampling the per-user
+     * totals. Each mean metric gets its own stream, split from the variant's in the order of the definitions.
+     *
+     * @param aggregator The aggregated experiment events
+     * @param controlVariantId The control variant
+     * @param variantId The treatment variant
+     * @param values The metric values of the treatment, which get the intervals
+     * @param resamples The number of resamples
+     * @param random The random stream of the treatment
+     * @param jobMetrics The job metrics
+     */
+    private void bootstrapMeanMetrics(EventAggregator aggregator, String controlVariantId, String variantId,
+                                      Map<String, ReportData.MetricValue> values, int resamples,
+                                      SplittableRandom random, JobMetrics jobMetrics) {
+        MetricSet metricSet = aggregator.getMetrics();
+        VariantAccumulator control = aggregator.getVariant(controlVariantId);
+        VariantAccumulator treatment = aggregator.getVariant(variantId);
+        if (control == null || treatment == null) {
+            return;
+        }
+        List<MetricDefinition> definitions = metricSet.getDefinitions();
+        for (int i = 0; i < definitions.size(); i++) {
+            if (definitions.get(i).getMetricType() != MetricType.MEAN) {
+                continue;
+            }
+            SplittableRandom metricRandom = random.split();
+            double[] controlTotals = metricSet.totals(i, control);
+            double[] treatmentTotals = metricSet.totals(i, treatment);
+            BootstrapInterval interval = jobMetrics.time("reportData.bootstrap",
+                    () -> analysisService.bootstrapMeanImprovement(
+                            controlTotals, treatmentTotals, resamples, metricRandom));
+            if (interval != null) {
+                values.get(definitions.get(i).getName()).setImprovementInterval(new ReportData.ConfidenceInterval(
+                        interval.getConfidenceLevel(), interval.getLower(), interval.getUpper(),
+                        interval.getResamples()));
+            }
+        }
+    }
+    
+    /**
+     * Rebuild the moments of a mean metric from its reported count, mean and standard deviation.
+     */
+    private static RunningMoments moments(ReportData.MetricValue value) {
+        long count = (long) value.getDenominator();
+        double standardDeviation = value.getStandardDeviation();
+        return new RunningMoments(count, value.getValue(), standardDeviation * standardDeviation * (count - 1));
+    }
+    
     /**
      * Calculate time series data for the report.
      *
-     * @param events The experiment events
-     * @param eventsByVariant The events grouped by variant
+     * @param aggregator The aggregated experiment events
+     * @param controlVariantId The control variant the sequential tests compare against
+     * @param jobParameters The job parameters
      * @return The time series data
      */
-    private ReportData.TimeSeries calculateTimeSeries(
-            List<ExperimentEvent> events,
-            Map<String, List<ExperimentEvent>> eventsByVariant) {
+    private ReportData.TimeSeries calculateTimeSeries(EventAggregator aggregator, String controlVariantId,
+                                                      ReportJobParameters jobParameters) {
         
         ReportData.TimeSeries timeSeries = new ReportData.TimeSeries();
+        if (!aggregator.isTimeSeriesAvailable()) {
+            return timeSeries;
+        }
         
-        // Group events by date
-        DateTimeFormatter formatter = DateTimeFormatter.ISO_LOCAL_DATE;
-        
-        // Get all unique dates
-        Set<String> uniqueDates = events.stream()
-                .map(e -> {
-                    Instant instant = Instant.parse(e.getTimestamp());
-                    LocalDate date = instant.atZone(ZoneId.systemDefault()).toLocalDate();
-                    return date.format(formatter);
-                })
-                .collect(Collectors.toSet());
-        
-        List<String> sortedDates = new ArrayList<>(uniqueDates);
-        Collections.sort(sortedDates);
-        timeSeries.setDates(sortedDates);
+        // Every bucket from the first to the last event, already sorted by the aggregator
+        timeSeries.setGranularity(aggregator.getGranularity().name());
+        timeSeries.setDates(aggregator.getTimeBuckets());
         
         // Calculate time series data by variant
         Map<String, ReportData.VariantTimeSeries> variantTimeSeries = new HashMap<>();
+        double[] fractions = quantileFractions(jobParameters);
         
-        for (Map.Entry<String, List<ExperimentEvent>> entry : eventsByVariant.entrySet()) {
-            String variantId = entry.getKey();
-            List<ExperimentEvent> variantEvents = entry.getValue();
-            
-            // Group events by date
-            Map<String, List<ExperimentEvent>> eventsByDate = variantEvents.stream()
-                    .collect(Collectors.groupingBy(e -> {
-                        Instant instant = Instant.parse(e.getTimestamp());
-                        LocalDate date = instant.atZone(ZoneId.systemDefault()).toLocalDate();
-                        return date.format(formatter);
-                    }));
-            
-            // Calculate events and conversions by date
+        // Cumulative counts of the control for the sequential tests, only kept with exact distinct counts
+        int[] controlUsers = aggregator.getCumulativeUsers(controlVariantId);
+        int[] controlConversions = aggregator.getCumulativeConversions(controlVariantId);
+        
+        for (String variantId : aggregator.getVariants().keySet()) {
+            // Events and unique converted users by bucket
             List<Integer> eventCounts = new ArrayList<>();
             List<Integer> conversionCounts = new ArrayList<>();
             
-            for (String date : sortedDates) {
-                List<ExperimentEvent> dateEvents = eventsByDate.getOrDefault(date, Collections.emptyList());
-                eventCounts.add(dateEvents.size());
-                
-                // Count unique users who converted on this date
-                Set<String> dateConvertedUsers = dateEvents.stream()
-                        .filter(e -> "LOAN_ACCEPTANCE".equals(e.getAction()) || "CONVERSION".equals(e.getAction()))
-                        .map(ExperimentEvent::getUserId)
-                        .collect(Collectors.toSet());
-                
-                long conversions = dateConvertedUsers.size();
-                conversionCounts.add((int) conversions);
+            for (int count : aggregator.getBucketEvents(variantId)) {
+                eventCounts.add(count);
+            }
+            for (int count : aggregator.getBucketConversions(variantId)) {
+                conversionCounts.add(count);
             }
             
             ReportData.VariantTimeSeries variantTS = new ReportData.VariantTimeSeries();
             variantTS.setEvents(eventCounts);
             variantTS.setConversions(conversionCounts);
+            if (fractions.length > 0) {
+                variantTS.setQuantiles(calculateBucketQuantiles(aggregator, variantId, fractions));
+            }
+            
+            if (controlUsers != null && !variantId.equals(controlVariantId)) {
+                double[] pValues = analysisService.calculateSequentialPValues(
+                        controlUsers,
+                        controlConversions,
+                        aggregator.getCumulativeUsers(variantId),
+                        aggregator.getCumulativeConversions(variantId),
+                        jobParameters.getSequentialMixingSd()
+                );
+                List<Double> sequentialPValues = new ArrayList<>(pValues.length);
+                for (double pValue : pValues) {
+                    sequentialPValues.add(pValue);
+                }
+                variantTS.setSequentialPValues(sequentialPValues);
+            }
             
             variantTimeSeries.put(variantId, variantTS);
         }
@@ -363,6 +793,38 @@ public class ReportGenerationService {
         return timeSeries;
     }
     
+    /**
+     * Estimate the quantiles of every sum and mean metric of a variant per bucket from its sketches.
+     *
+     * @param aggregator The aggregated experiment events
+     * @param variantId The variant ID
+     * @param fractions The quantiles to estimate
+     * @return The estimates by metric name and quantile label, with null for buckets without values
+     */
+    private Map<String, Map<String, List<Double>>> calculateBucketQuantiles(EventAggregator aggregator,
+                                                                         String variantId, double[] fractions) {
+        Map<String, Map<String, List<Double>>> byMetric = new LinkedHashMap<>();
+        List<MetricDefinition> definitions = aggregator.getMetrics().getDefinitions();
+        for (int i = 0; i < definitions.size(); i++) {
+            KllSketch[] sketches = aggregator.getBucketSketches(variantId, i);
+            if (sketches == null) {
+                continue;
+            }
+            Map<String, List<Double>> byQuantile = new LinkedHashMap<>();
+            for (double fraction : fractions) {
+                byQuantile.put(quantileLabel(fraction), new ArrayList<>(sketches.length));
+            }
+            for (KllSketch sketch : sketches) {
+                double[] estimates = sketch != null ? sketch.quantiles(fractions) : null;
+                for (int q = 0; q < fractions.length; q++) {
+                    byQuantile.get(quantileLabel(fractions[q])).add(estimates != null ? estimates[q] : null);
+                }
+            }
+            byMetric.put(definitions.get(i).getName(), byQuantile);
+        }
+        return byMetric;
+    }
+    
     /**
      * Calculate summary metrics for the report metadata.
      *
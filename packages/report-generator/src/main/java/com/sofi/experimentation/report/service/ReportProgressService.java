@@ -0,0 +1,173 @@
+package com.sofi.experimentation.report.service;
+
+import com.sofi.experimentation.report.util.DateUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Service for publishing the progress of reports that are being processed.
+ * The read loop only updates in-memory counters; a background thread writes the latest values to the
+ * report metadata at most once per interval, and skips the write when nothing changed.
+ */
+public class ReportProgressService {
+    private static final Logger logger = LogManager.getLogger(ReportProgressService.class);
+    
+    private final DynamoDBService dynamoDBService;
+    private final ScheduledExecutorService scheduler;
+    
+    @Inject
+    public ReportProgressService(DynamoDBService dynamoDBService) {
+        this.dynamoDBService = dynamoDBService;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "report-progress-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Start tracking the progress of a report.
+     * The time range is split the same way as a parallel fetch, so coverage can be tracked per slice
+     * even when slices are read concurrently and their events arrive interleaved.
+     *
+     * @param reportId The report ID
+     * @param startTime The start of the range being read (ISO format)
+     * @param endTime The end of the range being read (ISO format)
+     * @param slices The number of slices the range is read in
+     * @param intervalMillis The minimum time between progress writes, or 0 to disable them
+     * @return The progress tracker, which must be closed when reading is done
+     */
+    public Progress start(String reportId, String startTime, String endTime, int slices, long intervalMillis) {
+        Progress progress = new Progress(reportId, DateUtils.splitTimeRange(startTime, endTime, Math.max(1, slices)));
+        if (intervalMillis > 0) {
+            progress.task = scheduler.scheduleWithFixedDelay(
+                    progress::write, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+        return progress;
+    }
+    
+    /**
+     * Progress of a single report.
+     * Updates must come from one thread at a time; the background writer only reads.
+     */
+    public class Progress implements AutoCloseable {
+        private final String reportId;
+        private final long[] sliceStarts;
+        private final long[] sliceEnds;
+        private final long totalMillis;
+        private final AtomicLongArray sliceCovered;
+        private volatile long eventsScanned;
+        private volatile boolean finished;
+        private long writtenEvents = -1;
+        private volatile ScheduledFuture<?> task;
+        
+        private Progress(String reportId, List<String[]> ranges) {
+            this.reportId = reportId;
+            this.sliceStarts = new long[ranges.size()];
+            this.sliceEnds = new long[ranges.size()];
+            this.sliceCovered = new AtomicLongArray(ranges.size());
+            long total = 0;
+            for (int i = 0; i < ranges.size(); i++) {
+                sliceStarts[i] = Instant.parse(ranges.get(i)[0]).toEpochMilli();
+                sliceEnds[i] = Instant.parse(ranges.get(i)[1]).toEpochMilli();
+                total += sliceEnds[i] - sliceStarts[i];
+            }
+            this.totalMillis = total;
+        }
+        
+        /**
+         * Record events read since the last update and the timestamp of the latest one.
+         * Within a slice, events arrive in timestamp order, so the latest timestamp marks how far that slice
+         * has been read.
+         *
+         * @param events The number of events read since the last update
+         * @param lastTimestamp The timestamp of the latest event (ISO format), or null
+         */
+        public void advance(int events, String lastTimestamp) {
+            eventsScanned += events;
+            if (lastTimestamp == null) {
+                return;
+            }
+            long timestamp;
+            try {
+                timestamp = DateUtils.parseEpochMillis(lastTimestamp);
+            } catch (Exception e) {
+                return;
+            }
+            int slice = findSlice(timestamp);
+            if (slice >= 0) {
+                long covered = Math.min(timestamp, sliceEnds[slice]) - sliceStarts[slice];
+                if (covered > sliceCovered.get(slice)) {
+                    sliceCovered.set(slice, covered);
+                }
+            }
+        }
+        
+        private int findSlice(long timestamp) {
+            for (int i = 0; i < sliceStarts.length; i++) {
+                if (timestamp >= sliceStarts[i] && timestamp <= sliceEnds[i]) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        public long getEventsScanned() {
+            return eventsScanned;
+        }
+        
+        /**
+         * Get the share of the time range read so far.
+         *
+         * @return The percentage, from 0 to 100
+         */
+        public double getPercentCovered() {
+            if (totalMillis <= 0) {
+                return 100.0;
+            }
+            long covered = 0;
+            for (int i = 0; i < sliceCovered.length(); i++) {
+                covered += sliceCovered.get(i);
+            }
+            // Round to a tenth of a percent; finer steps are noise in the UI
+            return Math.round(1000.0 * covered / totalMillis) / 10.0;
+        }
+        
+        private void write() {
+            long events = eventsScanned;
+            if (finished || events == writtenEvents) {
+                return;
+            }
+            try {
+                if (dynamoDBService.updateReportProgress(reportId, events, getPercentCovered())) {
+                    writtenEvents = events;
+                } else {
+                    // The report is no longer processing; there is nothing left to report
+                    task.cancel(false);
+                }
+            } catch (Exception e) {
+                logger.warn("Could not write progress for report ID: {}: {}", reportId, e.getMessage());
+            }
+        }
+        
+        /**
+         * Stop writing progress. A write already in flight may still complete.
+         */
+        @Override
+        public void close() {
+            finished = true;
+            if (task != null) {
+                task.cancel(false);
+            }
+        }
+    }
+}
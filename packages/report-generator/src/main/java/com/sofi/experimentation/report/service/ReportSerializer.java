@@ -0,0 +1,57 @@
+package com.sofi.experimentation.report.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.sofi.experimentation.report.model.ReportCompression;
+import com.sofi.experimentation.report.model.ReportData;
+import com.sofi.experimentation.report.model.ReportFormat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Writes report documents in the requested format and compression.
+ * Every format shares the configuration of the application's ObjectMapper.
+ */
+public class ReportSerializer {
+    private final Map<ReportFormat, ObjectMapper> mappers = new EnumMap<>(ReportFormat.class);
+    
+    public ReportSerializer(ObjectMapper objectMapper) {
+        mappers.put(ReportFormat.JSON, objectMapper);
+        mappers.put(ReportFormat.SMILE, objectMapper.copyWith(new SmileFactory()));
+        mappers.put(ReportFormat.CBOR, objectMapper.copyWith(new CBORFactory()));
+    }
+    
+    /**
+     * Get the ObjectMapper for a format, for example to read a report back.
+     *
+     * @param format The report format
+     * @return The ObjectMapper
+     */
+    public ObjectMapper getMapper(ReportFormat format) {
+        return mappers.get(format);
+    }
+    
+    /**
+     * Serialize a report into a stream, one token at a time.
+     * The stream is closed when the report has been written.
+     *
+     * @param reportData The report data
+     * @param format The report format
+     * @param compression The compression
+     * @param out The target stream
+     * @throws IOException If the report cannot be written
+     */
+    public void write(ReportData reportData, ReportFormat format, ReportCompression compression, OutputStream out)
+            throws IOException {
+        ObjectMapper mapper = mappers.get(format);
+        try (OutputStream encoded = compression.wrap(out);
+             JsonGenerator generator = mapper.getFactory().createGenerator(encoded)) {
+            mapper.writeValue(generator, reportData);
+        }
+    }
+}
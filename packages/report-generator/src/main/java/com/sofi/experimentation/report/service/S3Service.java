@@ -4,9 +4,16 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
 import javax.inject.Inject;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Service for interacting with S3.
@@ -14,11 +21,37 @@ import javax.inject.Inject;
 public class S3Service {
     private static final Logger logger = LogManager.getLogger(S3Service.class);
     
+    // S3 parts must be at least 5 MiB except for the last one
+    private static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+    private static final int DEFAULT_PARTS_IN_FLIGHT = 4;
+    
     private final S3Client s3Client;
+    private final int partSize;
+    private final int partsInFlight;
+    private final ExecutorService uploadExecutor;
     
     @Inject
     public S3Service(S3Client s3Client) {
+        this(s3Client, DEFAULT_PART_SIZE, DEFAULT_PARTS_IN_FLIGHT);
+    }
+    
+    public S3Service(S3Client s3Client, int partSize, int partsInFlight) {
         this.s3Client = s3Client;
+        this.partSize = partSize;
+        this.partsInFlight = partsInFlight;
+        this.uploadExecutor = Executors.newFixedThreadPool(partsInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "s3-part-upload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Writes content to an output stream.
+     */
+    @FunctionalInterface
+    public interface ContentWriter {
+        void writeTo(OutputStream out) throws IOException;
     }
     
     /**
@@ -46,4 +79,100 @@ public class S3Service {
             throw new RuntimeException("Error uploading report to S3: s3://" + bucket + "/" + key, e);
         }
     }
-}
\ No newline at end of file
+    
+    /**
+     * Upload a report to S3 while it is being written.
+     * The content is streamed into a multipart upload with bounded buffers and parts uploaded in parallel,
+     * so memory use does not grow with the size of the report. If the writer fails, the upload is aborted
+     * and no object is created.
+     *
+     * @param bucket The S3 bucket
+     * @param key The S3 key
+     * @param contentType The content type
+     * @param contentEncoding The content encoding, or null if the content is not compressed
+     * @param writer The writer producing the report content
+     * @return The number of bytes uploaded
+     */
+    public long uploadReport(String bucket, String key, String contentType, String contentEncoding,
+                             ContentWriter writer) {
+        logger.info("Streaming report to S3: s3://{}/{}", bucket, key);
+        
+        MultipartUploadOutputStream upload = new MultipartUploadOutputStream(
+                s3Client, bucket, key, contentType, contentEncoding, partSize, partsInFlight, uploadExecutor);
+        try {
+            // Writers such as Jackson close their target when they finish or fail; only this method may
+            // decide whether the upload completes
+            writer.writeTo(new FilterOutputStream(upload) {
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+            upload.close();
+            
+            logger.info("Successfully uploaded report to S3: s3://{}/{} ({} bytes, {}{})", bucket, key,
+                    upload.getBytesWritten(), contentType, contentEncoding != null ? ", " + contentEncoding : "");
+            return upload.getBytesWritten();
+        } catch (Exception e) {
+            upload.abort();
+            logger.error("Error uploading report to S3: s3://{}/{}", bucket, key, e);
+            throw new RuntimeException("Error uploading report to S3: s3://" + bucket + "/" + key, e);
+        }
+    }
+    
+    /**
+     * Upload binary content to S3.
+     *
+     * @param bucket The S3 bucket
+     * @param key The S3 key
+     * @param content The content
+     * @param contentType The content type
+     */
+    public void uploadBytes(String bucket, String key, byte[] content, String contentType) {
+        logger.info("Uploading {} bytes to S3: s3://{}/{}", content.length, bucket, key);
+        
+        try {
+            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .build();
+            
+            s3Client.putObject(putObjectRequest, RequestBody.fromBytes(content));
+        } catch (Exception e) {
+            logger.error("Error uploading to S3: s3://{}/{}", bucket, key, e);
+            throw new RuntimeException("Error uploading to S3: s3://" + bucket + "/" + key, e);
+        }
+    }
+    
+    /**
+     * Download binary content from S3.
+     *
+     * @param bucket The S3 bucket
+     * @param key The S3 key
+     * @return The content, or null if the object does not exist
+     */
+    public byte[] downloadBytes(String bucket, String key) {
+        logger.info("Downloading from S3: s3://{}/{}", bucket, key);
+        
+        try {
+            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .build();
+            
+            return s3Client.getObjectAsBytes(getObjectRequest).asByteArray();
+        } catch (NoSuchKeyException e) {
+            logger.info("No object found at s3://{}/{}", bucket, key);
+            return null;
+        } catch (Exception e) {
+            logger.error("Error downloading from S3: s3://{}/{}", bucket, key, e);
+            throw new RuntimeException("Error downloading from S3: s3://" + bucket + "/" + key, e);
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.sofi.experimentation.report.service;
 
-import org.apache.commons.math3.stat.inference.AlternativeHypothesis;
-import org.apache.commons.math3.stat.inference.BinomialTest;
+import com.sofi.experimentation.report.stats.Bootstrap;
+import com.sofi.experimentation.report.stats.BootstrapInterval;
+import com.sofi.experimentation.report.stats.MeanComparison;
+import com.sofi.experimentation.report.stats.MeanTests;
+import com.sofi.experimentation.report.stats.MixtureSequentialTest;
+import com.sofi.experimentation.report.stats.ProportionComparison;
+import com.sofi.experimentation.report.stats.ProportionTests;
+import com.sofi.experimentation.report.stats.RunningMoments;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.inject.Inject;
+import java.util.SplittableRandom;
 
 /**
  * Service for performing statistical analysis on experiment data.
@@ -13,6 +20,11 @@ import javax.inject.Inject;
 public class StatisticalAnalysisService {
     private static final Logger logger = LogManager.getLogger(StatisticalAnalysisService.class);
     
+    /** Confidence level of the intervals in reports. */
+    public static final double DEFAULT_CONFIDENCE_LEVEL = 0.95;
+    
+    private final Bootstrap bootstrap = new Bootstrap();
+    
     @Inject
     public StatisticalAnalysisService() {
         // Default constructor
@@ -33,35 +45,135 @@ public class StatisticalAnalysisService {
     }
     
     /**
-     * Calculate statistical significance using binomial test.
+     * Calculate statistical significance of the difference between two conversion rates.
+     * See {@link #compareConversionRates(int, int, int, int)} for the test used.
      *
      * @param controlUsers The number of users in the control group
      * @param controlConversions The number of conversions in the control group
      * @param treatmentUsers The number of users in the treatment group
      * @param treatmentConversions The number of conversions in the treatment group
-     * @return The p-value
+     * @return The p-value, or NaN if a group is empty
      */
     public double calculateSignificance(int controlUsers, int controlConversions, 
                                        int treatmentUsers, int treatmentConversions) {
+        ProportionComparison comparison = compareConversionRates(
+                controlUsers, controlConversions, treatmentUsers, treatmentConversions);
+        return comparison != null ? comparison.getPValue() : Double.NaN;
+    }
+    
+    /**
+     * Compare the conversion rates of a treatment and the control. Uses a two-proportion z-test for large
+     * samples and Fisher's exact test when an expected count is too small, and adds the confidence interval
+     * of the difference at {@link #DEFAULT_CONFIDENCE_LEVEL}.
+     *
+     * @param controlUsers The number of users in the control group
+     * @param controlConversions The number of conversions in the control group
+     * @param treatmentUsers The number of users in the treatment group
+     * @param treatmentConversions The number of conversions in the treatment group
+     * @return The comparison, or null if a group is empty or has more conversions than users
+     */
+    public ProportionComparison compareConversionRates(int controlUsers, int controlConversions,
+                                                       int treatmentUsers, int treatmentConversions) {
         try {
-            BinomialTest binomialTest = new BinomialTest();
-            
-            // Calculate control conversion rate
-            double controlRate = (double) controlConversions / controlUsers;
-            
-            // Perform binomial test
-            return binomialTest.binomialTest(
-                treatmentUsers, 
-                treatmentConversions, 
-                controlRate, 
-                AlternativeHypothesis.TWO_SIDED
-            );
-        } catch (Exception e) {
-            logger.error("Error calculating statistical significance", e);
-            return Double.NaN;
+            return ProportionTests.compare(controlUsers, controlConversions, treatmentUsers, treatmentConversions,
+                    DEFAULT_CONFIDENCE_LEVEL);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Cannot compare conversion rates: {}", e.getMessage());
+            return null;
         }
     }
     
+    /**
+     * Compare the mean of a continuous metric of a treatment and the control with Welch's t-test, and add the
+     * confidence interval of the difference at {@link #DEFAULT_CONFIDENCE_LEVEL}.
+     *
+     * @param control The moments of the control's values
+     * @param treatment The moments of the treatment's values
+     * @return The comparison, or null if a group has fewer than two values
+     */
+    public MeanComparison compareMeans(RunningMoments control, RunningMoments treatment) {
+        try {
+            return MeanTests.welchTTest(control, treatment, DEFAULT_CONFIDENCE_LEVEL);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Cannot compare means: {}", e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * Bootstrap the confidence interval of the improvement of a treatment's conversion rate over the control's,
+     * at {@link #DEFAULT_CONFIDENCE_LEVEL}. The resamples run in parallel on the common fork-join pool.
+     *
+     * @param controlUsers The number of users in the control group
+     * @param controlConversions The number of conversions in the control group
+     * @param treatmentUsers The number of users in the treatment group
+     * @param treatmentConversions The number of conversions in the treatment group
+     * @param resamples The number of resamples
+     * @param random The random stream of this comparison
+     * @return The interval of the improvement percentage, or null if a group is empty
+     */
+    public BootstrapInterval bootstrapImprovement(int controlUsers, int controlConversions,
+                                                  int treatmentUsers, int treatmentConversions,
+                                                  int resamples, SplittableRandom random) {
+        if (controlUsers <= 0 || treatmentUsers <= 0) {
+            return null;
+        }
+        return bootstrap.conversionImprovement(controlUsers, controlConversions, treatmentUsers, treatmentConversions,
+                resamples, DEFAULT_CONFIDENCE_LEVEL, random);
+    }
+    
+    /**
+     * Bootstrap the confidence interval of the improvement of a treatment's mean metric over the control's by
+     * resampling the per-user totals, at {@link #DEFAULT_CONFIDENCE_LEVEL}. The resamples run in parallel on the
+     * common fork-join pool.
+     *
+     * @param control The per-user totals of the control, or null if they are not available
+     * @param treatment The per-user totals of the treatment, or null if they are not available
+     * @param resamples The number of resamples
+     * @param random The random stream of this comparison
+     * @return The interval of the improvement percentage, or null if a group is empty or has no totals
+     */
+    public BootstrapInterval bootstrapMeanImprovement(double[] control, double[] treatment,
+                                                      int resamples, SplittableRandom random) {
+        if (control == null || treatment == null || control.length == 0 || treatment.length == 0) {
+            return null;
+        }
+        return bootstrap.meanImprovement(control, treatment, resamples, DEFAULT_CONFIDENCE_LEVEL, random);
+    }
+    
+    /**
+     * Calculate always-valid p-values of a treatment against the control after each time bucket.
+     * The mixture sequential test is updated once per bucket from the cumulative counts.
+     *
+     * @param controlUsers The cumulative users of the control by bucket
+     * @param controlConversions The cumulative conversions of the control by bucket
+     * @param treatmentUsers The cumulative users of the treatment by bucket
+     * @param treatmentConversions The cumulative conversions of the treatment by bucket
+     * @param mixingSd The standard deviation of the effects the test mixes over
+     * @return The p-values by bucket
+     */
+    public double[] calculateSequentialPValues(int[] controlUsers, int[] controlConversions,
+                                               int[] treatmentUsers, int[] treatmentConversions, double mixingSd) {
+        MixtureSequentialTest test = new MixtureSequentialTest(mixingSd);
+        double[] pValues = new double[controlUsers.length];
+        for (int bucket = 0; bucket < pValues.length; bucket++) {
+            pValues[bucket] = test.update(controlUsers[bucket], controlConversions[bucket],
+                    treatmentUsers[bucket], treatmentConversions[bucket]);
+        }
+        return pValues;
+    }
+    
+    /**
+     * Test whether all variants share one conversion rate with a chi-square test.
+     *
+     * @param users The number of users of each variant
+     * @param conversions The number of conversions of each variant
+     * @return The p-value
+     */
+    public double calculateHomogeneity(long[] users, long[] conversions) {
+        return ProportionTests.chiSquareTest(users, conversions);
+    }
+    
     /**
      * Determine if a result is statistically significant.
      *
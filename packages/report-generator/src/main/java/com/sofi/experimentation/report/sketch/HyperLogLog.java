@@ -0,0 +1,172 @@
+package com.sofi.experimentation.report.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * HyperLogLog sketch for approximate distinct counting in fixed memory.
+ * Uses 2^precision one-byte registers and Ertl's improved estimator, which needs no empirical bias
+ * correction and stays accurate from small to very large cardinalities. Items are added as 64-bit hashes.
+ */
+public class HyperLogLog {
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+    
+    private final int precision;
+    private final int maxRank;
+    private byte[] registers;
+    
+    /**
+     * Create an empty sketch.
+     *
+     * @param precision The number of index bits; the sketch uses 2^precision registers
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between "
+                    + MIN_PRECISION + " and " + MAX_PRECISION + ": " + precision);
+        }
+        this.precision = precision;
+        this.maxRank = 64 - precision + 1;
+    }
+    
+    /**
+     * Get the relative standard error of estimates for a precision.
+     *
+     * @param precision The precision
+     * @return The relative standard error (1.04 / sqrt(2^precision))
+     */
+    public static double relativeStandardError(int precision) {
+        return 1.04 / Math.sqrt(1 << precision);
+    }
+    
+    /**
+     * Add an item by its 64-bit hash.
+     *
+     * @param hash The item hash
+     */
+    public void add(long hash) {
+        if (registers == null) {
+            // Allocated on first use, so sketches for empty buckets cost almost nothing
+            registers = new byte[1 << precision];
+        }
+        int index = (int) (hash >>> (64 - precision));
+        long rest = hash << precision;
+        int rank = rest == 0 ? maxRank : Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+    
+    /**
+     * Merge another sketch of the same precision into this one.
+     *
+     * @param other The other sketch
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of precision "
+                    + other.precision + " into " + precision);
+        }
+        if (other.registers == null) {
+            return;
+        }
+        if (registers == null) {
+            registers = new byte[1 << precision];
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+    
+    /**
+     * Estimate the number of distinct items added.
+     *
+     * @return The estimated cardinality
+     */
+    public long estimate() {
+        if (registers == null) {
+            return 0;
+        }
+        int m = registers.length;
+        int[] histogram = new int[maxRank + 1];
+        for (byte register : registers) {
+            histogram[register]++;
+        }
+        
+        double z = m * tau(1.0 - (double) histogram[maxRank] / m);
+        for (int k = maxRank - 1; k >= 1; k--) {
+            z = 0.5 * (z + histogram[k]);
+        }
+        z += m * sigma((double) histogram[0] / m);
+        
+        return Math.round(m / (2.0 * Math.log(2)) * m / z);
+    }
+    
+    private static double sigma(double x) {
+        if (x == 1.0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double y = 1.0;
+        double z = x;
+        double previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+    
+    private static double tau(double x) {
+        if (x == 0.0 || x == 1.0) {
+            return 0.0;
+        }
+        double y = 1.0;
+        double z = 1.0 - x;
+        double previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= Math.pow(1.0 - x, 2) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+    
+    public int getPrecision() {
+        return precision;
+    }
+    
+    /**
+     * Write the registers. The precision is not written; the reader must already know it.
+     *
+     * @param out The output
+     * @throws IOException If writing fails
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeBoolean(registers != null);
+        if (registers != null) {
+            out.write(registers);
+        }
+    }
+    
+    /**
+     * Replace the registers with ones written by {@link #writeTo(DataOutput)} from a sketch of the same precision.
+     *
+     * @param in The input
+     * @throws IOException If reading fails
+     */
+    public void readFrom(DataInput in) throws IOException {
+        if (in.readBoolean()) {
+            registers = new byte[1 << precision];
+            in.readFully(registers);
+        } else {
+            registers = null;
+        }
+    }
+}
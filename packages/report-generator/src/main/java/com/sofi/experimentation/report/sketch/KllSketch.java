@@ -0,0 +1,321 @@
+package com.sofi.experimentation.report.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * KLL sketch for approximate quantiles of a stream of numbers in bounded memory (Karnin, Lang and Liberty,
+ * "Optimal Quantile Approximation in Streams", 2016).
+ *
+ * Values are appended to level 0. When the sketch holds more values than its capacity, the lowest full level
+ * is sorted and compacted: every other value, starting at a random offset, moves up a level with twice the
+ * weight, and the rest are dropped. Level capacities shrink geometrically by a factor of 2/3 below the top
+ * level, so the sketch keeps at most about 3k values plus {@link #MIN_LEVEL_CAPACITY} per level, whatever
+ * the number of values added. The rank error stays around 1/k of the count, so the default k of 200 answers
+ * quantiles to within about half a percent of rank. Sketches of the same k merge by concatenating their levels
+ * and compacting, with the same guarantee as a single sketch over all values.
+ */
+public class KllSketch {
+    public static final int DEFAULT_K = 200;
+    public static final int MIN_K = 8;
+    public static final int MAX_K = 65535;
+    
+    /** Smallest capacity of any level, which bounds the number of levels compacted at the bottom. */
+    static final int MIN_LEVEL_CAPACITY = 8;
+    
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    
+    private final int k;
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int retained;
+    private int maxRetained;
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+    // Xorshift state for the compaction offsets, so a sketch is reproducible from its inputs
+    private long random = 0x9E3779B97F4A7C15L;
+    
+    /**
+     * Create an empty sketch.
+     *
+     * @param k The accuracy parameter, which also caps the memory of the sketch
+     */
+    public KllSketch(int k) {
+        if (k < MIN_K || k > MAX_K) {
+            throw new IllegalArgumentException("KLL k must be between " + MIN_K + " and " + MAX_K + ": " + k);
+        }
+        this.k = k;
+        this.maxRetained = capacity(0);
+        // Allocated as it fills, so sketches of sparse buckets stay small
+        levels[0] = new double[0];
+    }
+    
+    /**
+     * Add a value. NaN values are ignored.
+     *
+     * @param value The value
+     */
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (count == 0) {
+            min = value;
+            max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        retained++;
+        if (retained >= maxRetained) {
+            compress();
+        }
+    }
+    
+    /**
+     * Add every value of another sketch of the same k to this one.
+     *
+     * @param other The other sketch, which is not changed
+     */
+    public void merge(KllSketch other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("Cannot merge KLL sketches with k " + k + " and " + other.k);
+        }
+        if (other.count == 0) {
+            return;
+        }
+        while (levels.length < other.levels.length) {
+            addLevel();
+        }
+        for (int level = 0; level < other.levels.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+            retained += other.sizes[level];
+        }
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        while (retained >= maxRetained) {
+            compress();
+        }
+    }
+    
+    private void append(int level, double value) {
+        double[] values = levels[level];
+        if (sizes[level] == values.length) {
+            values = Arrays.copyOf(values, Math.max(MIN_LEVEL_CAPACITY, values.length * 2));
+            levels[level] = values;
+        }
+        values[sizes[level]++] = value;
+    }
+    
+    /**
+     * Compact the lowest level at or above its capacity into the level above.
+     */
+    private void compress() {
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] < capacity(level)) {
+                continue;
+            }
+            if (level + 1 == levels.length) {
+                addLevel();
+            }
+            double[] values = levels[level];
+            int size = sizes[level];
+            Arrays.sort(values, 0, size);
+            // An odd value out stays behind at this level with its weight
+            int pairs = size / 2;
+            int offset = nextBit();
+            for (int pair = 0; pair < pairs; pair++) {
+                append(level + 1, values[2 * pair + offset]);
+            }
+            if (size % 2 == 1) {
+                values[0] = values[size - 1];
+                sizes[level] = 1;
+            } else {
+                sizes[level] = 0;
+            }
+            retained -= pairs;
+            return;
+        }
+    }
+    
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        levels[levels.length - 1] = new double[0];
+        maxRetained = 0;
+        for (int level = 0; level < levels.length; level++) {
+            maxRetained += capacity(level);
+        }
+    }
+    
+    private int capacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+    
+    private int nextBit() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) (random >>> 63);
+    }
+    
+    /**
+     * Estimate quantiles of the values added so far.
+     *
+     * @param fractions The quantiles to estimate, each between 0 and 1, such as 0.5 for the median
+     * @return The estimated value of each quantile, or NaN for every quantile of an empty sketch
+     */
+    public double[] quantiles(double[] fractions) {
+        for (double fraction : fractions) {
+            if (!(fraction >= 0 && fraction <= 1)) {
+                throw new IllegalArgumentException("Quantile must be between 0 and 1: " + fraction);
+            }
+        }
+        double[] result = new double[fractions.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        
+        // Every retained value with its weight, sorted by value: each level is sorted on its own and merged
+        // into the levels below it
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        double[] bufferValues = new double[retained];
+        long[] bufferWeights = new long[retained];
+        int n = 0;
+        for (int level = 0; level < levels.length; level++) {
+            int size = sizes[level];
+            System.arraycopy(levels[level], 0, values, n, size);
+            Arrays.sort(values, n, n + size);
+            Arrays.fill(weights, n, n + size, 1L << level);
+            mergeRuns(values, weights, n, n + size, bufferValues, bufferWeights);
+            n += size;
+        }
+        long totalWeight = 0;
+        for (long weight : weights) {
+            totalWeight += weight;
+        }
+        
+        for (int q = 0; q < fractions.length; q++) {
+            if (fractions[q] == 0) {
+                result[q] = min;
+            } else if (fractions[q] == 1) {
+                result[q] = max;
+            } else {
+                // The smallest value whose cumulative weight reaches the rank
+                double rank = fractions[q] * totalWeight;
+                long cumulative = 0;
+                result[q] = max;
+                for (int i = 0; i < n; i++) {
+                    cumulative += weights[i];
+                    if (cumulative >= rank) {
+                        result[q] = values[i];
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Merge two adjacent sorted runs of values and their weights, [0, split) and [split, end), into one.
+     * The first run is copied to the buffers, and the output never overtakes the second run.
+     */
+    private static void mergeRuns(double[] values, long[] weights, int split, int end,
+                                  double[] bufferValues, long[] bufferWeights) {
+        System.arraycopy(values, 0, bufferValues, 0, split);
+        System.arraycopy(weights, 0, bufferWeights, 0, split);
+        int left = 0;
+        int right = split;
+        int out = 0;
+        while (left < split && right < end) {
+            if (values[right] < bufferValues[left]) {
+                values[out] = values[right];
+                weights[out++] = weights[right++];
+            } else {
+                values[out] = bufferValues[left];
+                weights[out++] = bufferWeights[left++];
+            }
+        }
+        // Values left in the second run are already in place
+        while (left < split) {
+            values[out] = bufferValues[left];
+            weights[out++] = bufferWeights[left++];
+        }
+    }
+    
+    public int getK() {
+        return k;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    public boolean isEmpty() {
+        return count == 0;
+    }
+    
+    /**
+     * Get the number of values the sketch holds, which stays below about 3k.
+     *
+     * @return The retained values
+     */
+    public int getRetained() {
+        return retained;
+    }
+    
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeLong(random);
+        out.writeInt(levels.length);
+        for (int level = 0; level < levels.length; level++) {
+            out.writeInt(sizes[level]);
+            for (int i = 0; i < sizes[level]; i++) {
+                out.writeDouble(levels[level][i]);
+            }
+        }
+    }
+    
+    /**
+     * Replace the contents with a sketch written by {@link #writeTo(DataOutput)} from a sketch of the same k.
+     *
+     * @param in The input
+     * @throws IOException If reading fails
+     */
+    public void readFrom(DataInput in) throws IOException {
+        count = in.readLong();
+        min = in.readDouble();
+        max = in.readDouble();
+        random = in.readLong();
+        int levelCount = in.readInt();
+        levels = new double[levelCount][];
+        sizes = new int[levelCount];
+        retained = 0;
+        for (int level = 0; level < levelCount; level++) {
+            sizes[level] = in.readInt();
+            levels[level] = new double[sizes[level]];
+            for (int i = 0; i < sizes[level]; i++) {
+                levels[level][i] = in.readDouble();
+            }
+            retained += sizes[level];
+        }
+        maxRetained = 0;
+        for (int level = 0; level < levelCount; level++) {
+            maxRetained += capacity(level);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.sofi.experimentation.report.stats;
+
+import org.apache.commons.math3.special.Gamma;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Percentile bootstrap of the improvement of a treatment mean over a control mean, in percent.
+ *
+ * Each resample draws both groups again with replacement from the per-user values and records the improvement
+ * of the resampled means; the interval is given by the percentiles of those improvements. Resamples run on a
+ * fork-join pool in fixed chunks of {@link #CHUNK_RESAMPLES}. Every chunk gets its own random stream, split
+ * from the seed in a fixed order before any work is forked, so a seed gives the same interval on any number
+ * of cores and in any scheduling order.
+ *
+ * Per-user 0/1 outcomes such as conversions need no array: a resample of n users of whom k converted has a
+ * binomially distributed number of converters, which is drawn in constant time per group. Other values, such as
+ * the per-user totals of mean metrics, are resampled from their array at one draw per user.
+ */
+public class Bootstrap {
+    /** Resamples run by one fork-join task. */
+    static final int CHUNK_RESAMPLES = 32;
+    
+    // Below this mean, binomial draws search the distribution function instead of using rejection
+    private static final double INVERSION_MEAN = 10;
+    
+    private final ForkJoinPool pool;
+    
+    /**
+     * Create a bootstrap running on the common fork-join pool, which has a thread for every core but one;
+     * the calling thread works as well.
+     */
+    public Bootstrap() {
+        this(ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Create a bootstrap running on a given pool.
+     *
+     * @param pool The pool running the resamples
+     */
+    public Bootstrap(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * Bootstrap the improvement of the treatment's conversion rate over the control's.
+     *
+     * @param controlUsers The number of users in the control group
+     * @param controlConversions The number of converted users in the control group
+     * @param treatmentUsers The number of users in the treatment group
+     * @param treatmentConversions The number of converted users in the treatment group
+     * @param resamples The number of resamples
+     * @param confidenceLevel The confidence level, such as 0.95
+     * @param random The random stream, which is split for the chunks of resamples
+     * @return The interval
+     */
+    public BootstrapInterval conversionImprovement(long controlUsers, long controlConversions,
+                                                   long treatmentUsers, long treatmentConversions,
+                                                   int resamples, double confidenceLevel, SplittableRandom random) {
+        if (controlUsers <= 0 || treatmentUsers <= 0) {
+            throw new IllegalArgumentException("Both groups need users to bootstrap");
+        }
+        double controlRate = (double) controlConversions / controlUsers;
+        double treatmentRate = (double) treatmentConversions / treatmentUsers;
+        return run(resamples, confidenceLevel, random, (stream, results, from, to) -> {
+            for (int i = from; i < to; i++) {
+                double control = (double) binomial(stream, controlUsers, controlRate) / controlUsers;
+                double treatment = (double) binomial(stream, treatmentUsers, treatmentRate) / treatmentUsers;
+                results[i] = improvement(control, treatment);
+            }
+        });
+    }
+    
+    /**
+     * Bootstrap the improvement of the treatment's mean over the control's from one value per user.
+     *
+     * @param control The values of the control users
+     * @param treatment The values of the treatment users
+     * @param resamples The number of resamples
+     * @param confidenceLevel The confidence level, such as 0.95
+     * @param random The random stream, which is split for the chunks of resamples
+     * @return The interval
+     */
+    public BootstrapInterval meanImprovement(double[] control, double[] treatment,
+                                             int resamples, double confidenceLevel, SplittableRandom random) {
+        if (control.length == 0 || treatment.length == 0) {
+            throw new IllegalArgumentException("Both groups need users to bootstrap");
+        }
+        return run(resamples, confidenceLevel, random, (stream, results, from, to) -> {
+            for (int i = from; i < to; i++) {
+                results[i] = improvement(resampleMean(stream, control), resampleMean(stream, treatment));
+            }
+        });
+    }
+    
+    private interface Chunk {
+        void resample(SplittableRandom random, double[] results, int from, int to);
+    }
+    
+    private BootstrapInterval run(int resamples, double confidenceLevel, SplittableRandom random, Chunk chunk) {
+        if (resamples <= 0) {
+            throw new IllegalArgumentException("Resamples must be positive: " + resamples);
+        }
+        if (!(confidenceLevel > 0 && confidenceLevel < 1)) {
+            throw new IllegalArgumentException("Confidence level must be between 0 and 1: " + confidenceLevel);
+        }
+        double[] results = new double[resamples];
+        pool.invoke(new ResampleTask(chunk, results, 0, resamples, random));
+        
+        Arrays.sort(results);
+        double alpha = (1 - confidenceLevel) / 2;
+        return new BootstrapInterval(percentile(results, alpha), percentile(results, 1 - alpha),
+                confidenceLevel, resamples);
+    }
+    
+    /**
+     * Splits a range of resamples in halves down to chunks. The right half always gets a stream split from
+     * the left's before either runs, so the stream of every chunk only depends on its position.
+     */
+    private static class ResampleTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        
+        private final Chunk chunk;
+        private final double[] results;
+        private final int from;
+        private final int to;
+        private final SplittableRandom random;
+        
+        ResampleTask(Chunk chunk, double[] results, int from, int to, SplittableRandom random) {
+            this.chunk = chunk;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_RESAMPLES) {
+                chunk.resample(random, results, from, to);
+                return;
+            }
+            int middle = from + (to - from) / 2;
+            ResampleTask right = new ResampleTask(chunk, results, middle, to, random.split());
+            ResampleTask left = new ResampleTask(chunk, results, from, middle, random);
+            invokeAll(left, right);
+        }
+    }
+    
+    private static double resampleMean(SplittableRandom random, double[] values) {
+        double sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            sum += values[random.nextInt(values.length)];
+        }
+        return sum / values.length;
+    }
+    
+    // Same definition as StatisticalAnalysisService.calculateImprovement
+    private static double improvement(double control, double treatment) {
+        if (control == 0) {
+            return treatment > 0 ? Double.POSITIVE_INFINITY : 0;
+        }
+        return (treatment - control) / control * 100;
+    }
+    
+    // Linear interpolation between the closest ranks of sorted values
+    private static double percentile(double[] sorted, double p) {
+        double position = p * (sorted.length - 1);
+        int index = (int) Math.floor(position);
+        if (index + 1 >= sorted.length) {
+            return sorted[sorted.length - 1];
+        }
+        double lower = sorted[index];
+        double upper = sorted[index + 1];
+        if (lower == upper) {
+            // Also keeps equal infinite neighbours from interpolating to NaN
+            return lower;
+        }
+        return lower + (position - index) * (upper - lower);
+    }
+    
+    /**
+     * Draw from the binomial distribution: by inversion for small means and otherwise by Hormann's
+     * transformed rejection with squeeze (BTRS), which takes a bounded expected number of uniforms at any n.
+     *
+     * @param random The random stream
+     * @param n The number of trials
+     * @param p The success probability
+     * @return The number of successes
+     */
+    static long binomial(SplittableRandom random, long n, double p) {
+        if (p <= 0 || n == 0) {
+            return 0;
+        }
+        if (p >= 1) {
+            return n;
+        }
+        if (p > 0.5) {
+            return n - binomial(random, n, 1 - p);
+        }
+        return n * p < INVERSION_MEAN ? binomialInversion(random, n, p) : binomialRejection(random, n, p);
+    }
+    
+    private static long binomialInversion(SplittableRandom random, long n, double p) {
+        double q = 1 - p;
+        double ratio = p / q;
+        double probability = Math.exp(n * Math.log1p(-p));
+        double u = random.nextDouble();
+        long k = 0;
+        while (u > probability && k < n) {
+            u -= probability;
+            k++;
+            probability *= ratio * (n - k + 1) / k;
+        }
+        return k;
+    }
+    
+    private static long binomialRejection(SplittableRandom random, long n, double p) {
+        double q = 1 - p;
+        double spq = Math.sqrt(n * p * q);
+        double b = 1.15 + 2.53 * spq;
+        double a = -0.0873 + 0.0248 * b + 0.01 * p;
+        double c = n * p + 0.5;
+        double vr = 0.92 - 4.2 / b;
+        double alpha = (2.83 + 5.1 / b) * spq;
+        double logRatio = Math.log(p / q);
+        long m = (long) Math.floor((n + 1) * p);
+        double logModeTerms = Gamma.logGamma(m + 1.0) + Gamma.logGamma(n - m + 1.0);
+        while (true) {
+            double u = random.nextDouble() - 0.5;
+            double v = random.nextDouble();
+            double us = 0.5 - Math.abs(u);
+            long k = (long) Math.floor((2 * a / us + b) * u + c);
+            if (k < 0 || k > n) {
+                continue;
+            }
+            if (us >= 0.07 && v <= vr) {
+                return k;
+            }
+            // Accept with the ratio of the probability of k to that of the mode
+            v = Math.log(v * alpha / (a / (us * us) + b));
+            if (v <= logModeTerms - Gamma.logGamma(k + 1.0) - Gamma.logGamma(n - k + 1.0) + (k - m) * logRatio) {
+                return k;
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.sofi.experimentation.report.stats;
+
+/**
+ * Percentile bootstrap confidence interval.
+ */
+public class BootstrapInterval {
+    private final double lower;
+    private final double upper;
+    private final double confidenceLevel;
+    private final int resamples;
+    
+    public BootstrapInterval(double lower, double upper, double confidenceLevel, int resamples) {
+        this.lower = lower;
+        this.upper = upper;
+        this.confidenceLevel = confidenceLevel;
+        this.resamples = resamples;
+    }
+    
+    public double getLower() {
+        return lower;
+    }
+    
+    public double getUpper() {
+        return upper;
+    }
+    
+    public double getConfidenceLevel() {
+        return confidenceLevel;
+    }
+    
+    public int getResamples() {
+        return resamples;
+    }
+    
+    @Override
+    public String toString() {
+        return "[" + lower + ", " + upper + "] at " + confidenceLevel + " from " + resamples + " resamples";
+    }
+}
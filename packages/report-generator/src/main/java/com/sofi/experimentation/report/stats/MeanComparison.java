@@ -0,0 +1,77 @@
+package com.sofi.experimentation.report.stats;
+
+/**
+ * Result of comparing the mean of a treatment with that of a control.
+ */
+public class MeanComparison {
+    private final double pValue;
+    private final double difference;
+    private final double lower;
+    private final double upper;
+    private final double confidenceLevel;
+    private final double degreesOfFreedom;
+    
+    public MeanComparison(double pValue, double difference, double lower, double upper,
+                          double confidenceLevel, double degreesOfFreedom) {
+        this.pValue = pValue;
+        this.difference = difference;
+        this.lower = lower;
+        this.upper = upper;
+        this.confidenceLevel = confidenceLevel;
+        this.degreesOfFreedom = degreesOfFreedom;
+    }
+    
+    /**
+     * Get the two-sided p-value of the hypothesis that both means are equal.
+     *
+     * @return The p-value
+     */
+    public double getPValue() {
+        return pValue;
+    }
+    
+    /**
+     * Get the treatment mean minus the control mean.
+     *
+     * @return The difference of means
+     */
+    public double getDifference() {
+        return difference;
+    }
+    
+    /**
+     * Get the lower bound of the confidence interval of the difference.
+     *
+     * @return The lower bound
+     */
+    public double getLower() {
+        return lower;
+    }
+    
+    /**
+     * Get the upper bound of the confidence interval of the difference.
+     *
+     * @return The upper bound
+     */
+    public double getUpper() {
+        return upper;
+    }
+    
+    public double getConfidenceLevel() {
+        return confidenceLevel;
+    }
+    
+    /**
+     * Get the Welch-Satterthwaite degrees of freedom of the t distribution the test used.
+     *
+     * @return The degrees of freedom
+     */
+    public double getDegreesOfFreedom() {
+        return degreesOfFreedom;
+    }
+    
+    @Override
+    public String toString() {
+        return "p=" + pValue + " difference=" + difference + " [" + lower + ", " + upper + "] df=" + degreesOfFreedom;
+    }
+}
@@ -0,0 +1,56 @@
+package com.sofi.experimentation.report.stats;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * Tests comparing the means of continuous metrics from their {@link RunningMoments}.
+ *
+ * Welch's t-test does not assume equal variances, which rarely hold for amounts whose spread grows with their
+ * level, and only needs the count, mean and variance of each group, so it costs the same at any sample size.
+ */
+public final class MeanTests {
+    
+    private MeanTests() {
+        // Static methods only
+    }
+    
+    /**
+     * Welch's two-sided t-test of the difference of two means, with the confidence interval of the difference.
+     *
+     * @param control The moments of the control group
+     * @param treatment The moments of the treatment group
+     * @param confidenceLevel The confidence level of the interval, such as 0.95
+     * @return The comparison
+     * @throws IllegalArgumentException If a group has fewer than two values
+     */
+    public static MeanComparison welchTTest(RunningMoments control, RunningMoments treatment,
+                                            double confidenceLevel) {
+        if (control.getCount() < 2 || treatment.getCount() < 2) {
+            throw new IllegalArgumentException("Both groups need at least two values, got "
+                    + control.getCount() + " and " + treatment.getCount());
+        }
+        if (!(confidenceLevel > 0 && confidenceLevel < 1)) {
+            throw new IllegalArgumentException("Confidence level must be between 0 and 1: " + confidenceLevel);
+        }
+        
+        double controlVariance = control.getVariance() / control.getCount();
+        double treatmentVariance = treatment.getVariance() / treatment.getCount();
+        double variance = controlVariance + treatmentVariance;
+        double difference = treatment.getMean() - control.getMean();
+        if (!(variance > 0)) {
+            // Both groups are constant, so any difference is certain
+            return new MeanComparison(difference == 0 ? 1 : 0, difference, difference, difference,
+                    confidenceLevel, Double.POSITIVE_INFINITY);
+        }
+        
+        double degreesOfFreedom = variance * variance
+                / (controlVariance * controlVariance / (control.getCount() - 1)
+                + treatmentVariance * treatmentVariance / (treatment.getCount() - 1));
+        TDistribution t = new TDistribution(null, degreesOfFreedom);
+        double standardError = Math.sqrt(variance);
+        double pValue = 2 * t.cumulativeProbability(-Math.abs(difference) / standardError);
+        double halfWidth = t.inverseCumulativeProbability(1 - (1 - confidenceLevel) / 2) * standardError;
+        return new MeanComparison(pValue, difference, difference - halfWidth, difference + halfWidth,
+                confidenceLevel, degreesOfFreedom);
+    }
+}
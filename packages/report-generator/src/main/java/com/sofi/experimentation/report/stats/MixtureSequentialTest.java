@@ -0,0 +1,64 @@
+package com.sofi.experimentation.report.stats;
+
+/**
+ * Mixture sequential probability ratio test (mSPRT) of the difference between two conversion rates, giving
+ * an always-valid p-value: the chance of it ever dropping below alpha under the null hypothesis is at most
+ * alpha, however often it is looked at.
+ *
+ * Follows Johari et al., "Always Valid Inference" (2017). The observed difference of rates is treated as normal
+ * with its plug-in variance V, and the alternative mixes effects from a normal prior N(0, tau^2). The likelihood
+ * ratio then has the closed form sqrt(V / (V + tau^2)) * exp(d^2 tau^2 / (2 V (V + tau^2))), so each update
+ * takes constant time from the cumulative counts. The p-value is the running minimum of one over the ratio.
+ */
+public class MixtureSequentialTest {
+    /** Default standard deviation of the effects mixed over, in absolute conversion rate. */
+    public static final double DEFAULT_MIXING_SD = 0.01;
+    
+    private final double mixingVariance;
+    private double pValue = 1;
+    
+    /**
+     * Start a test.
+     *
+     * @param mixingSd The standard deviation tau of the effect prior, fixed before looking at the data
+     */
+    public MixtureSequentialTest(double mixingSd) {
+        if (!(mixingSd > 0)) {
+            throw new IllegalArgumentException("Mixing standard deviation must be positive: " + mixingSd);
+        }
+        this.mixingVariance = mixingSd * mixingSd;
+    }
+    
+    /**
+     * Update the test with the cumulative counts at the next look.
+     *
+     * @param controlUsers The users of the control so far
+     * @param controlConversions The converted users of the control so far
+     * @param treatmentUsers The users of the treatment so far
+     * @param treatmentConversions The converted users of the treatment so far
+     * @return The always-valid p-value after this look
+     */
+    public double update(long controlUsers, long controlConversions, long treatmentUsers, long treatmentConversions) {
+        if (controlUsers == 0 || treatmentUsers == 0) {
+            return pValue;
+        }
+        double controlRate = (double) controlConversions / controlUsers;
+        double treatmentRate = (double) treatmentConversions / treatmentUsers;
+        double variance = controlRate * (1 - controlRate) / controlUsers
+                + treatmentRate * (1 - treatmentRate) / treatmentUsers;
+        if (!(variance > 0)) {
+            // No variation yet, so no evidence either way
+            return pValue;
+        }
+        double difference = treatmentRate - controlRate;
+        double total = variance + mixingVariance;
+        double logRatio = 0.5 * Math.log(variance / total)
+                + difference * difference * mixingVariance / (2 * variance * total);
+        pValue = Math.min(pValue, Math.exp(-logRatio));
+        return pValue;
+    }
+    
+    public double getPValue() {
+        return pValue;
+    }
+}
@@ -0,0 +1,72 @@
+package com.sofi.experimentation.report.stats;
+
+/**
+ * Result of comparing the conversion rate of a treatment with that of a control.
+ */
+public class ProportionComparison {
+    private final SignificanceMethod method;
+    private final double pValue;
+    private final double difference;
+    private final double lower;
+    private final double upper;
+    private final double confidenceLevel;
+    
+    public ProportionComparison(SignificanceMethod method, double pValue, double difference,
+                                double lower, double upper, double confidenceLevel) {
+        this.method = method;
+        this.pValue = pValue;
+        this.difference = difference;
+        this.lower = lower;
+        this.upper = upper;
+        this.confidenceLevel = confidenceLevel;
+    }
+    
+    public SignificanceMethod getMethod() {
+        return method;
+    }
+    
+    /**
+     * Get the two-sided p-value of the hypothesis that both rates are equal.
+     *
+     * @return The p-value
+     */
+    public double getPValue() {
+        return pValue;
+    }
+    
+    /**
+     * Get the treatment rate minus the control rate.
+     *
+     * @return The difference of rates
+     */
+    public double getDifference() {
+        return difference;
+    }
+    
+    /**
+     * Get the lower bound of the confidence interval of the difference.
+     *
+     * @return The lower bound
+     */
+    public double getLower() {
+        return lower;
+    }
+    
+    /**
+     * Get the upper bound of the confidence interval of the difference.
+     *
+     * @return The upper bound
+     */
+    public double getUpper() {
+        return upper;
+    }
+    
+    public double getConfidenceLevel() {
+        return confidenceLevel;
+    }
+    
+    @Override
+    public String toString() {
+        return method + " p=" + pValue + " difference=" + difference + " [" + lower + ", " + upper + "]";
+    }
+}
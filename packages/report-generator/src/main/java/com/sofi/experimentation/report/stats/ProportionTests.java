@@ -0,0 +1,243 @@
+package com.sofi.experimentation.report.stats;
+
+import org.apache.commons.math3.special.Erf;
+import org.apache.commons.math3.special.Gamma;
+
+/**
+ * Closed-form and exact tests comparing conversion rates.
+ *
+ * Two variants are compared with a pooled two-proportion z-test, which is equivalent to Pearson's chi-square
+ * test on their 2x2 table and costs the same at any sample size. When an expected cell count of that table is
+ * below {@link #MIN_EXPECTED_COUNT}, the normal approximation is unreliable and Fisher's exact test is used
+ * instead; its cost grows only with the smallest margin of the table, which is small in exactly that case.
+ * Confidence intervals for the difference of rates use Newcombe's hybrid score method, which stays within
+ * [-1, 1] and keeps its coverage for small samples and rates near 0 or 1, where the Wald interval fails.
+ *
+ * Both rates are estimated from the data, unlike a one-sample binomial test against the control rate,
+ * which treats the control rate as known and understates the p-value.
+ */
+public final class ProportionTests {
+    /** Smallest expected cell count (Cochran's rule) for which the normal approximation is used. */
+    public static final double MIN_EXPECTED_COUNT = 5;
+    
+    // Relative tolerance when collecting tables as extreme as the observed one, as in R's fisher.test
+    private static final double FISHER_TOLERANCE = 1 + 1e-7;
+    
+    private ProportionTests() {
+        // Static methods only
+    }
+    
+    /**
+     * Compare the conversion rate of a treatment with that of a control, choosing the test by sample size.
+     *
+     * @param controlUsers The number of users in the control group
+     * @param controlConversions The number of converted users in the control group
+     * @param treatmentUsers The number of users in the treatment group
+     * @param treatmentConversions The number of converted users in the treatment group
+     * @param confidenceLevel The confidence level of the interval, such as 0.95
+     * @return The comparison
+     * @throws IllegalArgumentException If a group is empty or has more conversions than users
+     */
+    public static ProportionComparison compare(long controlUsers, long controlConversions,
+                                               long treatmentUsers, long treatmentConversions,
+                                               double confidenceLevel) {
+        checkGroup(controlUsers, controlConversions);
+        checkGroup(treatmentUsers, treatmentConversions);
+        if (!(confidenceLevel > 0 && confidenceLevel < 1)) {
+            throw new IllegalArgumentException("Confidence level must be between 0 and 1: " + confidenceLevel);
+        }
+        
+        SignificanceMethod method;
+        double pValue;
+        if (isLargeSample(controlUsers, controlConversions, treatmentUsers, treatmentConversions)) {
+            method = SignificanceMethod.Z_TEST;
+            pValue = zTest(controlUsers, controlConversions, treatmentUsers, treatmentConversions);
+        } else {
+            method = SignificanceMethod.FISHER_EXACT;
+            pValue = fisherExactTest(controlUsers, controlConversions, treatmentUsers, treatmentConversions);
+        }
+        
+        double z = normalQuantile(1 - (1 - confidenceLevel) / 2);
+        double controlRate = (double) controlConversions / controlUsers;
+        double treatmentRate = (double) treatmentConversions / treatmentUsers;
+        double[] control = wilsonInterval(controlUsers, controlConversions, z);
+        double[] treatment = wilsonInterval(treatmentUsers, treatmentConversions, z);
+        double difference = treatmentRate - controlRate;
+        double lower = difference - Math.sqrt(square(treatmentRate - treatment[0]) + square(control[1] - controlRate));
+        double upper = difference + Math.sqrt(square(treatment[1] - treatmentRate) + square(controlRate - control[0]));
+        
+        return new ProportionComparison(method, pValue, difference, lower, upper, confidenceLevel);
+    }
+    
+    /**
+     * Check whether every expected cell count of the 2x2 table reaches {@link #MIN_EXPECTED_COUNT}.
+     *
+     * @param controlUsers The number of users in the control group
+     * @param controlConversions The number of converted users in the control group
+     * @param treatmentUsers The number of users in the treatment group
+     * @param treatmentConversions The number of converted users in the treatment group
+     * @return True if the normal approximation can be used
+     */
+    public static boolean isLargeSample(long controlUsers, long controlConversions,
+                                        long treatmentUsers, long treatmentConversions) {
+        double users = controlUsers + treatmentUsers;
+        double conversions = controlConversions + treatmentConversions;
+        double smallestMargin = Math.min(conversions, users - conversions);
+        double smallestGroup = Math.min(controlUsers, treatmentUsers);
+        return smallestMargin * smallestGroup / users >= MIN_EXPECTED_COUNT;
+    }
+    
+    /**
+     * Two-sided pooled two-proportion z-test. The square of its statistic is Pearson's chi-square statistic
+     * of the 2x2 table without continuity correction, so both tests give the same p-value.
+     *
+     * @param controlUsers The number of users in the control group
+     * @param controlConversions The number of converted users in the control group
+     * @param treatmentUsers The number of users in the treatment group
+     * @param treatmentConversions The number of converted users in the treatment group
+     * @return The p-value, 1 if no user or every user converted
+     */
+    public static double zTest(long controlUsers, long controlConversions,
+                               long treatmentUsers, long treatmentConversions) {
+        double pooled = (double) (controlConversions + treatmentConversions) / (controlUsers + treatmentUsers);
+        double variance = pooled * (1 - pooled) * (1.0 / controlUsers + 1.0 / treatmentUsers);
+        if (!(variance > 0)) {
+            return 1;
+        }
+        double difference = (double) treatmentConversions / treatmentUsers - (double) controlConversions / controlUsers;
+        return 2 * normalSurvival(Math.abs(difference) / Math.sqrt(variance));
+    }
+    
+    /**
+     * Pearson's chi-square test that every group has the same conversion rate. With two groups it equals
+     * {@link #zTest(long, long, long, long)}; with more it tests all variants at once.
+     *
+     * @param users The number of users in each group
+     * @param conversions The number of converted users in each group
+     * @return The p-value, 1 if fewer than two groups have users or no variation exists
+     */
+    public static double chiSquareTest(long[] users, long[] conversions) {
+        long totalUsers = 0;
+        long totalConversions = 0;
+        int groups = 0;
+        for (int i = 0; i < users.length; i++) {
+            if (users[i] < 0 || conversions[i] < 0 || conversions[i] > users[i]) {
+                throw new IllegalArgumentException("Invalid group of " + users[i] + " users with "
+                        + conversions[i] + " conversions");
+            }
+            if (users[i] > 0) {
+                totalUsers += users[i];
+                totalConversions += conversions[i];
+                groups++;
+            }
+        }
+        double pooled = (double) totalConversions / totalUsers;
+        if (groups < 2 || !(pooled > 0 && pooled < 1)) {
+            return 1;
+        }
+        double statistic = 0;
+        for (int i = 0; i < users.length; i++) {
+            if (users[i] > 0) {
+                double expected = users[i] * pooled;
+                // Converted and non-converted cells share the same squared deviation
+                statistic += square(conversions[i] - expected) / (expected * (1 - pooled));
+            }
+        }
+        return Gamma.regularizedGammaQ((groups - 1) / 2.0, statistic / 2);
+    }
+    
+    /**
+     * Two-sided Fisher exact test: the probability, given the margins of the 2x2 table, of every table no more
+     * likely than the observed one. Runs over the conversions of the smaller side of the table.
+     *
+     * @param controlUsers The number of users in the control group
+     * @param controlConversions The number of converted users in the control group
+     * @param treatmentUsers The number of users in the treatment group
+     * @param treatmentConversions The number of converted users in the treatment group
+     * @return The p-value
+     */
+    public static double fisherExactTest(long controlUsers, long controlConversions,
+                                         long treatmentUsers, long treatmentConversions) {
+        long users = controlUsers + treatmentUsers;
+        long conversions = controlConversions + treatmentConversions;
+        // The treatment conversions follow a hypergeometric distribution over this support
+        long min = Math.max(0, conversions - controlUsers);
+        long max = Math.min(conversions, treatmentUsers);
+        
+        double constant = logBinomial(controlUsers, conversions - min) + logBinomial(treatmentUsers, min)
+                - logBinomial(users, conversions);
+        double observed = logHypergeometric(controlUsers, treatmentUsers, conversions, treatmentConversions);
+        double threshold = observed + Math.log(FISHER_TOLERANCE);
+        
+        // Walk the support with the ratio of successive probabilities, relative to the smallest table
+        double logProbability = constant;
+        double pValue = 0;
+        for (long k = min; k <= max; k++) {
+            if (k > min) {
+                logProbability += Math.log((double) (treatmentUsers - k + 1) * (conversions - k + 1))
+                        - Math.log((double) k * (controlUsers - conversions + k));
+            }
+            if (logProbability <= threshold) {
+                pValue += Math.exp(logProbability);
+            }
+        }
+        return Math.min(1, pValue);
+    }
+    
+    /**
+     * Wilson score interval of a proportion.
+     *
+     * @param users The number of users
+     * @param conversions The number of converted users
+     * @param z The standard normal quantile of the confidence level
+     * @return The lower and upper bound
+     */
+    static double[] wilsonInterval(long users, long conversions, double z) {
+        double rate = (double) conversions / users;
+        double z2 = z * z;
+        double denominator = 1 + z2 / users;
+        double center = (rate + z2 / (2.0 * users)) / denominator;
+        double halfWidth = z * Math.sqrt(rate * (1 - rate) / users + z2 / (4.0 * users * users)) / denominator;
+        return new double[] {Math.max(0, center - halfWidth), Math.min(1, center + halfWidth)};
+    }
+    
+    /**
+     * Upper tail probability of the standard normal distribution.
+     *
+     * @param z The value
+     * @return P(Z > z)
+     */
+    public static double normalSurvival(double z) {
+        return 0.5 * Erf.erfc(z / Math.sqrt(2));
+    }
+    
+    /**
+     * Quantile of the standard normal distribution.
+     *
+     * @param p The probability, between 0 and 1
+     * @return The value z with P(Z <= z) = p
+     */
+    public static double normalQuantile(double p) {
+        return Math.sqrt(2) * Erf.erfInv(2 * p - 1);
+    }
+    
+    private static double logHypergeometric(long controlUsers, long treatmentUsers, long conversions, long k) {
+        return logBinomial(controlUsers, conversions - k) + logBinomial(treatmentUsers, k)
+                - logBinomial(controlUsers + treatmentUsers, conversions);
+    }
+    
+    private static double logBinomial(long n, long k) {
+        return Gamma.logGamma(n + 1.0) - Gamma.logGamma(k + 1.0) - Gamma.logGamma(n - k + 1.0);
+    }
+    
+    private static void checkGroup(long users, long conversions) {
+        if (users <= 0 || conversions < 0 || conversions > users) {
+            throw new IllegalArgumentException("Invalid group of " + users + " users with " + conversions
+                    + " conversions");
+        }
+    }
+    
+    private static double square(double value) {
+        return value * value;
+    }
+}
@@ -0,0 +1,143 @@
+package com.sofi.experimentation.report.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Streaming count, mean and variance of a sequence of values, updated with Welford's algorithm.
+ *
+ * Instead of a sum and a sum of squares, whose difference cancels catastrophically when the variance is small
+ * next to the squared mean (such as loan amounts around 20000 varying by a few dollars), it keeps the mean and
+ * the sum of squared deviations from it, which stay accurate in any order. Two accumulators over disjoint values
+ * merge exactly with the pairwise update of Chan, Golub and LeVeque, so partial results of different threads
+ * or slices combine into the moments of all values.
+ */
+public class RunningMoments {
+    private long count;
+    private double mean;
+    private double m2;
+    
+    public RunningMoments() {
+        // Empty
+    }
+    
+    /**
+     * Create moments from their parts, such as ones read back from storage.
+     *
+     * @param count The number of values
+     * @param mean The mean of the values
+     * @param m2 The sum of squared deviations from the mean
+     */
+    public RunningMoments(long count, double mean, double m2) {
+        this.count = count;
+        this.mean = mean;
+        this.m2 = m2;
+    }
+    
+    /**
+     * Add a value.
+     *
+     * @param value The value
+     */
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+    }
+    
+    /**
+     * Add every value of another accumulator to this one.
+     *
+     * @param other The other accumulator, which is not changed
+     */
+    public void merge(RunningMoments other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            m2 = other.m2;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        m2 += other.m2 + delta * delta * ((double) count * other.count / total);
+        count = total;
+    }
+    
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Get the mean of the values.
+     *
+     * @return The mean, 0 if there are no values
+     */
+    public double getMean() {
+        return mean;
+    }
+    
+    /**
+     * Get the sum of the values, recovered from the mean.
+     *
+     * @return The sum
+     */
+    public double getSum() {
+        return mean * count;
+    }
+    
+    /**
+     * Get the sum of squared deviations from the mean.
+     *
+     * @return The sum of squared deviations
+     */
+    public double getM2() {
+        return m2;
+    }
+    
+    /**
+     * Get the unbiased sample variance.
+     *
+     * @return The variance, NaN with fewer than two values
+     */
+    public double getVariance() {
+        return count > 1 ? m2 / (count - 1) : Double.NaN;
+    }
+    
+    /**
+     * Get the sample standard deviation.
+     *
+     * @return The standard deviation, NaN with fewer than two values
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+    
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(count);
+        out.writeDouble(mean);
+        out.writeDouble(m2);
+    }
+    
+    /**
+     * Replace the moments with ones written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input
+     * @throws IOException If reading fails
+     */
+    public void readFrom(DataInput in) throws IOException {
+        count = in.readLong();
+        mean = in.readDouble();
+        m2 = in.readDouble();
+    }
+    
+    @Override
+    public String toString() {
+        return "n=" + count + " mean=" + mean + " sd=" + getStandardDeviation();
+    }
+}
@@ -0,0 +1,13 @@
+package com.sofi.experimentation.report.stats;
+
+/**
+ * Test used to compare a metric of two variants.
+ */
+public enum SignificanceMethod {
+    /** Pooled two-proportion z-test, equivalent to the chi-square test of the 2x2 table. */
+    Z_TEST,
+    /** Fisher's exact test, used when an expected cell count is too small for the normal approximation. */
+    FISHER_EXACT,
+    /** Welch's unequal-variance t-test, used for the means of continuous metrics. */
+    WELCH_T_TEST
+}
@@ -3,7 +3,11 @@ package com.sofi.experimentation.report.util;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Utility class for date operations.
@@ -12,6 +16,13 @@ public class DateUtils {
     
     private static final DateTimeFormatter ISO_DATE_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
     
+    private static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    
+    // Fixed millisecond precision, matching the timestamps written by the API (Date.toISOString)
+    private static final DateTimeFormatter ISO_MILLIS_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+    
     private DateUtils() {
         // Private constructor to prevent instantiation
     }
@@ -20,14 +31,134 @@ public class DateUtils {
      * Convert an ISO timestamp to a date string (YYYY-MM-DD).
      *
      * @param timestamp The ISO timestamp
+     * @param zone The zone whose calendar dates are used
      * @return The date string
      */
-    public static String toDateString(String timestamp) {
-        Instant instant = Instant.parse(timestamp);
-        LocalDate date = instant.atZone(ZoneId.systemDefault()).toLocalDate();
+    public static String toDateString(String timestamp, ZoneId zone) {
+        LocalDate date = LocalDate.ofEpochDay(toEpochDay(parseEpochMillis(timestamp), zone.getRules()));
         return date.format(ISO_DATE_FORMATTER);
     }
     
+    /**
+     * Parse an ISO-8601 UTC timestamp to epoch milliseconds, like {@code Instant.parse(timestamp).toEpochMilli()}.
+     * Timestamps of the form {@code yyyy-MM-ddTHH:mm:ss[.fraction]Z}, which is what the API writes, are decoded
+     * digit by digit without allocating; anything else is handed to {@link Instant#parse(CharSequence)}.
+     * Fractions are truncated to whole milliseconds.
+     *
+     * @param timestamp The ISO timestamp
+     * @return The epoch milliseconds
+     * @throws java.time.format.DateTimeParseException If the timestamp cannot be parsed
+     */
+    public static long parseEpochMillis(String timestamp) {
+        int length = timestamp.length();
+        if (length < 20
+                || timestamp.charAt(4) != '-' || timestamp.charAt(7) != '-' || timestamp.charAt(10) != 'T'
+                || timestamp.charAt(13) != ':' || timestamp.charAt(16) != ':'
+                || timestamp.charAt(length - 1) != 'Z') {
+            return Instant.parse(timestamp).toEpochMilli();
+        }
+        
+        int year = digits(timestamp, 0, 4);
+        int month = digits(timestamp, 5, 2);
+        int day = digits(timestamp, 8, 2);
+        int hour = digits(timestamp, 11, 2);
+        int minute = digits(timestamp, 14, 2);
+        int second = digits(timestamp, 17, 2);
+        
+        int millis = 0;
+        if (length > 20) {
+            // One to nine fraction digits, of which the first three are the milliseconds
+            if (timestamp.charAt(19) != '.' || length < 22 || length > 30) {
+                return Instant.parse(timestamp).toEpochMilli();
+            }
+            for (int i = 20, scale = 100; i < length - 1; i++, scale /= 10) {
+                int digit = timestamp.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Instant.parse(timestamp).toEpochMilli();
+                }
+                millis += digit * scale;
+            }
+        }
+        
+        // Leap seconds and out-of-range fields take the slow path, which resolves or rejects them
+        if ((year | month | day | hour | minute | second) < 0
+                || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour > 23 || minute > 59 || second > 59) {
+            return Instant.parse(timestamp).toEpochMilli();
+        }
+        
+        long epochSecond = epochDay(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+        return epochSecond * 1000 + millis;
+    }
+    
+    /**
+     * Get the index of the calendar day an instant falls on in a zone, counted from 1970-01-01.
+     *
+     * @param epochMillis The instant in epoch milliseconds
+     * @param zoneRules The rules of the zone
+     * @return The epoch day
+     */
+    public static long toEpochDay(long epochMillis, ZoneRules zoneRules) {
+        return Math.floorDiv(epochMillis + offsetMillis(epochMillis, zoneRules), MILLIS_PER_DAY);
+    }
+    
+    /**
+     * Get the index of the wall-clock hour an instant falls in in a zone, counted from 1970-01-01T00:00.
+     * Dividing by 24 with floor division gives the epoch day.
+     *
+     * @param epochMillis The instant in epoch milliseconds
+     * @param zoneRules The rules of the zone
+     * @return The epoch hour
+     */
+    public static long toEpochHour(long epochMillis, ZoneRules zoneRules) {
+        return Math.floorDiv(epochMillis + offsetMillis(epochMillis, zoneRules), MILLIS_PER_HOUR);
+    }
+    
+    private static long offsetMillis(long epochMillis, ZoneRules zoneRules) {
+        if (zoneRules.isFixedOffset()) {
+            return zoneRules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L;
+        }
+        return zoneRules.getOffset(Instant.ofEpochMilli(epochMillis)).getTotalSeconds() * 1000L;
+    }
+    
+    /**
+     * Parse a run of ASCII digits.
+     *
+     * @return The value, or -1 if a character is not a digit
+     */
+    private static int digits(String s, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = s.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+    
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0) && (year % 100 != 0 || year % 400 == 0);
+            return leap ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+    
+    /**
+     * Days from 1970-01-01 to a proleptic Gregorian date, counted in 400-year eras that start in March
+     * so the leap day falls at the end of each year.
+     */
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+    
     /**
      * Get the current timestamp in ISO format.
      *
@@ -37,6 +168,17 @@ public class DateUtils {
         return Instant.now().toString();
     }
     
+    /**
+     * Format epoch milliseconds as an ISO timestamp with millisecond precision, like the timestamps the API writes,
+     * so that it sorts lexicographically among them.
+     *
+     * @param epochMillis The epoch milliseconds
+     * @return The timestamp
+     */
+    public static String formatEpochMillis(long epochMillis) {
+        return ISO_MILLIS_FORMATTER.format(Instant.ofEpochMilli(epochMillis));
+    }
+    
     /**
      * Get a timestamp for a specified number of days ago.
      *
@@ -46,4 +188,39 @@ public class DateUtils {
     public static String getTimestampDaysAgo(int daysAgo) {
         return Instant.now().minusSeconds(daysAgo * 24 * 60 * 60).toString();
     }
-}
\ No newline at end of file
+    
+    /**
+     * Split a time range into evenly sized, contiguous sub-ranges.
+     * Each returned pair is {start, end}, where every end equals the next start. The boundaries are
+     * formatted with millisecond precision so that they sort lexicographically like the event timestamps.
+     * Boundaries that would not fall strictly between their neighbours are dropped, so fewer sub-ranges
+     * than requested may be returned for very short ranges.
+     *
+     * @param start The start time (ISO format)
+     * @param end The end time (ISO format)
+     * @param slices The requested number of sub-ranges
+     * @return The sub-ranges in ascending order
+     */
+    public static List<String[]> splitTimeRange(String start, String end, int slices) {
+        Instant startInstant = Instant.parse(start);
+        Instant endInstant = Instant.parse(end);
+        long spanMillis = endInstant.toEpochMilli() - startInstant.toEpochMilli();
+        
+        List<String> boundaries = new ArrayList<>();
+        boundaries.add(start);
+        for (int i = 1; i < slices; i++) {
+            String boundary = ISO_MILLIS_FORMATTER.format(
+                    Instant.ofEpochMilli(startInstant.toEpochMilli() + spanMillis * i / slices));
+            if (boundary.compareTo(boundaries.get(boundaries.size() - 1)) > 0 && boundary.compareTo(end) < 0) {
+                boundaries.add(boundary);
+            }
+        }
+        boundaries.add(end);
+        
+        List<String[]> ranges = new ArrayList<>();
+        for (int i = 0; i < boundaries.size() - 1; i++) {
+            ranges.add(new String[] {boundaries.get(i), boundaries.get(i + 1)});
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,47 @@
+package com.sofi.experimentation.report.util;
+
+/**
+ * Utility class for hashing.
+ */
+public class HashUtils {
+    
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    private HashUtils() {
+        // Private constructor to prevent instantiation
+    }
+    
+    /**
+     * Compute a well-mixed 64-bit hash of a string, suitable for sketches such as HyperLogLog.
+     * FNV-1a over the UTF-16 code units, followed by the MurmurHash3 finalizer to spread the bits.
+     *
+     * @param value The string (null hashes like the empty string)
+     * @return The hash
+     */
+    public static long hash64(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= FNV_PRIME;
+            }
+        }
+        return mix64(hash);
+    }
+    
+    /**
+     * MurmurHash3 64-bit finalizer.
+     *
+     * @param hash The value to mix
+     * @return The mixed value
+     */
+    public static long mix64(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,103 @@
+package com.sofi.experimentation.report.worker;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Job source that picks up job parameters files ({@code *.json}) from a local directory.
+ * Files are taken in name order. A job is claimed by moving its file into {@code processing/}, and moved
+ * to {@code done/} or {@code failed/} once the report has been generated, so several workers can share
+ * a directory and a restarted worker does not repeat finished jobs.
+ */
+public class DirectoryJobSource implements JobSource {
+    private static final Logger logger = LogManager.getLogger(DirectoryJobSource.class);
+    
+    private static final long POLL_INTERVAL_MILLIS = 200;
+    
+    private final Path directory;
+    private final Path processing;
+    private final Path done;
+    private final Path failed;
+    
+    public DirectoryJobSource(Path directory) throws IOException {
+        this.directory = directory;
+        this.processing = Files.createDirectories(directory.resolve("processing"));
+        this.done = Files.createDirectories(directory.resolve("done"));
+        this.failed = Files.createDirectories(directory.resolve("failed"));
+    }
+    
+    @Override
+    public Job poll(long timeoutMillis) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            for (Path file : listJobFiles()) {
+                Job job = claim(file);
+                if (job != null) {
+                    return job;
+                }
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                return null;
+            }
+            Thread.sleep(Math.min(remaining, POLL_INTERVAL_MILLIS));
+        }
+    }
+    
+    private List<Path> listJobFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> Files.isRegularFile(file) && file.getFileName().toString().endsWith(".json"))
+                    .sorted()
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+    
+    private Job claim(Path file) throws IOException {
+        Path claimed = processing.resolve(file.getFileName());
+        try {
+            Files.move(file, claimed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // Another worker claimed the file first
+            return null;
+        }
+        
+        String json = new String(Files.readAllBytes(claimed), StandardCharsets.UTF_8);
+        return new Job() {
+            @Override
+            public String getName() {
+                return claimed.getFileName().toString();
+            }
+            
+            @Override
+            public String getParametersJson() {
+                return json;
+            }
+            
+            @Override
+            public void complete(boolean success) {
+                try {
+                    Files.move(claimed, (success ? done : failed).resolve(claimed.getFileName()),
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException e) {
+                    logger.warn("Could not move job file {}: {}", claimed, e.getMessage());
+                }
+            }
+        };
+    }
+    
+    @Override
+    public boolean isExhausted() {
+        // New files can always appear
+        return false;
+    }
+}
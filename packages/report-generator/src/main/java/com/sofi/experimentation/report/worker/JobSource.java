@@ -0,0 +1,55 @@
+package com.sofi.experimentation.report.worker;
+
+/**
+ * Source of report jobs for the long-lived worker.
+ */
+public interface JobSource extends AutoCloseable {
+    
+    /**
+     * Wait for the next job.
+     *
+     * @param timeoutMillis The maximum time to wait
+     * @return The job, or null if none arrived within the timeout or the source is exhausted
+     * @throws Exception If the source cannot be read
+     */
+    Job poll(long timeoutMillis) throws Exception;
+    
+    /**
+     * Check whether the source can never produce another job, for example at the end of its input.
+     *
+     * @return True if the source is exhausted
+     */
+    boolean isExhausted();
+    
+    @Override
+    default void close() {
+        // Nothing to release by default
+    }
+    
+    /**
+     * A job taken from a source.
+     */
+    interface Job {
+        
+        /**
+         * Get a short description of where the job came from, for logging.
+         *
+         * @return The job name
+         */
+        String getName();
+        
+        /**
+         * Get the job parameters JSON, in the same format as the JOB_PARAMETERS environment variable.
+         *
+         * @return The job parameters JSON
+         */
+        String getParametersJson();
+        
+        /**
+         * Mark the job as done.
+         *
+         * @param success Whether the report was generated
+         */
+        void complete(boolean success);
+    }
+}
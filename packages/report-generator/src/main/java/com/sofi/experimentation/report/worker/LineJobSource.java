@@ -0,0 +1,84 @@
+package com.sofi.experimentation.report.worker;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job source that reads one job parameters JSON document per line, for example from stdin.
+ * Blank lines are skipped. The source is exhausted once the input ends and every line has been taken.
+ */
+public class LineJobSource implements JobSource {
+    private static final Logger logger = LogManager.getLogger(LineJobSource.class);
+    
+    private final BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+    private final Thread reader;
+    private volatile boolean endOfInput;
+    private int lineNumber;
+    
+    public LineJobSource(InputStream input) {
+        // A reader thread lets poll() time out even though reads from the stream block
+        this.reader = new Thread(() -> readLines(input), "job-line-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+    
+    private void readLines(InputStream input) {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!line.isBlank()) {
+                    lines.add(line);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error reading jobs from input", e);
+        } finally {
+            endOfInput = true;
+        }
+    }
+    
+    @Override
+    public Job poll(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            // Wake up periodically so the end of the input is noticed without waiting out the timeout
+            long remaining = Math.min(deadline - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(100));
+            String line = lines.poll(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+            if (line != null) {
+                String name = "line " + (++lineNumber);
+                return new Job() {
+                    @Override
+                    public String getName() {
+                        return name;
+                    }
+                    
+                    @Override
+                    public String getParametersJson() {
+                        return line;
+                    }
+                    
+                    @Override
+                    public void complete(boolean success) {
+                        // Nothing to acknowledge for a stream
+                    }
+                };
+            }
+            if (isExhausted() || System.nanoTime() >= deadline) {
+                return null;
+            }
+        }
+    }
+    
+    @Override
+    public boolean isExhausted() {
+        return endOfInput && lines.isEmpty();
+    }
+}
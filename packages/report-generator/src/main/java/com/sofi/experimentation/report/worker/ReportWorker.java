@@ -0,0 +1,93 @@
+package com.sofi.experimentation.report.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofi.experimentation.report.model.ReportJobParameters;
+import com.sofi.experimentation.report.service.ReportGenerationService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs report jobs from a {@link JobSource} one after another in the same JVM, so the Dagger component,
+ * AWS clients and JIT-compiled code are reused across jobs. Stops when no job arrives within the idle timeout
+ * or the source is exhausted.
+ */
+public class ReportWorker {
+    private static final Logger logger = LogManager.getLogger(ReportWorker.class);
+    
+    private final ReportGenerationService reportService;
+    private final ObjectMapper objectMapper;
+    private final long idleTimeoutMillis;
+    
+    private int completedJobs;
+    private int failedJobs;
+    private long totalLatencyMillis;
+    private long maxLatencyMillis;
+    
+    public ReportWorker(ReportGenerationService reportService, ObjectMapper objectMapper, long idleTimeoutMillis) {
+        this.reportService = reportService;
+        this.objectMapper = objectMapper;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+    
+    /**
+     * Process jobs until the source is idle for longer than the timeout or is exhausted.
+     * A failed job is logged and marked as failed; the worker carries on with the next one.
+     *
+     * @param source The job source
+     * @throws Exception If the source cannot be read
+     */
+    public void run(JobSource source) throws Exception {
+        logger.info("Worker waiting for jobs (idle timeout {} ms)", idleTimeoutMillis);
+        
+        while (!source.isExhausted()) {
+            JobSource.Job job = source.poll(idleTimeoutMillis);
+            if (job == null) {
+                if (!source.isExhausted()) {
+                    logger.info("No job received for {} ms, stopping worker", idleTimeoutMillis);
+                }
+                break;
+            }
+            process(job);
+        }
+        
+        logger.info("Worker processed {} jobs ({} failed), mean latency {} ms, max latency {} ms",
+                completedJobs + failedJobs, failedJobs, getMeanLatencyMillis(), maxLatencyMillis);
+    }
+    
+    private void process(JobSource.Job job) {
+        long startTime = System.nanoTime();
+        boolean success = false;
+        try {
+            ReportJobParameters jobParameters = objectMapper.readValue(job.getParametersJson(), ReportJobParameters.class);
+            logger.info("Starting job {} for experiment: {}", job.getName(), jobParameters.getExperimentId());
+            reportService.generateReport(jobParameters);
+            success = true;
+        } catch (Exception e) {
+            logger.error("Error processing job " + job.getName(), e);
+        }
+        
+        long latencyMillis = (System.nanoTime() - startTime) / 1_000_000;
+        totalLatencyMillis += latencyMillis;
+        maxLatencyMillis = Math.max(maxLatencyMillis, latencyMillis);
+        if (success) {
+            completedJobs++;
+        } else {
+            failedJobs++;
+        }
+        logger.info("Job {} {} in {} ms", job.getName(), success ? "completed" : "failed", latencyMillis);
+        job.complete(success);
+    }
+    
+    public int getCompletedJobs() {
+        return completedJobs;
+    }
+    
+    public int getFailedJobs() {
+        return failedJobs;
+    }
+    
+    public long getMeanLatencyMillis() {
+        int jobs = completedJobs + failedJobs;
+        return jobs == 0 ? 0 : totalLatencyMillis / jobs;
+    }
+}
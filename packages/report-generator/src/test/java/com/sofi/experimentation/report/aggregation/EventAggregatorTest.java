@@ -0,0 +1,517 @@
+package com.sofi.experimentation.report.aggregation;
+
+import com.sofi.experimentation.report.model.DistinctCountMode;
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.model.MetricDefinition;
+import com.sofi.experimentation.report.model.MetricType;
+import com.sofi.experimentation.report.model.TimeGranularity;
+import com.sofi.experimentation.report.sketch.KllSketch;
+import com.sofi.experimentation.report.stats.RunningMoments;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.ZoneOffset;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the EventAggregator.
+ */
+public class EventAggregatorTest {
+    
+    private static List<ExperimentEvent> createEvents(int count) {
+        Random random = new Random(7);
+        long start = Instant.parse("2025-03-19T00:00:00Z").toEpochMilli();
+        List<ExperimentEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ExperimentEvent event = new ExperimentEvent();
+            event.setVariantId(random.nextBoolean() ? "var1" : "var2");
+            event.setUserId("user-" + random.nextInt(count / 4));
+            event.setAction(random.nextInt(8) == 0 ? "CONVERSION" : "PAGE_VIEW");
+            event.setTimestamp(Instant.ofEpochMilli(start + i * 60_000L).toString());
+            events.add(event);
+        }
+        return events;
+    }
+    
+    @Test
+    public void testCounts() {
+        List<ExperimentEvent> events = new ArrayList<>();
+        String[][] rows = {
+                {"var1", "user-1", "PAGE_VIEW", "2025-03-19T10:00:00Z"},
+                {"var1", "user-1", "CONVERSION", "2025-03-19T10:01:00Z"},
+                {"var1", "user-2", "PAGE_VIEW", "2025-03-20T10:00:00Z"},
+                {"var2", "user-2", "LOAN_ACCEPTANCE", "2025-03-20T11:00:00Z"},
+                {"var2", "user-3", "PAGE_VIEW", "2025-03-20T12:00:00Z"},
+        };
+        for (String[] row : rows) {
+            ExperimentEvent event = new ExperimentEvent();
+            event.setVariantId(row[0]);
+            event.setUserId(row[1]);
+            event.setAction(row[2]);
+            event.setTimestamp(row[3]);
+            events.add(event);
+        }
+        
+        EventAggregator aggregator = new EventAggregator().acceptAll(events);
+        
+        assertEquals(5, aggregator.getTotalEvents());
+        assertEquals(4, aggregator.getTotalUsers());
+        assertEquals(3, aggregator.getDistinctUsers());
+        assertEquals(2, aggregator.getTotalConversions());
+        assertEquals(1, aggregator.getOverlappingUsers().intValue());
+        assertEquals(1, aggregator.getOverlappingConvertedUsers().intValue());
+        assertEquals(2, aggregator.getVariant("var1").getUsers());
+        assertEquals(1, aggregator.getVariant("var1").getConversions());
+        assertEquals(2, aggregator.getVariant("var1").getActionCounts().get("PAGE_VIEW").intValue());
+    }
+    
+    @Test
+    public void testCheckpointRoundTripContinuesAggregation() throws Exception {
+        for (DistinctCountMode mode : DistinctCountMode.values()) {
+            List<ExperimentEvent> events = createEvents(20000);
+            EventAggregator full = new EventAggregator(mode, 12).acceptAll(events);
+            
+            EventAggregator firstHalf = new EventAggregator(mode, 12).acceptAll(events.subList(0, 10000));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            firstHalf.writeTo(new DataOutputStream(bytes));
+            EventAggregator resumed = EventAggregator.readFrom(
+                    new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), firstHalf.getZone());
+            resumed.acceptAll(events.subList(10000, events.size()));
+            
+            assertEquals(full.getTotalEvents(), resumed.getTotalEvents());
+            assertEquals(full.getTotalUsers(), resumed.getTotalUsers());
+            assertEquals(full.getTotalConversions(), resumed.getTotalConversions());
+            assertEquals(full.getTimeBuckets(), resumed.getTimeBuckets());
+            for (String variantId : full.getVariants().keySet()) {
+                assertEquals(full.getVariant(variantId).getUsers(), resumed.getVariant(variantId).getUsers());
+                assertEquals(full.getVariant(variantId).getConversions(), resumed.getVariant(variantId).getConversions());
+                assertEquals(full.getVariant(variantId).getActionCounts(), resumed.getVariant(variantId).getActionCounts());
+                assertArrayEquals(full.getBucketEvents(variantId), resumed.getBucketEvents(variantId));
+                assertArrayEquals(full.getBucketConversions(variantId), resumed.getBucketConversions(variantId));
+                assertArrayEquals(full.getCumulativeUsers(variantId), resumed.getCumulativeUsers(variantId));
+                assertArrayEquals(full.getCumulativeConversions(variantId), resumed.getCumulativeConversions(variantId));
+            }
+        }
+    }
+    
+    @Test
+    public void testTimeSeriesMatchesNaiveBucketingInAnyOrder() {
+        ZoneId zone = ZoneId.of("America/New_York");
+        List<ExperimentEvent> events = createEvents(20000);
+        List<ExperimentEvent> shuffled = new ArrayList<>(events);
+        Collections.shuffle(shuffled, new Random(3));
+        
+        for (TimeGranularity granularity : TimeGranularity.values()) {
+            // Reference: group by bucket label, keeping converted users in a set per bucket
+            TreeMap<String, Integer> expectedEvents = new TreeMap<>();
+            TreeMap<String, Set<String>> expectedConverters = new TreeMap<>();
+            for (ExperimentEvent event : events) {
+                if (!"var1".equals(event.getVariantId())) {
+                    continue;
+                }
+                ZonedDateTime time = Instant.parse(event.getTimestamp()).atZone(zone);
+                String label;
+                switch (granularity) {
+                    case HOURLY:
+                        label = time.toLocalDateTime().truncatedTo(ChronoUnit.HOURS).toString();
+                        break;
+                    case WEEKLY:
+                        label = time.toLocalDate().with(DayOfWeek.MONDAY).toString();
+                        break;
+                    default:
+                        label = time.toLocalDate().toString();
+                }
+                expectedEvents.merge(label, 1, Integer::sum);
+                Set<String> converters = expectedConverters.computeIfAbsent(label, k -> new HashSet<>());
+                if (MetricDefinition.DEFAULT_CONVERSION_ACTIONS.contains(event.getAction())) {
+                    converters.add(event.getUserId());
+                }
+            }
+            
+            for (List<ExperimentEvent> input : List.of(events, shuffled)) {
+                EventAggregator aggregator =
+                        new EventAggregator(DistinctCountMode.EXACT, 0, zone, granularity).acceptAll(input);
+                assertEquals(new ArrayList<>(expectedEvents.keySet()), aggregator.getTimeBuckets(), granularity.name());
+                int[] bucketEvents = aggregator.getBucketEvents("var1");
+                int[] bucketConversions = aggregator.getBucketConversions("var1");
+                int index = 0;
+                for (String label : expectedEvents.keySet()) {
+                    assertEquals(expectedEvents.get(label).intValue(), bucketEvents[index], label);
+                    assertEquals(expectedConverters.get(label).size(), bucketConversions[index], label);
+                    index++;
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testCumulativeCountsMatchFirstBucketOfEachUser() {
+        List<ExperimentEvent> events = createEvents(20000);
+        List<ExperimentEvent> shuffled = new ArrayList<>(events);
+        Collections.shuffle(shuffled, new Random(5));
+        
+        // Reference: the first day each user of var1 was seen and converted
+        TreeMap<String, String> firstSeen = new TreeMap<>();
+        TreeMap<String, String> firstConverted = new TreeMap<>();
+        for (ExperimentEvent event : events) {
+            if (!"var1".equals(event.getVariantId())) {
+                continue;
+            }
+            String day = Instant.parse(event.getTimestamp()).atZone(ZoneOffset.UTC).toLocalDate().toString();
+            firstSeen.merge(event.getUserId(), day, (x, y) -> x.compareTo(y) <= 0 ? x : y);
+            if (MetricDefinition.DEFAULT_CONVERSION_ACTIONS.contains(event.getAction())) {
+                firstConverted.merge(event.getUserId(), day, (x, y) -> x.compareTo(y) <= 0 ? x : y);
+            }
+        }
+        
+        for (List<ExperimentEvent> input : List.of(events, shuffled)) {
+            EventAggregator aggregator = new EventAggregator(
+                    DistinctCountMode.EXACT, 0, ZoneOffset.UTC, TimeGranularity.DAILY).acceptAll(input);
+            List<String> days = aggregator.getTimeBuckets();
+            int[] users = aggregator.getCumulativeUsers("var1");
+            int[] conversions = aggregator.getCumulativeConversions("var1");
+            for (int i = 0; i < days.size(); i++) {
+                String day = days.get(i);
+                assertEquals(firstSeen.values().stream().filter(d -> d.compareTo(day) <= 0).count(), users[i], day);
+                assertEquals(firstConverted.values().stream().filter(d -> d.compareTo(day) <= 0).count(),
+                        conversions[i], day);
+            }
+            assertEquals(aggregator.getVariant("var1").getUsers(), users[days.size() - 1]);
+            assertEquals(aggregator.getVariant("var1").getConversions(), conversions[days.size() - 1]);
+        }
+        
+        assertNull(new EventAggregator(DistinctCountMode.APPROXIMATE, 12).acceptAll(events).getCumulativeUsers("var1"));
+    }
+    
+    @Test
+    public void testApproximateTimeSeriesStateIsBoundedByBuckets() {
+        long start = Instant.parse("2025-03-19T00:00:00Z").toEpochMilli();
+        int hours = 24;
+        long bound = 2L * hours << TimeSeriesMatrix.MAX_CONVERTER_PRECISION;
+        for (int users : new int[] {20_000, 200_000}) {
+            // Every user converts once, so each bucket's converters equal its events
+            EventAggregator aggregator = new EventAggregator(
+                    DistinctCountMode.APPROXIMATE, 14, ZoneOffset.UTC, TimeGranularity.HOURLY);
+            for (int i = 0; i < users; i++) {
+                ExperimentEvent event = new ExperimentEvent();
+                event.setVariantId(i % 2 == 0 ? "var1" : "var2");
+                event.setUserId("user-" + i);
+                event.setAction("CONVERSION");
+                event.setTimestamp(Instant.ofEpochMilli(start + (long) i * hours * 3_600_000L / users).toString());
+                aggregator.accept(event);
+            }
+            
+            assertEquals(hours, aggregator.getTimeBuckets().size());
+            assertTrue(aggregator.getEstimatedTimeSeriesBytes() <= bound, "users: " + users);
+            for (String variantId : List.of("var1", "var2")) {
+                int[] bucketEvents = aggregator.getBucketEvents(variantId);
+                int[] bucketConversions = aggregator.getBucketConversions(variantId);
+                for (int i = 0; i < hours; i++) {
+                    assertEquals(bucketEvents[i], bucketConversions[i], bucketEvents[i] * 0.1, variantId + " " + i);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testMetricDefinitions() throws Exception {
+        List<MetricDefinition> definitions = List.of(
+                new MetricDefinition("clicks", MetricType.COUNT, List.of("CLICK"), null, null),
+                new MetricDefinition("applied", MetricType.UNIQUE_CONVERSION, List.of("APPLY"), null, null),
+                new MetricDefinition("clickThrough", MetricType.RATIO, List.of("CLICK"), List.of("PAGE_VIEW"), null),
+                new MetricDefinition("amount", MetricType.SUM, List.of("APPLY"), null, "amount"));
+        String[][] rows = {
+                {"user-1", "PAGE_VIEW", null},
+                {"user-1", "CLICK", null},
+                {"user-1", "APPLY", "{\"amount\": 1000}"},
+                {"user-1", "APPLY", "{\"amount\": \"500.5\"}"},
+                {"user-2", "PAGE_VIEW", null},
+                {"user-2", "PAGE_VIEW", null},
+                {"user-2", "CLICK", null},
+                {"user-3", "APPLY", "{\"amount\": \"n/a\"}"},
+                {"user-4", "CONVERSION", null},
+        };
+        List<ExperimentEvent> events = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            ExperimentEvent event = new ExperimentEvent();
+            event.setVariantId("var1");
+            event.setUserId(rows[i][0]);
+            event.setAction(rows[i][1]);
+            event.setTimestamp(Instant.parse("2025-03-19T10:00:00Z").plusSeconds(i).toString());
+            event.setMetadataJson(rows[i][2]);
+            events.add(event);
+        }
+        
+        EventAggregator aggregator = new EventAggregator(
+                DistinctCountMode.EXACT, 0, ZoneOffset.UTC, TimeGranularity.DAILY, definitions).acceptAll(events);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        aggregator.writeTo(new DataOutputStream(bytes));
+        EventAggregator restored = EventAggregator.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), aggregator.getZone());
+        
+        for (EventAggregator result : List.of(aggregator, restored)) {
+            MetricSet metrics = result.getMetrics();
+            VariantAccumulator variant = result.getVariant("var1");
+            assertEquals(definitions, metrics.getDefinitions());
+            // The unique conversion metric is the primary conversion, so CONVERSION no longer counts
+            assertEquals(2, variant.getConversions());
+            assertEquals(2, metrics.numerator(0, variant));
+            assertEquals(4, metrics.denominator(0, variant));
+            assertEquals(2, metrics.numerator(1, variant));
+            assertEquals(4, metrics.denominator(1, variant));
+            assertEquals(2, metrics.numerator(2, variant));
+            assertEquals(3, metrics.denominator(2, variant));
+            assertEquals(1500.5, metrics.numerator(3, variant), 1e-9);
+            assertEquals(2, metrics.denominator(3, variant));
+        }
+    }
+    
+    @Test
+    public void testMeanMetricAggregatesPerUser() throws Exception {
+        List<MetricDefinition> definitions = List.of(
+                new MetricDefinition("amount", MetricType.MEAN, List.of("APPLY"), null, "amount"));
+        String[][] rows = {
+                {"user-1", "APPLY", "100"},
+                {"user-2", "APPLY", "300"},
+                {"user-1", "APPLY", "200"},
+                {"user-3", "APPLY", null},
+                {"user-3", "PAGE_VIEW", "1000"},
+                {"user-4", "APPLY", "600"},
+        };
+        List<ExperimentEvent> events = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            ExperimentEvent event = new ExperimentEvent();
+            event.setVariantId("var1");
+            event.setUserId(rows[i][0]);
+            event.setAction(rows[i][1]);
+            event.setTimestamp(Instant.parse("2025-03-19T10:00:00Z").plusSeconds(i).toString());
+            event.setMetadataJson(rows[i][2] != null ? "{\"amount\": " + rows[i][2] + "}" : null);
+            events.add(event);
+        }
+        
+        // Half of the events before a checkpoint, so user-1's total continues after it
+        EventAggregator first = new EventAggregator(
+                DistinctCountMode.EXACT, 0, ZoneOffset.UTC, TimeGranularity.DAILY, definitions)
+                .acceptAll(events.subList(0, 2));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        first.writeTo(new DataOutputStream(bytes));
+        EventAggregator resumed = EventAggregator.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), first.getZone());
+        resumed.acceptAll(events.subList(2, events.size()));
+        EventAggregator whole = new EventAggregator(
+                DistinctCountMode.EXACT, 0, ZoneOffset.UTC, TimeGranularity.DAILY, definitions).acceptAll(events);
+        
+        // Users 1, 2 and 4 have totals 300, 300 and 600; user 3 has no value
+        for (EventAggregator aggregator : List.of(whole, resumed)) {
+            int index = aggregator.getMetrics().getDefinitions().indexOf(definitions.get(0));
+            RunningMoments moments = aggregator.getMetrics().moments(index, aggregator.getVariant("var1"));
+            assertEquals(3, moments.getCount());
+            assertEquals(400, moments.getMean(), 1e-9);
+            assertEquals(30000, moments.getVariance(), 1e-6);
+            assertEquals(1200, aggregator.getMetrics().numerator(index, aggregator.getVariant("var1")), 1e-9);
+            assertEquals(3, aggregator.getMetrics().denominator(index, aggregator.getVariant("var1")));
+            double[] totals = aggregator.getMetrics().totals(index, aggregator.getVariant("var1"));
+            Arrays.sort(totals);
+            assertArrayEquals(new double[] {300, 300, 600}, totals, 1e-9);
+        }
+        
+        // Without per-user state, every event is an observation
+        EventAggregator approximate = new EventAggregator(
+                DistinctCountMode.APPROXIMATE, 12, ZoneOffset.UTC, TimeGranularity.DAILY, definitions)
+                .acceptAll(events);
+        int index = approximate.getMetrics().getDefinitions().indexOf(definitions.get(0));
+        RunningMoments moments = approximate.getMetrics().moments(index, approximate.getVariant("var1"));
+        assertEquals(4, moments.getCount());
+        assertEquals(300, moments.getMean(), 1e-9);
+        assertNull(approximate.getMetrics().totals(index, approximate.getVariant("var1")));
+    }
+    
+    @Test
+    public void testQuantileSketchesPerVariantAndBucket() throws Exception {
+        List<MetricDefinition> definitions = List.of(
+                new MetricDefinition("amount", MetricType.SUM, List.of("APPLY"), null, "amount"));
+        Random random = new Random(11);
+        long start = Instant.parse("2025-03-19T00:00:00Z").toEpochMilli();
+        List<ExperimentEvent> events = new ArrayList<>();
+        List<List<Double>> byDay = new ArrayList<>();
+        List<Double> all = new ArrayList<>();
+        for (int i = 0; i < 30000; i++) {
+            ExperimentEvent event = new ExperimentEvent();
+            event.setVariantId("var1");
+            event.setUserId("user-" + random.nextInt(5000));
+            event.setAction("APPLY");
+            // Three days of events
+            long time = start + i * 8_640L;
+            event.setTimestamp(Instant.ofEpochMilli(time).toString());
+            double amount = Math.round(Math.exp(9 + random.nextGaussian()));
+            event.setMetadataJson("{\"amount\": " + amount + "}");
+            events.add(event);
+            int day = (int) ((time - start) / 86_400_000L);
+            while (byDay.size() <= day) {
+                byDay.add(new ArrayList<>());
+            }
+            byDay.get(day).add(amount);
+            all.add(amount);
+        }
+        
+        EventAggregator first = new EventAggregator(DistinctCountMode.EXACT, 0, ZoneOffset.UTC,
+                TimeGranularity.DAILY, definitions, KllSketch.DEFAULT_K).acceptAll(events.subList(0, 15000));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        first.writeTo(new DataOutputStream(bytes));
+        EventAggregator resumed = EventAggregator.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), first.getZone());
+        resumed.acceptAll(events.subList(15000, events.size()));
+        assertEquals(KllSketch.DEFAULT_K, resumed.getQuantileSketchK());
+        
+        int index = resumed.getMetrics().getDefinitions().indexOf(definitions.get(0));
+        KllSketch variantSketch = resumed.getMetrics().sketch(index, resumed.getVariant("var1"));
+        assertEquals(all.size(), variantSketch.getCount());
+        assertMedianWithin(all, variantSketch.quantiles(new double[] {0.5})[0]);
+        
+        KllSketch[] bucketSketches = resumed.getBucketSketches("var1", index);
+        assertEquals(byDay.size(), bucketSketches.length);
+        for (int day = 0; day < byDay.size(); day++) {
+            assertEquals(byDay.get(day).size(), bucketSketches[day].getCount());
+            assertMedianWithin(byDay.get(day), bucketSketches[day].quantiles(new double[] {0.5})[0]);
+        }
+        
+        // Metrics without values and aggregators without sketches have none
+        assertNull(resumed.getBucketSketches("var1", 0));
+        assertNull(new EventAggregator(DistinctCountMode.EXACT, 0, ZoneOffset.UTC, TimeGranularity.DAILY,
+                definitions).acceptAll(events).getBucketSketches("var1", index));
+    }
+    
+    private static void assertMedianWithin(List<Double> values, double estimate) {
+        long below = values.stream().filter(v -> v < estimate).count();
+        long upTo = values.stream().filter(v -> v <= estimate).count();
+        double half = values.size() / 2.0;
+        // Within 1% of rank
+        assertTrue(below <= half + values.size() * 0.01 && upTo >= half - values.size() * 0.01,
+                "Median estimate " + estimate + " has ranks " + below + " to " + upTo + " of " + values.size());
+    }
+    
+    @Test
+    public void testSpilledAggregationMatchesInMemory(@TempDir Path spillDirectory) throws Exception {
+        List<MetricDefinition> definitions = List.of(
+                new MetricDefinition("amountPerUser", MetricType.MEAN, List.of("APPLY"), null, "amount"));
+        Random random = new Random(5);
+        long start = Instant.parse("2025-03-19T00:00:00Z").toEpochMilli();
+        List<String> users = new ArrayList<>();
+        // Resident users, then users of the first partition ordered by user, so that it spills again
+        for (int i = 0; i < 1000; i++) {
+            users.add("resident-" + i);
+        }
+        for (int i = 0; users.size() < 8000; i++) {
+            if (SpillPartitions.partitionOf("nested-" + i, 0) == 0) {
+                for (int repeat = 0; repeat < 5; repeat++) {
+                    users.add("nested-" + i);
+                }
+            }
+        }
+        for (int i = 0; i < 5000; i++) {
+            users.add(random.nextInt(4) == 0 ? "resident-" + random.nextInt(1000) : "late-" + random.nextInt(2000));
+        }
+        List<ExperimentEvent> events = new ArrayList<>();
+        for (int i = 0; i < users.size() * 2; i++) {
+            String userId = users.get(i < 2000 ? random.nextInt(1000) : i / 2);
+            ExperimentEvent event = new ExperimentEvent();
+            // Mostly one variant per user, with some users in both
+            event.setVariantId((userId.hashCode() & 1) == 0 || random.nextInt(20) == 0 ? "control" : "treatment");
+            event.setUserId(userId);
+            int action = random.nextInt(6);
+            event.setAction(action == 0 ? "CONVERSION" : action == 1 ? "APPLY" : "PAGE_VIEW");
+            event.setMetadataJson("{\"amount\": " + random.nextInt(1000) + "}");
+            event.setTimestamp(Instant.ofEpochMilli(start + random.nextInt(3 * 86_400) * 1000L).toString());
+            events.add(event);
+        }
+        
+        EventAggregator inMemory = new EventAggregator(DistinctCountMode.EXACT, 0, ZoneOffset.UTC,
+                TimeGranularity.DAILY, definitions, KllSketch.DEFAULT_K).acceptAll(events);
+        EventAggregator spilled = new EventAggregator(DistinctCountMode.EXACT, 0, ZoneOffset.UTC,
+                TimeGranularity.DAILY, definitions, KllSketch.DEFAULT_K).spillAbove(50_000, spillDirectory);
+        spilled.acceptAll(events);
+        
+        assertTrue(spilled.hasSpilled());
+        // At most the events after the first buffer spill once, so more means the first partition spilled again
+        assertTrue(spilled.getSpilledEvents() > events.size() - 4096);
+        assertFalse(inMemory.hasSpilled());
+        try (Stream<Path> left = Files.list(spillDirectory)) {
+            assertEquals(0, left.count());
+        }
+        
+        assertEquals(inMemory.getTotalEvents(), spilled.getTotalEvents());
+        assertEquals(inMemory.getTotalUsers(), spilled.getTotalUsers());
+        assertEquals(inMemory.getTotalConversions(), spilled.getTotalConversions());
+        assertEquals(inMemory.getDistinctUsers(), spilled.getDistinctUsers());
+        assertEquals(inMemory.getOverlappingUsers(), spilled.getOverlappingUsers());
+        assertEquals(inMemory.getOverlappingConvertedUsers(), spilled.getOverlappingConvertedUsers());
+        assertEquals(inMemory.getTimeBuckets(), spilled.getTimeBuckets());
+        MetricSet metrics = spilled.getMetrics();
+        int mean = metrics.getDefinitions().indexOf(definitions.get(0));
+        for (String variantId : List.of("control", "treatment")) {
+            VariantAccumulator expected = inMemory.getVariant(variantId);
+            VariantAccumulator actual = spilled.getVariant(variantId);
+            assertEquals(expected.getEvents(), actual.getEvents());
+            assertEquals(expected.getUsers(), actual.getUsers());
+            assertEquals(expected.getConversions(), actual.getConversions());
+            assertEquals(expected.getActionCounts(), actual.getActionCounts());
+            RunningMoments expectedMoments = metrics.moments(mean, expected);
+            RunningMoments actualMoments = metrics.moments(mean, actual);
+            assertEquals(expectedMoments.getCount(), actualMoments.getCount());
+            assertEquals(expectedMoments.getMean(), actualMoments.getMean(), 1e-9);
+            assertEquals(expectedMoments.getVariance(), actualMoments.getVariance(), 1e-6);
+            assertEquals(metrics.sketch(mean, expected).getCount(), metrics.sketch(mean, actual).getCount());
+            // The totals of spilled users are gone, so they cannot be resampled
+            assertEquals(expectedMoments.getCount(), metrics.totals(mean, expected).length);
+            assertNull(metrics.totals(mean, actual));
+            
+            assertArrayEquals(inMemory.getBucketEvents(variantId), spilled.getBucketEvents(variantId));
+            assertArrayEquals(inMemory.getBucketConversions(variantId), spilled.getBucketConversions(variantId));
+            assertArrayEquals(inMemory.getCumulativeUsers(variantId), spilled.getCumulativeUsers(variantId));
+            assertArrayEquals(inMemory.getCumulativeConversions(variantId),
+                    spilled.getCumulativeConversions(variantId));
+            KllSketch[] expectedSketches = inMemory.getBucketSketches(variantId, mean);
+            KllSketch[] actualSketches = spilled.getBucketSketches(variantId, mean);
+            for (int bucket = 0; bucket < expectedSketches.length; bucket++) {
+                assertEquals(expectedSketches[bucket].getCount(), actualSketches[bucket].getCount());
+            }
+        }
+        
+        // The users of spilled events are gone, so the aggregate can neither continue nor be checkpointed
+        assertThrows(IllegalStateException.class, () -> spilled.accept(events.get(0)));
+        assertThrows(IllegalStateException.class,
+                () -> spilled.writeTo(new DataOutputStream(new ByteArrayOutputStream())));
+    }
+    
+    @Test
+    public void testDefaultConversionMetricIsAdded() {
+        List<MetricDefinition> resolved = MetricSet.resolve(
+                List.of(new MetricDefinition("views", MetricType.COUNT, List.of("PAGE_VIEW"), null, null)));
+        
+        assertEquals(List.of(MetricDefinition.defaultConversion(), resolved.get(1)), resolved);
+        assertEquals(List.of(MetricDefinition.defaultConversion()), MetricSet.resolve(null));
+        assertThrows(IllegalArgumentException.class, () -> MetricSet.resolve(
+                List.of(new MetricDefinition("ratio", MetricType.RATIO, List.of("CLICK"), null, null))));
+    }
+}
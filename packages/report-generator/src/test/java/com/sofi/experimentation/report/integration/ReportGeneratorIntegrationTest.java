@@ -2,17 +2,25 @@ package com.sofi.experimentation.report.integration;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sofi.experimentation.report.model.*;
+import com.sofi.experimentation.report.service.CheckpointService;
 import com.sofi.experimentation.report.service.DynamoDBService;
 import com.sofi.experimentation.report.service.ReportGenerationService;
+import com.sofi.experimentation.report.service.ReportProgressService;
 import com.sofi.experimentation.report.service.S3Service;
 import com.sofi.experimentation.report.service.StatisticalAnalysisService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -45,11 +53,14 @@ public class ReportGeneratorIntegrationTest {
                 dynamoDBService,
                 s3Service,
                 analysisService,
+                new CheckpointService(s3Service),
+                new ReportProgressService(dynamoDBService),
                 objectMapper
         );
     }
     
     @Test
+    @SuppressWarnings("unchecked")
     public void testGenerateReport() throws Exception {
         // Set up test data
         String experimentId = "exp123";
@@ -141,11 +152,15 @@ public class ReportGeneratorIntegrationTest {
         
         // Set up mock behavior
         when(dynamoDBService.getExperiment(experimentId)).thenReturn(experiment);
-        when(dynamoDBService.getExperimentEvents(eq(experimentId), any(), any())).thenReturn(events);
+        when(dynamoDBService.streamExperimentEvents(eq(experimentId), any(), any(), any(), any())).thenReturn(events);
         
-        // Capture the S3 upload
-        ArgumentCaptor<String> contentCaptor = ArgumentCaptor.forClass(String.class);
-        doNothing().when(s3Service).uploadReport(eq(outputBucket), eq(outputKey), contentCaptor.capture());
+        // Capture the S3 upload by running the report writer into memory
+        ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+        when(s3Service.uploadReport(eq(outputBucket), eq(outputKey), eq("application/json"), isNull(), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(4, S3Service.ContentWriter.class).writeTo(uploaded);
+                    return (long) uploaded.size();
+                });
         
         // Run the report generation
         reportService.generateReport(jobParameters);
@@ -153,13 +168,21 @@ public class ReportGeneratorIntegrationTest {
         // Verify interactions
         verify(dynamoDBService).updateReportStatus(eq(reportId), eq("PROCESSING"), isNull());
         verify(dynamoDBService).getExperiment(experimentId);
-        verify(dynamoDBService).getExperimentEvents(eq(experimentId), eq(startTime), eq(endTime));
-        verify(s3Service).uploadReport(eq(outputBucket), eq(outputKey), any());
-        verify(dynamoDBService).updateReportStatus(eq(reportId), eq("COMPLETED"), any());
+        verify(dynamoDBService).streamExperimentEvents(eq(experimentId), eq(startTime), eq(endTime), eq(ReportType.CONVERSION.getEventAttributes()), any());
+        verify(s3Service).uploadReport(eq(outputBucket), eq(outputKey), eq("application/json"), isNull(), any());
+        ArgumentCaptor<Map<String, Object>> instrumentation = ArgumentCaptor.forClass(Map.class);
+        verify(dynamoDBService).updateReportStatus(eq(reportId), eq("COMPLETED"), any(), instrumentation.capture());
+        
+        // Verify the job's instrumentation is stored with the report
+        Map<String, Object> phases = (Map<String, Object>) instrumentation.getValue().get("phases");
+        assertTrue(phases.keySet().containsAll(List.of(
+                "updateStatus", "loadExperiment", "readEvents", "reportData", "serializeAndUpload")));
+        Map<String, Object> counters = (Map<String, Object>) instrumentation.getValue().get("counters");
+        assertEquals(225L, counters.get("events.aggregated"));
         
         // Verify report content
-        String reportJson = contentCaptor.getValue();
-        assertNotNull(reportJson);
+        String reportJson = uploaded.toString(StandardCharsets.UTF_8);
+        assertFalse(reportJson.isEmpty());
         
         ReportData reportData = objectMapper.readValue(reportJson, ReportData.class);
         assertEquals(experimentId, reportData.getExperimentId());
@@ -173,6 +196,8 @@ public class ReportGeneratorIntegrationTest {
         // Verify overall metrics
         assertEquals(200, metrics.getOverall().getTotalUsers());
         assertEquals(225, metrics.getOverall().getTotalEvents()); // 200 page views + 25 conversions
+        assertEquals(200, metrics.getOverall().getDistinctUsers().intValue());
+        assertEquals(0, metrics.getOverall().getOverlappingUsers().intValue()); // Every user saw one variant
         
         // Verify variant metrics
         Map<String, ReportData.VariantMetrics> variantMetrics = metrics.getByVariant();
@@ -193,6 +218,118 @@ public class ReportGeneratorIntegrationTest {
         assertEquals(15, treatmentMetrics.getEvents().get("CONVERSION").intValue());
         assertEquals(0.15, treatmentMetrics.getConversionRate(), 0.001);
         assertEquals(50.0, treatmentMetrics.getImprovement(), 0.001);
-        assertTrue(treatmentMetrics.getSignificanceLevel() < 0.05); // Should be statistically significant
+        // 10/100 against 15/100 is not significant: pooled z = 0.05 / sqrt(0.125 * 0.875 * 2 / 100) = 1.0690
+        assertEquals("Z_TEST", treatmentMetrics.getSignificanceMethod());
+        assertEquals(0.285049407, treatmentMetrics.getSignificanceLevel(), 1e-6);
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testIncrementalJobSkipsCheckpointOnlyWhenItSpills(@TempDir Path spillDirectory) throws Exception {
+        CheckpointService checkpointService = Mockito.mock(CheckpointService.class);
+        ReportGenerationService service = new ReportGenerationService(
+                dynamoDBService,
+                s3Service,
+                analysisService,
+                checkpointService,
+                new ReportProgressService(dynamoDBService),
+                objectMapper
+        );
+        String experimentId = "exp123";
+        ReportJobParameters.TimeRange timeRange =
+                new ReportJobParameters.TimeRange("2025-03-19T00:00:00Z", "2025-03-20T00:00:00Z");
+        
+        Experiment experiment = new Experiment();
+        experiment.setId(experimentId);
+        experiment.setName("Test Experiment");
+        experiment.setVariants(List.of(
+                new Variant("var1", "Control", Map.of()), new Variant("var2", "Treatment", Map.of())));
+        
+        // 20000 users take about 2.5 MB of per-user state, above a budget of 1 MB
+        List<ExperimentEvent> events = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            ExperimentEvent event = new ExperimentEvent();
+            event.setExperimentId(experimentId);
+            event.setVariantId(i % 2 == 0 ? "var1" : "var2");
+            event.setUserId("user-" + i);
+            event.setAction(i % 10 == 0 ? "CONVERSION" : "PAGE_VIEW");
+            event.setTimestamp(Instant.parse("2025-03-19T00:00:00Z").plusSeconds(i).toString());
+            events.add(event);
+        }
+        when(dynamoDBService.getExperiment(experimentId)).thenReturn(experiment);
+        when(dynamoDBService.streamExperimentEvents(eq(experimentId), any(), any(), any(), any())).thenReturn(events);
+        when(s3Service.uploadReport(any(), any(), any(), any(), any())).thenReturn(0L);
+        
+        // Spilling is opt-in, so an incremental job saves its checkpoint by default
+        ReportJobParameters defaults = new ReportJobParameters(experimentId, "rep1", timeRange, "bucket", "key1");
+        defaults.setIncremental(true);
+        assertEquals(0, defaults.getAggregationHeapBudgetMb());
+        service.generateReport(defaults);
+        verify(checkpointService).save(eq(defaults), any(), eq(timeRange.getEnd()));
+        
+        ReportJobParameters budgeted = new ReportJobParameters(experimentId, "rep2", timeRange, "bucket", "key2");
+        budgeted.setIncremental(true);
+        budgeted.setAggregationHeapBudgetMb(1);
+        budgeted.setSpillDirectory(spillDirectory.toString());
+        service.generateReport(budgeted);
+        verify(checkpointService, never()).save(eq(budgeted), any(), any());
+        
+        // The skipped checkpoint is recorded with the report, and the spill files are gone
+        ArgumentCaptor<Map<String, Object>> instrumentation = ArgumentCaptor.forClass(Map.class);
+        verify(dynamoDBService).updateReportStatus(eq("rep2"), eq("COMPLETED"), any(), instrumentation.capture());
+        Map<String, Object> counters = (Map<String, Object>) instrumentation.getValue().get("counters");
+        assertEquals(1, counters.get("checkpoint.skipped"));
+        assertTrue(((Number) counters.get("spill.events")).longValue() > 0);
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+    }
+    
+    @Test
+    public void testIncrementalJobStopsShortOfEventsStillBeingWritten() throws Exception {
+        CheckpointService checkpointService = Mockito.mock(CheckpointService.class);
+        ReportGenerationService service = new ReportGenerationService(
+                dynamoDBService,
+                s3Service,
+                analysisService,
+                checkpointService,
+                new ReportProgressService(dynamoDBService),
+                objectMapper
+        );
+        String experimentId = "exp123";
+        Instant now = Instant.now();
+        ReportJobParameters.TimeRange timeRange = new ReportJobParameters.TimeRange(
+                now.minusSeconds(86400).toString(), now.plusSeconds(86400).toString());
+        
+        Experiment experiment = new Experiment();
+        experiment.setId(experimentId);
+        experiment.setName("Test Experiment");
+        experiment.setVariants(List.of(
+                new Variant("var1", "Control", Map.of()), new Variant("var2", "Treatment", Map.of())));
+        when(dynamoDBService.getExperiment(experimentId)).thenReturn(experiment);
+        when(dynamoDBService.streamExperimentEvents(eq(experimentId), any(), any(), any(), any())).thenReturn(List.of());
+        when(s3Service.uploadReport(any(), any(), any(), any(), any())).thenReturn(0L);
+        
+        // The range ends tomorrow, so the job reads and checkpoints up to ten minutes before it started
+        ReportJobParameters jobParameters = new ReportJobParameters(experimentId, "rep1", timeRange, "bucket", "key1");
+        jobParameters.setIncremental(true);
+        jobParameters.setIngestionLagSeconds(600);
+        service.generateReport(jobParameters);
+        
+        ArgumentCaptor<String> watermark = ArgumentCaptor.forClass(String.class);
+        verify(checkpointService).save(eq(jobParameters), any(), watermark.capture());
+        Instant settled = Instant.parse(watermark.getValue());
+        assertFalse(settled.isAfter(Instant.now().minusSeconds(600)));
+        assertFalse(settled.isBefore(now.minusSeconds(600)));
+        verify(dynamoDBService).streamExperimentEvents(
+                eq(experimentId), eq(timeRange.getStart()), eq(watermark.getValue()), any(), any());
+        
+        // A range that has already settled keeps its end
+        ReportJobParameters.TimeRange pastRange = new ReportJobParameters.TimeRange(
+                now.minusSeconds(86400).toString(), now.minusSeconds(3600).toString());
+        ReportJobParameters pastJob = new ReportJobParameters(experimentId, "rep2", pastRange, "bucket", "key2");
+        pastJob.setIncremental(true);
+        service.generateReport(pastJob);
+        verify(checkpointService).save(eq(pastJob), any(), eq(pastRange.getEnd()));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,142 @@
+package com.sofi.experimentation.report.loadtest;
+
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process stand-in for S3 that keeps objects in memory.
+ * Supports the single-request and multipart uploads and the downloads used by the report job; every other
+ * operation throws {@link UnsupportedOperationException} like the interface defaults.
+ */
+class InMemoryS3Client implements S3Client {
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final Map<String, Upload> uploads = new ConcurrentHashMap<>();
+    
+    /**
+     * An object and the headers it was stored with.
+     */
+    static class StoredObject {
+        final byte[] content;
+        final String contentType;
+        final String contentEncoding;
+        
+        StoredObject(byte[] content, String contentType, String contentEncoding) {
+            this.content = content;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+        }
+    }
+    
+    private static class Upload {
+        final CreateMultipartUploadRequest request;
+        final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+        
+        Upload(CreateMultipartUploadRequest request) {
+            this.request = request;
+        }
+    }
+    
+    StoredObject getObject(String bucket, String key) {
+        return objects.get(bucket + "/" + key);
+    }
+    
+    @Override
+    public PutObjectResponse putObject(PutObjectRequest request, RequestBody body) {
+        objects.put(request.bucket() + "/" + request.key(),
+                new StoredObject(read(body), request.contentType(), request.contentEncoding()));
+        return PutObjectResponse.builder().build();
+    }
+    
+    @Override
+    public ResponseBytes<GetObjectResponse> getObjectAsBytes(GetObjectRequest request) {
+        StoredObject object = getObject(request.bucket(), request.key());
+        if (object == null) {
+            throw NoSuchKeyException.builder().message("No such key: " + request.key()).build();
+        }
+        return ResponseBytes.fromByteArray(GetObjectResponse.builder()
+                .contentType(object.contentType)
+                .contentEncoding(object.contentEncoding)
+                .contentLength((long) object.content.length)
+                .build(), object.content);
+    }
+    
+    @Override
+    public CreateMultipartUploadResponse createMultipartUpload(CreateMultipartUploadRequest request) {
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new Upload(request));
+        return CreateMultipartUploadResponse.builder().uploadId(uploadId).build();
+    }
+    
+    @Override
+    public UploadPartResponse uploadPart(UploadPartRequest request, RequestBody body) {
+        Upload upload = uploads.get(request.uploadId());
+        if (upload == null) {
+            throw NoSuchUploadException.builder().message("No such upload: " + request.uploadId()).build();
+        }
+        upload.parts.put(request.partNumber(), read(body));
+        return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+    }
+    
+    @Override
+    public CompleteMultipartUploadResponse completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        Upload upload = uploads.remove(request.uploadId());
+        if (upload == null) {
+            throw NoSuchUploadException.builder().message("No such upload: " + request.uploadId()).build();
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (CompletedPart part : request.multipartUpload().parts()) {
+            content.writeBytes(upload.parts.get(part.partNumber()));
+        }
+        objects.put(request.bucket() + "/" + request.key(), new StoredObject(content.toByteArray(),
+                upload.request.contentType(), upload.request.contentEncoding()));
+        return CompleteMultipartUploadResponse.builder().build();
+    }
+    
+    @Override
+    public AbortMultipartUploadResponse abortMultipartUpload(AbortMultipartUploadRequest request) {
+        uploads.remove(request.uploadId());
+        return AbortMultipartUploadResponse.builder().build();
+    }
+    
+    private static byte[] read(RequestBody body) {
+        try (InputStream in = body.contentStreamProvider().newStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+    
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
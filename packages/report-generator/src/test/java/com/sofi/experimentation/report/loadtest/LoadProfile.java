@@ -0,0 +1,100 @@
+package com.sofi.experimentation.report.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Shape of the synthetic experiment traffic used by the load tests.
+ * Every value can be overridden with a {@code load.*} system property, for example
+ * {@code ./gradlew loadTest -Dload.events=1000000 -Dload.variants=4}.
+ */
+class LoadProfile {
+    private int events = 200_000;
+    private int users = 20_000;
+    private int variants = 2;
+    private double[] conversionRates = {0.05, 0.06};
+    private double skew = 1.0;
+    private Duration duration = Duration.ofDays(7);
+    private int fetchParallelism = 1;
+    private int writeThreads = 8;
+    private long seed = 42;
+    
+    /**
+     * Read the profile from {@code load.*} system properties, falling back to the defaults.
+     *
+     * @return The profile
+     */
+    static LoadProfile fromSystemProperties() {
+        LoadProfile profile = new LoadProfile();
+        profile.events = Integer.getInteger("load.events", profile.events);
+        profile.users = Integer.getInteger("load.users", profile.users);
+        profile.variants = Integer.getInteger("load.variants", profile.variants);
+        String rates = System.getProperty("load.conversionRates");
+        if (rates != null) {
+            profile.conversionRates = Arrays.stream(rates.split(",")).mapToDouble(Double::parseDouble).toArray();
+        }
+        profile.skew = Double.parseDouble(System.getProperty("load.skew", String.valueOf(profile.skew)));
+        profile.duration = Duration.ofHours(Long.getLong("load.durationHours", profile.duration.toHours()));
+        profile.fetchParallelism = Integer.getInteger("load.fetchParallelism", profile.fetchParallelism);
+        profile.writeThreads = Integer.getInteger("load.writeThreads", profile.writeThreads);
+        profile.seed = Long.getLong("load.seed", profile.seed);
+        return profile;
+    }
+    
+    /** Number of events written and read. */
+    int getEvents() {
+        return events;
+    }
+    
+    /** Number of distinct users the events are spread over. */
+    int getUsers() {
+        return users;
+    }
+    
+    /** Number of variants; users are assigned to one variant each. */
+    int getVariants() {
+        return variants;
+    }
+    
+    /**
+     * Share of a variant's events that are conversions. Variants beyond the configured rates use the last rate.
+     *
+     * @param variant The variant index
+     * @return The conversion rate
+     */
+    double getConversionRate(int variant) {
+        return conversionRates[Math.min(variant, conversionRates.length - 1)];
+    }
+    
+    /** Zipf exponent of user activity: 0 spreads events evenly, 1 gives the most active users a long head. */
+    double getSkew() {
+        return skew;
+    }
+    
+    /** Length of the time range the events are spread over. */
+    Duration getDuration() {
+        return duration;
+    }
+    
+    /** Fetch parallelism of the report job. */
+    int getFetchParallelism() {
+        return fetchParallelism;
+    }
+    
+    /** Number of threads writing events to DynamoDB. */
+    int getWriteThreads() {
+        return writeThreads;
+    }
+    
+    /** Seed of the event generator, so runs are reproducible. */
+    long getSeed() {
+        return seed;
+    }
+    
+    @Override
+    public String toString() {
+        return "events=" + events + ", users=" + users + ", variants=" + variants
+                + ", conversionRates=" + Arrays.toString(conversionRates) + ", skew=" + skew
+                + ", duration=" + duration + ", fetchParallelism=" + fetchParallelism;
+    }
+}
@@ -0,0 +1,256 @@
+package com.sofi.experimentation.report.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofi.experimentation.report.metrics.RequestMetricsInterceptor;
+import com.sofi.experimentation.report.model.Experiment;
+import com.sofi.experimentation.report.model.ExperimentTableSchema;
+import com.sofi.experimentation.report.model.ReportJobParameters;
+import com.sofi.experimentation.report.model.Variant;
+import com.sofi.experimentation.report.service.CheckpointService;
+import com.sofi.experimentation.report.service.DynamoDBService;
+import com.sofi.experimentation.report.service.ReportGenerationService;
+import com.sofi.experimentation.report.service.ReportProgressService;
+import com.sofi.experimentation.report.service.S3Service;
+import com.sofi.experimentation.report.service.StatisticalAnalysisService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.SdkResponse;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeDefinition;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BillingMode;
+import software.amazon.awssdk.services.dynamodb.model.KeySchemaElement;
+import software.amazon.awssdk.services.dynamodb.model.KeyType;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScalarAttributeType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * End-to-end load test of a report job against DynamoDB Local and an in-memory S3.
+ * Writes the events of a {@link LoadProfile} with the {@link SyntheticEventGenerator}, runs the full
+ * {@code generateReport} path and logs wall time, events per second, peak heap and read capacity.
+ * Tagged {@code load} and skipped without Docker; run it with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+@Testcontainers(disabledWithoutDocker = true)
+public class ReportJobLoadTest {
+    private static final Logger logger = LogManager.getLogger(ReportJobLoadTest.class);
+    
+    private static final String EXPERIMENTS_TABLE = "experiments";
+    private static final String EVENTS_TABLE = "events";
+    private static final String REPORTS_TABLE = "reports";
+    private static final String BUCKET = "reports";
+    
+    @Container
+    private static final GenericContainer<?> dynamoDbLocal =
+            new GenericContainer<>(DockerImageName.parse("amazon/dynamodb-local:2.0.0"))
+                    .withCommand("-jar DynamoDBLocal.jar -inMemory -sharedDb")
+                    .withExposedPorts(8000);
+    
+    private static final QueryCapacity queryCapacity = new QueryCapacity();
+    private static final RequestMetricsInterceptor requestMetrics = new RequestMetricsInterceptor();
+    private static DynamoDbClient dynamoDbClient;
+    private static DynamoDbAsyncClient dynamoDbAsyncClient;
+    
+    /**
+     * Counts the query pages of the report job and the capacity DynamoDB Local reports for them.
+     */
+    private static class QueryCapacity implements ExecutionInterceptor {
+        final AtomicLong pages = new AtomicLong();
+        final DoubleAdder reportedUnits = new DoubleAdder();
+        
+        @Override
+        public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+            SdkResponse response = context.response();
+            if (response instanceof QueryResponse) {
+                pages.incrementAndGet();
+                QueryResponse page = (QueryResponse) response;
+                if (page.consumedCapacity() != null && page.consumedCapacity().capacityUnits() != null) {
+                    reportedUnits.add(page.consumedCapacity().capacityUnits());
+                }
+            }
+        }
+    }
+    
+    @BeforeAll
+    public static void setUp() {
+        URI endpoint = URI.create("http://" + dynamoDbLocal.getHost() + ":" + dynamoDbLocal.getMappedPort(8000));
+        StaticCredentialsProvider credentials =
+                StaticCredentialsProvider.create(AwsBasicCredentials.create("local", "local"));
+        ClientOverrideConfiguration configuration =
+                ClientOverrideConfiguration.builder()
+                        .addExecutionInterceptor(queryCapacity)
+                        .addExecutionInterceptor(requestMetrics)
+                        .build();
+        
+        dynamoDbClient = DynamoDbClient.builder()
+                .endpointOverride(endpoint)
+                .region(Region.US_EAST_1)
+                .credentialsProvider(credentials)
+                .overrideConfiguration(configuration)
+                .build();
+        dynamoDbAsyncClient = DynamoDbAsyncClient.builder()
+                .endpointOverride(endpoint)
+                .region(Region.US_EAST_1)
+                .credentialsProvider(credentials)
+                .overrideConfiguration(configuration)
+                .build();
+        
+        createTable(EXPERIMENTS_TABLE, "id", null);
+        createTable(EVENTS_TABLE, "experimentId", "timestamp");
+        createTable(REPORTS_TABLE, "id", null);
+    }
+    
+    @AfterAll
+    public static void tearDown() {
+        dynamoDbClient.close();
+        dynamoDbAsyncClient.close();
+    }
+    
+    private static void createTable(String name, String partitionKey, String sortKey) {
+        List<KeySchemaElement> keys = new ArrayList<>();
+        List<AttributeDefinition> attributes = new ArrayList<>();
+        keys.add(KeySchemaElement.builder().attributeName(partitionKey).keyType(KeyType.HASH).build());
+        attributes.add(AttributeDefinition.builder()
+                .attributeName(partitionKey).attributeType(ScalarAttributeType.S).build());
+        if (sortKey != null) {
+            keys.add(KeySchemaElement.builder().attributeName(sortKey).keyType(KeyType.RANGE).build());
+            attributes.add(AttributeDefinition.builder()
+                    .attributeName(sortKey).attributeType(ScalarAttributeType.S).build());
+        }
+        dynamoDbClient.createTable(b -> b.tableName(name)
+                .keySchema(keys)
+                .attributeDefinitions(attributes)
+                .billingMode(BillingMode.PAY_PER_REQUEST));
+    }
+    
+    @Test
+    public void testReportJobUnderLoad() throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        String experimentId = "load-" + profile.getSeed();
+        String reportId = "report-" + experimentId;
+        logger.info("Load profile: {}", profile);
+        
+        // Seed the experiment, a PENDING report and the events
+        DynamoDbEnhancedClient enhancedClient = DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDbClient).build();
+        Experiment experiment = new Experiment();
+        experiment.setId(experimentId);
+        experiment.setName("Load Test");
+        experiment.setStatus("ACTIVE");
+        List<Variant> variants = new ArrayList<>();
+        for (int i = 0; i < profile.getVariants(); i++) {
+            variants.add(new Variant("var" + i, "Variant " + i, new HashMap<>()));
+        }
+        experiment.setVariants(variants);
+        enhancedClient.table(EXPERIMENTS_TABLE, ExperimentTableSchema.INSTANCE).putItem(experiment);
+        
+        Map<String, AttributeValue> report = new HashMap<>();
+        report.put("id", AttributeValue.builder().s(reportId).build());
+        report.put("status", AttributeValue.builder().s("PENDING").build());
+        dynamoDbClient.putItem(b -> b.tableName(REPORTS_TABLE).item(report));
+        
+        Instant start = Instant.parse("2025-03-01T00:00:00Z");
+        SyntheticEventGenerator generator = new SyntheticEventGenerator(experimentId, profile, start);
+        long writeStart = System.nanoTime();
+        long storedBytes = generator.writeTo(dynamoDbClient, EVENTS_TABLE);
+        double writeSeconds = (System.nanoTime() - writeStart) / 1e9;
+        logger.info("Wrote {} events ({} bytes) in {} s", profile.getEvents(), storedBytes,
+                String.format("%.1f", writeSeconds));
+        
+        // Run the report job the way the application wires it, against the local endpoints
+        InMemoryS3Client s3Client = new InMemoryS3Client();
+        ObjectMapper objectMapper = new ObjectMapper();
+        DynamoDBService dynamoDBService = new DynamoDBService(dynamoDbClient, dynamoDbAsyncClient, enhancedClient,
+                EXPERIMENTS_TABLE, EVENTS_TABLE, REPORTS_TABLE);
+        S3Service s3Service = new S3Service(s3Client);
+        ReportGenerationService reportService = new ReportGenerationService(
+                dynamoDBService,
+                s3Service,
+                new StatisticalAnalysisService(),
+                new CheckpointService(s3Service),
+                new ReportProgressService(dynamoDBService),
+                objectMapper,
+                requestMetrics
+        );
+        
+        ReportJobParameters jobParameters = new ReportJobParameters(
+                experimentId,
+                reportId,
+                new ReportJobParameters.TimeRange(start.toString(), generator.getEnd().toString()),
+                BUCKET,
+                "reports/" + experimentId + "/" + reportId + ".json"
+        );
+        jobParameters.setFetchParallelism(profile.getFetchParallelism());
+        
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        queryCapacity.pages.set(0);
+        queryCapacity.reportedUnits.reset();
+        
+        long jobStart = System.nanoTime();
+        reportService.generateReport(jobParameters);
+        double jobSeconds = (System.nanoTime() - jobStart) / 1e9;
+        
+        // The pools peak at different moments, so their sum is an upper bound of the peak heap
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        // Eventually consistent queries cost half a unit per 4 KB of items read, before any projection
+        double simulatedUnits = Math.ceil(storedBytes / 4096.0) * 0.5;
+        logger.info("Load test result: events={} variants={} fetchParallelism={} wallSeconds={} eventsPerSecond={}"
+                        + " peakHeapMb={} queryPages={} reportedReadUnits={} simulatedReadUnits={}",
+                profile.getEvents(), profile.getVariants(), profile.getFetchParallelism(),
+                String.format("%.2f", jobSeconds),
+                String.format("%.0f", profile.getEvents() / jobSeconds),
+                peakHeap / (1024 * 1024),
+                queryCapacity.pages.get(),
+                queryCapacity.reportedUnits.sum(),
+                simulatedUnits);
+        
+        Map<String, AttributeValue> stored = dynamoDbClient.getItem(b -> b.tableName(REPORTS_TABLE)
+                .key(Map.of("id", AttributeValue.builder().s(reportId).build()))).item();
+        assertEquals("COMPLETED", stored.get("status").s());
+        assertEquals(String.valueOf(profile.getEvents()), stored.get("metrics").m().get("totalEvents").n());
+        
+        InMemoryS3Client.StoredObject object = s3Client.getObject(BUCKET, jobParameters.getOutputKey());
+        assertNotNull(object);
+        JsonNode reportData = objectMapper.readTree(object.content);
+        assertEquals(profile.getEvents(), reportData.path("metrics").path("overall").path("totalEvents").asInt());
+        assertEquals(profile.getVariants(), reportData.path("metrics").path("byVariant").size());
+    }
+}
@@ -0,0 +1,213 @@
+package com.sofi.experimentation.report.loadtest;
+
+import com.sofi.experimentation.report.model.ExperimentEvent;
+import com.sofi.experimentation.report.model.ExperimentEventTableSchema;
+import com.sofi.experimentation.report.util.HashUtils;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates a reproducible stream of experiment events following a {@link LoadProfile} and writes it to DynamoDB.
+ * Users are drawn from a Zipf distribution, so a few users produce many events, and each user stays in one
+ * variant for the whole run. Events are spaced evenly over the profile's duration with millisecond timestamps,
+ * which keeps the (experimentId, timestamp) keys of the events table unique.
+ */
+class SyntheticEventGenerator implements Iterable<ExperimentEvent> {
+    private static final int BATCH_SIZE = 25;
+    private static final long SESSION_MILLIS = 30 * 60 * 1000L;
+    private static final double CLICK_RATE = 0.15;
+    
+    private final String experimentId;
+    private final LoadProfile profile;
+    private final long startMillis;
+    private final long durationMillis;
+    private final double[] userCdf;
+    
+    /**
+     * Create a generator.
+     *
+     * @param experimentId The experiment the events belong to
+     * @param profile The traffic profile
+     * @param start The timestamp of the first event
+     */
+    SyntheticEventGenerator(String experimentId, LoadProfile profile, Instant start) {
+        this.experimentId = experimentId;
+        this.profile = profile;
+        this.startMillis = start.toEpochMilli();
+        this.durationMillis = profile.getDuration().toMillis();
+        if (durationMillis < profile.getEvents()) {
+            throw new IllegalArgumentException("The duration must have at least one millisecond per event");
+        }
+        
+        // Cumulative Zipf weights of users ranked by activity
+        userCdf = new double[profile.getUsers()];
+        double total = 0;
+        for (int rank = 0; rank < userCdf.length; rank++) {
+            total += 1.0 / Math.pow(rank + 1, profile.getSkew());
+            userCdf[rank] = total;
+        }
+        for (int rank = 0; rank < userCdf.length; rank++) {
+            userCdf[rank] /= total;
+        }
+    }
+    
+    /**
+     * Get the timestamp of the event after the last one, a valid exclusive end of the report range.
+     *
+     * @return The end of the generated range
+     */
+    Instant getEnd() {
+        return Instant.ofEpochMilli(startMillis + durationMillis);
+    }
+    
+    /**
+     * Get the variant a user is assigned to.
+     *
+     * @param userId The user ID
+     * @return The variant ID
+     */
+    String variantOf(String userId) {
+        return "var" + Math.floorMod(HashUtils.hash64(userId), profile.getVariants());
+    }
+    
+    @Override
+    public Iterator<ExperimentEvent> iterator() {
+        SplittableRandom random = new SplittableRandom(profile.getSeed());
+        return new Iterator<ExperimentEvent>() {
+            private int next;
+            
+            @Override
+            public boolean hasNext() {
+                return next < profile.getEvents();
+            }
+            
+            @Override
+            public ExperimentEvent next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long timestamp = startMillis + next * durationMillis / profile.getEvents();
+                int rank = Arrays.binarySearch(userCdf, random.nextDouble());
+                String userId = "user-" + (rank >= 0 ? rank : Math.min(-rank - 1, userCdf.length - 1));
+                String variantId = variantOf(userId);
+                int variant = Integer.parseInt(variantId.substring(3));
+                
+                double roll = random.nextDouble();
+                double conversionRate = profile.getConversionRate(variant);
+                String action = roll < conversionRate ? "CONVERSION"
+                        : roll < conversionRate + CLICK_RATE ? "BUTTON_CLICK" : "PAGE_VIEW";
+                
+                ExperimentEvent event = new ExperimentEvent();
+                event.setId("event-" + next);
+                event.setExperimentId(experimentId);
+                event.setVariantId(variantId);
+                event.setUserId(userId);
+                event.setSessionId(userId + "-" + timestamp / SESSION_MILLIS);
+                event.setAction(action);
+                event.setMetadataJson("{\"page\":\"/apply/step-" + random.nextInt(5) + "\",\"device\":\""
+                        + (random.nextInt(3) == 0 ? "desktop" : "mobile") + "\"}");
+                event.setTimestamp(Instant.ofEpochMilli(timestamp).toString());
+                next++;
+                return event;
+            }
+        };
+    }
+    
+    /**
+     * Write every event to a table with batched writes from the profile's writer threads.
+     *
+     * @param dynamoDbClient The DynamoDB client
+     * @param tableName The events table
+     * @return The total stored size of the items in bytes, as DynamoDB counts it for capacity
+     * @throws InterruptedException If interrupted while waiting for the writers
+     */
+    long writeTo(DynamoDbClient dynamoDbClient, String tableName) throws InterruptedException {
+        AtomicLong bytes = new AtomicLong();
+        int threads = profile.getWriteThreads();
+        // A bounded queue makes the generator wait for the writers instead of buffering the whole stream
+        ExecutorService writers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        
+        List<WriteRequest> batch = new ArrayList<>(BATCH_SIZE);
+        for (ExperimentEvent event : this) {
+            Map<String, AttributeValue> item = ExperimentEventTableSchema.INSTANCE.itemToMap(event, true);
+            bytes.addAndGet(itemSize(item));
+            batch.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+            if (batch.size() == BATCH_SIZE) {
+                List<WriteRequest> full = batch;
+                writers.execute(() -> writeBatch(dynamoDbClient, tableName, full));
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(dynamoDbClient, tableName, batch);
+        }
+        
+        writers.shutdown();
+        if (!writers.awaitTermination(1, TimeUnit.HOURS)) {
+            throw new IllegalStateException("Timed out writing events");
+        }
+        return bytes.get();
+    }
+    
+    private static void writeBatch(DynamoDbClient dynamoDbClient, String tableName, List<WriteRequest> requests) {
+        Map<String, List<WriteRequest>> pending = Collections.singletonMap(tableName, requests);
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt > 0) {
+                sleep(Math.min(1000, 10L << Math.min(attempt, 6)));
+            }
+            BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(
+                    BatchWriteItemRequest.builder().requestItems(pending).build());
+            pending = response.unprocessedItems();
+        }
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying unprocessed items", e);
+        }
+    }
+    
+    /**
+     * Size of an item as DynamoDB bills it: attribute names plus values, strings in UTF-8.
+     * Only the attribute types the event schema produces are sized exactly.
+     */
+    static long itemSize(Map<String, AttributeValue> item) {
+        long size = 0;
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            size += attribute.getKey().getBytes(StandardCharsets.UTF_8).length;
+            AttributeValue value = attribute.getValue();
+            if (value.s() != null) {
+                size += value.s().getBytes(StandardCharsets.UTF_8).length;
+            } else if (value.n() != null) {
+                size += value.n().length() / 2 + 1;
+            } else {
+                size += 1;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,80 @@
+package com.sofi.experimentation.report.metrics;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the job metrics and the SDK request counters.
+ */
+@SuppressWarnings("unchecked")
+public class JobMetricsTest {
+    
+    @Test
+    public void testPhasesAccumulateInOrder() {
+        JobMetrics jobMetrics = new JobMetrics(new RequestMetricsInterceptor());
+        
+        jobMetrics.time("first", () -> {
+            // Nested phases end before the phase around them
+            try (JobMetrics.Phase nested = jobMetrics.phase("first.nested")) {
+                assertNotNull(nested);
+            }
+        });
+        try (JobMetrics.Phase phase = jobMetrics.phase("second")) {
+            assertNotNull(phase);
+        }
+        assertEquals(7, jobMetrics.time("first", () -> 7));
+        jobMetrics.record("events.read", 42L);
+        
+        Map<String, Object> result = jobMetrics.toMap();
+        Map<String, Map<String, Object>> phases = (Map<String, Map<String, Object>>) result.get("phases");
+        assertEquals(List.of("first.nested", "first", "second"), List.copyOf(phases.keySet()));
+        assertEquals(2L, phases.get("first").get("count"));
+        assertFalse(phases.get("second").containsKey("count"));
+        assertTrue((Long) phases.get("first").get("wallMillis") >= 0);
+        assertEquals(42L, ((Map<String, Object>) result.get("counters")).get("events.read"));
+    }
+    
+    @Test
+    public void testRequestsSinceJobStart() {
+        RequestMetricsInterceptor interceptor = new RequestMetricsInterceptor();
+        // A call before the job starts is not counted
+        execute(interceptor, "DynamoDB", "Query", 1, false);
+        
+        JobMetrics jobMetrics = new JobMetrics(interceptor);
+        execute(interceptor, "DynamoDB", "Query", 1, false);
+        execute(interceptor, "DynamoDB", "Query", 3, false);
+        execute(interceptor, "S3", "PutObject", 4, true);
+        
+        Map<String, Map<String, Object>> requests =
+                (Map<String, Map<String, Object>>) jobMetrics.toMap().get("requests");
+        assertEquals(List.of("DynamoDB.Query", "S3.PutObject"), List.copyOf(requests.keySet()));
+        assertEquals(2L, requests.get("DynamoDB.Query").get("calls"));
+        assertEquals(2L, requests.get("DynamoDB.Query").get("retries"));
+        assertEquals(0L, requests.get("DynamoDB.Query").get("failures"));
+        assertEquals(1L, requests.get("S3.PutObject").get("calls"));
+        assertEquals(3L, requests.get("S3.PutObject").get("retries"));
+        assertEquals(1L, requests.get("S3.PutObject").get("failures"));
+    }
+    
+    private static void execute(RequestMetricsInterceptor interceptor, String service, String operation,
+                                int attempts, boolean fail) {
+        ExecutionAttributes attributes = new ExecutionAttributes();
+        attributes.putAttribute(SdkExecutionAttribute.SERVICE_NAME, service);
+        attributes.putAttribute(SdkExecutionAttribute.OPERATION_NAME, operation);
+        interceptor.beforeExecution(null, attributes);
+        for (int i = 0; i < attempts; i++) {
+            interceptor.beforeTransmission(null, attributes);
+        }
+        if (fail) {
+            interceptor.onExecutionFailure(null, attributes);
+        } else {
+            interceptor.afterExecution(null, attributes);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.sofi.experimentation.report.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ExperimentEvent metadata decoding.
+ */
+public class ExperimentEventTest {
+    
+    @Test
+    public void testMetadataValueWithoutParsingMap() {
+        ExperimentEvent event = new ExperimentEvent();
+        event.setMetadataJson("{\"page\":{\"path\":\"/apply\",\"tags\":[1,2]},\"source\":\"email\","
+                + "\"loanAmount\":25000.5,\"approved\":true,\"items\":[\"a\",\"b\"],\"note\":null}");
+        
+        assertEquals(25000.5, ((Number) event.getMetadataValue("loanAmount")).doubleValue());
+        assertEquals("email", event.getMetadataValue("source"));
+        assertEquals(true, event.getMetadataValue("approved"));
+        assertEquals(List.of("a", "b"), event.getMetadataValue("items"));
+        assertEquals("/apply", ((Map<?, ?>) event.getMetadataValue("page")).get("path"));
+        assertNull(event.getMetadataValue("note"));
+        assertNull(event.getMetadataValue("missing"));
+        
+        // The same values through the lazily parsed map
+        assertEquals(25000.5, ((Number) event.getMetadata().get("loanAmount")).doubleValue());
+        assertEquals("email", event.getMetadataValue("source"));
+    }
+    
+    @Test
+    public void testMissingOrInvalidMetadata() {
+        ExperimentEvent event = new ExperimentEvent();
+        assertNull(event.getMetadataValue("loanAmount"));
+        assertTrue(event.getMetadata().isEmpty());
+        
+        event.setMetadataJson("not json");
+        assertNull(event.getMetadataValue("loanAmount"));
+        assertTrue(event.getMetadata().isEmpty());
+        
+        event.setMetadata(Map.of("loanAmount", 1000));
+        assertEquals(1000, event.getMetadataValue("loanAmount"));
+        assertEquals("{\"loanAmount\":1000}", event.getMetadataJson());
+    }
+}
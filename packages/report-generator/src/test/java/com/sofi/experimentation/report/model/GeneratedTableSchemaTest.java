@@ -0,0 +1,77 @@
+package com.sofi.experimentation.report.model;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.TableMetadata;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the generated static table schemas map items exactly like the reflective bean schemas.
+ */
+public class GeneratedTableSchemaTest {
+    
+    private static <T> void assertSameMetadata(TableSchema<T> expected, TableSchema<T> actual) {
+        TableMetadata expectedMetadata = expected.tableMetadata();
+        TableMetadata actualMetadata = actual.tableMetadata();
+        assertEquals(expectedMetadata.primaryPartitionKey(), actualMetadata.primaryPartitionKey());
+        assertEquals(expectedMetadata.primarySortKey(), actualMetadata.primarySortKey());
+        assertEquals(expected.attributeNames().size(), actual.attributeNames().size());
+        assertTrue(actual.attributeNames().containsAll(expected.attributeNames()));
+    }
+    
+    @Test
+    public void testExperimentEventSchema() {
+        TableSchema<ExperimentEvent> beanSchema = TableSchema.fromBean(ExperimentEvent.class);
+        assertSameMetadata(beanSchema, ExperimentEventTableSchema.INSTANCE);
+        
+        ExperimentEvent event = new ExperimentEvent();
+        event.setId("event-1");
+        event.setExperimentId("exp-1");
+        event.setVariantId("var1");
+        event.setUserId("user-1");
+        event.setSessionId("session-1");
+        event.setAction("CONVERSION");
+        event.setMetadata(Map.of("amount", 100));
+        event.setTimestamp("2025-03-19T10:00:00.000Z");
+        
+        Map<String, AttributeValue> item = beanSchema.itemToMap(event, true);
+        assertEquals(item, ExperimentEventTableSchema.INSTANCE.itemToMap(event, true));
+        
+        ExperimentEvent mapped = ExperimentEventTableSchema.INSTANCE.mapToItem(item);
+        assertEquals(item, beanSchema.itemToMap(mapped, true));
+        assertEquals(100, mapped.getMetadata().get("amount"));
+    }
+    
+    @Test
+    public void testExperimentSchema() {
+        TableSchema<Experiment> beanSchema = TableSchema.fromBean(Experiment.class);
+        assertSameMetadata(beanSchema, ExperimentTableSchema.INSTANCE);
+        
+        Experiment experiment = new Experiment();
+        experiment.setId("exp-1");
+        experiment.setName("Test Experiment");
+        experiment.setStatus("ACTIVE");
+        experiment.setVariants(List.of(
+                new Variant("var1", "Control", Map.of("color", "blue")),
+                new Variant("var2", "Treatment", Map.of("color", "green"))));
+        experiment.setTargetUserPercentage(50);
+        
+        Map<String, AttributeValue> item = beanSchema.itemToMap(experiment, true);
+        assertEquals(item, ExperimentTableSchema.INSTANCE.itemToMap(experiment, true));
+        
+        Experiment mapped = ExperimentTableSchema.INSTANCE.mapToItem(item);
+        assertEquals(item, beanSchema.itemToMap(mapped, true));
+        assertEquals("green", mapped.getVariants().get(1).getConfig().get("color"));
+        
+        // A missing number attribute leaves the primitive at its default instead of failing
+        Map<String, AttributeValue> partial = new HashMap<>(item);
+        partial.remove("targetUserPercentage");
+        assertEquals(0, ExperimentTableSchema.INSTANCE.mapToItem(partial).getTargetUserPercentage());
+    }
+}
@@ -0,0 +1,124 @@
+package com.sofi.experimentation.report.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the MultipartUploadOutputStream.
+ */
+public class MultipartUploadOutputStreamTest {
+    
+    private S3Client s3Client;
+    private ExecutorService executor;
+    private Map<Integer, byte[]> uploadedParts;
+    
+    @BeforeEach
+    public void setUp() {
+        s3Client = mock(S3Client.class);
+        executor = Executors.newFixedThreadPool(2);
+        uploadedParts = new ConcurrentHashMap<>();
+        
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload-1").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            uploadedParts.put(request.partNumber(), read(invocation.getArgument(1)));
+            return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+        });
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    private static byte[] read(RequestBody body) throws IOException {
+        try (InputStream in = body.contentStreamProvider().newStream()) {
+            return in.readAllBytes();
+        }
+    }
+    
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        return content;
+    }
+    
+    @Test
+    public void testSmallContentUsesSinglePut() throws Exception {
+        try (MultipartUploadOutputStream out = new MultipartUploadOutputStream(
+                s3Client, "bucket", "key", "application/json", null, 1024, 2, executor)) {
+            out.write(content(1000));
+        }
+        
+        ArgumentCaptor<RequestBody> body = ArgumentCaptor.forClass(RequestBody.class);
+        verify(s3Client).putObject(any(PutObjectRequest.class), body.capture());
+        assertArrayEquals(content(1000), read(body.getValue()));
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+    
+    @Test
+    public void testLargeContentIsUploadedInParts() throws Exception {
+        byte[] content = content(10 * 1024 + 100);
+        try (MultipartUploadOutputStream out = new MultipartUploadOutputStream(
+                s3Client, "bucket", "key", "application/json", null, 1024, 2, executor)) {
+            // Mix single bytes and chunks that straddle part boundaries
+            out.write(content[0]);
+            for (int offset = 1; offset < content.length; offset += 700) {
+                out.write(content, offset, Math.min(700, content.length - offset));
+            }
+        }
+        
+        assertEquals(11, uploadedParts.size());
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (int part = 1; part <= 11; part++) {
+            joined.write(uploadedParts.get(part));
+        }
+        assertArrayEquals(content, joined.toByteArray());
+        
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3Client).completeMultipartUpload(complete.capture());
+        assertEquals(11, complete.getValue().multipartUpload().parts().size());
+        assertEquals("etag-11", complete.getValue().multipartUpload().parts().get(10).eTag());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+    
+    @Test
+    public void testFailedWriterAbortsUpload() {
+        S3Service s3Service = new S3Service(s3Client, 1024, 2);
+        
+        assertThrows(RuntimeException.class, () -> s3Service.uploadReport("bucket", "key", "application/json", null, out -> {
+            out.write(content(5000));
+            out.close();
+            throw new IOException("Serialization failed");
+        }));
+        
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+}
@@ -0,0 +1,63 @@
+package com.sofi.experimentation.report.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ReportProgressService.
+ */
+public class ReportProgressServiceTest {
+    
+    private DynamoDBService dynamoDBService;
+    private ReportProgressService service;
+    
+    @BeforeEach
+    public void setUp() {
+        dynamoDBService = mock(DynamoDBService.class);
+        when(dynamoDBService.updateReportProgress(anyString(), anyLong(), anyDouble())).thenReturn(true);
+        service = new ReportProgressService(dynamoDBService);
+    }
+    
+    @Test
+    public void testPercentCoveredAcrossSlices() {
+        try (ReportProgressService.Progress progress = service.start(
+                "report-1", "2025-03-01T00:00:00.000Z", "2025-03-05T00:00:00.000Z", 2, 0)) {
+            assertEquals(0.0, progress.getPercentCovered());
+            
+            // Half of the first slice
+            progress.advance(10, "2025-03-02T00:00:00.000Z");
+            assertEquals(25.0, progress.getPercentCovered());
+            
+            // All of the second slice, read concurrently with the first
+            progress.advance(5, "2025-03-05T00:00:00.000Z");
+            assertEquals(75.0, progress.getPercentCovered());
+            
+            // An older page of the first slice never moves its coverage back
+            progress.advance(1, "2025-03-01T12:00:00.000Z");
+            assertEquals(75.0, progress.getPercentCovered());
+            assertEquals(16, progress.getEventsScanned());
+        }
+        verify(dynamoDBService, never()).updateReportProgress(anyString(), anyLong(), anyDouble());
+    }
+    
+    @Test
+    public void testWritesAreCoalesced() throws Exception {
+        try (ReportProgressService.Progress progress = service.start(
+                "report-1", "2025-03-01T00:00:00.000Z", "2025-03-02T00:00:00.000Z", 1, 200)) {
+            for (int i = 0; i < 100_000; i++) {
+                progress.advance(1, null);
+            }
+            Thread.sleep(500);
+            
+            // Unchanged progress is not written again
+            ArgumentCaptor<Long> events = ArgumentCaptor.forClass(Long.class);
+            verify(dynamoDBService, times(1)).updateReportProgress(eq("report-1"), events.capture(), anyDouble());
+            assertEquals(100_000L, events.getValue());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.sofi.experimentation.report.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdInputStream;
+import com.sofi.experimentation.report.model.ReportCompression;
+import com.sofi.experimentation.report.model.ReportData;
+import com.sofi.experimentation.report.model.ReportFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the ReportSerializer.
+ */
+public class ReportSerializerTest {
+    
+    private static ReportData createReport() {
+        ReportData reportData = new ReportData();
+        reportData.setExperimentId("exp-1");
+        reportData.setExperimentName("Test Experiment");
+        reportData.setGeneratedAt("2025-03-20T00:00:00Z");
+        
+        ReportData.Overall overall = new ReportData.Overall();
+        overall.setTotalUsers(200);
+        overall.setTotalEvents(1000);
+        overall.setConversionRate(0.125);
+        ReportData.Metrics metrics = new ReportData.Metrics();
+        metrics.setOverall(overall);
+        reportData.setMetrics(metrics);
+        return reportData;
+    }
+    
+    private static InputStream decompress(byte[] bytes, ReportCompression compression) throws Exception {
+        InputStream in = new ByteArrayInputStream(bytes);
+        switch (compression) {
+            case GZIP:
+                return new GZIPInputStream(in);
+            case ZSTD:
+                return new ZstdInputStream(in);
+            default:
+                return in;
+        }
+    }
+    
+    @Test
+    public void testRoundTripInEveryFormat() throws Exception {
+        ReportSerializer serializer = new ReportSerializer(new ObjectMapper());
+        
+        for (ReportFormat format : ReportFormat.values()) {
+            for (ReportCompression compression : ReportCompression.values()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                serializer.write(createReport(), format, compression, out);
+                
+                try (InputStream in = decompress(out.toByteArray(), compression)) {
+                    ReportData read = serializer.getMapper(format).readValue(in, ReportData.class);
+                    String description = format + "/" + compression;
+                    assertEquals("Test Experiment", read.getExperimentName(), description);
+                    assertEquals(1000, read.getMetrics().getOverall().getTotalEvents(), description);
+                    assertEquals(0.125, read.getMetrics().getOverall().getConversionRate(), description);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.sofi.experimentation.report.sketch;
+
+import com.sofi.experimentation.report.util.HashUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the HyperLogLog sketch.
+ */
+public class HyperLogLogTest {
+    
+    @Test
+    public void testEmptySketch() {
+        assertEquals(0, new HyperLogLog(14).estimate());
+    }
+    
+    @Test
+    public void testEstimateWithinErrorBound() {
+        int precision = 14;
+        // Four standard errors keeps the test deterministic-enough while still catching a broken estimator
+        double tolerance = 4 * HyperLogLog.relativeStandardError(precision);
+        
+        for (int cardinality : new int[] {10, 1000, 20000, 100000, 1000000}) {
+            HyperLogLog sketch = new HyperLogLog(precision);
+            for (int i = 0; i < cardinality; i++) {
+                sketch.add(HashUtils.hash64("user-" + i));
+                // Duplicates must not change the estimate
+                sketch.add(HashUtils.hash64("user-" + i));
+            }
+            double relativeError = Math.abs(sketch.estimate() - cardinality) / (double) cardinality;
+            assertTrue(relativeError <= tolerance,
+                    "Relative error " + relativeError + " exceeds " + tolerance + " at cardinality " + cardinality);
+        }
+    }
+    
+    @Test
+    public void testMergeMatchesUnion() {
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (int i = 0; i < 30000; i++) {
+            long hash = HashUtils.hash64("user-" + i);
+            (i < 20000 ? left : right).add(hash);
+            if (i >= 10000 && i < 20000) {
+                right.add(hash);
+            }
+            union.add(hash);
+        }
+        
+        left.merge(right);
+        assertEquals(union.estimate(), left.estimate());
+    }
+    
+    @Test
+    public void testInvalidPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(19));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(10).merge(new HyperLogLog(11)));
+    }
+}
@@ -0,0 +1,117 @@
+package com.sofi.experimentation.report.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Accuracy tests for the KLL sketch against exact quantiles.
+ */
+public class KllSketchTest {
+    private static final double[] PERCENTILES = new double[99];
+    
+    static {
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            PERCENTILES[i] = (i + 1) / 100.0;
+        }
+    }
+    
+    /**
+     * Largest difference between each requested quantile and the exact rank of its estimate.
+     */
+    private static double maxRankError(double[] sorted, KllSketch sketch) {
+        double[] estimates = sketch.quantiles(PERCENTILES);
+        double maxError = 0;
+        for (int q = 0; q < PERCENTILES.length; q++) {
+            int below = lowerBound(sorted, estimates[q]);
+            int upTo = lowerBound(sorted, Math.nextUp(estimates[q]));
+            // Any rank the estimate occupies among equal values counts as exact
+            double rank = Math.max(below, Math.min(upTo, PERCENTILES[q] * sorted.length));
+            maxError = Math.max(maxError, Math.abs(rank / sorted.length - PERCENTILES[q]));
+        }
+        return maxError;
+    }
+    
+    private static int lowerBound(double[] sorted, double value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && sorted[index - 1] == value) {
+            index--;
+        }
+        return index;
+    }
+    
+    @Test
+    public void testEmptySketch() {
+        KllSketch sketch = new KllSketch(KllSketch.DEFAULT_K);
+        assertTrue(sketch.isEmpty());
+        assertTrue(Double.isNaN(sketch.quantiles(new double[] {0.5})[0]));
+    }
+    
+    @Test
+    public void testQuantilesWithinRankErrorAndMemoryCap() {
+        Random random = new Random(1);
+        for (int k : new int[] {100, 200}) {
+            for (int n : new int[] {100, 10_000, 1_000_000}) {
+                KllSketch sketch = new KllSketch(k);
+                double[] values = new double[n];
+                for (int i = 0; i < n; i++) {
+                    // Skewed like loan amounts, with many repeated round values
+                    values[i] = i % 5 == 0 ? 10_000 : Math.exp(8 + random.nextGaussian());
+                    sketch.update(values[i]);
+                }
+                Arrays.sort(values);
+                
+                double error = maxRankError(values, sketch);
+                assertTrue(error <= 2.0 / k, "Rank error " + error + " with k " + k + " and " + n + " values");
+                assertTrue(sketch.getRetained() <= 3 * k + 20 * KllSketch.MIN_LEVEL_CAPACITY,
+                        sketch.getRetained() + " values retained with k " + k);
+                assertEquals(n, sketch.getCount());
+                assertArrayEquals(new double[] {values[0], values[n - 1]}, sketch.quantiles(new double[] {0, 1}));
+            }
+        }
+    }
+    
+    @Test
+    public void testMergedSketchesMatchOneSketch() throws Exception {
+        Random random = new Random(2);
+        int n = 500_000;
+        double[] values = new double[n];
+        KllSketch[] parts = new KllSketch[7];
+        for (int p = 0; p < parts.length; p++) {
+            parts[p] = new KllSketch(KllSketch.DEFAULT_K);
+        }
+        for (int i = 0; i < n; i++) {
+            values[i] = random.nextDouble() * 1000;
+            // Unequal parts, as from time slices of different sizes
+            parts[Math.min(parts.length - 1, Integer.numberOfTrailingZeros(i + 1))].update(values[i]);
+        }
+        Arrays.sort(values);
+        
+        KllSketch merged = new KllSketch(KllSketch.DEFAULT_K);
+        for (KllSketch part : parts) {
+            // Each part goes through a round trip, as sketches restored from a checkpoint do
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            part.writeTo(new DataOutputStream(bytes));
+            KllSketch restored = new KllSketch(KllSketch.DEFAULT_K);
+            restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            assertArrayEquals(part.quantiles(PERCENTILES), restored.quantiles(PERCENTILES));
+            merged.merge(restored);
+        }
+        
+        assertEquals(n, merged.getCount());
+        double error = maxRankError(values, merged);
+        assertTrue(error <= 2.0 / KllSketch.DEFAULT_K, "Rank error " + error + " after merging");
+        assertTrue(merged.getRetained() <= 3 * KllSketch.DEFAULT_K + 20 * KllSketch.MIN_LEVEL_CAPACITY);
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(new KllSketch(100)));
+    }
+}
@@ -0,0 +1,89 @@
+package com.sofi.experimentation.report.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the Bootstrap.
+ */
+public class BootstrapTest {
+    
+    @Test
+    public void testBinomialMoments() {
+        SplittableRandom random = new SplittableRandom(1);
+        // Inversion, rejection, and rejection with p above one half
+        long[] trials = {50, 1_000_000, 2_000};
+        double[] probabilities = {0.1, 0.1, 0.7};
+        int draws = 50_000;
+        for (int t = 0; t < trials.length; t++) {
+            long n = trials[t];
+            double p = probabilities[t];
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (int i = 0; i < draws; i++) {
+                long k = Bootstrap.binomial(random, n, p);
+                assertTrue(k >= 0 && k <= n);
+                sum += k;
+                sumOfSquares += (double) k * k;
+            }
+            double mean = sum / draws;
+            double variance = sumOfSquares / draws - mean * mean;
+            double expectedVariance = n * p * (1 - p);
+            // Five standard errors of the sample mean and about 5% for the variance
+            assertEquals(n * p, mean, 5 * Math.sqrt(expectedVariance / draws), "mean for n=" + n);
+            assertEquals(expectedVariance, variance, 0.05 * expectedVariance, "variance for n=" + n);
+        }
+    }
+    
+    @Test
+    public void testSameSeedGivesSameIntervalOnAnyPool() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            BootstrapInterval first = new Bootstrap(single).conversionImprovement(
+                    100_000, 10_000, 100_000, 10_400, 1000, 0.95, new SplittableRandom(7));
+            BootstrapInterval second = new Bootstrap(parallel).conversionImprovement(
+                    100_000, 10_000, 100_000, 10_400, 1000, 0.95, new SplittableRandom(7));
+            assertEquals(first.getLower(), second.getLower());
+            assertEquals(first.getUpper(), second.getUpper());
+            assertEquals(1000, first.getResamples());
+            
+            double[] values = new double[5000];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = i % 17;
+            }
+            assertEquals(
+                    new Bootstrap(single).meanImprovement(values, values, 100, 0.9, new SplittableRandom(3)).getLower(),
+                    new Bootstrap(parallel).meanImprovement(values, values, 100, 0.9, new SplittableRandom(3)).getLower());
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+        }
+    }
+    
+    @Test
+    public void testConversionsMatchResampledUserArrays() {
+        int users = 2000;
+        double[] control = new double[users];
+        double[] treatment = new double[users];
+        for (int i = 0; i < users; i++) {
+            control[i] = i < 200 ? 1 : 0;
+            treatment[i] = i < 240 ? 1 : 0;
+        }
+        Bootstrap bootstrap = new Bootstrap();
+        
+        BootstrapInterval fromCounts = bootstrap.conversionImprovement(
+                users, 200, users, 240, 4000, 0.95, new SplittableRandom(11));
+        BootstrapInterval fromArrays = bootstrap.meanImprovement(
+                control, treatment, 4000, 0.95, new SplittableRandom(12));
+        
+        // Improvement of 20%, with an interval from about 0% to about 43%
+        assertTrue(fromCounts.getLower() < 20 && fromCounts.getUpper() > 20);
+        assertEquals(fromArrays.getLower(), fromCounts.getLower(), 3);
+        assertEquals(fromArrays.getUpper(), fromCounts.getUpper(), 3);
+    }
+}
@@ -0,0 +1,99 @@
+package com.sofi.experimentation.report.stats;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math3.stat.inference.TTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Accuracy tests for RunningMoments and MeanTests against reference implementations.
+ */
+public class MeanTestsTest {
+    
+    @Test
+    public void testMomentsStayAccurateForLargeMeans() {
+        // Amounts around a billion varying by about one: a sum of squares loses every digit of the variance
+        Random random = new Random(1);
+        RunningMoments moments = new RunningMoments();
+        double[] values = new double[100_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1e9 + random.nextGaussian();
+            moments.add(values[i]);
+        }
+        double mean = 0;
+        for (double value : values) {
+            mean += value / values.length;
+        }
+        double squares = 0;
+        for (double value : values) {
+            squares += (value - mean) * (value - mean);
+        }
+        assertEquals(squares / (values.length - 1), moments.getVariance(), 1e-6);
+        assertEquals(1, moments.getVariance(), 0.02);
+    }
+    
+    @Test
+    public void testMergedMomentsEqualSequentialMoments() {
+        Random random = new Random(2);
+        RunningMoments all = new RunningMoments();
+        RunningMoments[] parts = {new RunningMoments(), new RunningMoments(), new RunningMoments()};
+        for (int i = 0; i < 30_000; i++) {
+            double value = Math.exp(random.nextGaussian()) * 1000;
+            all.add(value);
+            // Unequal parts, one of them empty
+            parts[i % 7 == 0 ? 0 : 1].add(value);
+        }
+        RunningMoments merged = new RunningMoments();
+        for (RunningMoments part : parts) {
+            merged.merge(part);
+        }
+        assertEquals(all.getCount(), merged.getCount());
+        assertEquals(all.getMean(), merged.getMean(), 1e-9 * all.getMean());
+        assertEquals(all.getVariance(), merged.getVariance(), 1e-9 * all.getVariance());
+    }
+    
+    @Test
+    public void testWelchTTestMatchesReference() {
+        Random random = new Random(3);
+        int[][] sizes = {{40, 60}, {1000, 3000}, {5, 8}};
+        for (int[] size : sizes) {
+            double[] control = new double[size[0]];
+            double[] treatment = new double[size[1]];
+            RunningMoments controlMoments = new RunningMoments();
+            RunningMoments treatmentMoments = new RunningMoments();
+            SummaryStatistics controlSummary = new SummaryStatistics();
+            SummaryStatistics treatmentSummary = new SummaryStatistics();
+            for (int i = 0; i < control.length; i++) {
+                control[i] = 100 + 10 * random.nextGaussian();
+                controlMoments.add(control[i]);
+                controlSummary.addValue(control[i]);
+            }
+            for (int i = 0; i < treatment.length; i++) {
+                // Unequal variances
+                treatment[i] = 103 + 25 * random.nextGaussian();
+                treatmentMoments.add(treatment[i]);
+                treatmentSummary.addValue(treatment[i]);
+            }
+            
+            MeanComparison comparison = MeanTests.welchTTest(controlMoments, treatmentMoments, 0.95);
+            double expected = new TTest().tTest(control, treatment);
+            assertEquals(expected, comparison.getPValue(), 1e-9 + expected * 1e-6);
+            assertEquals(treatmentSummary.getMean() - controlSummary.getMean(), comparison.getDifference(), 1e-9);
+            // The interval excludes 0 exactly when the test rejects at 5%
+            assertEquals(comparison.getPValue() < 0.05, comparison.getLower() > 0 || comparison.getUpper() < 0);
+        }
+    }
+    
+    @Test
+    public void testDegenerateGroups() {
+        RunningMoments single = new RunningMoments();
+        single.add(1);
+        RunningMoments constant = new RunningMoments(10, 5, 0);
+        assertThrows(IllegalArgumentException.class, () -> MeanTests.welchTTest(single, constant, 0.95));
+        assertEquals(1, MeanTests.welchTTest(constant, constant, 0.95).getPValue());
+        assertEquals(0, MeanTests.welchTTest(constant, new RunningMoments(10, 6, 0), 0.95).getPValue());
+    }
+}
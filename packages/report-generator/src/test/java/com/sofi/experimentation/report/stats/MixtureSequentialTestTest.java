@@ -0,0 +1,75 @@
+package com.sofi.experimentation.report.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the MixtureSequentialTest, simulating experiments that are checked after every day.
+ */
+public class MixtureSequentialTestTest {
+    private static final int EXPERIMENTS = 400;
+    private static final int LOOKS = 30;
+    private static final int USERS_PER_LOOK = 1000;
+    private static final double ALPHA = 0.05;
+    
+    @Test
+    public void testPeekingKeepsFalsePositiveRate() {
+        SplittableRandom random = new SplittableRandom(17);
+        int sequentialRejections = 0;
+        int naiveRejections = 0;
+        for (int experiment = 0; experiment < EXPERIMENTS; experiment++) {
+            MixtureSequentialTest test = new MixtureSequentialTest(MixtureSequentialTest.DEFAULT_MIXING_SD);
+            long users = 0;
+            long controlConversions = 0;
+            long treatmentConversions = 0;
+            boolean naiveRejected = false;
+            double previous = 1;
+            for (int look = 0; look < LOOKS; look++) {
+                users += USERS_PER_LOOK;
+                controlConversions += Bootstrap.binomial(random, USERS_PER_LOOK, 0.1);
+                treatmentConversions += Bootstrap.binomial(random, USERS_PER_LOOK, 0.1);
+                double pValue = test.update(users, controlConversions, users, treatmentConversions);
+                assertTrue(pValue <= previous);
+                previous = pValue;
+                naiveRejected |= ProportionTests.zTest(users, controlConversions, users, treatmentConversions) < ALPHA;
+            }
+            if (test.getPValue() < ALPHA) {
+                sequentialRejections++;
+            }
+            if (naiveRejected) {
+                naiveRejections++;
+            }
+        }
+        
+        // Stopping at the first significant z-test finds an effect in about a quarter of A/A tests
+        assertTrue(naiveRejections > 2 * ALPHA * EXPERIMENTS, "naive rejections: " + naiveRejections);
+        assertTrue(sequentialRejections <= ALPHA * EXPERIMENTS, "sequential rejections: " + sequentialRejections);
+    }
+    
+    @Test
+    public void testDetectsRealDifference() {
+        SplittableRandom random = new SplittableRandom(23);
+        MixtureSequentialTest test = new MixtureSequentialTest(MixtureSequentialTest.DEFAULT_MIXING_SD);
+        long users = 0;
+        long controlConversions = 0;
+        long treatmentConversions = 0;
+        for (int look = 0; look < LOOKS; look++) {
+            users += USERS_PER_LOOK;
+            controlConversions += Bootstrap.binomial(random, USERS_PER_LOOK, 0.10);
+            treatmentConversions += Bootstrap.binomial(random, USERS_PER_LOOK, 0.12);
+            test.update(users, controlConversions, users, treatmentConversions);
+        }
+        assertTrue(test.getPValue() < 0.001, "p-value: " + test.getPValue());
+    }
+    
+    @Test
+    public void testNoDataKeepsPValueAtOne() {
+        MixtureSequentialTest test = new MixtureSequentialTest(0.05);
+        assertEquals(1, test.update(0, 0, 0, 0));
+        assertEquals(1, test.update(100, 0, 100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new MixtureSequentialTest(0));
+    }
+}
@@ -0,0 +1,91 @@
+package com.sofi.experimentation.report.stats;
+
+import org.apache.commons.math3.distribution.HypergeometricDistribution;
+import org.apache.commons.math3.stat.inference.AlternativeHypothesis;
+import org.apache.commons.math3.stat.inference.BinomialTest;
+import org.apache.commons.math3.stat.inference.ChiSquareTest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Accuracy tests for ProportionTests against reference implementations and published values.
+ */
+public class ProportionTestsTest {
+    
+    @Test
+    public void testZTestMatchesChiSquareTest() {
+        long[][] tables = {{1000, 100, 1000, 150}, {5_000_000, 500_000, 5_000_000, 502_000}, {80, 48, 70, 56}};
+        for (long[] t : tables) {
+            long[][] counts = {{t[1], t[0] - t[1]}, {t[3], t[2] - t[3]}};
+            double expected = new ChiSquareTest().chiSquareTest(counts);
+            assertEquals(expected, ProportionTests.zTest(t[0], t[1], t[2], t[3]), 1e-9 + expected * 1e-6);
+            assertEquals(expected, ProportionTests.chiSquareTest(new long[] {t[0], t[2]}, new long[] {t[1], t[3]}),
+                    1e-9 + expected * 1e-6);
+        }
+        
+        long[][] counts = {{100, 900}, {130, 870}, {90, 810}};
+        double expected = new ChiSquareTest().chiSquareTest(counts);
+        assertEquals(expected, ProportionTests.chiSquareTest(new long[] {1000, 1000, 900}, new long[] {100, 130, 90}),
+                1e-9 + expected * 1e-6);
+    }
+    
+    @Test
+    public void testFisherExactTest() {
+        // Fisher's tea tasting experiment; R's fisher.test gives 0.4857
+        assertEquals(0.4857143, ProportionTests.fisherExactTest(4, 1, 4, 3), 1e-6);
+        
+        // Against the sum over the hypergeometric distribution
+        long[][] tables = {{20, 2, 25, 9}, {12, 0, 30, 4}, {200, 3, 150, 1}, {7, 7, 9, 2}};
+        for (long[] t : tables) {
+            int users = (int) (t[0] + t[2]);
+            int conversions = (int) (t[1] + t[3]);
+            HypergeometricDistribution distribution = new HypergeometricDistribution(users, conversions, (int) t[2]);
+            double observed = distribution.probability((int) t[3]);
+            double expected = 0;
+            for (int k = distribution.getSupportLowerBound(); k <= distribution.getSupportUpperBound(); k++) {
+                if (distribution.probability(k) <= observed * (1 + 1e-7)) {
+                    expected += distribution.probability(k);
+                }
+            }
+            assertEquals(Math.min(1, expected), ProportionTests.fisherExactTest(t[0], t[1], t[2], t[3]), 1e-9);
+        }
+    }
+    
+    @Test
+    public void testConfidenceInterval() {
+        // Newcombe (1998), example (a): 56/70 against 48/80 gives 0.0524 to 0.3339
+        ProportionComparison comparison = ProportionTests.compare(80, 48, 70, 56, 0.95);
+        assertEquals(0.2, comparison.getDifference(), 1e-12);
+        assertEquals(0.0524, comparison.getLower(), 1e-4);
+        assertEquals(0.3339, comparison.getUpper(), 1e-4);
+        
+        // No conversions at all still gives a proper interval around zero
+        comparison = ProportionTests.compare(10, 0, 10, 0, 0.95);
+        assertEquals(1.0, comparison.getPValue(), 1e-12);
+        assertTrue(comparison.getLower() < 0 && comparison.getUpper() > 0);
+    }
+    
+    @Test
+    public void testMethodSelection() {
+        assertEquals(SignificanceMethod.Z_TEST, ProportionTests.compare(1000, 100, 1000, 150, 0.95).getMethod());
+        assertEquals(SignificanceMethod.FISHER_EXACT, ProportionTests.compare(30, 1, 30, 4, 0.95).getMethod());
+        assertEquals(SignificanceMethod.FISHER_EXACT,
+                ProportionTests.compare(10_000_000, 2, 10_000_000, 5, 0.95).getMethod());
+        assertThrows(IllegalArgumentException.class, () -> ProportionTests.compare(0, 0, 10, 1, 0.95));
+        assertThrows(IllegalArgumentException.class, () -> ProportionTests.compare(10, 11, 10, 1, 0.95));
+    }
+    
+    @Test
+    public void testAgreesWithBinomialTestWhenControlRateIsKnown() {
+        // With a control far larger than the treatment, its rate is nearly known and the exact binomial test
+        // against it agrees with the two-proportion test
+        int treatmentUsers = 100_000;
+        for (int treatmentConversions : new int[] {10_000, 10_150, 10_300, 10_600}) {
+            double binomial = new BinomialTest().binomialTest(
+                    treatmentUsers, treatmentConversions, 0.1, AlternativeHypothesis.TWO_SIDED);
+            double pValue = ProportionTests.zTest(100_000_000, 10_000_000, treatmentUsers, treatmentConversions);
+            assertEquals(binomial, pValue, Math.max(0.01 * binomial, 1e-4), "conversions " + treatmentConversions);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.sofi.experimentation.report.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for the DateUtils.
+ */
+public class DateUtilsTest {
+    
+    @Test
+    public void testParseEpochMillisMatchesInstantParse() {
+        Random random = new Random(11);
+        for (int i = 0; i < 100000; i++) {
+            // Years 0001-9999, rendered with 0, 3, 6 or 9 fraction digits by Instant.toString
+            long second = Math.floorMod(random.nextLong(), 253402300800L - 62135596800L) - 62135596800L;
+            int nanos = random.nextInt(4) == 0 ? 0 : random.nextInt(1_000_000_000);
+            String timestamp = Instant.ofEpochSecond(second, nanos).toString();
+            assertEquals(Instant.parse(timestamp).toEpochMilli(), DateUtils.parseEpochMillis(timestamp), timestamp);
+        }
+        
+        assertEquals(Instant.parse("2024-02-29T23:59:59.999Z").toEpochMilli(),
+                DateUtils.parseEpochMillis("2024-02-29T23:59:59.999Z"));
+        assertEquals(Instant.parse("2025-03-19T10:15:30.1Z").toEpochMilli(),
+                DateUtils.parseEpochMillis("2025-03-19T10:15:30.1Z"));
+    }
+    
+    @Test
+    public void testParseEpochMillisRejectsWhatInstantParseRejects() {
+        for (String timestamp : new String[] {
+                "2025-02-29T00:00:00Z", "2025-13-01T00:00:00Z", "2025-03-19T25:00:00Z",
+                "2025-03-19T10:15:30.1234567890Z", "2025-03-19 10:15:30Z", "2025-03-1xT10:15:30Z", "not a timestamp"}) {
+            assertThrows(DateTimeParseException.class, () -> DateUtils.parseEpochMillis(timestamp), timestamp);
+        }
+    }
+    
+    @Test
+    public void testEpochDayAndHourFollowTheZone() {
+        long millis = DateUtils.parseEpochMillis("2025-03-09T06:30:00Z");
+        ZoneId newYork = ZoneId.of("America/New_York");
+        LocalDateTime local = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), newYork);
+        
+        assertEquals(local.toLocalDate().toEpochDay(), DateUtils.toEpochDay(millis, newYork.getRules()));
+        assertEquals(local.toEpochSecond(ZoneOffset.UTC) / 3600, DateUtils.toEpochHour(millis, newYork.getRules()));
+        assertEquals("2025-03-09", DateUtils.toDateString("2025-03-09T06:30:00Z", newYork));
+        assertEquals("2025-03-08", DateUtils.toDateString("2025-03-09T04:30:00Z", newYork));
+        assertEquals("2025-03-09", DateUtils.toDateString("2025-03-09T04:30:00Z", ZoneOffset.UTC));
+    }
+}
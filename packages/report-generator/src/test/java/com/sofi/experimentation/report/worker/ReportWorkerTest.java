@@ -0,0 +1,71 @@
+package com.sofi.experimentation.report.worker;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofi.experimentation.report.model.ReportJobParameters;
+import com.sofi.experimentation.report.service.ReportGenerationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the ReportWorker and its job sources.
+ */
+public class ReportWorkerTest {
+    
+    private static String job(String experimentId) {
+        return "{\"experimentId\":\"" + experimentId + "\",\"reportId\":\"report-" + experimentId + "\","
+                + "\"timeRange\":{\"start\":\"2025-03-01T00:00:00Z\",\"end\":\"2025-03-31T00:00:00Z\"},"
+                + "\"outputBucket\":\"bucket\",\"outputKey\":\"reports/" + experimentId + ".json\"}";
+    }
+    
+    @Test
+    public void testRunsEveryLineUntilEndOfInput() throws Exception {
+        ReportGenerationService reportService = mock(ReportGenerationService.class);
+        doThrow(new RuntimeException("Error generating report"))
+                .when(reportService).generateReport(argThat(p -> "exp-2".equals(p.getExperimentId())));
+        
+        String input = job("exp-1") + "\n\n" + job("exp-2") + "\n" + job("exp-3") + "\n";
+        ReportWorker worker = new ReportWorker(reportService, new ObjectMapper(), 60_000);
+        try (JobSource source = new LineJobSource(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)))) {
+            worker.run(source);
+        }
+        
+        ArgumentCaptor<ReportJobParameters> captor = ArgumentCaptor.forClass(ReportJobParameters.class);
+        verify(reportService, times(3)).generateReport(captor.capture());
+        List<ReportJobParameters> jobs = captor.getAllValues();
+        assertEquals("exp-1", jobs.get(0).getExperimentId());
+        assertEquals("exp-3", jobs.get(2).getExperimentId());
+        assertEquals(2, worker.getCompletedJobs());
+        assertEquals(1, worker.getFailedJobs());
+    }
+    
+    @Test
+    public void testDirectorySourceStopsWhenIdle(@TempDir Path directory) throws Exception {
+        ReportGenerationService reportService = mock(ReportGenerationService.class);
+        Files.write(directory.resolve("a.json"), job("exp-1").getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("b.json"), "not json".getBytes(StandardCharsets.UTF_8));
+        
+        ReportWorker worker = new ReportWorker(reportService, new ObjectMapper(), 300);
+        try (JobSource source = new DirectoryJobSource(directory)) {
+            worker.run(source);
+        }
+        
+        verify(reportService, times(1)).generateReport(any());
+        assertEquals(1, worker.getCompletedJobs());
+        assertEquals(1, worker.getFailedJobs());
+        assertTrue(Files.exists(directory.resolve("done").resolve("a.json")));
+        assertTrue(Files.exists(directory.resolve("failed").resolve("b.json")));
+        assertFalse(Files.exists(directory.resolve("processing").resolve("a.json")));
+    }
+}
@@ -17,6 +17,15 @@ export interface Experiment {
   startDate?: string; // Optional start date
   endDate?: string; // Optional end date
   targetUserPercentage: number; // 0-100, percentage of users to include
+  metrics?: MetricDefinition[]; // Metrics reported per variant (default: unique conversion over LOAN_ACCEPTANCE and CONVERSION)
+}
+
+export interface MetricDefinition {
+  name: string;
+  type: 'COUNT' | 'UNIQUE_CONVERSION' | 'RATIO' | 'SUM' | 'MEAN';
+  actions: string[]; // Actions of the counted events; for RATIO the numerator events
+  denominatorActions?: string[]; // Denominator events (RATIO only)
+  field?: string; // Top-level metadata field to sum (SUM and MEAN only)
 }
 
 // Event Models
@@ -43,6 +52,31 @@ export interface ReportMetadata {
     totalEvents: number;
     variantCounts: Record<string, number>;
   };
+  progress?: {
+    // Written periodically while the report is PROCESSING
+    eventsScanned: number;
+    percentCovered: number; // 0-100, share of the time range read so far
+  };
+  instrumentation?: {
+    // Written by the job with its final status
+    wallMillis: number;
+    phases: Record<string, {
+      count?: number; // Present when the phase ran more than once
+      wallMillis: number;
+      cpuMillis?: number; // CPU time of the job thread
+      allocatedBytes?: number; // Heap allocated by the job thread
+      gcCount: number;
+      gcMillis: number;
+    }>;
+    counters: Record<string, number>; // e.g. events.read, events.pages, report.bytes
+    requests: Record<string, {
+      // Keyed by AWS service and operation, e.g. DynamoDB.Query
+      calls: number;
+      retries: number;
+      failures: number;
+      millis: number;
+    }>;
+  };
 }
 
 export interface ReportData {
@@ -58,6 +92,10 @@ export interface ReportData {
       totalUsers: number;
       totalEvents: number;
       conversionRate: number;
+      distinctUsers?: number; // Users counted once across variants
+      overlappingUsers?: number | null; // Users seen in more than one variant (exact mode only)
+      overlappingConvertedUsers?: number | null; // Overlapping users who converted (exact mode only)
+      homogeneityPValue?: number; // Chi-square test across all variants (more than two variants only)
     };
     byVariant: {
       [variantId: string]: {
@@ -66,19 +104,45 @@ export interface ReportData {
         conversionRate: number;
         improvement?: number; // Percentage improvement over control
         significanceLevel?: number; // p-value if applicable
+        significanceMethod?: 'Z_TEST' | 'FISHER_EXACT'; // Test behind significanceLevel
+        differenceInterval?: { level: number; lower: number; upper: number }; // CI of conversionRate minus control's
+        improvementInterval?: { level: number; lower: number; upper: number; resamples: number }; // Bootstrap CI of improvement
+        metrics?: {
+          [metricName: string]: {
+            type: MetricDefinition['type'];
+            value: number; // numerator / denominator
+            numerator: number;
+            denominator: number;
+            improvement?: number; // Percentage improvement over control
+            standardDeviation?: number; // SD of the per-user totals (MEAN only)
+            significanceLevel?: number; // Welch t-test p-value against control (MEAN only)
+            significanceMethod?: 'WELCH_T_TEST';
+            differenceInterval?: { level: number; lower: number; upper: number }; // CI of value minus control's (MEAN only)
+            improvementInterval?: { level: number; lower: number; upper: number; resamples: number }; // Bootstrap CI of improvement (MEAN only)
+            quantiles?: { [label: string]: number }; // Estimated quantiles of the event values (SUM and MEAN), such as p50
+          };
+        };
       };
     };
     timeSeries: {
-      // Daily metrics
-      dates: string[]; // Array of date strings
+      granularity?: ReportJobParameters['timeSeriesGranularity'];
+      dates: string[]; // Bucket labels: YYYY-MM-DDTHH:00 (hourly), YYYY-MM-DD (daily) or the week's Monday (weekly)
       byVariant: {
         [variantId: string]: {
           events: number[];
           conversions: number[];
+          sequentialPValues?: number[]; // Always-valid p-values against control by bucket, exact mode treatments only
+          quantiles?: { [metricName: string]: { [label: string]: (number | null)[] } }; // Per bucket, null when empty
         };
       };
     };
   };
+  approximation?: {
+    // Present when distinct users are estimated
+    method: 'HYPERLOGLOG';
+    precision: number;
+    relativeStandardError: number;
+  } | null;
 }
 
 // API Request/Response Types
@@ -176,6 +240,14 @@ export interface GenerateReportRequest {
     start: string; // ISO date string
     end: string; // ISO date string
   };
+  outputFormat?: ReportJobParameters['outputFormat'];
+  outputCompression?: ReportJobParameters['outputCompression'];
+  timeZone?: string;
+  timeSeriesGranularity?: ReportJobParameters['timeSeriesGranularity'];
+  metrics?: ReportJobParameters['metrics'];
+  bootstrapResamples?: ReportJobParameters['bootstrapResamples'];
+  sequentialMixingSd?: ReportJobParameters['sequentialMixingSd'];
+  quantiles?: ReportJobParameters['quantiles'];
 }
 
 export interface GenerateReportResponse {
@@ -221,4 +293,26 @@ export interface ReportJobParameters {
   };
   outputBucket: string;
   outputKey: string;
+  fetchParallelism?: number; // Time slices queried concurrently (default 1)
+  timeSlices?: number; // Sub-ranges for a parallel fetch (default fetchParallelism)
+  distinctCountMode?: 'EXACT' | 'APPROXIMATE'; // Default EXACT
+  hllPrecision?: number; // HyperLogLog precision for APPROXIMATE mode (default 14)
+  incremental?: boolean; // Resume from the previous aggregate checkpoint
+  ingestionLagSeconds?: number; // Incremental jobs read and checkpoint no later than this long before they start (default 300)
+  checkpointBucket?: string; // Default outputBucket
+  checkpointKey?: string; // Default checkpoints/<experimentId>/aggregate.bin
+  progressIntervalSeconds?: number; // Minimum seconds between progress writes, 0 disables (default 5)
+  outputFormat?: 'JSON' | 'SMILE' | 'CBOR'; // Report encoding (default JSON)
+  outputCompression?: 'NONE' | 'GZIP' | 'ZSTD'; // Report Content-Encoding (default NONE)
+  reportType?: 'CONVERSION' | 'FULL'; // Decides the event attributes read (default CONVERSION)
+  timeZone?: string; // IANA zone ID for the time series dates (default UTC)
+  timeSeriesGranularity?: 'HOURLY' | 'DAILY' | 'WEEKLY'; // Time series bucket width (default DAILY)
+  metrics?: MetricDefinition[]; // Replaces the experiment's metrics for this report
+  bootstrapResamples?: number; // Resamples for the bootstrap interval of improvement, 0 disables (default 0)
+  bootstrapSeed?: number; // Seed of the bootstrap's random streams (default 0)
+  sequentialMixingSd?: number; // Effect standard deviation the sequential test mixes over (default 0.01)
+  quantiles?: number[]; // Quantiles of SUM and MEAN event values to estimate, such as [0.5, 0.99] (default none)
+  quantileSketchK?: number; // Accuracy parameter of the quantile sketches (default 200)
+  aggregationHeapBudgetMb?: number; // Per-user state budget before spilling to disk, 0 never spills (default 0); a job that spills saves no checkpoint
+  spillDirectory?: string; // Local directory for spilled events (default java.io.tmpdir)
 }
\ No newline at end of file